@@ -0,0 +1,159 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.benchmarks;
+
+import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.NetworkData;
+import com.microrisc.simply.iqrf.dpa.v30x.devices.OS;
+import com.microrisc.simply.iqrf.dpa.v30x.devices.RAM;
+import com.microrisc.simply.network.BaseNetworkData;
+import java.util.UUID;
+
+/**
+ * Input data shared by benchmarks. 
+ * <p>
+ * Packets correspond to the standard DPA protocol mapping.
+ * 
+ * @author agent
+ */
+public final class BenchmarkData {
+    /** Network ID used in benchmarks. */
+    public static final String NETWORK_ID = "1";
+    
+    /** Node ID used in benchmarks. */
+    public static final String NODE_ID = "7";
+    
+    /** HW profile ID used in benchmarks - any HW profile. */
+    public static final int HWPID = 0xFFFF;
+    
+    /** Length of FRC data. */
+    public static final int FRC_DATA_LENGTH = 64;
+    
+    /** Length of HWP configuration in response, including undocumented byte. */
+    public static final int HWP_CONFIGURATION_LENGTH = 0x22;
+    
+    // position of the first byte of response data in DPA packet
+    private static final int RESPONSE_DATA_START = 8;
+    
+    // OS info of DPA 3.0x module
+    private static final short[] OS_INFO = { 
+        0x12, 0x34, 0x56, 0x81, 0x38, 0x24, 0x78, 0x08, 0x32, 0x49, 0x00, 0x00
+    };
+    
+    
+    // creates response packet with specified peripheral, command and data
+    private static short[] createResponsePacket(int pnum, int pcmd, short[] data) {
+        short[] packet = new short[RESPONSE_DATA_START + data.length];
+        packet[0] = Short.parseShort(NODE_ID);
+        packet[1] = 0x00;
+        packet[2] = (short)pnum;
+        packet[3] = (short)(pcmd | 0x80);
+        packet[4] = 0xFF;
+        packet[5] = 0xFF;
+        packet[6] = 0x00;
+        packet[7] = 0x40;
+        System.arraycopy(data, 0, packet, RESPONSE_DATA_START, data.length);
+        return packet;
+    }
+    
+    // returns array of specified length filled with sequence of byte values
+    private static short[] createData(int length, int seed) {
+        short[] data = new short[length];
+        for ( int i = 0; i < length; i++ ) {
+            data[i] = (short)((seed + i * 31) & 0xFF);
+        }
+        return data;
+    }
+    
+    
+    private BenchmarkData() {}
+    
+    /**
+     * @return request for reading of OS info
+     */
+    public static CallRequest createOsReadRequest() {
+        return new CallRequest(
+                UUID.randomUUID(), NETWORK_ID, NODE_ID, OS.class, "1", 
+                new Object[] { HWPID }
+        );
+    }
+    
+    /**
+     * @return request for writing of 16 bytes into RAM
+     */
+    public static CallRequest createRamWriteRequest() {
+        return new CallRequest(
+                UUID.randomUUID(), NETWORK_ID, NODE_ID, RAM.class, "2", 
+                new Object[] { HWPID, 0x10, createData(16, 0x01) }
+        );
+    }
+    
+    /**
+     * @return OS info data
+     */
+    public static short[] createOsInfo() {
+        return OS_INFO.clone();
+    }
+    
+    /**
+     * @return HWP configuration data
+     */
+    public static short[] createHwpConfiguration() {
+        return createData(HWP_CONFIGURATION_LENGTH, 0x21);
+    }
+    
+    /**
+     * @return FRC response data - status followed by FRC data
+     */
+    public static short[] createFrcResponseData() {
+        short[] frcData = createFrcData();
+        short[] responseData = new short[frcData.length + 1];
+        responseData[0] = 0x05;
+        System.arraycopy(frcData, 0, responseData, 1, frcData.length);
+        return responseData;
+    }
+    
+    /**
+     * @return FRC data
+     */
+    public static short[] createFrcData() {
+        return createData(FRC_DATA_LENGTH, 0x35);
+    }
+    
+    /**
+     * @return network data of response to reading of OS info
+     */
+    public static NetworkData createOsReadResponse() {
+        return new BaseNetworkData(createResponsePacket(2, 0x00, createOsInfo()), NETWORK_ID);
+    }
+    
+    /**
+     * @return network data of response to reading of HWP configuration
+     */
+    public static NetworkData createReadHwpConfigurationResponse() {
+        return new BaseNetworkData(
+                createResponsePacket(2, 0x02, createHwpConfiguration()), NETWORK_ID
+        );
+    }
+    
+    /**
+     * @return DPA request packet of typical size
+     */
+    public static short[] createDpaRequestPacket() {
+        return createData(16, 0x07);
+    }
+}
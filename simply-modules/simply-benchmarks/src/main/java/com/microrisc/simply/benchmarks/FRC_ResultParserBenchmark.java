@@ -0,0 +1,99 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.benchmarks;
+
+import com.microrisc.simply.iqrf.dpa.v30x.types.FRC_ResultParser;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of parsing of FRC results for all nodes of a network.
+ * 
+ * @author agent
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FRC_ResultParserBenchmark {
+    
+    /** Result of collected bits FRC command. */
+    public static final class BitsResult {
+        private final byte bit0;
+        private final byte bit1;
+        
+        public BitsResult(byte bit0, byte bit1) {
+            this.bit0 = bit0;
+            this.bit1 = bit1;
+        }
+    }
+    
+    /** Result of collected bytes FRC command. */
+    public static final class ByteResult {
+        private final short value;
+        
+        public ByteResult(short value) {
+            this.value = value;
+        }
+    }
+    
+    /** Result of collected 2 bytes FRC command. */
+    public static final class TwoBytesResult {
+        private final short lowByte;
+        private final short highByte;
+        
+        public TwoBytesResult(short lowByte, short highByte) {
+            this.lowByte = lowByte;
+            this.highByte = highByte;
+        }
+    }
+    
+    
+    private short[] frcData;
+    
+    @Setup
+    public void setUp() {
+        frcData = BenchmarkData.createFrcData();
+    }
+    
+    @Benchmark
+    public Map<String, BitsResult> parseAsCollectedBits() throws Exception {
+        return FRC_ResultParser.parseAsCollectedBits(frcData, BitsResult.class);
+    }
+    
+    @Benchmark
+    public Map<String, ByteResult> parseAsCollectedBytes() throws Exception {
+        return FRC_ResultParser.parseAsCollectedBytes(frcData, ByteResult.class);
+    }
+    
+    @Benchmark
+    public Map<String, TwoBytesResult> parseAsCollected2Bytes() throws Exception {
+        return FRC_ResultParser.parseAsCollected2Bytes(frcData, TwoBytesResult.class);
+    }
+}
@@ -0,0 +1,68 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.benchmarks;
+
+import com.microrisc.simply.network.udp.gweth.GWETH_DataTransformer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of transformations of data between DPA packets and messages 
+ * of IQRF Ethernet gateway.
+ * 
+ * @author agent
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GWETH_DataTransformerBenchmark {
+    private short[] requestData;
+    private short[] messageFromGW;
+    
+    @Setup
+    public void setUp() {
+        requestData = BenchmarkData.createDpaRequestPacket();
+        messageFromGW = GWETH_DataTransformer.transformRequestData(requestData);
+    }
+    
+    @Benchmark
+    public short[] transformRequestData() {
+        return GWETH_DataTransformer.transformRequestData(requestData);
+    }
+    
+    @Benchmark
+    public short[] getDataFromMessage() {
+        return GWETH_DataTransformer.getDataFromMessage(messageFromGW);
+    }
+    
+    @Benchmark
+    public boolean isAsynchronousMessage() {
+        return GWETH_DataTransformer.isAsynchronousMessage(messageFromGW);
+    }
+}
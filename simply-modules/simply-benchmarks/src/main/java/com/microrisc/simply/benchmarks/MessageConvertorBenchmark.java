@@ -0,0 +1,100 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.benchmarks;
+
+import com.microrisc.simply.AbstractMessage;
+import com.microrisc.simply.BytePacket;
+import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.NetworkData;
+import com.microrisc.simply.SimplyException;
+import com.microrisc.simply.iqrf.dpa.v30x.protocol.DPA_MessageConvertor;
+import com.microrisc.simply.iqrf.dpa.v30x.protocol.DPA_StandardPerProtocolMappingFactory;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of conversions between call requests / responses and DPA packets
+ * over the standard DPA protocol mapping.
+ * 
+ * @author agent
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageConvertorBenchmark {
+    private DPA_MessageConvertor convertor;
+    
+    private CallRequest osReadRequest;
+    private CallRequest ramWriteRequest;
+    
+    private NetworkData osReadResponse;
+    private NetworkData readHwpConfigurationResponse;
+    
+    
+    @Setup
+    public void setUp() throws Exception {
+        convertor = new DPA_MessageConvertor(
+                new DPA_StandardPerProtocolMappingFactory().createProtocolMapping()
+        );
+        osReadRequest = BenchmarkData.createOsReadRequest();
+        ramWriteRequest = BenchmarkData.createRamWriteRequest();
+        osReadResponse = BenchmarkData.createOsReadResponse();
+        readHwpConfigurationResponse = BenchmarkData.createReadHwpConfigurationResponse();
+    }
+    
+    @Benchmark
+    public short[] convertOsReadRequest() throws SimplyException {
+        return convertor.convertToProtoFormat(osReadRequest);
+    }
+    
+    @Benchmark
+    public short[] convertRamWriteRequest() throws SimplyException {
+        return convertor.convertToProtoFormat(ramWriteRequest);
+    }
+    
+    @Benchmark
+    public BytePacket convertOsReadRequestToPacket() throws SimplyException {
+        return convertor.convertToProtoPacket(osReadRequest);
+    }
+    
+    @Benchmark
+    public BytePacket convertRamWriteRequestToPacket() throws SimplyException {
+        return convertor.convertToProtoPacket(ramWriteRequest);
+    }
+    
+    @Benchmark
+    public AbstractMessage convertOsReadResponse() throws SimplyException {
+        return convertor.convertToDOFormat(osReadResponse);
+    }
+    
+    @Benchmark
+    public AbstractMessage convertReadHwpConfigurationResponse() throws SimplyException {
+        return convertor.convertToDOFormat(readHwpConfigurationResponse);
+    }
+}
@@ -0,0 +1,108 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.benchmarks;
+
+import com.microrisc.simply.iqrf.dpa.v30x.typeconvertors.FRC_DataConvertor;
+import com.microrisc.simply.iqrf.dpa.v30x.typeconvertors.HWP_ConfigurationConvertor;
+import com.microrisc.simply.iqrf.dpa.v30x.typeconvertors.OsInfoConvertor;
+import com.microrisc.simply.iqrf.typeconvertors.ArrayUns8Convertor;
+import com.microrisc.simply.iqrf.typeconvertors.Uns16Convertor;
+import com.microrisc.simply.typeconvertors.ValueConversionException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of type convertors used on the request and response paths.
+ * 
+ * @author agent
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TypeConvertorsBenchmark {
+    private short[] osInfo;
+    private short[] hwpConfigurationData;
+    private Object hwpConfiguration;
+    private short[] frcResponseData;
+    private short[] uns16Value;
+    private short[] userData;
+    private short[] serUserData;
+    
+    
+    @Setup
+    public void setUp() throws ValueConversionException {
+        osInfo = BenchmarkData.createOsInfo();
+        hwpConfigurationData = BenchmarkData.createHwpConfiguration();
+        hwpConfiguration = HWP_ConfigurationConvertor.getInstance().toObject(hwpConfigurationData);
+        frcResponseData = BenchmarkData.createFrcResponseData();
+        uns16Value = Uns16Convertor.getInstance().toProtoValue(BenchmarkData.HWPID);
+        userData = BenchmarkData.createDpaRequestPacket();
+        serUserData = ArrayUns8Convertor.getInstance().toProtoValue(userData);
+    }
+    
+    @Benchmark
+    public Object osInfoToObject() throws ValueConversionException {
+        return OsInfoConvertor.getInstance().toObject(osInfo);
+    }
+    
+    @Benchmark
+    public Object hwpConfigurationToObject() throws ValueConversionException {
+        return HWP_ConfigurationConvertor.getInstance().toObject(hwpConfigurationData);
+    }
+    
+    @Benchmark
+    public short[] hwpConfigurationToProtoValue() throws ValueConversionException {
+        return HWP_ConfigurationConvertor.getInstance().toProtoValue(hwpConfiguration);
+    }
+    
+    @Benchmark
+    public Object frcDataToObject() throws ValueConversionException {
+        return FRC_DataConvertor.getInstance().toObject(frcResponseData);
+    }
+    
+    @Benchmark
+    public short[] uns16ToProtoValue() throws ValueConversionException {
+        return Uns16Convertor.getInstance().toProtoValue(BenchmarkData.HWPID);
+    }
+    
+    @Benchmark
+    public Object uns16ToObject() throws ValueConversionException {
+        return Uns16Convertor.getInstance().toObject(uns16Value);
+    }
+    
+    @Benchmark
+    public short[] arrayUns8ToProtoValue() throws ValueConversionException {
+        return ArrayUns8Convertor.getInstance().toProtoValue(userData);
+    }
+    
+    @Benchmark
+    public Object arrayUns8ToObject() throws ValueConversionException {
+        return ArrayUns8Convertor.getInstance().toObject(serUserData);
+    }
+}
@@ -0,0 +1,284 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.benchmarks.latency;
+
+import com.microrisc.simply.Network;
+import com.microrisc.simply.SimplyException;
+import com.microrisc.simply.iqrf.dpa.DPA_Simply;
+import com.microrisc.simply.iqrf.dpa.v30x.DPA_SimplyFactory;
+import com.microrisc.simply.iqrf.dpa.v30x.devices.Coordinator;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import com.microrisc.simply.time.VirtualClock;
+import com.microrisc.simply.tracing.CallRequestEvents;
+import com.microrisc.simply.tracing.LoggingCallRequestEventsListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end latency harness.
+ * <p>
+ * Boots DPA Simply through {@link DPA_SimplyFactory} over simulated network
+ * layer, so the measured path is the real one: connector, protocol layer,
+ * protocol state machine and network layer. Configured workloads are executed
+ * from configured number of threads, each operation executes randomly chosen
+ * one of them. Throughput and latency percentiles of following stages are
+ * reported: <br>
+ * - dispatch: call of asynchronous method of Device Object <br>
+ * - confirmation: sending of request to the network until its confirmation <br>
+ * - network: sending of request to the network until its response <br>
+ * - end-to-end: dispatch until the result is available to the caller <br>
+ * <p>
+ * Harness is configured by system properties: <br>
+ * <b>harness.config</b> - Simply configuration file, default is 
+ *    config/latency/Simply.properties <br>
+ * <b>harness.network</b> - ID of tested network, default is 1 <br>
+ * <b>harness.workloads</b> - comma separated list of workloads: read, write,
+ *    frc, broadcast, default is read <br>
+ * <b>harness.threads</b> - number of threads, default is 4 <br>
+ * <b>harness.warmup</b> - time [in s] of warmup, default is 5 <br>
+ * <b>harness.duration</b> - time [in s] of measurement, default is 30 <br>
+ * <b>harness.timeout</b> - timeout [in ms] of waiting for a result, 
+ *    default is 30000 <br>
+ * <b>harness.virtualTime</b> - if {@code true}, whole Simply and the simulated 
+ *    network run in virtual time, see {@link VirtualClock}, default is false.
+ *    Warmup, duration and all stages except dispatch are then in virtual time.
+ *    Dispatch is always measured in real time. <br>
+ * <b>harness.traceEvents</b> - if {@code true}, events of call requests 
+ *    lifecycle are logged, see {@link CallRequestEvents}, default is false <br>
+ * Asynchronous messages load is configured in the network layer settings.
+ * <p>
+ * Run from the simply-benchmarks directory, e.g.: <br>
+ * {@code java -Dharness.workloads=read,frc -cp target/benchmarks.jar 
+ * com.microrisc.simply.benchmarks.latency.LatencyHarness}
+ * 
+ * @author agent
+ */
+public final class LatencyHarness {
+    
+    // harness settings
+    private final String networkId;
+    private final Workload[] workloads;
+    private final int threadsNum;
+    private final long timeout;
+    
+    // clock to measure time by
+    private final Clock clock;
+    
+    // simply under test
+    private DPA_Simply simply = null;
+    
+    // targets of workloads
+    private WorkloadContext context = null;
+    
+    // network stages
+    private TracingNetworkLayer networkLayer = null;
+    
+    // measured stages
+    private final LatencyRecorder dispatchRecorder = new LatencyRecorder("dispatch");
+    private final LatencyRecorder endToEndRecorder = new LatencyRecorder("end-to-end");
+    
+    // number of failed operations
+    private final AtomicLong failuresNum = new AtomicLong(0);
+    
+    
+    /**
+     * Executes operations until the deadline.
+     */
+    private class LoadGenerator implements Runnable {
+        private final long deadline;
+        private final Random random;
+        
+        LoadGenerator(long deadline, long seed) {
+            this.deadline = deadline;
+            this.random = new Random(seed);
+        }
+        
+        @Override
+        public void run() {
+            while ( clock.nanoTime() < deadline ) {
+                Workload workload = workloads[random.nextInt(workloads.length)];
+                long startTime = clock.nanoTime();
+                if ( workload.execute(context, random, timeout, dispatchRecorder) ) {
+                    endToEndRecorder.record(clock.nanoTime() - startTime);
+                } else {
+                    failuresNum.incrementAndGet();
+                }
+            }
+        }
+    }
+    
+    
+    private static Workload[] parseWorkloads(String workloadsStr) {
+        List<Workload> workloadsList = new ArrayList<>();
+        for ( String workloadStr : workloadsStr.split(",") ) {
+            workloadsList.add(Workload.valueOf(workloadStr.trim().toUpperCase()));
+        }
+        if ( workloadsList.isEmpty() ) {
+            throw new IllegalArgumentException("No workload specified");
+        }
+        return workloadsList.toArray(new Workload[workloadsList.size()]);
+    }
+    
+    private static int checkThreadsNum(int threadsNum) {
+        if ( threadsNum <= 0 ) {
+            throw new IllegalArgumentException("Number of threads must be > 0");
+        }
+        return threadsNum;
+    }
+    
+    
+    /**
+     * Creates new harness. Time is measured by the default clock, which must
+     * be set before creating of the harness.
+     * @param networkId ID of tested network
+     * @param workloads workloads to execute
+     * @param threadsNum number of threads executing the workloads
+     * @param timeout timeout [in ms] of waiting for a result
+     */
+    public LatencyHarness(String networkId, Workload[] workloads, int threadsNum, long timeout) {
+        this.networkId = networkId;
+        this.workloads = workloads.clone();
+        this.threadsNum = checkThreadsNum(threadsNum);
+        this.timeout = timeout;
+        this.clock = Clocks.getDefaultClock();
+    }
+    
+    /**
+     * Boots Simply according to specified configuration file.
+     * @param configFile Simply configuration file
+     * @throws SimplyException if an error has occured during booting
+     */
+    public void boot(String configFile) throws SimplyException {
+        simply = DPA_SimplyFactory.getSimply(configFile);
+        
+        networkLayer = TracingNetworkLayerFactory.getLastCreatedLayer();
+        if ( networkLayer == null ) {
+            throw new SimplyException(
+                    "Network layer must be created by " + TracingNetworkLayerFactory.class.getName()
+            );
+        }
+        
+        Network network = simply.getNetwork(networkId, Network.class);
+        if ( network == null ) {
+            throw new SimplyException("Network not found: " + networkId);
+        }
+        context = new WorkloadContext(network, simply.getBroadcastServices());
+        
+        // updates timing parameters of FRC
+        Coordinator coordinator = context.getCoordinator().getDeviceObject(Coordinator.class);
+        coordinator.getBondedNodes();
+        coordinator.getDiscoveredNodes();
+    }
+    
+    /**
+     * Executes workloads for specified time and discards all measured values
+     * collected before.
+     * @param duration time [in ms] of execution
+     * @throws InterruptedException if interrupted while waiting for threads
+     */
+    public void run(long duration) throws InterruptedException {
+        dispatchRecorder.reset();
+        endToEndRecorder.reset();
+        networkLayer.reset();
+        failuresNum.set(0);
+        
+        long deadline = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration);
+        ExecutorService executor = Executors.newFixedThreadPool(threadsNum);
+        for ( int threadId = 0; threadId < threadsNum; threadId++ ) {
+            executor.execute(new LoadGenerator(deadline, threadId));
+        }
+        executor.shutdown();
+        
+        // operations in progress at the deadline are waited for
+        executor.awaitTermination(duration + 2 * timeout, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Returns report of the last run.
+     * @param duration time [in ms] of the last run
+     * @return report of the last run
+     */
+    public String getReport(long duration) {
+        double seconds = duration / 1000.0;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(
+                "throughput=%.2f ops/s, failures=%d, async messages=%.2f msgs/s%n",
+                endToEndRecorder.getCount() / seconds, failuresNum.get(),
+                networkLayer.getAsyncMessagesNum() / seconds
+        ));
+        sb.append(dispatchRecorder.getReport()).append(String.format("%n"));
+        sb.append(networkLayer.getConfirmationRecorder().getReport()).append(String.format("%n"));
+        sb.append(networkLayer.getNetworkRecorder().getReport()).append(String.format("%n"));
+        sb.append(endToEndRecorder.getReport()).append(String.format("%n"));
+        return sb.toString();
+    }
+    
+    /**
+     * Destroys Simply under test.
+     */
+    public void destroy() {
+        if ( simply != null ) {
+            simply.destroy();
+        }
+    }
+    
+    
+    public static void main(String[] args) throws Exception {
+        String configFile = System.getProperty("harness.config", "config/latency/Simply.properties");
+        String networkId = System.getProperty("harness.network", "1");
+        Workload[] workloads = parseWorkloads(System.getProperty("harness.workloads", "read"));
+        int threadsNum = Integer.getInteger("harness.threads", 4);
+        long warmup = Long.getLong("harness.warmup", 5) * 1000;
+        long duration = Long.getLong("harness.duration", 30) * 1000;
+        long timeout = Long.getLong("harness.timeout", 30000);
+        boolean virtualTime = Boolean.getBoolean("harness.virtualTime");
+        
+        VirtualClock virtualClock = null;
+        if ( virtualTime ) {
+            virtualClock = new VirtualClock();
+            virtualClock.startAutoAdvance();
+            Clocks.setDefaultClock(virtualClock);
+        }
+        
+        if ( Boolean.getBoolean("harness.traceEvents") ) {
+            CallRequestEvents.addListener(new LoggingCallRequestEventsListener());
+        }
+        
+        LatencyHarness harness = new LatencyHarness(networkId, workloads, threadsNum, timeout);
+        try {
+            harness.boot(configFile);
+            
+            System.out.println("Warmup: " + warmup + " ms");
+            harness.run(warmup);
+            
+            System.out.println("Measurement: " + duration + " ms, threads: " + threadsNum);
+            harness.run(duration);
+            System.out.print(harness.getReport(duration));
+        } finally {
+            harness.destroy();
+            if ( virtualClock != null ) {
+                virtualClock.stopAutoAdvance();
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.benchmarks.latency;
+
+import java.util.Arrays;
+
+/**
+ * Thread-safe recorder of latencies of one stage of processing.
+ * <p>
+ * All samples are kept, so percentiles are exact. Latencies are recorded
+ * in nanoseconds.
+ * 
+ * @author agent
+ */
+public final class LatencyRecorder {
+    
+    // initial capacity of samples array
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    // multiplier for getting number of miliseconds from number of nanoseconds
+    private static final double NANOSEC_IN_MILISEC = 1000000.0;
+    
+    /** Name of recorded stage. */
+    private final String name;
+    
+    /** Recorded samples. */
+    private long[] samples = new long[INITIAL_CAPACITY];
+    
+    /** Number of recorded samples. */
+    private int count = 0;
+    
+    
+    /**
+     * Creates new recorder of specified stage.
+     * @param name name of the stage
+     */
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Records specified latency.
+     * @param latency latency [in ns]
+     */
+    public synchronized void record(long latency) {
+        if ( count == samples.length ) {
+            samples = Arrays.copyOf(samples, 2 * samples.length);
+        }
+        samples[count++] = latency;
+    }
+    
+    /**
+     * Discards all recorded samples.
+     */
+    public synchronized void reset() {
+        count = 0;
+    }
+    
+    /**
+     * @return number of recorded samples
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+    
+    /**
+     * @return name of recorded stage
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Returns report of recorded latencies: count, mean and 50th, 99th and 
+     * 99.9th percentile and maximum, all in miliseconds.
+     * @return report of recorded latencies
+     */
+    public String getReport() {
+        long[] sorted;
+        synchronized ( this ) {
+            sorted = Arrays.copyOf(samples, count);
+        }
+        
+        if ( sorted.length == 0 ) {
+            return String.format("%-14s count=0", name);
+        }
+        
+        Arrays.sort(sorted);
+        long sum = 0;
+        for ( long sample : sorted ) {
+            sum += sample;
+        }
+        
+        return String.format(
+                "%-14s count=%d mean=%.2f p50=%.2f p99=%.2f p999=%.2f max=%.2f [ms]",
+                name, sorted.length, 
+                sum / (double)sorted.length / NANOSEC_IN_MILISEC,
+                percentile(sorted, 0.5) / NANOSEC_IN_MILISEC,
+                percentile(sorted, 0.99) / NANOSEC_IN_MILISEC,
+                percentile(sorted, 0.999) / NANOSEC_IN_MILISEC,
+                sorted[sorted.length - 1] / NANOSEC_IN_MILISEC
+        );
+    }
+    
+    // returns specified percentile of sorted samples - nearest rank method
+    private static long percentile(long[] sorted, double quantile) {
+        int rank = (int)Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
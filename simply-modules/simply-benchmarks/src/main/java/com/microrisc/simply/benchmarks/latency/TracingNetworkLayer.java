@@ -0,0 +1,192 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.benchmarks.latency;
+
+import com.microrisc.simply.NetworkData;
+import com.microrisc.simply.NetworkLayerListener;
+import com.microrisc.simply.SimplyException;
+import com.microrisc.simply.network.NetworkLayer;
+import com.microrisc.simply.network.NetworkLayerException;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Network layer, which measures network stages of DPA requests processing
+ * and delegates all the work to underlying network layer.
+ * <p>
+ * Requests are paired with confirmations and responses according to network,
+ * node address, peripheral and command, so at most one request of the same
+ * kind should be processed at the same time - which is the case, because
+ * DPA protocol layer processes requests one by one. Times are measured by
+ * the default clock.
+ * 
+ * @author agent
+ */
+public final class TracingNetworkLayer implements NetworkLayer, NetworkLayerListener {
+    
+    // positions of fields in DPA packets
+    private static final int NADR_POS = 0;
+    private static final int PNUM_POS = 2;
+    private static final int PCMD_POS = 3;
+    private static final int RESPONSE_CODE_POS = 6;
+    
+    // minimal length of response
+    private static final int RESPONSE_HEADER_LENGTH = 8;
+    
+    // response codes
+    private static final int CONFIRMATION = 0xFF;
+    private static final int ASYNC_RESPONSE = 0x80;
+    
+    // broadcast address
+    private static final int BROADCAST_ADDRESS = 0xFF;
+    
+    
+    /** Underlying network layer. */
+    private final NetworkLayer networkLayer;
+    
+    /** Clock to measure times by. */
+    private final Clock clock = Clocks.getDefaultClock();
+    
+    /** Registered listener. */
+    private volatile NetworkLayerListener listener = null;
+    
+    /** Times [in ns] of sending of pending requests. */
+    private final ConcurrentMap<String, Long> sendTimes = new ConcurrentHashMap<>();
+    
+    /** Time from sending of a request to its confirmation. */
+    private final LatencyRecorder confirmationRecorder = new LatencyRecorder("confirmation");
+    
+    /** Time from sending of a request to its response. */
+    private final LatencyRecorder networkRecorder = new LatencyRecorder("network");
+    
+    /** Number of received asynchronous messages. */
+    private final AtomicLong asyncMessagesNum = new AtomicLong(0);
+    
+    
+    private static String createKey(String networkId, short[] packet) {
+        return networkId + ":" + packet[NADR_POS] + ":" + packet[PNUM_POS] 
+                + ":" + (packet[PCMD_POS] & 0x7F);
+    }
+    
+    
+    /**
+     * Creates new tracing network layer.
+     * @param networkLayer underlying network layer
+     */
+    public TracingNetworkLayer(NetworkLayer networkLayer) {
+        if ( networkLayer == null ) {
+            throw new IllegalArgumentException("Network layer cannot be null");
+        }
+        this.networkLayer = networkLayer;
+    }
+    
+    /**
+     * @return recorder of times from sending of requests to theirs confirmations
+     */
+    public LatencyRecorder getConfirmationRecorder() {
+        return confirmationRecorder;
+    }
+    
+    /**
+     * @return recorder of times from sending of requests to theirs responses
+     */
+    public LatencyRecorder getNetworkRecorder() {
+        return networkRecorder;
+    }
+    
+    /**
+     * @return number of received asynchronous messages
+     */
+    public long getAsyncMessagesNum() {
+        return asyncMessagesNum.get();
+    }
+    
+    /**
+     * Discards all measured values.
+     */
+    public void reset() {
+        confirmationRecorder.reset();
+        networkRecorder.reset();
+        asyncMessagesNum.set(0);
+    }
+    
+    @Override
+    public void registerListener(NetworkLayerListener listener) {
+        this.listener = listener;
+        networkLayer.registerListener(this);
+    }
+
+    @Override
+    public void unregisterListener() {
+        networkLayer.unregisterListener();
+        this.listener = null;
+    }
+
+    @Override
+    public void sendData(NetworkData networkData) throws NetworkLayerException {
+        short[] data = networkData.getData();
+        if ( (data != null) && (data.length > PCMD_POS) ) {
+            sendTimes.put(createKey(networkData.getNetworkId(), data), clock.nanoTime());
+        }
+        networkLayer.sendData(networkData);
+    }
+    
+    @Override
+    public void onGetData(NetworkData networkData) {
+        long receptionTime = clock.nanoTime();
+        short[] data = networkData.getData();
+        
+        if ( (data != null) && (data.length >= RESPONSE_HEADER_LENGTH) ) {
+            int responseCode = data[RESPONSE_CODE_POS];
+            String key = createKey(networkData.getNetworkId(), data);
+            
+            if ( responseCode == CONFIRMATION ) {
+                Long sendTime = ( data[NADR_POS] == BROADCAST_ADDRESS )? 
+                        sendTimes.remove(key) : sendTimes.get(key);
+                if ( sendTime != null ) {
+                    confirmationRecorder.record(receptionTime - sendTime);
+                }
+            } else if ( (responseCode & ASYNC_RESPONSE) != 0 ) {
+                asyncMessagesNum.incrementAndGet();
+            } else {
+                Long sendTime = sendTimes.remove(key);
+                if ( sendTime != null ) {
+                    networkRecorder.record(receptionTime - sendTime);
+                }
+            }
+        }
+        
+        NetworkLayerListener actualListener = listener;
+        if ( actualListener != null ) {
+            actualListener.onGetData(networkData);
+        }
+    }
+
+    @Override
+    public void start() throws SimplyException {
+        networkLayer.start();
+    }
+
+    @Override
+    public void destroy() {
+        networkLayer.destroy();
+        sendTimes.clear();
+    }
+}
@@ -0,0 +1,57 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.benchmarks.latency;
+
+import com.microrisc.simply.network.AbstractNetworkLayerFactory;
+import com.microrisc.simply.network.NetworkConnectionStorage;
+import com.microrisc.simply.network.NetworkLayer;
+import com.microrisc.simply.network.simulated.SimulatedNetworkLayerFactory;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Factory of simulated network layers wrapped into {@link TracingNetworkLayer}.
+ * <p>
+ * Configuration keys are the same as of {@link SimulatedNetworkLayerFactory}.
+ * The last created layer is accessible to the harness, which reads measured
+ * network stages from it.
+ * 
+ * @author agent
+ */
+public final class TracingNetworkLayerFactory 
+extends AbstractNetworkLayerFactory<Configuration, NetworkLayer> {
+    
+    /** Last created network layer. */
+    private static volatile TracingNetworkLayer lastCreatedLayer = null;
+    
+    /**
+     * @return last created network layer <br>
+     *         {@code null}, if no network layer has been created yet
+     */
+    public static TracingNetworkLayer getLastCreatedLayer() {
+        return lastCreatedLayer;
+    }
+    
+    @Override
+    public NetworkLayer getNetworkLayer(NetworkConnectionStorage connectionStorage, 
+            Configuration configuration) throws Exception {
+        NetworkLayer simulatedLayer = new SimulatedNetworkLayerFactory()
+                .getNetworkLayer(connectionStorage, configuration);
+        TracingNetworkLayer tracingLayer = new TracingNetworkLayer(simulatedLayer);
+        lastCreatedLayer = tracingLayer;
+        return tracingLayer;
+    }
+}
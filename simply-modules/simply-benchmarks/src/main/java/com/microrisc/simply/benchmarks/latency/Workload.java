@@ -0,0 +1,127 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.benchmarks.latency;
+
+import com.microrisc.simply.iqrf.dpa.broadcasting.BroadcastResult;
+import com.microrisc.simply.iqrf.dpa.v30x.devices.FRC;
+import com.microrisc.simply.iqrf.dpa.v30x.devices.LEDR;
+import com.microrisc.simply.iqrf.dpa.v30x.devices.OS;
+import com.microrisc.simply.iqrf.dpa.v30x.devices.RAM;
+import com.microrisc.simply.iqrf.dpa.v30x.types.FRC_Data;
+import com.microrisc.simply.iqrf.dpa.v30x.types.FRC_Prebonding;
+import com.microrisc.simply.iqrf.dpa.v30x.types.OsInfo;
+import com.microrisc.simply.iqrf.types.VoidType;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Workloads of the latency harness.
+ * <p>
+ * Each workload dispatches one call request asynchronously, records the time
+ * of the dispatch and waits for the result.
+ * 
+ * @author agent
+ */
+public enum Workload {
+    /** Reading of OS info of random node. */
+    READ {
+        @Override
+        boolean execute(WorkloadContext context, Random random, long timeout, 
+                LatencyRecorder dispatchRecorder
+        ) {
+            OS os = context.getRandomNode(random).getDeviceObject(OS.class);
+            long startTime = System.nanoTime();
+            UUID callId = os.async_read();
+            dispatchRecorder.record(System.nanoTime() - startTime);
+            
+            return ( (callId != null) 
+                    && (os.getCallResult(callId, OsInfo.class, timeout) != null) 
+            );
+        }
+    },
+    
+    /** Writing into RAM of random node. */
+    WRITE {
+        @Override
+        boolean execute(WorkloadContext context, Random random, long timeout, 
+                LatencyRecorder dispatchRecorder
+        ) {
+            RAM ram = context.getRandomNode(random).getDeviceObject(RAM.class);
+            long startTime = System.nanoTime();
+            UUID callId = ram.async_write(0x00, WRITTEN_DATA);
+            dispatchRecorder.record(System.nanoTime() - startTime);
+            
+            return ( (callId != null) 
+                    && (ram.getCallResult(callId, VoidType.class, timeout) != null) 
+            );
+        }
+    },
+    
+    /** FRC Prebonding sent to all nodes. */
+    FRC {
+        @Override
+        boolean execute(WorkloadContext context, Random random, long timeout, 
+                LatencyRecorder dispatchRecorder
+        ) {
+            FRC frc = context.getCoordinator().getDeviceObject(FRC.class);
+            long startTime = System.nanoTime();
+            UUID callId = frc.async_send(new FRC_Prebonding());
+            dispatchRecorder.record(System.nanoTime() - startTime);
+            
+            return ( (callId != null) 
+                    && (frc.getCallResult(callId, FRC_Data.class, timeout) != null) 
+            );
+        }
+    },
+    
+    /** Pulse of red LEDs of all nodes. */
+    BROADCAST {
+        @Override
+        boolean execute(WorkloadContext context, Random random, long timeout, 
+                LatencyRecorder dispatchRecorder
+        ) {
+            long startTime = System.nanoTime();
+            UUID requestId = context.getBroadcastServices().sendRequest(
+                    context.getNetworkId(), LEDR.class, LEDR.MethodID.PULSE, new Object[] {}
+            );
+            dispatchRecorder.record(System.nanoTime() - startTime);
+            
+            if ( requestId == null ) {
+                return false;
+            }
+            BroadcastResult result = context.getBroadcastServices()
+                    .getBroadcastResult(requestId, timeout);
+            return ( result != null );
+        }
+    };
+    
+    // data written by WRITE workload
+    private static final short[] WRITTEN_DATA = { 0x01, 0x02, 0x03, 0x04 };
+    
+    /**
+     * Executes one operation of this workload.
+     * @param context targets of the workload
+     * @param random random generator to use
+     * @param timeout timeout [in ms] of waiting for the result
+     * @param dispatchRecorder recorder of dispatch times
+     * @return {@code true} if the operation has succeeded <br>
+     *         {@code false} otherwise
+     */
+    abstract boolean execute(WorkloadContext context, Random random, long timeout, 
+            LatencyRecorder dispatchRecorder
+    );
+}
@@ -0,0 +1,110 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.benchmarks.latency;
+
+import com.microrisc.simply.Network;
+import com.microrisc.simply.Node;
+import com.microrisc.simply.iqrf.dpa.broadcasting.services.BroadcastServices;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Targets of workloads - nodes of tested network and its broadcast services.
+ * 
+ * @author agent
+ */
+public final class WorkloadContext {
+    
+    // ID of the coordinator node
+    private static final String COORDINATOR_ID = "0";
+    
+    private final String networkId;
+    private final Node coordinator;
+    private final List<Node> nodes;
+    private final BroadcastServices broadcastServices;
+    
+    
+    /**
+     * Creates new context of workloads.
+     * @param network tested network
+     * @param broadcastServices broadcast services of the network
+     */
+    public WorkloadContext(Network network, BroadcastServices broadcastServices) {
+        this.networkId = network.getId();
+        this.broadcastServices = broadcastServices;
+        
+        Node coord = null;
+        List<Node> nodesList = new ArrayList<>();
+        for ( Map.Entry<String, Node> entry : network.getNodesMap().entrySet() ) {
+            if ( entry.getKey().equals(COORDINATOR_ID) ) {
+                coord = entry.getValue();
+            } else {
+                nodesList.add(entry.getValue());
+            }
+        }
+        
+        if ( coord == null ) {
+            throw new IllegalArgumentException("Network has no coordinator");
+        }
+        if ( nodesList.isEmpty() ) {
+            throw new IllegalArgumentException("Network has no nodes");
+        }
+        
+        this.coordinator = coord;
+        this.nodes = Collections.unmodifiableList(nodesList);
+    }
+    
+    /**
+     * @return ID of tested network
+     */
+    public String getNetworkId() {
+        return networkId;
+    }
+
+    /**
+     * @return coordinator of tested network
+     */
+    public Node getCoordinator() {
+        return coordinator;
+    }
+    
+    /**
+     * @return nodes of tested network, excluding the coordinator
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+    
+    /**
+     * Returns randomly chosen node of tested network.
+     * @param random random generator to use
+     * @return randomly chosen node, never the coordinator
+     */
+    public Node getRandomNode(Random random) {
+        return nodes.get(random.nextInt(nodes.size()));
+    }
+
+    /**
+     * @return broadcast services of tested network
+     */
+    public BroadcastServices getBroadcastServices() {
+        return broadcastServices;
+    }
+}
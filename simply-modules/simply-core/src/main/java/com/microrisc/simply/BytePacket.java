@@ -0,0 +1,155 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Protocol packet stored as bytes.
+ * <p>
+ * Packets are exchanged between layers as {@code short[]} arrays, each item
+ * of which holds one byte. Byte packet holds the same data in half of memory
+ * and can be written into and read from sockets and ports without conversion.
+ * Conversion to the {@code short[]} form is provided for components, which 
+ * still work with it.
+ * <p>
+ * Byte packet does not copy the array it is created from, so the array must
+ * not be modified after the packet has been created.
+ * 
+ * @author agent
+ */
+public final class BytePacket {
+    /** Bytes of the packet. */
+    private final byte[] bytes;
+    
+    
+    private BytePacket(byte[] bytes) {
+        this.bytes = bytes;
+    }
+    
+    private static byte[] checkBytes(byte[] bytes) {
+        if ( bytes == null ) {
+            throw new IllegalArgumentException("Bytes cannot be null");
+        }
+        return bytes;
+    }
+    
+    
+    /**
+     * Creates packet backed by specified bytes. The bytes are not copied.
+     * @param bytes bytes of the packet
+     * @return packet
+     */
+    public static BytePacket wrap(byte[] bytes) {
+        return new BytePacket(checkBytes(bytes));
+    }
+    
+    /**
+     * Creates packet from specified part of specified buffer. The bytes are 
+     * copied, so the buffer can be reused.
+     * @param buffer source buffer
+     * @param offset offset of the packet in the buffer
+     * @param length length of the packet
+     * @return packet
+     */
+    public static BytePacket copyOf(byte[] buffer, int offset, int length) {
+        checkBytes(buffer);
+        byte[] bytes = new byte[length];
+        System.arraycopy(buffer, offset, bytes, 0, length);
+        return new BytePacket(bytes);
+    }
+    
+    /**
+     * Creates packet from specified packet in the {@code short[]} form.
+     * @param data packet data, each item holds one byte
+     * @return packet
+     */
+    public static BytePacket fromShorts(short[] data) {
+        if ( data == null ) {
+            throw new IllegalArgumentException("Data cannot be null");
+        }
+        byte[] bytes = new byte[data.length];
+        for ( int index = 0; index < data.length; index++ ) {
+            bytes[index] = (byte)data[index];
+        }
+        return new BytePacket(bytes);
+    }
+    
+    /**
+     * @return length of the packet
+     */
+    public int length() {
+        return bytes.length;
+    }
+    
+    /**
+     * Returns unsigned value of byte at specified index.
+     * @param index index of the byte
+     * @return unsigned value of the byte
+     */
+    public int get(int index) {
+        return bytes[index] & 0xFF;
+    }
+    
+    /**
+     * Returns bytes of the packet. Returned array is not a copy and must not
+     * be modified.
+     * @return bytes of the packet
+     */
+    public byte[] array() {
+        return bytes;
+    }
+    
+    /**
+     * @return read-only buffer over the bytes of the packet
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+    
+    /**
+     * Copies bytes of the packet into specified array.
+     * @param dest destination array
+     * @param destPos starting position in the destination array
+     */
+    public void copyTo(byte[] dest, int destPos) {
+        System.arraycopy(bytes, 0, dest, destPos, bytes.length);
+    }
+    
+    /**
+     * @return new array with the packet in the {@code short[]} form
+     */
+    public short[] toShortArray() {
+        short[] data = new short[bytes.length];
+        for ( int index = 0; index < bytes.length; index++ ) {
+            data[index] = (short)(bytes[index] & 0xFF);
+        }
+        return data;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder strBuilder = new StringBuilder("[");
+        for ( int index = 0; index < bytes.length; index++ ) {
+            if ( index > 0 ) {
+                strBuilder.append(", ");
+            }
+            strBuilder.append(bytes[index] & 0xFF);
+        }
+        return strBuilder.append("]").toString();
+    }
+}
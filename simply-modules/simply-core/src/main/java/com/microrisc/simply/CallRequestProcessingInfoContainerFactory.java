@@ -0,0 +1,98 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply;
+
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates call request processing info containers according to configuration.
+ * <p>
+ * Configuration keys are relative to specified prefix: <br>
+ * - {@code <prefix>.type}: type of container - {@code hashmap} or 
+ *   {@code concurrent}. Default = {@code concurrent} <br>
+ * - {@code <prefix>.capacity}: capacity of container <br>
+ * - {@code <prefix>.maxTimeDuration}: maximal time[in ms] of existence of each
+ *   item in the container <br>
+ * Default values of capacity and maximal time duration depend on the type 
+ * of the container.
+ * 
+ * @author agent
+ */
+public final class CallRequestProcessingInfoContainerFactory {
+    /** Logger. */
+    private static final Logger logger 
+            = LoggerFactory.getLogger(CallRequestProcessingInfoContainerFactory.class);
+    
+    /** Type of container based on {@link HashMapResultsContainer}. */
+    public static final String TYPE_HASHMAP = "hashmap";
+    
+    /** Type of container based on {@link ConcurrentResultsContainer}. */
+    public static final String TYPE_CONCURRENT = "concurrent";
+    
+    
+    private CallRequestProcessingInfoContainerFactory() {}
+    
+    /**
+     * Creates new container according to specified configuration.
+     * @param configuration source configuration
+     * @param keyPrefix prefix of configuration keys of the container
+     * @return new container
+     * @throws IllegalArgumentException if the configured type of container 
+     *         is not supported
+     */
+    public static CallRequestProcessingInfoContainer createContainer(
+            Configuration configuration, String keyPrefix
+    ) {
+        logger.debug("createContainer - start: configuration={}, keyPrefix={}", 
+                configuration, keyPrefix
+        );
+        
+        String type = configuration.getString(keyPrefix + ".type", TYPE_CONCURRENT);
+        
+        CallRequestProcessingInfoContainer container = null;
+        if ( type.equals(TYPE_HASHMAP) ) {
+            int capacity = configuration.getInt(keyPrefix + ".capacity", 
+                    HashMapResultsContainer.DEFAULT_CAPACITY
+            );
+            long maxTimeDuration = configuration.getLong(keyPrefix + ".maxTimeDuration", 
+                    HashMapResultsContainer.DEFAULT_MAX_TIME_DURATION
+            );
+            container = new HashMapCallRequestProcessingInfoContainer(capacity, maxTimeDuration);
+        } else if ( type.equals(TYPE_CONCURRENT) ) {
+            int capacity = configuration.getInt(keyPrefix + ".capacity", 
+                    ConcurrentResultsContainer.DEFAULT_CAPACITY
+            );
+            long maxTimeDuration = configuration.getLong(keyPrefix + ".maxTimeDuration", 
+                    ConcurrentResultsContainer.DEFAULT_MAX_TIME_DURATION
+            );
+            
+            // 0 means "not used" for hash map containers, concurrent containers
+            // always expire their items
+            if ( maxTimeDuration == 0 ) {
+                maxTimeDuration = ConcurrentResultsContainer.DEFAULT_MAX_TIME_DURATION;
+            }
+            container = new ConcurrentCallRequestProcessingInfoContainer(capacity, maxTimeDuration);
+        } else {
+            throw new IllegalArgumentException("Unsupported type of results container: " + type);
+        }
+        
+        logger.debug("createContainer - end: {}", container);
+        return container;
+    }
+}
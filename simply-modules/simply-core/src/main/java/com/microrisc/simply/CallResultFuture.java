@@ -0,0 +1,136 @@
+/*
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Completion handle of one dispatched call request.
+ * <p>
+ * Future is completed by the listener of the call request ( typically a Device
+ * Object ), when final processing info of the call request comes from
+ * a connector. Each call request has its own future, so completion of one
+ * call request wakes up only threads waiting for that call request.
+ * <p>
+ * Cancellation of the call request is not supported by this future - use
+ * {@link ConnectorService#cancelCallRequest(java.util.UUID) } instead.
+ *
+ * @author agent
+ */
+public final class CallResultFuture implements Future<CallRequestProcessingInfo> {
+    /** ID of call request, which this future relates to. */
+    private final UUID callId;
+
+    /** Signals completion. */
+    private final CountDownLatch completion = new CountDownLatch(1);
+
+    /** Final processing info of the call request. */
+    private volatile CallRequestProcessingInfo procInfo = null;
+
+
+    /**
+     * Creates new, not completed future for specified call request.
+     * @param callId ID of call request
+     */
+    public CallResultFuture(UUID callId) {
+        this.callId = callId;
+    }
+
+    /**
+     * Completes this future with specified processing info. Only first
+     * completion takes effect, subsequent ones are ignored.
+     * @param procInfo final processing info of the call request
+     * @return {@code true} if this call completed the future <br>
+     *         {@code false} if the future was already completed
+     */
+    public boolean complete(CallRequestProcessingInfo procInfo) {
+        synchronized ( completion ) {
+            if ( completion.getCount() == 0 ) {
+                return false;
+            }
+            this.procInfo = procInfo;
+            completion.countDown();
+        }
+        return true;
+    }
+
+    /**
+     * @return ID of call request, which this future relates to
+     */
+    public UUID getCallId() {
+        return callId;
+    }
+
+    /**
+     * Returns processing info, if this future is completed.
+     * @return processing info <br>
+     *         {@code null}, if this future is not completed yet
+     */
+    public CallRequestProcessingInfo getNow() {
+        return procInfo;
+    }
+
+    /**
+     * Always returns {@code false} - cancellation is not supported.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return ( completion.getCount() == 0 );
+    }
+
+    @Override
+    public CallRequestProcessingInfo get()
+            throws InterruptedException, ExecutionException
+    {
+        completion.await();
+        return procInfo;
+    }
+
+    @Override
+    public CallRequestProcessingInfo get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException
+    {
+        if ( !completion.await(timeout, unit) ) {
+            throw new TimeoutException("Call request " + callId + " not completed in time");
+        }
+        return procInfo;
+    }
+
+    @Override
+    public String toString() {
+        return ("{ " +
+                "call ID=" + callId +
+                ", done=" + isDone() +
+                ", processing info=" + procInfo +
+                " }");
+    }
+}
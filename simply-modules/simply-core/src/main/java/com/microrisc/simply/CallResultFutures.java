@@ -0,0 +1,253 @@
+/*
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply;
+
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Futures of call requests, whose results have not been delivered yet.
+ * <p>
+ * Each pending call request has its own {@link CallResultFuture}. Delivered
+ * processing infos are always stored into the results container too, so
+ * the container stays the authoritative source of results and futures serve
+ * only for waiting.
+ * <p>
+ * Future, whose result has not been delivered within the maximal time 
+ * duration of results in the container, expires together with the results: 
+ * it is forgotten and it will never be completed. Callers, which get a future, 
+ * must not wait on it without a time limit - they should use 
+ * {@link #await(java.util.UUID, long) } or read the results container after
+ * the waiting has timed out.
+ *
+ * @author agent
+ */
+public final class CallResultFutures {
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(CallResultFutures.class);
+
+    // registered future with time of its expiration
+    private static final class RegisteredFuture {
+        final CallResultFuture future;
+        final long expirationTime;
+
+        RegisteredFuture(CallResultFuture future, long expirationTime) {
+            this.future = future;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    /** Futures of pending call requests. */
+    private final ConcurrentMap<UUID, CallResultFuture> futures = new ConcurrentHashMap<>();
+
+    /** Registered futures in the order of theirs registration. */
+    private final Queue<RegisteredFuture> registeredFutures = new ConcurrentLinkedQueue<>();
+
+    /** Indicates, that some thread is removing expired futures. */
+    private final AtomicBoolean expiring = new AtomicBoolean(false);
+
+    /** Results container to synchronize with. */
+    private final CallRequestProcessingInfoContainer results;
+
+    /** Maximal time duration of existence of each future [in ms]. */
+    private final long maxTimeDuration;
+
+    /** Clock to measure time of existence of futures by. */
+    private final Clock clock;
+
+
+    private static long checkMaxTimeDuration(long maxTimeDuration) {
+        if ( maxTimeDuration <= 0 ) {
+            throw new IllegalArgumentException("Max time duration must be > 0");
+        }
+        return maxTimeDuration;
+    }
+
+    private static Clock checkClock(Clock clock) {
+        if ( clock == null ) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        return clock;
+    }
+
+    // returns maximal time duration of results in specified container
+    private static long getMaxTimeDuration(CallRequestProcessingInfoContainer results) {
+        if ( results instanceof ConcurrentCallRequestProcessingInfoContainer ) {
+            return ((ConcurrentCallRequestProcessingInfoContainer)results).getMaxTimeDuration();
+        }
+        return ConcurrentCallRequestProcessingInfoContainer.DEFAULT_MAX_TIME_DURATION;
+    }
+
+    // removes futures, which have expired
+    private void removeExpiredFutures() {
+        if ( !expiring.compareAndSet(false, true) ) {
+            return;
+        }
+
+        try {
+            long actualTime = clock.currentTimeMillis();
+            RegisteredFuture registered = registeredFutures.peek();
+            while ( (registered != null) && (registered.expirationTime <= actualTime) ) {
+                registeredFutures.poll();
+                futures.remove(registered.future.getCallId(), registered.future);
+                registered = registeredFutures.peek();
+            }
+        } finally {
+            expiring.set(false);
+        }
+    }
+
+
+    /**
+     * Creates new futures bound to specified results container. Futures 
+     * expire after the maximal time duration of results in the container, 
+     * if it is {@link ConcurrentCallRequestProcessingInfoContainer}, or after 
+     * {@link ConcurrentCallRequestProcessingInfoContainer#DEFAULT_MAX_TIME_DURATION} 
+     * otherwise.
+     * @param results container of delivered results
+     */
+    public CallResultFutures(CallRequestProcessingInfoContainer results) {
+        this(results, getMaxTimeDuration(results), Clocks.getDefaultClock());
+    }
+
+    /**
+     * Creates new futures bound to specified results container, which expire
+     * after specified time.
+     * @param results container of delivered results
+     * @param maxTimeDuration maximal time duration of existence of each 
+     *        future [in ms]. Must be > 0.
+     * @param clock clock to measure time of existence of futures by
+     * @throws IllegalArgumentException if {@code maxTimeDuration} is less 
+     *         than or equal to 0 or {@code clock} is {@code null}
+     */
+    public CallResultFutures(
+            CallRequestProcessingInfoContainer results, long maxTimeDuration, Clock clock
+    ) {
+        this.results = results;
+        this.maxTimeDuration = checkMaxTimeDuration(maxTimeDuration);
+        this.clock = checkClock(clock);
+    }
+
+    /**
+     * Returns future for specified call request. If the result of the call
+     * request has already been delivered, returned future is completed.
+     * Not completed future expires after the maximal time duration.
+     * @param callId ID of call request
+     * @return future for specified call request
+     */
+    public CallResultFuture getFuture(UUID callId) {
+        removeExpiredFutures();
+
+        CallResultFuture future = futures.get(callId);
+        if ( future == null ) {
+            CallResultFuture newFuture = new CallResultFuture(callId);
+            future = futures.putIfAbsent(callId, newFuture);
+            if ( future == null ) {
+                future = newFuture;
+                registeredFutures.offer(new RegisteredFuture(future, 
+                        clock.currentTimeMillis() + maxTimeDuration)
+                );
+            }
+        }
+
+        // result could be delivered before the future has been registered
+        CallRequestProcessingInfo procInfo = results.get(callId);
+        if ( procInfo != null ) {
+            future.complete(procInfo);
+            futures.remove(callId, future);
+        }
+        return future;
+    }
+
+    /**
+     * Stores specified processing info into the results container and completes
+     * corresponding future, if there is any.
+     * @param callId ID of call request
+     * @param procInfo processing info to deliver
+     */
+    public void complete(UUID callId, CallRequestProcessingInfo procInfo) {
+        results.put(callId, procInfo);
+
+        CallResultFuture future = futures.remove(callId);
+        if ( future != null ) {
+            future.complete(procInfo);
+        }
+        removeExpiredFutures();
+    }
+
+    /**
+     * @return number of futures, which wait for results
+     */
+    public int getFuturesCount() {
+        return futures.size();
+    }
+
+    /**
+     * Waits for the result of specified call request.
+     * @param callId ID of call request
+     * @param timeout maximal time to wait [in ms], 0 means unlimited waiting
+     * @return {@code true} if the result has been delivered <br>
+     *         {@code false} if the waiting timed out or has been interrupted,
+     *         in the latter case the interrupt status of the calling thread
+     *         is restored
+     */
+    public boolean await(UUID callId, long timeout) {
+        CallResultFuture future = getFuture(callId);
+        if ( future.isDone() ) {
+            return true;
+        }
+
+        try {
+            if ( timeout == 0 ) {
+                // expired future is registered again, so the result arriving 
+                // later is not missed
+                while ( !future.isDone() ) {
+                    try {
+                        future.get(maxTimeDuration, TimeUnit.MILLISECONDS);
+                    } catch ( TimeoutException e ) {
+                        future = getFuture(callId);
+                    }
+                }
+            } else {
+                future.get(timeout, TimeUnit.MILLISECONDS);
+            }
+            return true;
+        } catch ( TimeoutException e ) {
+            logger.info("Waiting for call result - time elapsed: callId={}", callId);
+        } catch ( InterruptedException e ) {
+            // restoring interrupt status
+            Thread.currentThread().interrupt();
+            logger.warn("Waiting for call result - interrupted: callId={}", callId);
+        } catch ( Exception e ) {
+            logger.error("Waiting for call result - error: callId={}", callId, e);
+        }
+
+        // no result - do not keep the future of possibly lost request
+        futures.remove(callId, future);
+        return false;
+    }
+}
@@ -0,0 +1,99 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply;
+
+import java.util.UUID;
+
+/**
+ * Concurrent implementation of {@code CallRequestProcessingInfoContainer} interface.
+ * <p>
+ * This implementation is based on 
+ * {@link com.microrisc.simply.ConcurrentResultsContainer ConcurrentResultsContainer} 
+ * class and it is intended for device objects shared by many threads.
+ * This results container implementation has 2 main fields: <br>
+ * 1. Capacity - upper bound of number of items present in the conainer. 
+ *    Default = 10000 <br>
+ * 2. Maximal time[in ms] of existence of each item in the container. 
+ *    Default = 60000 ms<br>
+ * 
+ * @author agent
+ */
+public class ConcurrentCallRequestProcessingInfoContainer 
+implements CallRequestProcessingInfoContainer {
+    /** Worker container to use. */
+    private final ConcurrentResultsContainer<CallRequestProcessingInfo> container;
+    
+    
+    /** Default capacity. */
+    public static final int DEFAULT_CAPACITY = ConcurrentResultsContainer.DEFAULT_CAPACITY;
+    
+    /** 
+     * Default maximal time[in ms] of existence each item in the container. After
+     * that will be that item disposed from container. 
+     */ 
+    public static final long DEFAULT_MAX_TIME_DURATION 
+            = ConcurrentResultsContainer.DEFAULT_MAX_TIME_DURATION;
+    
+    
+    /**
+     * Creates new results container with default values of parameters: <br>
+     * - capacity = 10000 <br>
+     * - max time duration = 60000 ms
+     */
+    public ConcurrentCallRequestProcessingInfoContainer() {
+        container = new ConcurrentResultsContainer<CallRequestProcessingInfo>(
+                DEFAULT_CAPACITY, DEFAULT_MAX_TIME_DURATION
+        );
+    }
+    
+    /**
+     * Creates new result container with parameters set to specified values.
+     * @param capacity capacity of container ( in number of results ). Must be
+     *                 > 0
+     * @param maxTimeDuration maximal time duration of existence of each 
+     *        call result in container. Must be > 0.
+     */
+    public ConcurrentCallRequestProcessingInfoContainer(int capacity, long maxTimeDuration) {
+        container = new ConcurrentResultsContainer<CallRequestProcessingInfo>(
+                capacity, maxTimeDuration
+        );
+    }
+    
+    @Override
+    public CallRequestProcessingInfo get(UUID uid) {
+        return container.get(uid);
+    }
+
+    @Override
+    public void put(UUID uid, CallRequestProcessingInfo callResult) {
+        container.put(uid, callResult);
+    }
+
+    @Override
+    public void remove(UUID uid) {
+        container.remove(uid);
+    }
+    
+    /**
+     * @return maximal time duration of existence of each item in the 
+     *         container [in ms]
+     */
+    public long getMaxTimeDuration() {
+        return container.getMaxTimeDuration();
+    }
+    
+}
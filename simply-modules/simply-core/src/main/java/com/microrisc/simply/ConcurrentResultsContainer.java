@@ -0,0 +1,309 @@
+/*
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply;
+
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent implementation of {@code ResultsContainer} interface.
+ * <p>
+ * Items are stored in concurrent hash map, so put, get and remove operations
+ * do not contend on one global lock. Expiration of items is driven by
+ * a hashed timing wheel: each item is put into the wheel bucket of its
+ * expiration time and only buckets, whose time has elapsed, are visited.
+ * The wheel is advanced by the threads accessing the container, so no extra
+ * thread is needed. If some thread is already advancing the wheel, other
+ * threads do not wait for it. Time is measured by a {@link Clock}.
+ * <p>
+ * This results container implementation has 2 main fields: <br>
+ * 1. Capacity - upper bound of number of items present in the container.
+ *    When exceeded, the oldest items are disposed. Default = 10000 <br>
+ * 2. Maximal time[in ms] of existence of each item in the container.
+ *    Default = 60000 ms<br>
+ *
+ * @author agent
+ * @param <T> type results int the container
+ */
+public final class ConcurrentResultsContainer<T extends Object>
+implements ResultsContainer<T> {
+
+    // item with time of its expiration
+    private static final class TimedItem<T> {
+        final UUID uid;
+        final T item;
+        final long expirationTime;
+
+        TimedItem(UUID uid, T item, long expirationTime) {
+            this.uid = uid;
+            this.item = item;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    /** Default capacity. */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    /**
+     * Default maximal time[in ms] of existence each item in the container. After
+     * that will be that item disposed from container.
+     */
+    public static final long DEFAULT_MAX_TIME_DURATION = 60000;
+
+    /** Number of buckets of the timing wheel. */
+    private static final int WHEEL_SIZE = 64;
+
+    // multiplier for getting number of miliseconds from number of nanoseconds
+    private static final long NANOSEC_IN_MILISEC = 1000000;
+
+
+    /** results capacity */
+    private final int capacity;
+
+    /** maximal time duration of existence of each item in items */
+    private final long maxTimeDuration;
+
+    /** Time span of one wheel bucket [in ms]. */
+    private final long tickDuration;
+
+    private final ConcurrentMap<UUID, TimedItem<T>> items = new ConcurrentHashMap<>();
+
+    // number of items in the map
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    // timing wheel
+    private final Queue<TimedItem<T>>[] wheel;
+
+    // indicates, that some thread is advancing the wheel
+    private final AtomicBoolean advancing = new AtomicBoolean(false);
+
+    // last tick, whose bucket has been processed - accessed only by
+    // the advancing thread
+    private long processedTick;
+
+    // clock to measure time by
+    private final Clock clock;
+
+    // base of relative time
+    private final long startNanoTime;
+
+
+    // checking of construction parameters
+    private static int checkCapacity(int capacity) {
+        if ( capacity <= 0 ) {
+            throw new IllegalArgumentException("Capacity must be > 0");
+        }
+        return capacity;
+    }
+
+    private static long checkMaxTimeResultDuration(long maxTimeResultDuration) {
+        if ( maxTimeResultDuration <= 0 ) {
+            throw new IllegalArgumentException("Max time result duration must be > 0");
+        }
+        return maxTimeResultDuration;
+    }
+
+    private static Clock checkClock(Clock clock) {
+        if ( clock == null ) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        return clock;
+    }
+
+    // returns actual time [in ms] relative to the creation of this container
+    private long currentTime() {
+        return (clock.nanoTime() - startNanoTime) / NANOSEC_IN_MILISEC;
+    }
+
+    private int bucketIndex(long tick) {
+        return (int)(tick % WHEEL_SIZE);
+    }
+
+    // removes specified item from the map, if it is still mapped there
+    private void disposeItem(TimedItem<T> timedItem) {
+        if ( items.remove(timedItem.uid, timedItem) ) {
+            size.decrementAndGet();
+        }
+    }
+
+    // disposes expired items of specified bucket
+    private void processBucket(Queue<TimedItem<T>> bucket, long actualTime) {
+        Iterator<TimedItem<T>> it = bucket.iterator();
+        while ( it.hasNext() ) {
+            TimedItem<T> timedItem = it.next();
+            if ( timedItem.expirationTime <= actualTime ) {
+                it.remove();
+                disposeItem(timedItem);
+            }
+        }
+    }
+
+    // disposes the oldest items until the capacity is not exceeded
+    private void disposeOldestItems() {
+        for ( long tick = processedTick + 1; tick <= processedTick + WHEEL_SIZE; tick++ ) {
+            Iterator<TimedItem<T>> it = wheel[bucketIndex(tick)].iterator();
+            while ( it.hasNext() ) {
+                if ( size.get() <= capacity ) {
+                    return;
+                }
+                TimedItem<T> timedItem = it.next();
+                it.remove();
+                disposeItem(timedItem);
+            }
+        }
+    }
+
+    /**
+     * Advances the timing wheel to actual time. Only buckets of completely
+     * elapsed ticks are processed.
+     */
+    private void update(long actualTime) {
+        if ( !advancing.compareAndSet(false, true) ) {
+            return;
+        }
+
+        try {
+            long lastElapsedTick = (actualTime / tickDuration) - 1;
+            long firstTick = Math.max(processedTick + 1, lastElapsedTick - WHEEL_SIZE + 1);
+            for ( long tick = firstTick; tick <= lastElapsedTick; tick++ ) {
+                processBucket(wheel[bucketIndex(tick)], actualTime);
+            }
+            if ( lastElapsedTick > processedTick ) {
+                processedTick = lastElapsedTick;
+            }
+
+            if ( size.get() > capacity ) {
+                disposeOldestItems();
+            }
+        } finally {
+            advancing.set(false);
+        }
+    }
+
+
+    /**
+     * Creates new results container with default values of parameters: <br>
+     * - capacity = 10000 <br>
+     * - max time duration = 60000 ms
+     */
+    public ConcurrentResultsContainer() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_TIME_DURATION);
+    }
+
+    /**
+     * Creates new result container with parameters set to specified values.
+     * @param capacity capacity of container ( in number of results ). Must be
+     *                 > 0
+     * @param maxTimeDuration maximal time duration of existence of each
+     *        call result in container. Must be > 0.
+     */
+    public ConcurrentResultsContainer(int capacity, long maxTimeDuration) {
+        this(capacity, maxTimeDuration, Clocks.getDefaultClock());
+    }
+
+    /**
+     * Creates new result container with parameters set to specified values
+     * and with specified clock.
+     * @param capacity capacity of container ( in number of results ). Must be
+     *                 > 0
+     * @param maxTimeDuration maximal time duration of existence of each
+     *        call result in container. Must be > 0.
+     * @param clock clock to measure time of existence of items by
+     * @throws IllegalArgumentException if {@code clock} is {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentResultsContainer(int capacity, long maxTimeDuration, Clock clock) {
+        this.capacity = checkCapacity(capacity);
+        this.maxTimeDuration = checkMaxTimeResultDuration(maxTimeDuration);
+        this.clock = checkClock(clock);
+        this.startNanoTime = clock.nanoTime();
+
+        // whole maximal time duration must fit into the wheel
+        this.tickDuration = Math.max(1,
+                (maxTimeDuration + WHEEL_SIZE - 2) / (WHEEL_SIZE - 1)
+        );
+
+        this.wheel = new Queue[WHEEL_SIZE];
+        for ( int i = 0; i < WHEEL_SIZE; i++ ) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.processedTick = (currentTime() / tickDuration) - 1;
+    }
+
+    @Override
+    public T get(UUID uid) {
+        long actualTime = currentTime();
+        update(actualTime);
+
+        TimedItem<T> timedItem = items.get(uid);
+        if ( timedItem == null ) {
+            return null;
+        }
+
+        if ( timedItem.expirationTime <= actualTime ) {
+            disposeItem(timedItem);
+            return null;
+        }
+
+        return timedItem.item;
+    }
+
+    @Override
+    public void put(UUID uid, T callResult) {
+        long actualTime = currentTime();
+
+        TimedItem<T> timedItem = new TimedItem<>(uid, callResult, actualTime + maxTimeDuration);
+        if ( items.put(uid, timedItem) == null ) {
+            size.incrementAndGet();
+        }
+        wheel[bucketIndex(timedItem.expirationTime / tickDuration)].offer(timedItem);
+
+        update(actualTime);
+    }
+
+    @Override
+    public void remove(UUID uid) {
+        // the item stays in its wheel bucket until the bucket is processed
+        if ( items.remove(uid) != null ) {
+            size.decrementAndGet();
+        }
+        update(currentTime());
+    }
+
+    /**
+     * @return actual number of items in the container
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return maximal time duration of existence of each call result 
+     *         in the container [in ms]
+     */
+    public long getMaxTimeDuration() {
+        return maxTimeDuration;
+    }
+}
@@ -38,12 +38,18 @@ implements CallRequestDispatcher, ConnectorListener {
     /** Incomming results of performed method calls. */
     protected final CallRequestProcessingInfoContainer results;
     
+    /** Futures of call requests, whose results have not arrived yet. */
+    protected final CallResultFutures resultFutures;
+    
     /** Last method call id. */
     protected UUID lastCallId = null;
     
     /** Dispatch error of lastly issued dispatching. */
     protected Exception lastDispatchError = null;
     
+    /** Priority of call requests dispatched by this device object. */
+    protected volatile CallRequestPriority callRequestPriority = CallRequestPriority.NORMAL;
+    
     
     /** Prefix of logged data. */
     protected final String logPrefix;
@@ -96,6 +102,7 @@ implements CallRequestDispatcher, ConnectorListener {
         super(networkId, nodeId);
         this.connector = checkConnector(connector);
         this.results = checkResultsContainer(resultsContainer);
+        this.resultFutures = new CallResultFutures(this.results);
         this.logPrefix = createLogPrefix();
     }
     
@@ -160,13 +167,47 @@ implements CallRequestDispatcher, ConnectorListener {
                 logPrefix, procInfo, callId
         );
         
-        synchronized( results ) {
-            results.put(callId, procInfo);
-            results.notify();
-        }
+        resultFutures.complete(callId, procInfo);
         
         logger.debug("{}onCallRequestProcessingInfo - end", logPrefix);
         logger.info("{}New result from connector, id={}", logPrefix, callId);
     }
     
+    /**
+     * Returns future, which will be completed when the result of specified 
+     * call request arrives from the connector. If the result does not arrive 
+     * within the maximal time duration of results in the results container, 
+     * the future expires and it will never be completed, so the future must 
+     * be waited on with a time limit.
+     * @param callId ID of the call request
+     * @return future of the result of specified call request
+     * @throws IllegalArgumentException if {@code callId} is {@code null}
+     */
+    public CallResultFuture getCallResultFuture(UUID callId) {
+        if ( callId == null ) {
+            throw new IllegalArgumentException("Call ID cannot be null");
+        }
+        return resultFutures.getFuture(callId);
+    }
+    
+    /**
+     * Sets priority of call requests dispatched by this device object. 
+     * Priority is taken into account only by connectors, which support it.
+     * @param priority priority to set
+     * @throws IllegalArgumentException if {@code priority} is {@code null}
+     */
+    public void setCallRequestPriority(CallRequestPriority priority) {
+        if ( priority == null ) {
+            throw new IllegalArgumentException("Call request priority cannot be null");
+        }
+        this.callRequestPriority = priority;
+    }
+    
+    /**
+     * @return priority of call requests dispatched by this device object
+     */
+    public CallRequestPriority getCallRequestPriority() {
+        return callRequestPriority;
+    }
+    
 }
@@ -21,12 +21,20 @@ import com.microrisc.simply.SimplyException;
 import com.microrisc.simply.protocol.ProtocolLayer;
 import com.microrisc.simply.network.NetworkLayer;
 import com.microrisc.simply.connector.Connector;
+import com.microrisc.simply.metrics.Metrics;
+import com.microrisc.simply.metrics.MetricsExporter;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
 
 /**
  * Simple implementation of connection stack. It has 3 main parts:
  * - connector
  * - protocol layer
  * - network layer
+ * Optionally, it also contains exporters of metrics, which are started after 
+ * and destroyed before the 3 main parts.
  * 
  * @author Michal Konopa
  */
@@ -40,6 +48,9 @@ public final class SimpleConnectionStack implements ConnectionStack {
     /** Connector. */
     private final Connector connector;
     
+    /** Exporters of metrics. */
+    private final List<MetricsExporter> metricsExporters;
+    
     
     /**
      * Creates new connection stack.
@@ -49,10 +60,24 @@ public final class SimpleConnectionStack implements ConnectionStack {
      */
     public SimpleConnectionStack(NetworkLayer networkLayer, ProtocolLayer protoLayer, 
             Connector connector
+    ) {
+        this(networkLayer, protoLayer, connector, Collections.<MetricsExporter>emptyList());
+    }
+    
+    /**
+     * Creates new connection stack with exporters of metrics.
+     * @param networkLayer network layer
+     * @param protoLayer protocol layer
+     * @param connector connector
+     * @param metricsExporters exporters of metrics of the default registry
+     */
+    public SimpleConnectionStack(NetworkLayer networkLayer, ProtocolLayer protoLayer, 
+            Connector connector, List<MetricsExporter> metricsExporters
     ) {
         this.networkLayer = networkLayer;
         this.protocolLayer = protoLayer;
         this.connector = connector;
+        this.metricsExporters = new LinkedList<>(metricsExporters);
     }
 
     /**
@@ -84,10 +109,18 @@ public final class SimpleConnectionStack implements ConnectionStack {
         networkLayer.start();
         protocolLayer.start();
         connector.start();
+        for ( MetricsExporter exporter : metricsExporters ) {
+            exporter.start(Metrics.getDefaultRegistry());
+        }
     }
     
     @Override
     public void destroy() {
+        ListIterator<MetricsExporter> exporterIt 
+                = metricsExporters.listIterator(metricsExporters.size());
+        while ( exporterIt.hasPrevious() ) {
+            exporterIt.previous().destroy();
+        }
         connector.destroy();
         protocolLayer.destroy();
         networkLayer.destroy();
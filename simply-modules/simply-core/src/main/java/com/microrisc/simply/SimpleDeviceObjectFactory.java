@@ -53,14 +53,10 @@ extends AbstractDeviceObjectFactory<ConnectorService, Configuration, DeviceObjec
     private CallRequestProcessingInfoContainer createResultsContainer(Configuration configuration) {
         logger.debug("createResultsContainer - start: configuration={}", configuration);
         
-        int capacity = configuration.getInt("deviceObject.resultsContainer.capacity", 
-                HashMapResultsContainer.DEFAULT_CAPACITY
-        );
-        long maxTimeDuration = configuration.getLong("deviceObject.resultsContainer.maxTimeDuration", 
-                HashMapResultsContainer.DEFAULT_MAX_TIME_DURATION);
-        
         CallRequestProcessingInfoContainer resultsContainer = 
-                new HashMapCallRequestProcessingInfoContainer(capacity, maxTimeDuration);
+                CallRequestProcessingInfoContainerFactory.createContainer(
+                        configuration, "deviceObject.resultsContainer"
+                );
         
         logger.debug("createResultsContainer - end: {}", resultsContainer);
         return resultsContainer;
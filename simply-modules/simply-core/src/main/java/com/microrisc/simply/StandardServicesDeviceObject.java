@@ -35,10 +35,6 @@ implements StandardServices
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(StandardServicesDeviceObject.class);
     
-    // multiplier for getting number of miliseconds from number of nanoseconds 
-    private static final double NANOSEC_TO_MILISEC = 1.0/1000000;
-    
-    
     /** Initial value of timeout to wait for result from DO method call. */
     public static final long INITIAL_WAITING_TIMEOUT = 10000;
     
@@ -133,27 +129,7 @@ implements StandardServices
         // setting of processing timeout
         connector.setCallRequestMaximalProcessingTime(callId, timeout);
         
-        synchronized( results ) {
-            while ( results.get(callId) == null ) {
-                long startTime;
-                double timeElapsed;
-                try {
-                    startTime = System.nanoTime();
-                    results.wait( timeout );
-                    timeElapsed = (System.nanoTime() - startTime) * NANOSEC_TO_MILISEC;
-                } catch ( InterruptedException e ) {
-                    logger.warn("{}Get call result - interrupted", logPrefix);
-                    break;
-                }
-                
-                if ( timeElapsed >= timeout ) {
-                    logger.info("{}Get call result - time elapsed", logPrefix);
-                    break;
-                }
-                
-                timeout -= timeElapsed;
-            }
-        }
+        resultFutures.await(callId, timeout);
         
         T callResult = getCallResultImmediately(callId, resultClass);
         
@@ -177,16 +153,7 @@ implements StandardServices
         // setting of processing timeout
         connector.setCallRequestMaximalProcessingTime(callId, UNLIMITED_WAITING_TIMEOUT);
         
-        synchronized( results ) {
-            while ( results.get(callId) == null ) {
-                try {
-                    results.wait( 0 );
-                } catch ( InterruptedException e ) {
-                    logger.warn("{}Get call result - interrupted", logPrefix);
-                    break;
-                }
-            }
-        }
+        resultFutures.await(callId, 0);
         
         T callResult = getCallResultImmediately(callId, resultClass);
         
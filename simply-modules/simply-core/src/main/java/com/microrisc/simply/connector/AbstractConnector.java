@@ -18,6 +18,7 @@ package com.microrisc.simply.connector;
 
 import com.microrisc.simply.ProtocoLayerListener;
 import com.microrisc.simply.ProtocolLayerService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base abstract class for all connector services. 
@@ -30,9 +31,31 @@ implements
         ProtocoLayerListener 
 {
     
+    /** Group of metrics of connectors. */
+    public static final String METRICS_GROUP = "connector";
+    
+    /** Number of created connectors, used for default metrics prefixes. */
+    private static final AtomicInteger connectorsCounter = new AtomicInteger(0);
+    
+    /**
+     * Returns new default prefix of names of metrics of a connector. 
+     * The prefix is {@code connector.<number of the connector>}, so metrics 
+     * of more connectors in one registry don't overwrite each other.
+     * @return new default metrics prefix
+     */
+    protected static String createDefaultMetricsPrefix() {
+        return METRICS_GROUP + "." + connectorsCounter.incrementAndGet();
+    }
+    
     /** Reference to protocol layer service. */
     protected ProtocolLayerService protocolLayerService = null;
     
+    /** Generator of identifiers of call requests. */
+    protected volatile CallIdGenerator callIdGenerator = new SequenceCallIdGenerator();
+    
+    /** Sender of results of call requests to their addressees. */
+    protected final CallResultsSender callResultsSender = new CallResultsSender();
+    
     /**
      * Checks specified protocol layer for validity.
      * @param protocolLayerService
@@ -53,4 +76,43 @@ implements
     protected AbstractConnector(ProtocolLayerService protocolLayerService) {
         this.protocolLayerService = checkProtocolLayer(protocolLayerService);
     }
+    
+    /**
+     * Sets generator of identifiers of call requests.
+     * @param callIdGenerator generator to use
+     * @throws IllegalArgumentException if {@code callIdGenerator} is {@code null}
+     */
+    public void setCallIdGenerator(CallIdGenerator callIdGenerator) {
+        if ( callIdGenerator == null ) {
+            throw new IllegalArgumentException("Call ID generator cannot be null");
+        }
+        this.callIdGenerator = callIdGenerator;
+    }
+    
+    /**
+     * @return generator of identifiers of call requests
+     */
+    public CallIdGenerator getCallIdGenerator() {
+        return callIdGenerator;
+    }
+    
+    /**
+     * Sets number of threads sending results of call requests to their 
+     * addressees. Takes effect only before the connector is started.
+     * @param threadsNum number of threads
+     * @throws IllegalArgumentException if {@code threadsNum} is less than 
+     *         or equal to 0
+     * @throws IllegalStateException if the connector has already been started
+     */
+    public void setResultsSenderThreadsNum(int threadsNum) {
+        callResultsSender.setThreadsNum(threadsNum);
+    }
+    
+    /**
+     * @return sender of results of call requests, e.g. for monitoring 
+     *         of its queue depth
+     */
+    public CallResultsSender getCallResultsSender() {
+        return callResultsSender;
+    }
 }
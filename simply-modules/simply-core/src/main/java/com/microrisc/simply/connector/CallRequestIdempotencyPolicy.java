@@ -0,0 +1,37 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.connector;
+
+import com.microrisc.simply.CallRequest;
+
+/**
+ * Decides, which call requests are idempotent. Idempotent call request 
+ * ( typically reading of some value ) has no side effects, so more equal 
+ * idempotent call requests can be served by sending only one of them into 
+ * the network.
+ * 
+ * @author agent
+ */
+public interface CallRequestIdempotencyPolicy {
+    /**
+     * Indicates, whether specified call request is idempotent.
+     * @param request call request
+     * @return {@code true} if {@code request} is idempotent <br>
+     *         {@code false} otherwise
+     */
+    boolean isIdempotent(CallRequest request);
+}
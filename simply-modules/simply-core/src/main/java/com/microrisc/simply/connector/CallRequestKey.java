@@ -0,0 +1,87 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.connector;
+
+import com.microrisc.simply.CallRequest;
+import java.util.Arrays;
+
+/**
+ * Key of a call request, which ignores its ID. Call requests with the same 
+ * network, node, device interface, method and arguments have equal keys. 
+ * Arguments are compared deeply, so that array arguments are equal, if they 
+ * have equal elements.
+ * 
+ * @author agent
+ */
+public final class CallRequestKey {
+    private final CallRequest request;
+    private final int hashCode;
+    
+    
+    private static CallRequest checkRequest(CallRequest request) {
+        if ( request == null ) {
+            throw new IllegalArgumentException("Call request cannot be null");
+        }
+        return request;
+    }
+    
+    private static boolean equalsNullable(Object first, Object second) {
+        return ( first == null )? ( second == null ) : first.equals(second);
+    }
+    
+    
+    /**
+     * Creates key of specified call request.
+     * @param request call request
+     * @throws IllegalArgumentException if {@code request} is {@code null}
+     */
+    public CallRequestKey(CallRequest request) {
+        this.request = checkRequest(request);
+        int hash = String.valueOf(request.getNetworkId()).hashCode();
+        hash = 31 * hash + String.valueOf(request.getNodeId()).hashCode();
+        hash = 31 * hash + request.getDeviceInterface().hashCode();
+        hash = 31 * hash + request.getMethodId().hashCode();
+        hash = 31 * hash + Arrays.deepHashCode(request.getArgs());
+        this.hashCode = hash;
+    }
+    
+    /**
+     * @return call request of this key
+     */
+    public CallRequest getRequest() {
+        return request;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if ( !(obj instanceof CallRequestKey) ) {
+            return false;
+        }
+        CallRequest other = ((CallRequestKey)obj).request;
+        return ( equalsNullable(request.getNetworkId(), other.getNetworkId())
+                && equalsNullable(request.getNodeId(), other.getNodeId())
+                && request.getDeviceInterface().equals(other.getDeviceInterface())
+                && request.getMethodId().equals(other.getMethodId())
+                && Arrays.deepEquals(request.getArgs(), other.getArgs())
+        );
+    }
+    
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
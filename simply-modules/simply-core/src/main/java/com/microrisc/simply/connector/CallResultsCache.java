@@ -0,0 +1,458 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.connector;
+
+import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.CallResult;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of results of call requests.
+ * <p>
+ * Results of equal call requests are cached for time to live given by
+ * caching policy. When the cache is full, the least recently used results 
+ * are evicted. Dispatching of a call request, which modifies state of a node, 
+ * invalidates cached results according to the caching policy. 
+ * <p>
+ * Result of a call request can be stored only, if no call request invalidating
+ * it has been dispatched since the call request was dispatched. To check it, 
+ * the caller registers dispatching of the call request and passes the returned
+ * ticket on storing of the result. If the result will not be stored, e.g. 
+ * because the call request failed or was cancelled, the ticket must be 
+ * released. Invalidation marks stale only the pending dispatches, which 
+ * the invalidating call request invalidates according to the caching policy, 
+ * so writing to one node doesn't prevent caching of results of other nodes. 
+ * Number of pending dispatches is limited by the capacity, the oldest ones 
+ * are forgotten, if theirs tickets are not released.
+ * <p>
+ * Cached results and pending dispatches are indexed by networks and nodes. 
+ * Invalidation checks only the ones of the network of the invalidating call
+ * request and of its node, if the call request has node ID.
+ * 
+ * @author agent
+ */
+public final class CallResultsCache {
+    /** Default capacity. */
+    public static final int DEFAULT_CAPACITY = 1000;
+    
+    /** Ticket of dispatching of call request, whose result is not cacheable. */
+    public static final long NO_TICKET = 0;
+    
+    // multiplier for getting number of nanoseconds from number of miliseconds
+    private static final long MILISEC_TO_NANOSEC = 1000000;
+    
+    
+    // cached result with time of its expiration
+    private static final class Entry {
+        final CallResult result;
+        final long expirationTime;
+        
+        Entry(CallResult result, long expirationTime) {
+            this.result = result;
+            this.expirationTime = expirationTime;
+        }
+    }
+    
+    // dispatched cacheable call request, which waits for its result
+    private static final class PendingDispatch {
+        final CallRequest request;
+        
+        // indicates, wheather the result has been invalidated before arrival
+        boolean stale = false;
+        
+        PendingDispatch(CallRequest request) {
+            this.request = request;
+        }
+    }
+    
+    // keys of cached results and tickets of pending dispatches of one node
+    private static final class NodeItems {
+        final String networkId;
+        final String nodeId;
+        final Set<CallRequestKey> keys = new HashSet<>();
+        final Set<Long> tickets = new HashSet<>();
+        
+        NodeItems(String networkId, String nodeId) {
+            this.networkId = networkId;
+            this.nodeId = nodeId;
+        }
+        
+        boolean isEmpty() {
+            return ( keys.isEmpty() && tickets.isEmpty() );
+        }
+    }
+    
+    
+    /** Caching policy. */
+    private final CallResultsCachingPolicy policy;
+    
+    /** Capacity. */
+    private final int capacity;
+    
+    /** Cached results in access order. */
+    private final LinkedHashMap<CallRequestKey, Entry> entries;
+    
+    /** Clock to measure time to live by. */
+    private final Clock clock = Clocks.getDefaultClock();
+    
+    /** Pending dispatches of cacheable call requests mapped by theirs tickets. */
+    private final LinkedHashMap<Long, PendingDispatch> pendingDispatches;
+    
+    /** 
+     * Keys of cached results and tickets of pending dispatches mapped by IDs 
+     * of networks and IDs of nodes. 
+     */
+    private final Map<String, Map<String, NodeItems>> networksItems = new HashMap<>();
+    
+    /** Last issued ticket. */
+    private long lastTicket = NO_TICKET;
+    
+    // metrics
+    private final AtomicLong hitsCount = new AtomicLong(0);
+    private final AtomicLong missesCount = new AtomicLong(0);
+    private final AtomicLong evictionsCount = new AtomicLong(0);
+    private final AtomicLong invalidationsCount = new AtomicLong(0);
+    
+    
+    private static CallResultsCachingPolicy checkPolicy(CallResultsCachingPolicy policy) {
+        if ( policy == null ) {
+            throw new IllegalArgumentException("Caching policy cannot be null");
+        }
+        return policy;
+    }
+    
+    private static int checkCapacity(int capacity) {
+        if ( capacity <= 0 ) {
+            throw new IllegalArgumentException("Capacity must be > 0");
+        }
+        return capacity;
+    }
+    
+    
+    /**
+     * Creates new cache with default capacity.
+     * @param policy caching policy
+     * @throws IllegalArgumentException if {@code policy} is {@code null}
+     */
+    public CallResultsCache(CallResultsCachingPolicy policy) {
+        this(policy, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Creates new cache.
+     * @param policy caching policy
+     * @param capacity maximal number of cached results
+     * @throws IllegalArgumentException if {@code policy} is {@code null} or 
+     *         {@code capacity} is less than or equal to 0
+     */
+    public CallResultsCache(CallResultsCachingPolicy policy, int capacity) {
+        this.policy = checkPolicy(policy);
+        this.capacity = checkCapacity(capacity);
+        this.entries = new LinkedHashMap<CallRequestKey, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CallRequestKey, Entry> eldest) {
+                if ( size() > CallResultsCache.this.capacity ) {
+                    unindexKey(eldest.getKey());
+                    evictionsCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.pendingDispatches = new LinkedHashMap<Long, PendingDispatch>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, PendingDispatch> eldest) {
+                if ( size() > CallResultsCache.this.capacity ) {
+                    unindexTicket(eldest.getKey(), eldest.getValue().request);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    // returns items of the node of specified request, creates them if needed
+    private NodeItems getNodeItems(CallRequest request) {
+        Map<String, NodeItems> nodesItems = networksItems.get(request.getNetworkId());
+        if ( nodesItems == null ) {
+            nodesItems = new HashMap<>();
+            networksItems.put(request.getNetworkId(), nodesItems);
+        }
+        NodeItems nodeItems = nodesItems.get(request.getNodeId());
+        if ( nodeItems == null ) {
+            nodeItems = new NodeItems(request.getNetworkId(), request.getNodeId());
+            nodesItems.put(request.getNodeId(), nodeItems);
+        }
+        return nodeItems;
+    }
+    
+    // removes specified items of a node, if they are empty
+    private void removeIfEmpty(NodeItems nodeItems) {
+        if ( !nodeItems.isEmpty() ) {
+            return;
+        }
+        Map<String, NodeItems> nodesItems = networksItems.get(nodeItems.networkId);
+        nodesItems.remove(nodeItems.nodeId);
+        if ( nodesItems.isEmpty() ) {
+            networksItems.remove(nodeItems.networkId);
+        }
+    }
+    
+    private void unindexKey(CallRequestKey key) {
+        NodeItems nodeItems = getNodeItems(key.getRequest());
+        nodeItems.keys.remove(key);
+        removeIfEmpty(nodeItems);
+    }
+    
+    private void unindexTicket(long ticket, CallRequest request) {
+        NodeItems nodeItems = getNodeItems(request);
+        nodeItems.tickets.remove(ticket);
+        removeIfEmpty(nodeItems);
+    }
+    
+    // removes pending dispatch of specified ticket
+    private PendingDispatch removePendingDispatch(long ticket) {
+        PendingDispatch dispatch = pendingDispatches.remove(ticket);
+        if ( dispatch != null ) {
+            unindexTicket(ticket, dispatch.request);
+        }
+        return dispatch;
+    }
+    
+    // removes cached result of specified key
+    private void removeEntry(CallRequestKey key) {
+        if ( entries.remove(key) != null ) {
+            unindexKey(key);
+        }
+    }
+    
+    // returns items of nodes, which specified invalidating request can affect
+    private Iterable<NodeItems> getAffectedNodesItems(CallRequest request) {
+        Map<String, NodeItems> nodesItems = networksItems.get(request.getNetworkId());
+        if ( nodesItems == null ) {
+            return Collections.<NodeItems>emptyList();
+        }
+        if ( request.getNodeId() == null ) {
+            return new ArrayList<>(nodesItems.values());
+        }
+        NodeItems nodeItems = nodesItems.get(request.getNodeId());
+        if ( nodeItems == null ) {
+            return Collections.<NodeItems>emptyList();
+        }
+        return Collections.singletonList(nodeItems);
+    }
+    
+    /**
+     * @return caching policy
+     */
+    public CallResultsCachingPolicy getPolicy() {
+        return policy;
+    }
+    
+    /**
+     * Returns cached result of specified call request.
+     * @param request call request
+     * @return cached result <br>
+     *         {@code null}, if the result is not cacheable or there is no 
+     *         valid cached result
+     */
+    public CallResult get(CallRequest request) {
+        if ( policy.getTimeToLive(request) <= 0 ) {
+            return null;
+        }
+        
+        CallRequestKey key = new CallRequestKey(request);
+        synchronized ( entries ) {
+            Entry entry = entries.get(key);
+            if ( entry != null ) {
+                if ( entry.expirationTime - clock.nanoTime() > 0 ) {
+                    hitsCount.incrementAndGet();
+                    return entry.result;
+                }
+                removeEntry(key);
+            }
+        }
+        
+        missesCount.incrementAndGet();
+        return null;
+    }
+    
+    /**
+     * Registers dispatching of specified call request.
+     * @param request dispatched call request
+     * @return ticket, which is to be passed to 
+     *         {@link #put(CallRequest, CallResult, long) put} method <br>
+     *         {@link #NO_TICKET}, if the result of {@code request} is not cacheable
+     */
+    public long registerDispatch(CallRequest request) {
+        if ( policy.getTimeToLive(request) <= 0 ) {
+            return NO_TICKET;
+        }
+        
+        synchronized ( entries ) {
+            lastTicket++;
+            pendingDispatches.put(lastTicket, new PendingDispatch(request));
+            getNodeItems(request).tickets.add(lastTicket);
+            return lastTicket;
+        }
+    }
+    
+    /**
+     * Releases specified ticket of dispatching, whose result will not be 
+     * stored, e.g. because the call request failed or was cancelled.
+     * @param ticket ticket returned on registering of dispatching
+     */
+    public void releaseDispatch(long ticket) {
+        if ( ticket == NO_TICKET ) {
+            return;
+        }
+        
+        synchronized ( entries ) {
+            removePendingDispatch(ticket);
+        }
+    }
+    
+    /**
+     * Stores result of specified call request, if it is cacheable and no 
+     * call request invalidating it has been dispatched since the dispatching
+     * of {@code request}.
+     * @param request call request
+     * @param result result of {@code request}
+     * @param ticket ticket returned on registering of dispatching of {@code request}
+     */
+    public void put(CallRequest request, CallResult result, long ticket) {
+        long timeToLive = policy.getTimeToLive(request);
+        if ( timeToLive <= 0 ) {
+            return;
+        }
+        
+        CallRequestKey key = new CallRequestKey(request);
+        Entry entry = new Entry(result, clock.nanoTime() + timeToLive * MILISEC_TO_NANOSEC);
+        synchronized ( entries ) {
+            PendingDispatch dispatch = removePendingDispatch(ticket);
+            if ( (dispatch != null) && !dispatch.stale ) {
+                if ( entries.put(key, entry) == null ) {
+                    getNodeItems(request).keys.add(key);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Invalidates cached results and results of pending dispatches according 
+     * to specified dispatched call request.
+     * @param request dispatched call request
+     */
+    public void invalidate(CallRequest request) {
+        if ( policy.getTimeToLive(request) > 0 ) {
+            return;
+        }
+        
+        synchronized ( entries ) {
+            for ( NodeItems nodeItems : getAffectedNodesItems(request) ) {
+                for ( Long ticket : nodeItems.tickets ) {
+                    PendingDispatch dispatch = pendingDispatches.get(ticket);
+                    if ( policy.invalidates(request, dispatch.request) ) {
+                        dispatch.stale = true;
+                    }
+                }
+                
+                Iterator<CallRequestKey> keysIter = nodeItems.keys.iterator();
+                while ( keysIter.hasNext() ) {
+                    CallRequestKey key = keysIter.next();
+                    if ( policy.invalidates(request, key.getRequest()) ) {
+                        keysIter.remove();
+                        entries.remove(key);
+                        invalidationsCount.incrementAndGet();
+                    }
+                }
+                removeIfEmpty(nodeItems);
+            }
+        }
+    }
+    
+    /**
+     * Removes all cached results.
+     */
+    public void clear() {
+        synchronized ( entries ) {
+            for ( PendingDispatch dispatch : pendingDispatches.values() ) {
+                dispatch.stale = true;
+            }
+            for ( CallRequestKey key : entries.keySet() ) {
+                unindexKey(key);
+            }
+            entries.clear();
+        }
+    }
+    
+    /**
+     * @return number of cached results, including the expired ones
+     */
+    public int size() {
+        synchronized ( entries ) {
+            return entries.size();
+        }
+    }
+    
+    /**
+     * @return number of dispatches, whose results can be stored yet
+     */
+    public int getPendingDispatchesCount() {
+        synchronized ( entries ) {
+            return pendingDispatches.size();
+        }
+    }
+    
+    /**
+     * @return number of cacheable call requests served from the cache
+     */
+    public long getHitsCount() {
+        return hitsCount.get();
+    }
+    
+    /**
+     * @return number of cacheable call requests not found in the cache
+     */
+    public long getMissesCount() {
+        return missesCount.get();
+    }
+    
+    /**
+     * @return number of results evicted because of full cache
+     */
+    public long getEvictionsCount() {
+        return evictionsCount.get();
+    }
+    
+    /**
+     * @return number of results removed because of invalidation
+     */
+    public long getInvalidationsCount() {
+        return invalidationsCount.get();
+    }
+}
@@ -0,0 +1,47 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.connector;
+
+import com.microrisc.simply.CallRequest;
+
+/**
+ * Decides, which call results can be cached, for how long and which call 
+ * requests invalidate cached call results.
+ * 
+ * @author agent
+ */
+public interface CallResultsCachingPolicy {
+    /**
+     * Returns time to live of the result of specified call request in a cache.
+     * @param request call request
+     * @return time to live [in ms] <br>
+     *         0, if the result of {@code request} cannot be cached
+     */
+    long getTimeToLive(CallRequest request);
+    
+    /**
+     * Indicates, whether dispatching of specified call request invalidates 
+     * cached result of specified cached call request. Cache asks only about 
+     * cached call requests of the same network and of the same node, if 
+     * the dispatched call request has node ID.
+     * @param request dispatched call request
+     * @param cachedRequest call request, whose result is cached
+     * @return {@code true} if the cached result is no longer valid <br>
+     *         {@code false} otherwise
+     */
+    boolean invalidates(CallRequest request, CallRequest cachedRequest);
+}
@@ -20,18 +20,32 @@ import com.microrisc.simply.CallRequestProcessingInfo;
 import com.microrisc.simply.ConnectorListener;
 import com.microrisc.simply.SimplyException;
 import com.microrisc.simply.ManageableObject;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Provides functionality of results sending of processing of a call requests to 
  * associated addresses. 
+ * <p>
+ * Each addressee has its own serial lane of processing infos to send. Lanes 
+ * are run by a pool of sender threads, so processing infos are delivered to 
+ * one addressee in the order of their adding, but a slow addressee does not 
+ * delay delivery to other addressees. Lane is removed, when it has sent 
+ * all its processing infos, so lanes of addressees, which receive nothing, 
+ * don't stay in memory. 
  * 
  * @author Michal Konopa
  */
@@ -39,105 +53,283 @@ public final class CallResultsSender implements ManageableObject {
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(CallResultsSender.class);
     
+    /** Default number of sender threads. */
+    public static final int DEFAULT_THREADS_NUM = 4;
+    
+    // maximal number of processing infos sent in one run of a lane, after 
+    // that the lane gives its thread to other lanes
+    private static final int MAX_LANE_BATCH = 16;
+    
+    // timeout to wait for sender threads to terminate [in ms]
+    private static final long TERMINATION_WAIT_TIMEOUT = 2000;
+    
+    
     /**
-     * Responsible for sending results to addresses.
+     * Serial lane of processing infos to send to one addressee.
      */
-    private class SenderThread extends Thread {
+    private class AddresseeLane implements Runnable {
+        private final ConnectorListener addressee;
+        private final Queue<CallRequestProcessingInfo> procInfos 
+                = new ConcurrentLinkedQueue<>();
+        
+        // indicates, that the lane is submitted for running
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        
+        // indicates, that the lane has been removed from lanes, guarded by this
+        private boolean removed = false;
+        
+        AddresseeLane(ConnectorListener addressee) {
+            this.addressee = addressee;
+        }
+        
+        /**
+         * Adds specified processing info to send.
+         * @return {@code false} if the lane has already been removed and 
+         *         the info must be added to a new lane of the addressee
+         */
+        boolean add(CallRequestProcessingInfo procInfo) {
+            synchronized ( this ) {
+                if ( removed ) {
+                    return false;
+                }
+                procInfos.offer(procInfo);
+            }
+            schedule();
+            return true;
+        }
+        
+        // removes this lane, if it has nothing to send and it is not scheduled
+        private boolean removeIfDrained() {
+            synchronized ( this ) {
+                if ( !procInfos.isEmpty() || scheduled.get() ) {
+                    return false;
+                }
+                removed = true;
+            }
+            lanes.remove(addressee, this);
+            return true;
+        }
+        
+        void schedule() {
+            // lanes of not started sender are scheduled at its start
+            ExecutorService laneExecutor = executor;
+            if ( laneExecutor == null ) {
+                return;
+            }
+            
+            if ( !scheduled.compareAndSet(false, true) ) {
+                return;
+            }
+            
+            try {
+                laneExecutor.execute(this);
+            } catch ( RejectedExecutionException e ) {
+                scheduled.set(false);
+                logger.warn("Sending of call results rejected: addressee={}", addressee);
+            }
+        }
+        
         @Override
         public void run() {
-            CallRequestProcessingInfo procInfo = null;
-            
-            while ( true ) {
-                if ( this.isInterrupted() ) {
-                    logger.info("Listener thread end");
-                    return;
-                }
-                
-                synchronized( syncProcInfoToListeners ) {
-                    while ( procInfoToListeners.isEmpty() ) {
-                        try {
-                            syncProcInfoToListeners.wait();
-                        } catch ( InterruptedException e ) {
-                            logger.warn("Listener thread interrupted while waiting", e);
-                            return;
-                        }
+            try {
+                for ( int sent = 0; sent < MAX_LANE_BATCH; sent++ ) {
+                    CallRequestProcessingInfo procInfo = procInfos.poll();
+                    if ( procInfo == null ) {
+                        break;
                     }
-                    procInfo = procInfoToListeners.poll(); 
+                    send(addressee, procInfo);
                 }
-                
-                // addressee identification
-                ConnectorListener adressee = addressees.get( procInfo.getRequestId());
-                
-                // sending information to the addressee
-                adressee.onCallRequestProcessingInfo( procInfo, procInfo.getRequestId() );
-                
-                // remove addresee from senders map
-                addressees.remove(procInfo.getRequestId());
+            } finally {
+                scheduled.set(false);
+            }
+            
+            if ( removeIfDrained() ) {
+                return;
+            }
+            
+            // infos added during the run
+            if ( !procInfos.isEmpty() && !Thread.currentThread().isInterrupted() ) {
+                schedule();
             }
         }
     }
     
+    /**
+     * Creates sender threads.
+     */
+    private static class SenderThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadsCounter = new AtomicInteger(0);
+        
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "CallResultsSender-" + threadsCounter.incrementAndGet());
+        }
+    }
+    
+    
+    /** Number of sender threads. */
+    private volatile int threadsNum;
     
-    /** Sender thread. */
-    private Thread senderThread = null;
+    /** Sender threads. */
+    private volatile ExecutorService executor = null;
     
     /** Map of addressee of a call results. */
-    private Map<UUID, ConnectorListener> addressees = 
-            Collections.synchronizedMap(new HashMap<UUID, ConnectorListener>());
+    private final ConcurrentMap<UUID, ConnectorListener> addressees = 
+            new ConcurrentHashMap<>();
+    
+    /** Lanes of addressees. */
+    private final ConcurrentMap<ConnectorListener, AddresseeLane> lanes = 
+            new ConcurrentHashMap<>();
     
     /**
      * Information about processed requests, which will be sent to corresponding 
-     * connector listeners. 
+     * connector listeners. Indexed by call request ID.
      */
-    private Queue<CallRequestProcessingInfo> procInfoToListeners = 
-            new ConcurrentLinkedQueue<>();
+    private final ConcurrentMap<UUID, CallRequestProcessingInfo> pendingProcInfos = 
+            new ConcurrentHashMap<>();
     
-    /**
-     * Synchronization for access to {@code procInfoToListeners} variable.
-     */
-    private final Object syncProcInfoToListeners = new Object();
+    // metrics
+    private final AtomicInteger queueDepth = new AtomicInteger(0);
+    private final AtomicInteger maxQueueDepth = new AtomicInteger(0);
+    private final AtomicLong sentCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+    
+    
+    private static int checkThreadsNum(int threadsNum) {
+        if ( threadsNum <= 0 ) {
+            throw new IllegalArgumentException("Number of sender threads must be > 0");
+        }
+        return threadsNum;
+    }
+    
+    // sends specified processing info to specified addressee
+    private void send(ConnectorListener addressee, CallRequestProcessingInfo procInfo) {
+        try {
+            addressee.onCallRequestProcessingInfo( procInfo, procInfo.getRequestId() );
+            sentCount.incrementAndGet();
+        } catch ( RuntimeException e ) {
+            failedCount.incrementAndGet();
+            logger.error("Sending of call result failed: callId={}", 
+                    procInfo.getRequestId(), e
+            );
+        } finally {
+            pendingProcInfos.remove(procInfo.getRequestId(), procInfo);
+            queueDepth.decrementAndGet();
+        }
+    }
+    
+    // updates maximal queue depth reached
+    private void updateMaxQueueDepth(int depth) {
+        int maxDepth = maxQueueDepth.get();
+        while ( depth > maxDepth ) {
+            if ( maxQueueDepth.compareAndSet(maxDepth, depth) ) {
+                return;
+            }
+            maxDepth = maxQueueDepth.get();
+        }
+    }
     
+    // returns lane of specified addressee
+    private AddresseeLane getLane(ConnectorListener addressee) {
+        AddresseeLane lane = lanes.get(addressee);
+        if ( lane == null ) {
+            AddresseeLane newLane = new AddresseeLane(addressee);
+            lane = lanes.putIfAbsent(addressee, newLane);
+            if ( lane == null ) {
+                lane = newLane;
+            }
+        }
+        return lane;
+    }
     
     /**
-     * Terminates sender thread.
+     * Terminates sender threads.
      */
-    private void terminateSenderThread() {
-        logger.debug("terminateSenderThread - start:");
+    private void terminateSenderThreads() {
+        logger.debug("terminateSenderThreads - start:");
         
-        // termination signal to listener thread
-        senderThread.interrupt();
+        if ( executor == null ) {
+            logger.debug("terminateSenderThreads - end");
+            return;
+        }
+        
+        // termination signal to sender threads
+        executor.shutdownNow();
         
-        // Waiting for sender thread to terminate. Cancelling sender thread has higher 
+        // Waiting for sender threads to terminate. Cancelling sender threads has higher 
         // priority than main thread interruption. 
-        while ( senderThread.isAlive() ) {
+        boolean isInterrupted = false;
+        while ( !executor.isTerminated() ) {
             try {
-                if ( senderThread.isAlive( )) {
-                    senderThread.join();
+                if ( !executor.awaitTermination(TERMINATION_WAIT_TIMEOUT, TimeUnit.MILLISECONDS) ) {
+                    logger.warn("sender terminating - sender threads still running");
                 }
-            } catch (InterruptedException e) {
-                // restoring interrupt status
-                Thread.currentThread().interrupt();
+            } catch ( InterruptedException e ) {
+                isInterrupted = true;
                 logger.warn("sender terminating - sender thread interrupted");
             }
-        } 
+        }
+        
+        // restoring interrupt status
+        if ( isInterrupted ) {
+            Thread.currentThread().interrupt();
+        }
         
         logger.info("Sending stopped.");
-        logger.debug("terminateSenderThread - end");
+        logger.debug("terminateSenderThreads - end");
     }
     
     
     /**
-     * Creates new sender.
+     * Creates new sender with default number of sender threads.
      */
     public CallResultsSender() {
-        senderThread = new SenderThread();
-    } 
+        this(DEFAULT_THREADS_NUM);
+    }
+    
+    /**
+     * Creates new sender with specified number of sender threads.
+     * @param threadsNum number of sender threads
+     * @throws IllegalArgumentException if {@code threadsNum} is less than 
+     *         or equal to 0
+     */
+    public CallResultsSender(int threadsNum) {
+        this.threadsNum = checkThreadsNum(threadsNum);
+    }
+    
+    /**
+     * Sets number of sender threads. Takes effect only before this sender 
+     * is started.
+     * @param threadsNum number of sender threads
+     * @throws IllegalArgumentException if {@code threadsNum} is less than 
+     *         or equal to 0
+     * @throws IllegalStateException if this sender has already been started
+     */
+    public void setThreadsNum(int threadsNum) {
+        checkThreadsNum(threadsNum);
+        if ( executor != null ) {
+            throw new IllegalStateException("Sender has already been started");
+        }
+        this.threadsNum = threadsNum;
+    }
+    
+    /**
+     * @return number of sender threads
+     */
+    public int getThreadsNum() {
+        return threadsNum;
+    }
     
     @Override
     public void start() throws SimplyException {
         logger.debug("start - start:");
         
-        senderThread.start();
+        executor = Executors.newFixedThreadPool(threadsNum, new SenderThreadFactory());
+        
+        // infos added before the start
+        for ( AddresseeLane lane : lanes.values() ) {
+            lane.schedule();
+        }
         
         logger.info("Sending started");
         logger.debug("start - end");
@@ -161,9 +353,20 @@ public final class CallResultsSender implements ManageableObject {
      * @param procInfo call request processing info to add
      */
     public void addCallRequestProcessingInfo( CallRequestProcessingInfo procInfo ) {
-        synchronized( syncProcInfoToListeners ) {
-            procInfoToListeners.offer(procInfo);
-            syncProcInfoToListeners.notify();
+        UUID callId = procInfo.getRequestId();
+        
+        // addressee identification
+        ConnectorListener addressee = addressees.remove(callId);
+        if ( addressee == null ) {
+            logger.warn("No addressee found for call request: {}", callId);
+            return;
+        }
+        
+        pendingProcInfos.put(callId, procInfo);
+        updateMaxQueueDepth( queueDepth.incrementAndGet() );
+        
+        // lane removed meanwhile is replaced by a new one
+        while ( !getLane(addressee).add(procInfo) ) {
         }
     }
     
@@ -174,14 +377,44 @@ public final class CallResultsSender implements ManageableObject {
      *         {@code null}, if no corresponding processing info was found
      */
     public CallRequestProcessingInfo getCallRequestProcessingInfo( UUID callId ) {
-        synchronized ( syncProcInfoToListeners ) {
-            for ( CallRequestProcessingInfo procInfo : procInfoToListeners ) {
-                if ( procInfo.getRequestId().equals(callId) ) {
-                    return procInfo;
-                }
-            }
-        }
-        return null;
+        return pendingProcInfos.get(callId);
+    }
+    
+    /**
+     * @return number of processing infos waiting for sending
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+    
+    /**
+     * @return number of lanes of addressees, which have processing infos 
+     *         waiting for sending
+     */
+    public int getLanesCount() {
+        return lanes.size();
+    }
+    
+    /**
+     * @return maximal number of processing infos, which have been waiting 
+     *         for sending at the same time
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+    
+    /**
+     * @return number of processing infos successfully sent to addressees
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+    
+    /**
+     * @return number of processing infos, whose sending to addressees failed
+     */
+    public long getFailedCount() {
+        return failedCount.get();
     }
     
     /**
@@ -191,13 +424,12 @@ public final class CallResultsSender implements ManageableObject {
     public void destroy() {
         logger.debug("destroy - start:");
         
-        terminateSenderThread();
-        
-        procInfoToListeners.clear();
-        procInfoToListeners = null;
+        terminateSenderThreads();
         
+        pendingProcInfos.clear();
+        lanes.clear();
         addressees.clear();
-        addressees = null;
+        queueDepth.set(0);
         
         logger.info("Destroyed.");
         logger.debug("destroy - end");
@@ -0,0 +1,166 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.connector;
+
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+
+/**
+ * Pacing of sending requests to underlaying network.
+ * <p>
+ * Pacer works as a token bucket: one send permit is generated each send 
+ * interval and at most burst permits can be accumulated. With burst of 1 
+ * the pacer ensures minimal pause of one interval between subsequent sends. 
+ * <p>
+ * Pacer itself never blocks. It only computes time, when the next send 
+ * will be permitted, so the worker can wait for that time on its own 
+ * synchronization object and can be woken up by new work or cancellation 
+ * sooner. Time is measured by monotonic {@link Clock}.
+ * 
+ * @author agent
+ */
+public final class SendPacer {
+    // multiplier for getting number of nanoseconds from number of miliseconds
+    private static final long MILISEC_TO_NANOSEC = 1000000;
+    
+    /** Default maximal number of accumulated send permits. */
+    public static final int DEFAULT_BURST = 1;
+    
+    
+    /** Maximal number of accumulated send permits. */
+    private final int burst;
+    
+    /** Clock to measure time by. */
+    private final Clock clock;
+    
+    /** Interval between generating of send permits [in ns]. */
+    private long interval;
+    
+    /** Theoretical time of the next send, when no permits are accumulated [in ns]. */
+    private long nextSendTime;
+    
+    /** Time of the last send [in ns]. */
+    private long lastSendTime;
+    
+    
+    private static long checkInterval(long interval) {
+        if ( interval < 0 ) {
+            throw new IllegalArgumentException("Send interval cannot be less then 0");
+        }
+        return interval;
+    }
+    
+    private static int checkBurst(int burst) {
+        if ( burst <= 0 ) {
+            throw new IllegalArgumentException("Burst must be > 0");
+        }
+        return burst;
+    }
+    
+    private static Clock checkClock(Clock clock) {
+        if ( clock == null ) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        return clock;
+    }
+    
+    // converts nanoseconds to miliseconds, rounding up
+    private static long toMilisRoundUp(long nanos) {
+        return ( nanos + MILISEC_TO_NANOSEC - 1 ) / MILISEC_TO_NANOSEC;
+    }
+    
+    
+    /**
+     * Creates new pacer with specified send interval and default burst.
+     * @param interval interval between sends [in ms]
+     * @throws IllegalArgumentException if {@code interval} is less than 0
+     */
+    public SendPacer(long interval) {
+        this(interval, DEFAULT_BURST);
+    }
+    
+    /**
+     * Creates new pacer with specified send interval and burst.
+     * @param interval interval between generating of send permits [in ms]
+     * @param burst maximal number of accumulated send permits
+     * @throws IllegalArgumentException if {@code interval} is less than 0 or
+     *         {@code burst} is less than or equal to 0
+     */
+    public SendPacer(long interval, int burst) {
+        this(interval, burst, Clocks.getDefaultClock());
+    }
+    
+    /**
+     * Creates new pacer with specified send interval, burst and clock.
+     * @param interval interval between generating of send permits [in ms]
+     * @param burst maximal number of accumulated send permits
+     * @param clock clock to measure time by
+     * @throws IllegalArgumentException if {@code interval} is less than 0 or
+     *         {@code burst} is less than or equal to 0 or {@code clock} is 
+     *         {@code null}
+     */
+    public SendPacer(long interval, int burst, Clock clock) {
+        this.interval = checkInterval(interval) * MILISEC_TO_NANOSEC;
+        this.burst = checkBurst(burst);
+        this.clock = checkClock(clock);
+        this.nextSendTime = clock.nanoTime();
+        this.lastSendTime = this.nextSendTime;
+    }
+    
+    /**
+     * Sets interval between generating of send permits.
+     * @param interval interval [in ms]
+     * @throws IllegalArgumentException if {@code interval} is less than 0
+     */
+    public synchronized void setInterval(long interval) {
+        this.interval = checkInterval(interval) * MILISEC_TO_NANOSEC;
+    }
+    
+    /**
+     * Returns time remaining to the moment, when the next send will be permitted.
+     * @return time to wait before next send [in ms], 0 if the send is 
+     *         permitted now
+     */
+    public synchronized long getWaitTime() {
+        long permittedTime = nextSendTime - interval * (burst - 1);
+        long waitTime = permittedTime - clock.nanoTime();
+        return ( waitTime > 0 )? toMilisRoundUp(waitTime) : 0;
+    }
+    
+    /**
+     * Returns time remaining to the moment, when the next send will be 
+     * permitted and at least specified pause from the last send will elapse.
+     * Used for repeated attempts of sending the same request.
+     * @param minPause minimal pause from the last send [in ms]
+     * @return time to wait before next send [in ms], 0 if the send is 
+     *         permitted now
+     */
+    public synchronized long getWaitTime(long minPause) {
+        long pauseWaitTime = lastSendTime + minPause * MILISEC_TO_NANOSEC - clock.nanoTime();
+        long pauseWaitTimeMs = ( pauseWaitTime > 0 )? toMilisRoundUp(pauseWaitTime) : 0;
+        return Math.max(getWaitTime(), pauseWaitTimeMs);
+    }
+    
+    /**
+     * Records send, which consumes one send permit.
+     */
+    public synchronized void onSend() {
+        long actualTime = clock.nanoTime();
+        nextSendTime = Math.max(nextSendTime, actualTime) + interval;
+        lastSendTime = actualTime;
+    }
+}
@@ -0,0 +1,53 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.connector;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generator of call request identifiers based on sequence of numbers.
+ * <p>
+ * Most significant bits of each identifier are the same for all identifiers 
+ * generated by one generator and they are randomly chosen at the time of 
+ * creation of the generator. Least significant bits are taken from
+ * the sequence of numbers. So, unlike {@link UUID#randomUUID()}, generating 
+ * of an identifier doesn't need shared secure random number generator and
+ * costs only one atomic increment.
+ * 
+ * @author agent
+ */
+public final class SequenceCallIdGenerator implements CallIdGenerator {
+    /** Part of identifiers common for this generator. */
+    private final long prefix;
+    
+    /** Sequence of numbers. */
+    private final AtomicLong sequence = new AtomicLong(0);
+    
+    
+    /**
+     * Creates new generator with randomly chosen prefix of identifiers.
+     */
+    public SequenceCallIdGenerator() {
+        this.prefix = UUID.randomUUID().getMostSignificantBits();
+    }
+    
+    @Override
+    public UUID generateCallId() {
+        return new UUID(prefix, sequence.incrementAndGet());
+    }
+}
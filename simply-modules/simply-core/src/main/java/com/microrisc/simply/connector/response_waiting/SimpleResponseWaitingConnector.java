@@ -30,9 +30,16 @@ import com.microrisc.simply.ConnectedDeviceObject;
 import com.microrisc.simply.SimplyException;
 import com.microrisc.simply.ProtocolLayerService;
 import com.microrisc.simply.connector.AbstractConnector;
-import com.microrisc.simply.connector.CallResultsSender;
+import com.microrisc.simply.connector.SendPacer;
 import com.microrisc.simply.errors.DispatchingRequestToProtocolLayerError;
 import com.microrisc.simply.errors.CallRequestProcessingError;
+import com.microrisc.simply.metrics.Counter;
+import com.microrisc.simply.metrics.Gauge;
+import com.microrisc.simply.metrics.LatencyHistogram;
+import com.microrisc.simply.metrics.Metrics;
+import com.microrisc.simply.metrics.MetricsRegistry;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
 import java.util.Iterator;
 import java.util.Queue;
 import java.util.UUID;
@@ -42,6 +49,15 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Simple implementation of {ResponseWaitingConnector} interface.  
+ * <p>
+ * Connector maintains the {@code <prefix>.queue.depth} and 
+ * {@code <prefix>.results.queue.depth} gauges, the {@code <prefix>.requests.sent},
+ * {@code <prefix>.requests.errors}, {@code <prefix>.requests.timeouts} and
+ * {@code <prefix>.requests.cancelled} counters and the {@code <prefix>.processing}
+ * histogram of times from sending of requests to arrival of theirs responses 
+ * in its metrics registry, where {@code <prefix>} is the metrics prefix of 
+ * the connector. Metrics prefix is {@code connector.<number of the connector>} 
+ * by default.
  * 
  * @author Michal Konopa
  */
@@ -78,16 +94,11 @@ extends AbstractConnector implements ResponseWaitingConnector {
         }
     }
     
-    private CallResultsSender callResultsSender = null;
-    
     /**
      * Responsible for sending requests to underlaying network and receiving 
      * messages (responses) from that network.
      */
     private class WorkerThread extends Thread {
-        /** Time, when last request was sended. */
-        private long lastSendTime = 0;
-        
         // call request, which was lastly sent to underlaying network
         private CallRequestToProcess lastRequestToProc =  null;
         
@@ -100,25 +111,28 @@ extends AbstractConnector implements ResponseWaitingConnector {
         // synchronization for cancelling a request
         private final Object syncCancelRequest = new Object();
         
-        /** 
-         * Returns value of sleep time before sending next request to
-         * protocol layer.
-         * @param sendAttempt send attempt
+        /**
+         * Waits until repeated sending of the last request is permitted. 
+         * Waiting is finished sooner, if the last request is cancelled.
+         * @return {@code true} if the repeated sending is permitted <br>
+         *         {@code false} if the last request has been cancelled
          */
-        private long getSleepTimeBeforeSend(int sendAttempt) {
-            long waitedTime = System.currentTimeMillis() - lastSendTime;
-            if ( sendAttempt > 0 ) {
-                if ( attemptPause > betweenSendPause ) {
-                    return ( attemptPause - waitedTime );
-                } else {
-                    return ( betweenSendPause - waitedTime );
+        private boolean waitForRepeatedSend() throws InterruptedException {
+            synchronized ( syncMsgfromNetwork ) {
+                long waitTime = sendPacer.getWaitTime(attemptPause);
+                while ( waitTime > 0 && !isCancelledLastRequest ) {
+                    clock.await(syncMsgfromNetwork, waitTime);
+                    waitTime = sendPacer.getWaitTime(attemptPause);
                 }
+                return !isCancelledLastRequest;
             }
-            return ( betweenSendPause - waitedTime );
-        } 
+        }
         
         /**
-         * Sends specified DO method call request to protocol layer.
+         * Sends specified DO method call request to protocol layer. Sending of 
+         * the first attempt must be already permitted by send pacer. If sending
+         * fails, it is repeated after the attempt pause - at most 
+         * {@code maxSendAttempts} attempts are made.
          * @param request DO method call-request
          */
         private void sendRequestToProtocolLayer(CallRequest request) 
@@ -127,20 +141,26 @@ extends AbstractConnector implements ResponseWaitingConnector {
             logger.debug("sendRequestToProtocolLayer - start: request={}", request);
             
             int sendAttempt = 0;
-            boolean sentOK = false;
-            while ( (sendAttempt < maxSendAttempts && ( sentOK == false )) ) { 
-                long sleepTime = getSleepTimeBeforeSend(sendAttempt);
-                
-                // pause between sending request to protocol layer
-                if ( sleepTime > 0) {
-                    Thread.sleep(sleepTime);
+            while ( true ) { 
+                // pause between attempts of sending request to protocol layer
+                if ( (sendAttempt > 0) && !waitForRepeatedSend() ) {
+                    break;
                 }
                 
-                protocolLayerService.sendRequest(request);
-                sentOK = true;
-
-                lastSendTime = System.currentTimeMillis();                
                 sendAttempt++;
+                try {
+                    protocolLayerService.sendRequest(request);
+                    break;
+                } catch ( SimplyException ex ) {
+                    if ( sendAttempt >= maxSendAttempts ) {
+                        throw ex;
+                    }
+                    logger.warn("Sending request failed, attempt {}: {}", 
+                            sendAttempt, ex.getMessage()
+                    );
+                } finally {
+                    sendPacer.onSend();
+                }
             }
             
             logger.debug("sendRequestToProtocolLayer - end:");
@@ -309,7 +329,7 @@ extends AbstractConnector implements ResponseWaitingConnector {
                 Iterator<IdleRequest> requestIt = idleRequests.iterator();
                 while ( requestIt.hasNext() ) {
                     IdleRequest idleRequest = requestIt.next();
-                    long idleTime = System.currentTimeMillis() - idleRequest.startIdleTime;
+                    long idleTime = clock.currentTimeMillis() - idleRequest.startIdleTime;
                     if ( idleTime > callRequestMaxIdleTime ) {
                         requestIt.remove();
                         continue;
@@ -320,7 +340,7 @@ extends AbstractConnector implements ResponseWaitingConnector {
                     }
                     
                     if ( idleRequest.reqToProc.callRequest.getId().equals(reqId) ) {
-                        idleRequest.startIdleTime = System.currentTimeMillis();
+                        idleRequest.startIdleTime = clock.currentTimeMillis();
                         idleRequest.reqToProc.maxProcTime = maxProcTime;
                         found = true;
                     }
@@ -355,7 +375,7 @@ extends AbstractConnector implements ResponseWaitingConnector {
                 Iterator<IdleRequest> requestIt = idleRequests.iterator();
                 while ( requestIt.hasNext() ) {
                     IdleRequest idleRequest = requestIt.next();
-                    long idleTime = System.currentTimeMillis() - idleRequest.startIdleTime;
+                    long idleTime = clock.currentTimeMillis() - idleRequest.startIdleTime;
                     if ( idleTime > callRequestMaxIdleTime ) {
                         requestIt.remove();
                         continue;
@@ -386,7 +406,9 @@ extends AbstractConnector implements ResponseWaitingConnector {
             synchronized ( syncCancelRequest ) {
                 // cancel the last request
                 synchronized ( syncMsgfromNetwork ) {
-                    if ( lastRequestToProc.callRequest.getId().equals(reqId) ) {
+                    if ( (lastRequestToProc != null) 
+                            && lastRequestToProc.callRequest.getId().equals(reqId) 
+                    ) {
                         isCancelledLastRequest = true;
                         syncMsgfromNetwork.notifyAll();
                         return;
@@ -411,7 +433,7 @@ extends AbstractConnector implements ResponseWaitingConnector {
                 
                 while ( requestIt.hasNext() ) {
                     IdleRequest idleRequest = requestIt.next();
-                    long idleTime = System.currentTimeMillis() - idleRequest.startIdleTime;
+                    long idleTime = clock.currentTimeMillis() - idleRequest.startIdleTime;
                     if ( idleTime > callRequestMaxIdleTime ) {
                         requestIt.remove();
                         continue;
@@ -435,7 +457,7 @@ extends AbstractConnector implements ResponseWaitingConnector {
                 Iterator<IdleRequest> requestIt = idleRequests.iterator();
                 while ( requestIt.hasNext() ) {
                     IdleRequest idleRequest = requestIt.next();
-                    long idleTime = System.currentTimeMillis() - idleRequest.startIdleTime;
+                    long idleTime = clock.currentTimeMillis() - idleRequest.startIdleTime;
                     if ( idleTime > callRequestMaxIdleTime ) {
                         requestIt.remove();
                     }
@@ -451,11 +473,20 @@ extends AbstractConnector implements ResponseWaitingConnector {
                     return;
                 }
                 
-                // nothing to do - so wait for messages
+                // nothing to do - so wait for requests, which are permitted to send
                 synchronized ( syncRequestsToProcess ) {
-                    while ( requestsToProcess.isEmpty() ) {
+                    while ( true ) {
+                        // 0 means waiting until new request comes
+                        long waitTime = 0;
+                        if ( !requestsToProcess.isEmpty() ) {
+                            waitTime = sendPacer.getWaitTime();
+                            if ( waitTime == 0 ) {
+                                break;
+                            }
+                        }
+                        
                         try {
-                            syncRequestsToProcess.wait();
+                            clock.await(syncRequestsToProcess, waitTime);
                         } catch ( InterruptedException e ) {
                             logger.warn(
                                 "Worker thread interrupted while waiting on messages", e
@@ -472,17 +503,25 @@ extends AbstractConnector implements ResponseWaitingConnector {
                     }
                 }
                 
+                // the request could be cancelled meanwhile
+                if ( lastRequestToProc == null ) {
+                    continue;
+                }
+                
                 currProcRequestInfo.setAll( lastRequestToProc.callRequest.getId(), 
                         WAITING_FOR_PROCESSING, null, null
                 );
                 
                 boolean respArrivedForLastRequest = false;
                 boolean requestSentOk = false;
+                long sendTime = clock.nanoTime();
                 
                 try {
                     sendRequestToProtocolLayer( lastRequestToProc.callRequest );
                     requestSentOk = true;
+                    requestsSentCounter.increment();
                 } catch ( Exception ex ) {
+                    requestsErrorsCounter.increment();
                     // dispatching error
                     logger.error("Send request to protocol layer error: ", ex);
                     currProcRequestInfo.setAll( lastRequestToProc.callRequest.getId(), ERROR, 
@@ -508,11 +547,11 @@ extends AbstractConnector implements ResponseWaitingConnector {
                     while ( !respArrivedForLastRequest && !isCancelledLastRequest ) {
                         try {
                             if ( lastRequestToProc.maxProcTime == UNLIMITED_MAXIMAL_PROCESSING_TIME ) {
-                                syncMsgfromNetwork.wait();
+                                clock.await(syncMsgfromNetwork, 0);
                             } else {
-                                long startTime = System.nanoTime();
-                                syncMsgfromNetwork.wait( timeToWait );
-                                double timeElapsed = (System.nanoTime() - startTime) * NANOSEC_TO_MILISEC;
+                                long startTime = clock.nanoTime();
+                                clock.await(syncMsgfromNetwork, timeToWait);
+                                double timeElapsed = (clock.nanoTime() - startTime) * NANOSEC_TO_MILISEC;
 
                                 if ( timeElapsed >= timeToWait ) {
                                     break;
@@ -530,6 +569,14 @@ extends AbstractConnector implements ResponseWaitingConnector {
                     }
                 }
 
+                if ( respArrivedForLastRequest ) {
+                    processingHistogram.record(clock.nanoTime() - sendTime);
+                } else if ( isCancelledLastRequest ) {
+                    requestsCancelledCounter.increment();
+                } else {
+                    requestsTimeoutsCounter.increment();
+                }
+                
                 // process arrived messages
                 if ( !msgFromNetwork.isEmpty() ) {
                     processAllIncommingMessages();
@@ -537,13 +584,13 @@ extends AbstractConnector implements ResponseWaitingConnector {
                         // there wasn't a response for a last request
                         logger.warn("No messages arrived for the last request.");
                         if ( !isCancelledLastRequest ) {
-                            idleRequests.add( new IdleRequest(lastRequestToProc, System.currentTimeMillis()) );
+                            idleRequests.add( new IdleRequest(lastRequestToProc, clock.currentTimeMillis()) );
                         }
                     }
                 } else {
                     // no messages arrived in the timeout
                     if ( !isCancelledLastRequest ) {
-                        idleRequests.add( new IdleRequest(lastRequestToProc, System.currentTimeMillis()) );
+                        idleRequests.add( new IdleRequest(lastRequestToProc, clock.currentTimeMillis()) );
                     }
                     logger.warn("No messages arrived at timeout");
                 }
@@ -639,6 +686,35 @@ extends AbstractConnector implements ResponseWaitingConnector {
     /** Minimal pause between sending requests [in miliseconds]. */
     private volatile long betweenSendPause = BETWEEN_SEND_PAUSE_DEFAULT;
     
+    /** Clock to measure time and to wait by. */
+    private final Clock clock = Clocks.getDefaultClock();
+    
+    /** Pacing of sending requests to protocol layer. */
+    private final SendPacer sendPacer = new SendPacer(
+            BETWEEN_SEND_PAUSE_DEFAULT, SendPacer.DEFAULT_BURST, clock
+    );
+    
+    /** Registry of metrics. */
+    private final MetricsRegistry metrics;
+    
+    /** Prefix of names of metrics of this connector. */
+    private final String metricsPrefix;
+    
+    /** Number of requests sent to protocol layer. */
+    private final Counter requestsSentCounter;
+    
+    /** Number of requests, whose sending to protocol layer failed. */
+    private final Counter requestsErrorsCounter;
+    
+    /** Number of sent requests, whose response has not arrived in time. */
+    private final Counter requestsTimeoutsCounter;
+    
+    /** Number of sent requests cancelled during waiting for response. */
+    private final Counter requestsCancelledCounter;
+    
+    /** Times from sending of requests to arrival of theirs responses. */
+    private final LatencyHistogram processingHistogram;
+    
     
     private static ConnectedDeviceObject checkDeviceObject(ConnectedDeviceObject deviceObject) {
         if ( deviceObject == null ) {
@@ -682,17 +758,60 @@ extends AbstractConnector implements ResponseWaitingConnector {
         return requestId;
     }
     
+    private static MetricsRegistry checkMetricsRegistry(MetricsRegistry metrics) {
+        if ( metrics == null ) {
+            throw new IllegalArgumentException("Metrics registry cannot be null");
+        }
+        return metrics;
+    }
+    
+    private static String checkMetricsPrefix(String metricsPrefix) {
+        if ( metricsPrefix == null ) {
+            throw new IllegalArgumentException("Metrics prefix cannot be null");
+        }
+        if ( metricsPrefix.isEmpty() ) {
+            throw new IllegalArgumentException("Metrics prefix cannot be empty");
+        }
+        return metricsPrefix;
+    }
+    
     
     
     /**
-     * Creates new response-waiting connector.
+     * Creates new response-waiting connector. Its metrics are maintained in 
+     * the default metrics registry under the prefix 
+     * {@code connector.<number of the connector>}.
      * @param protocolLayerService protocol layer service to use
      * @throws IllegalArgumentException if {@code protocolLayerService} is {@code null}
      */
     public SimpleResponseWaitingConnector(ProtocolLayerService protocolLayerService) {
-       super( protocolLayerService );
-       callResultsSender = new CallResultsSender();
-       workerThread = new WorkerThread();
+        this(protocolLayerService, Metrics.getDefaultRegistry(), createDefaultMetricsPrefix());
+    }
+    
+    /**
+     * Creates new response-waiting connector, which maintains its metrics 
+     * in specified registry under specified prefix. Connectors sharing 
+     * the same registry must use different prefixes.
+     * @param protocolLayerService protocol layer service to use
+     * @param metrics registry of metrics
+     * @param metricsPrefix prefix of names of metrics of the connector
+     * @throws IllegalArgumentException if {@code protocolLayerService} or 
+     *         {@code metrics} is {@code null} or {@code metricsPrefix} is 
+     *         {@code null} or empty
+     */
+    public SimpleResponseWaitingConnector(
+            ProtocolLayerService protocolLayerService, MetricsRegistry metrics,
+            String metricsPrefix
+    ) {
+        super( protocolLayerService );
+        this.metrics = checkMetricsRegistry(metrics);
+        this.metricsPrefix = checkMetricsPrefix(metricsPrefix);
+        this.requestsSentCounter = metrics.getCounter(metricsPrefix + ".requests.sent");
+        this.requestsErrorsCounter = metrics.getCounter(metricsPrefix + ".requests.errors");
+        this.requestsTimeoutsCounter = metrics.getCounter(metricsPrefix + ".requests.timeouts");
+        this.requestsCancelledCounter = metrics.getCounter(metricsPrefix + ".requests.cancelled");
+        this.processingHistogram = metrics.getHistogram(metricsPrefix + ".processing");
+        workerThread = new WorkerThread();
     }
     
     /**
@@ -714,7 +833,7 @@ extends AbstractConnector implements ResponseWaitingConnector {
         checkMethodId( methodId );
         checkMaxProcessingTime( maxProcTime );
         
-        UUID callId = UUID.randomUUID();
+        UUID callId = callIdGenerator.generateCallId();
         CallRequest request = new CallRequest(
                 callId, devObject.getNetworkId(), devObject.getNodeId(), deviceIface, 
                 methodId, args
@@ -771,6 +890,18 @@ extends AbstractConnector implements ResponseWaitingConnector {
     public void start() throws SimplyException {
         logger.debug("startMessaging - start:");
         
+        metrics.registerGauge(metricsPrefix + ".queue.depth", new Gauge() {
+            @Override
+            public long getValue() {
+                return requestsToProcess.size();
+            }
+        });
+        metrics.registerGauge(metricsPrefix + ".results.queue.depth", new Gauge() {
+            @Override
+            public long getValue() {
+                return callResultsSender.getQueueDepth();
+            }
+        });
         callResultsSender.start();
         workerThread.start();
         
@@ -827,6 +958,8 @@ extends AbstractConnector implements ResponseWaitingConnector {
         protocolLayerService.unregisterListener();
         terminateWorkerThread();
         callResultsSender.destroy();
+        metrics.unregisterGauge(metricsPrefix + ".queue.depth");
+        metrics.unregisterGauge(metricsPrefix + ".results.queue.depth");
         protocolLayerService = null;
         
         logger.info("Destroyed.");
@@ -999,5 +1132,13 @@ extends AbstractConnector implements ResponseWaitingConnector {
     @Override
     public void setBetweenSendPause(long betweenSendPause) {
         this.betweenSendPause = checkBetweenSendPause(betweenSendPause);
+        sendPacer.setInterval(betweenSendPause);
+    }
+    
+    /**
+     * @return prefix of names of metrics of this connector
+     */
+    public String getMetricsPrefix() {
+        return metricsPrefix;
     }
 }
@@ -17,6 +17,9 @@
 package com.microrisc.simply.connector.response_waiting;
 
 import com.microrisc.simply.config.AbstractConfigurator;
+import com.microrisc.simply.connector.AbstractConnector;
+import com.microrisc.simply.connector.RandomCallIdGenerator;
+import com.microrisc.simply.connector.SequenceCallIdGenerator;
 import org.apache.commons.configuration.Configuration;
 
 /**
@@ -56,6 +59,29 @@ extends AbstractConfigurator<ResponseWaitingConnector, Configuration>{
         if (betweenSendPause != -1 ) {
             connector.setBetweenSendPause(betweenSendPause);
         }
+        
+        String callIdGenerator = configuration.getString("connector.callIdGenerator", "");
+        if ( !callIdGenerator.equals("") && (connector instanceof AbstractConnector) ) {
+            switch ( callIdGenerator ) {
+                case "sequence":
+                    ((AbstractConnector)connector).setCallIdGenerator(new SequenceCallIdGenerator());
+                    break;
+                case "random":
+                    ((AbstractConnector)connector).setCallIdGenerator(new RandomCallIdGenerator());
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "Unsupported call ID generator: " + callIdGenerator
+                    );
+            }
+        }
+        
+        int resultsSenderThreadsNum = configuration.getInt(
+                "connector.resultsSender.threadsNum", -1
+        );
+        if ( resultsSenderThreadsNum != -1 && (connector instanceof AbstractConnector) ) {
+            ((AbstractConnector)connector).setResultsSenderThreadsNum(resultsSenderThreadsNum);
+        }
     }
     
 }
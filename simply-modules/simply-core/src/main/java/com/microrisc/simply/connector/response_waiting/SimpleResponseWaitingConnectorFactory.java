@@ -18,10 +18,16 @@ package com.microrisc.simply.connector.response_waiting;
 
 import com.microrisc.simply.ProtocolLayerService;
 import com.microrisc.simply.connector.AbstractConnectorFactory;
+import com.microrisc.simply.metrics.Metrics;
 import org.apache.commons.configuration.Configuration;
 
 /**
  * Simple response waiting connector factory.
+ * <p>
+ * Metrics of created connectors are maintained in the default metrics registry 
+ * under the prefix configured by the {@code connector.metrics.prefix} key. 
+ * If the prefix is not configured, each connector gets its own prefix 
+ * {@code connector.<number of the connector>}.
  * 
  * @author Michal Konopa
  */
@@ -32,7 +38,15 @@ extends AbstractConnectorFactory<ProtocolLayerService, Configuration, ResponseWa
     public ResponseWaitingConnector getConnector(ProtocolLayerService protocolLayerService, 
             Configuration configuration
     ) throws Exception {
-        SimpleResponseWaitingConnector connector = new SimpleResponseWaitingConnector(protocolLayerService);
+        String metricsPrefix = configuration.getString("connector.metrics.prefix", "");
+        SimpleResponseWaitingConnector connector = null;
+        if ( metricsPrefix.equals("") ) {
+            connector = new SimpleResponseWaitingConnector(protocolLayerService);
+        } else {
+            connector = new SimpleResponseWaitingConnector(protocolLayerService, 
+                    Metrics.getDefaultRegistry(), metricsPrefix
+            );
+        }
         new SimpleResponseWaitingConnectorConfigurator().configure(connector, configuration);
         return connector;
     }
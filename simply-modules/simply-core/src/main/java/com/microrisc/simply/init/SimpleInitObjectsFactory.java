@@ -25,7 +25,10 @@ import com.microrisc.simply.network.NetworkLayer;
 import com.microrisc.simply.protocol.ProtocolLayer;
 import com.microrisc.simply.connector.AbstractConnectorFactory;
 import com.microrisc.simply.connector.Connector;
+import com.microrisc.simply.metrics.Metrics;
+import com.microrisc.simply.metrics.MetricsExporter;
 import com.microrisc.simply.network.AbstractNetworkLayerFactory;
+import com.microrisc.simply.network.MeteredNetworkLayer;
 import com.microrisc.simply.network.NetworkConnectionStorage;
 import com.microrisc.simply.network.SimpleNetworkConnectionStorageFactory;
 import com.microrisc.simply.protocol.MessageConvertor;
@@ -33,6 +36,7 @@ import com.microrisc.simply.protocol.mapping.ProtocolMapping;
 import com.microrisc.simply.protocol.mapping.ProtocolMappingFactory;
 import com.microrisc.simply.utilities.XMLConfigurationMappingReader;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.configuration.Configuration;
@@ -83,7 +87,12 @@ extends AbstractInitObjectsFactory<
         Class factoryClass = Class.forName(factoryClassName);
         java.lang.reflect.Constructor constructor = factoryClass.getConstructor();
         AbstractNetworkLayerFactory factory = (AbstractNetworkLayerFactory)constructor.newInstance();
-        return factory.getNetworkLayer(connectionStorage, configuration);
+        NetworkLayer networkLayer = factory.getNetworkLayer(connectionStorage, configuration);
+        
+        if ( configuration.getBoolean("metrics.networkLayer", false) ) {
+            return new MeteredNetworkLayer(networkLayer, Metrics.getDefaultRegistry());
+        }
+        return networkLayer;
     }
     
     /** 
@@ -161,6 +170,29 @@ extends AbstractInitObjectsFactory<
         return factory.getConnector(protocolLayerService, configuration);
     }
     
+    /** 
+     * Creates exporters of metrics. Classes of exporters are specified by 
+     * the {@code metrics.exporters} key as comma separated list.
+     * @param configuration input configuration
+     * @return exporters of metrics
+     * @throws java.lang.Exception if an error has occured during creating of 
+     *         exporters
+     */
+    protected List<MetricsExporter> createMetricsExporters(Configuration configuration) 
+            throws Exception {
+        List<MetricsExporter> exporters = new LinkedList<>();
+        for ( String exporterClassName : configuration.getStringArray("metrics.exporters") ) {
+            if ( exporterClassName.trim().isEmpty() ) {
+                continue;
+            }
+            Class exporterClass = Class.forName(exporterClassName.trim());
+            java.lang.reflect.Constructor constructor = 
+                    exporterClass.getConstructor(Configuration.class);
+            exporters.add((MetricsExporter)constructor.newInstance(configuration));
+        }
+        return exporters;
+    }
+    
     /** 
      * Creates connection stack.
      * @param configuration source configuration
@@ -185,7 +217,11 @@ extends AbstractInitObjectsFactory<
             
             // creating connector
             Connector connector = createConnector(protoLayer, configuration);
-            connectionStack = new SimpleConnectionStack(networkLayer, protoLayer, connector);
+            
+            List<MetricsExporter> metricsExporters = createMetricsExporters(configuration);
+            connectionStack = new SimpleConnectionStack(
+                    networkLayer, protoLayer, connector, metricsExporters
+            );
         } catch ( Exception e ) {
             throw new SimplyException(e);
         }
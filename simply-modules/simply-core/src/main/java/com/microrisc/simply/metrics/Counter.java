@@ -0,0 +1,50 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonically increasing count of events.
+ * 
+ * @author agent
+ */
+public final class Counter {
+    private final AtomicLong count = new AtomicLong(0);
+    
+    /**
+     * Increments the count by one.
+     */
+    public void increment() {
+        count.incrementAndGet();
+    }
+    
+    /**
+     * Adds specified value to the count.
+     * @param value value to add
+     */
+    public void add(long value) {
+        count.addAndGet(value);
+    }
+    
+    /**
+     * @return actual count
+     */
+    public long getCount() {
+        return count.get();
+    }
+}
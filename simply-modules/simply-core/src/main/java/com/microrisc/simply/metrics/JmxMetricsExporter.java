@@ -0,0 +1,135 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.metrics;
+
+import com.microrisc.simply.SimplyException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedList;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes metrics as MXBeans of the platform MBean server.
+ * <p>
+ * Each group of metrics is published as one {@link MetricsGroupMXBean} named
+ * {@code com.microrisc.simply:type=Metrics,group=<group name>}. Published 
+ * groups are configured by the {@code metrics.jmx.groups} key, default groups
+ * are {@code connector}, {@code protocol} and {@code network}.
+ * 
+ * @author agent
+ */
+public final class JmxMetricsExporter implements MetricsExporter {
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(JmxMetricsExporter.class);
+    
+    /** Default published groups. */
+    public static final String[] DEFAULT_GROUPS = { "connector", "protocol", "network" };
+    
+    /** Domain of names of published MXBeans. */
+    public static final String DOMAIN = "com.microrisc.simply";
+    
+    
+    /** Published groups. */
+    private final String[] groups;
+    
+    /** Names of registered MXBeans. */
+    private final List<ObjectName> registeredNames = new LinkedList<>();
+    
+    
+    private static String[] checkGroups(String[] groups) {
+        if ( groups == null ) {
+            throw new IllegalArgumentException("Groups cannot be null");
+        }
+        for ( String group : groups ) {
+            if ( group == null || group.isEmpty() ) {
+                throw new IllegalArgumentException("Group name cannot be null or empty");
+            }
+        }
+        return groups.clone();
+    }
+    
+    
+    /**
+     * Creates new exporter of default groups.
+     */
+    public JmxMetricsExporter() {
+        this(DEFAULT_GROUPS);
+    }
+    
+    /**
+     * Creates new exporter of specified groups.
+     * @param groups names of groups to publish
+     */
+    public JmxMetricsExporter(String[] groups) {
+        this.groups = checkGroups(groups);
+    }
+    
+    /**
+     * Creates new exporter according to specified configuration.
+     * @param configuration source configuration
+     */
+    public JmxMetricsExporter(Configuration configuration) {
+        this(configuration.containsKey("metrics.jmx.groups")? 
+                configuration.getStringArray("metrics.jmx.groups") : DEFAULT_GROUPS
+        );
+    }
+    
+    @Override
+    public void start(MetricsRegistry registry) throws SimplyException {
+        logger.debug("start - start: registry={}", registry);
+        
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for ( String group : groups ) {
+                ObjectName name = new ObjectName(
+                        DOMAIN + ":type=Metrics,group=" + ObjectName.quote(group)
+                );
+                server.registerMBean(new MetricsGroup(registry, group), name);
+                registeredNames.add(name);
+            }
+        } catch ( JMException e ) {
+            destroy();
+            throw new SimplyException("Registration of metrics MXBeans failed", e);
+        }
+        
+        logger.info("Metrics published via JMX");
+        logger.debug("start - end");
+    }
+
+    @Override
+    public void destroy() {
+        logger.debug("destroy - start");
+        
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for ( ObjectName name : registeredNames ) {
+            try {
+                server.unregisterMBean(name);
+            } catch ( JMException e ) {
+                logger.warn("Unregistration of MXBean {} failed: {}", name, e.toString());
+            }
+        }
+        registeredNames.clear();
+        
+        logger.info("Destroyed");
+        logger.debug("destroy - end");
+    }
+}
@@ -0,0 +1,141 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies.
+ * <p>
+ * Latencies are recorded in microseconds into log-linear buckets: each power 
+ * of two is split into 8 buckets of the same width, so the relative error 
+ * of reported percentiles is at most 12.5%. Recording is lock-free and does
+ * not allocate, so it can be used on hot paths.
+ * 
+ * @author agent
+ */
+public final class LatencyHistogram {
+    // number of bits of sub-bucket index
+    private static final int SUB_BUCKET_BITS = 3;
+    
+    // number of sub-buckets of each power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    // number of buckets for all nonnegative long values
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    
+    // multiplier for getting number of microseconds from number of nanoseconds
+    private static final long NANOSEC_IN_MICROSEC = 1000;
+    
+    // multiplier for getting number of miliseconds from number of microseconds
+    private static final double MICROSEC_TO_MILISEC = 1.0 / 1000;
+    
+    
+    /** Counts of buckets. */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    
+    /** Sum of recorded values [in us]. */
+    private final AtomicLong sum = new AtomicLong(0);
+    
+    /** Maximal recorded value [in us]. */
+    private final AtomicLong max = new AtomicLong(0);
+    
+    
+    // returns index of bucket for specified value
+    private static int getBucketIndex(long value) {
+        if ( value < SUB_BUCKETS ) {
+            return (int)value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int)(value >>> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+    
+    // returns the highest value of specified bucket
+    private static long getBucketUpperBound(int index) {
+        if ( index < SUB_BUCKETS ) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long)(SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+    
+    // returns value of specified percentile from bucket counts
+    private static long getPercentile(long[] counts, long totalCount, double percentile, long max) {
+        long rank = (long)Math.ceil(percentile * totalCount);
+        if ( rank < 1 ) {
+            rank = 1;
+        }
+        long cumulativeCount = 0;
+        for ( int index = 0; index < counts.length; index++ ) {
+            cumulativeCount += counts[index];
+            if ( cumulativeCount >= rank ) {
+                return Math.min(getBucketUpperBound(index), max);
+            }
+        }
+        return max;
+    }
+    
+    
+    /**
+     * Records specified latency. Negative latencies are recorded as 0.
+     * @param nanos latency [in ns]
+     */
+    public void record(long nanos) {
+        long value = ( nanos > 0 )? nanos / NANOSEC_IN_MICROSEC : 0;
+        buckets.incrementAndGet(getBucketIndex(value));
+        sum.addAndGet(value);
+        
+        long maxValue = max.get();
+        while ( value > maxValue ) {
+            if ( max.compareAndSet(maxValue, value) ) {
+                break;
+            }
+            maxValue = max.get();
+        }
+    }
+    
+    /**
+     * Returns summary of latencies recorded so far. Latencies recorded 
+     * concurrently with this call may be reflected only partially.
+     * @return summary of recorded latencies
+     */
+    public LatencySnapshot getSnapshot() {
+        long[] counts = new long[BUCKETS];
+        long totalCount = 0;
+        for ( int index = 0; index < BUCKETS; index++ ) {
+            counts[index] = buckets.get(index);
+            totalCount += counts[index];
+        }
+        if ( totalCount == 0 ) {
+            return new LatencySnapshot(0, 0, 0, 0, 0, 0, 0);
+        }
+        
+        long maxValue = max.get();
+        return new LatencySnapshot(
+                totalCount,
+                sum.get() * MICROSEC_TO_MILISEC / totalCount,
+                getPercentile(counts, totalCount, 0.5, maxValue) * MICROSEC_TO_MILISEC,
+                getPercentile(counts, totalCount, 0.9, maxValue) * MICROSEC_TO_MILISEC,
+                getPercentile(counts, totalCount, 0.99, maxValue) * MICROSEC_TO_MILISEC,
+                getPercentile(counts, totalCount, 0.999, maxValue) * MICROSEC_TO_MILISEC,
+                maxValue * MICROSEC_TO_MILISEC
+        );
+    }
+}
@@ -0,0 +1,117 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Summary of recorded latencies at some point of time. All times are 
+ * in miliseconds.
+ * 
+ * @author agent
+ */
+public final class LatencySnapshot {
+    private final long count;
+    private final double mean;
+    private final double p50;
+    private final double p90;
+    private final double p99;
+    private final double p999;
+    private final double max;
+    
+    
+    /**
+     * Creates new snapshot.
+     * @param count number of recorded latencies
+     * @param mean mean
+     * @param p50 50th percentile
+     * @param p90 90th percentile
+     * @param p99 99th percentile
+     * @param p999 99.9th percentile
+     * @param max maximum
+     */
+    @ConstructorProperties({ "count", "mean", "p50", "p90", "p99", "p999", "max" })
+    public LatencySnapshot(
+            long count, double mean, double p50, double p90, double p99, 
+            double p999, double max
+    ) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    /**
+     * @return number of recorded latencies
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return mean [in ms]
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return 50th percentile [in ms]
+     */
+    public double getP50() {
+        return p50;
+    }
+
+    /**
+     * @return 90th percentile [in ms]
+     */
+    public double getP90() {
+        return p90;
+    }
+
+    /**
+     * @return 99th percentile [in ms]
+     */
+    public double getP99() {
+        return p99;
+    }
+
+    /**
+     * @return 99.9th percentile [in ms]
+     */
+    public double getP999() {
+        return p999;
+    }
+
+    /**
+     * @return maximum [in ms]
+     */
+    public double getMax() {
+        return max;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+                "count=%d mean=%.2f p50=%.2f p90=%.2f p99=%.2f p999=%.2f max=%.2f [ms]",
+                count, mean, p50, p90, p99, p999, max
+        );
+    }
+}
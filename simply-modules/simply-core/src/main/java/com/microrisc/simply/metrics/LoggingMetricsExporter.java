@@ -0,0 +1,146 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.metrics;
+
+import java.util.Map;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically writes all metrics into the log.
+ * <p>
+ * Period of logging [in ms] is configured by the {@code metrics.logging.period}
+ * key, default period is 60000 ms.
+ * 
+ * @author agent
+ */
+public final class LoggingMetricsExporter implements MetricsExporter {
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(LoggingMetricsExporter.class);
+    
+    /** Default period of logging [in ms]. */
+    public static final long DEFAULT_PERIOD = 60000;
+    
+    // timeout [in ms] of waiting for the logging thread to finish
+    private static final long LOGGING_THREAD_JOIN_WAIT_TIMEOUT = 2000;
+    
+    
+    /** Period of logging [in ms]. */
+    private final long period;
+    
+    /** Logging thread. */
+    private Thread loggingThread = null;
+    
+    
+    // logs metrics of the registry
+    private class LoggingThread extends Thread {
+        private final MetricsRegistry registry;
+        
+        LoggingThread(MetricsRegistry registry) {
+            super("Simply metrics logging");
+            this.registry = registry;
+        }
+        
+        @Override
+        public void run() {
+            while ( true ) {
+                try {
+                    Thread.sleep(period);
+                } catch ( InterruptedException e ) {
+                    logger.info("Logging thread interrupted");
+                    return;
+                }
+                logMetrics(registry);
+            }
+        }
+    }
+    
+    private static long checkPeriod(long period) {
+        if ( period <= 0 ) {
+            throw new IllegalArgumentException("Period must be > 0");
+        }
+        return period;
+    }
+    
+    private static void logMetrics(MetricsRegistry registry) {
+        for ( Map.Entry<String, Long> entry : registry.getCounters(null).entrySet() ) {
+            logger.info("{} = {}", entry.getKey(), entry.getValue());
+        }
+        for ( Map.Entry<String, Long> entry : registry.getGauges(null).entrySet() ) {
+            logger.info("{} = {}", entry.getKey(), entry.getValue());
+        }
+        for ( Map.Entry<String, LatencySnapshot> entry : registry.getLatencies(null).entrySet() ) {
+            logger.info("{}: {}", entry.getKey(), entry.getValue());
+        }
+    }
+    
+    
+    /**
+     * Creates new exporter with default period.
+     */
+    public LoggingMetricsExporter() {
+        this(DEFAULT_PERIOD);
+    }
+    
+    /**
+     * Creates new exporter with specified period.
+     * @param period period of logging [in ms]
+     */
+    public LoggingMetricsExporter(long period) {
+        this.period = checkPeriod(period);
+    }
+    
+    /**
+     * Creates new exporter according to specified configuration.
+     * @param configuration source configuration
+     */
+    public LoggingMetricsExporter(Configuration configuration) {
+        this(configuration.getLong("metrics.logging.period", DEFAULT_PERIOD));
+    }
+    
+    @Override
+    public void start(MetricsRegistry registry) {
+        logger.debug("start - start: registry={}", registry);
+        
+        loggingThread = new LoggingThread(registry);
+        loggingThread.setDaemon(true);
+        loggingThread.start();
+        
+        logger.info("Started");
+        logger.debug("start - end");
+    }
+
+    @Override
+    public void destroy() {
+        logger.debug("destroy - start");
+        
+        if ( loggingThread != null ) {
+            loggingThread.interrupt();
+            try {
+                loggingThread.join(LOGGING_THREAD_JOIN_WAIT_TIMEOUT);
+            } catch ( InterruptedException e ) {
+                logger.warn("Logging thread joining interrupted");
+                Thread.currentThread().interrupt();
+            }
+            loggingThread = null;
+        }
+        
+        logger.info("Destroyed");
+        logger.debug("destroy - end");
+    }
+}
@@ -0,0 +1,51 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.metrics;
+
+/**
+ * Access to the metrics registry used by Simply components.
+ * <p>
+ * Components look the registry up at their construction, so the registry 
+ * must be set before the Simply is created.
+ * 
+ * @author agent
+ */
+public final class Metrics {
+    
+    private static volatile MetricsRegistry defaultRegistry = new MetricsRegistry();
+    
+    
+    private Metrics() {}
+    
+    /**
+     * @return registry used by Simply components
+     */
+    public static MetricsRegistry getDefaultRegistry() {
+        return defaultRegistry;
+    }
+    
+    /**
+     * Sets registry used by newly created Simply components.
+     * @param registry registry to use
+     */
+    public static void setDefaultRegistry(MetricsRegistry registry) {
+        if ( registry == null ) {
+            throw new IllegalArgumentException("Registry cannot be null");
+        }
+        defaultRegistry = registry;
+    }
+}
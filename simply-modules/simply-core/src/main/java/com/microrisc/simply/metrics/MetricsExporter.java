@@ -0,0 +1,43 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.metrics;
+
+import com.microrisc.simply.SimplyException;
+
+/**
+ * Publishes metrics of a registry to some monitoring system.
+ * <p>
+ * Implementing classes, which are specified in the configuration, must have 
+ * public constructor with one parameter of type 
+ * {@code org.apache.commons.configuration.Configuration}.
+ * 
+ * @author agent
+ */
+public interface MetricsExporter {
+    
+    /**
+     * Starts publishing of metrics of specified registry.
+     * @param registry registry to publish
+     * @throws SimplyException if an error has occurred during starting
+     */
+    void start(MetricsRegistry registry) throws SimplyException;
+    
+    /**
+     * Stops publishing and frees used resources.
+     */
+    void destroy();
+}
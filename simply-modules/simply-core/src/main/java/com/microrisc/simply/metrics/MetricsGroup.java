@@ -0,0 +1,76 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.metrics;
+
+import java.util.Map;
+
+/**
+ * View of metrics of one group of the registry.
+ * 
+ * @author agent
+ */
+public final class MetricsGroup implements MetricsGroupMXBean {
+    /** Registry of metrics. */
+    private final MetricsRegistry registry;
+    
+    /** Prefix of names of metrics of this group. */
+    private final String prefix;
+    
+    
+    private static MetricsRegistry checkRegistry(MetricsRegistry registry) {
+        if ( registry == null ) {
+            throw new IllegalArgumentException("Registry cannot be null");
+        }
+        return registry;
+    }
+    
+    private static String checkGroupName(String groupName) {
+        if ( groupName == null ) {
+            throw new IllegalArgumentException("Group name cannot be null");
+        }
+        if ( groupName.isEmpty() ) {
+            throw new IllegalArgumentException("Group name cannot be empty");
+        }
+        return groupName;
+    }
+    
+    
+    /**
+     * Creates new view of specified group of metrics.
+     * @param registry registry of metrics
+     * @param groupName name of the group
+     */
+    public MetricsGroup(MetricsRegistry registry, String groupName) {
+        this.registry = checkRegistry(registry);
+        this.prefix = checkGroupName(groupName) + ".";
+    }
+    
+    @Override
+    public Map<String, Long> getCounters() {
+        return registry.getCounters(prefix);
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        return registry.getGauges(prefix);
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getLatencies() {
+        return registry.getLatencies(prefix);
+    }
+}
@@ -0,0 +1,42 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of one group of metrics.
+ * 
+ * @author agent
+ */
+public interface MetricsGroupMXBean {
+    
+    /**
+     * @return actual values of counters of the group
+     */
+    Map<String, Long> getCounters();
+    
+    /**
+     * @return actual values of gauges of the group
+     */
+    Map<String, Long> getGauges();
+    
+    /**
+     * @return snapshots of latency histograms of the group
+     */
+    Map<String, LatencySnapshot> getLatencies();
+}
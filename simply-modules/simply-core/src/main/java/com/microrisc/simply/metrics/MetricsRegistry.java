@@ -0,0 +1,187 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Named counters, gauges and latency histograms.
+ * <p>
+ * Names of metrics are dot separated, the first part of the name is the group
+ * of the metric, e.g. {@code connector}, {@code protocol} or {@code network}.
+ * Counters and histograms are created on the first request for them, so
+ * components can simply look them up at their construction and update them
+ * without any further synchronization.
+ * 
+ * @author agent
+ */
+public final class MetricsRegistry {
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    
+    
+    private static String checkName(String name) {
+        if ( name == null ) {
+            throw new IllegalArgumentException("Metric name cannot be null");
+        }
+        if ( name.isEmpty() ) {
+            throw new IllegalArgumentException("Metric name cannot be empty");
+        }
+        return name;
+    }
+    
+    private static Gauge checkGauge(Gauge gauge) {
+        if ( gauge == null ) {
+            throw new IllegalArgumentException("Gauge cannot be null");
+        }
+        return gauge;
+    }
+    
+    private static boolean matches(String name, String prefix) {
+        return ( prefix == null || name.startsWith(prefix) );
+    }
+    
+    
+    /**
+     * Returns counter of specified name. If the counter doesn't exist, it is
+     * created.
+     * @param name name of the counter
+     * @return counter of specified name
+     */
+    public Counter getCounter(String name) {
+        checkName(name);
+        Counter counter = counters.get(name);
+        if ( counter == null ) {
+            Counter newCounter = new Counter();
+            counter = counters.putIfAbsent(name, newCounter);
+            if ( counter == null ) {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+    
+    /**
+     * Returns latency histogram of specified name. If the histogram doesn't 
+     * exist, it is created.
+     * @param name name of the histogram
+     * @return histogram of specified name
+     */
+    public LatencyHistogram getHistogram(String name) {
+        checkName(name);
+        LatencyHistogram histogram = histograms.get(name);
+        if ( histogram == null ) {
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(name, newHistogram);
+            if ( histogram == null ) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+    
+    /**
+     * Registers specified gauge under specified name. Previously registered
+     * gauge of the same name is replaced.
+     * @param name name of the gauge
+     * @param gauge gauge to register
+     */
+    public void registerGauge(String name, Gauge gauge) {
+        gauges.put(checkName(name), checkGauge(gauge));
+    }
+    
+    /**
+     * Unregisters gauge of specified name.
+     * @param name name of the gauge
+     */
+    public void unregisterGauge(String name) {
+        gauges.remove(checkName(name));
+    }
+    
+    /**
+     * Removes all metrics, whose names start with specified prefix.
+     * @param prefix prefix of names of metrics to remove
+     */
+    public void removeMetrics(String prefix) {
+        checkName(prefix);
+        for ( String name : counters.keySet() ) {
+            if ( name.startsWith(prefix) ) {
+                counters.remove(name);
+            }
+        }
+        for ( String name : gauges.keySet() ) {
+            if ( name.startsWith(prefix) ) {
+                gauges.remove(name);
+            }
+        }
+        for ( String name : histograms.keySet() ) {
+            if ( name.startsWith(prefix) ) {
+                histograms.remove(name);
+            }
+        }
+    }
+    
+    /**
+     * Returns actual values of counters, whose names start with specified prefix.
+     * @param prefix prefix of names, {@code null} means all counters
+     * @return map of names of counters to their values, sorted by names
+     */
+    public SortedMap<String, Long> getCounters(String prefix) {
+        SortedMap<String, Long> values = new TreeMap<>();
+        for ( Map.Entry<String, Counter> entry : counters.entrySet() ) {
+            if ( matches(entry.getKey(), prefix) ) {
+                values.put(entry.getKey(), entry.getValue().getCount());
+            }
+        }
+        return values;
+    }
+    
+    /**
+     * Returns actual values of gauges, whose names start with specified prefix.
+     * @param prefix prefix of names, {@code null} means all gauges
+     * @return map of names of gauges to their values, sorted by names
+     */
+    public SortedMap<String, Long> getGauges(String prefix) {
+        SortedMap<String, Long> values = new TreeMap<>();
+        for ( Map.Entry<String, Gauge> entry : gauges.entrySet() ) {
+            if ( matches(entry.getKey(), prefix) ) {
+                values.put(entry.getKey(), entry.getValue().getValue());
+            }
+        }
+        return values;
+    }
+    
+    /**
+     * Returns snapshots of histograms, whose names start with specified prefix.
+     * @param prefix prefix of names, {@code null} means all histograms
+     * @return map of names of histograms to their snapshots, sorted by names
+     */
+    public SortedMap<String, LatencySnapshot> getLatencies(String prefix) {
+        SortedMap<String, LatencySnapshot> values = new TreeMap<>();
+        for ( Map.Entry<String, LatencyHistogram> entry : histograms.entrySet() ) {
+            if ( matches(entry.getKey(), prefix) ) {
+                values.put(entry.getKey(), entry.getValue().getSnapshot());
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,200 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network;
+
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+
+/**
+ * Scheduler of polling of a device, which cannot signal presence of new data.
+ * <p>
+ * Polling period adapts to the traffic. When some data has been received,
+ * the period is set to the minimal period. Each poll without any activity 
+ * doubles the period up to the maximal period, so an idle device is polled 
+ * rarely. 
+ * <p>
+ * When some data is expected, e.g. just after a request has been sent, 
+ * {@link #wakeUp() } cuts waiting for next poll short and the device is then 
+ * polled with the minimal period until some data arrives or the expectation 
+ * timeout passes.
+ * <p>
+ * Method {@link #awaitNextPoll() } is intended to be called by one polling
+ * thread, other methods may be called by any thread.
+ * 
+ * @author agent
+ */
+public final class AdaptivePollingScheduler {
+    /** Default timeout of expectation of data [in ms]. */
+    public static final long DEFAULT_EXPECTATION_TIMEOUT = 1000;
+    
+    // multiplier for getting number of nanoseconds from number of miliseconds
+    private static final long MILISEC_TO_NANOSEC = 1000000;
+    
+    /** Minimal polling period [in ms]. */
+    private final long minPeriod;
+    
+    /** Maximal polling period [in ms]. */
+    private final long maxPeriod;
+    
+    /** Timeout of expectation of data [in ms]. */
+    private final long expectationTimeout;
+    
+    /** Clock to measure time and to wait by. */
+    private final Clock clock;
+    
+    /** Actual polling period [in ms]. */
+    private long period;
+    
+    /** Indicates, that some data is expected. */
+    private boolean dataExpected = false;
+    
+    /** Time of start of expectation of data [in ns]. */
+    private long expectationStart = 0;
+    
+    /** Indicates, that next poll has to be done immediately. */
+    private boolean wakeUpRequested = false;
+    
+    /** Synchronization of access to the period and wake up requests. */
+    private final Object synchroPeriod = new Object();
+    
+    
+    private static long checkMinPeriod(long minPeriod) {
+        if ( minPeriod <= 0 ) {
+            throw new IllegalArgumentException("Minimal period must be > 0");
+        }
+        return minPeriod;
+    }
+    
+    private static long checkMaxPeriod(long maxPeriod, long minPeriod) {
+        if ( maxPeriod < minPeriod ) {
+            throw new IllegalArgumentException(
+                    "Maximal period cannot be less than minimal period"
+            );
+        }
+        return maxPeriod;
+    }
+    
+    private static long checkExpectationTimeout(long expectationTimeout) {
+        if ( expectationTimeout < 0 ) {
+            throw new IllegalArgumentException("Expectation timeout cannot be less than 0");
+        }
+        return expectationTimeout;
+    }
+    
+    private static Clock checkClock(Clock clock) {
+        if ( clock == null ) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        return clock;
+    }
+    
+    
+    /**
+     * Creates new scheduler with default expectation timeout, which uses 
+     * the default clock. Initial polling period is the minimal period.
+     * @param minPeriod minimal polling period [in ms], must be > 0
+     * @param maxPeriod maximal polling period [in ms], cannot be less than 
+     *                  {@code minPeriod}
+     */
+    public AdaptivePollingScheduler(long minPeriod, long maxPeriod) {
+        this(minPeriod, maxPeriod, DEFAULT_EXPECTATION_TIMEOUT, Clocks.getDefaultClock());
+    }
+    
+    /**
+     * Creates new scheduler. Initial polling period is the minimal period.
+     * @param minPeriod minimal polling period [in ms], must be > 0
+     * @param maxPeriod maximal polling period [in ms], cannot be less than 
+     *                  {@code minPeriod}
+     * @param expectationTimeout maximal time [in ms] of polling with 
+     *                  the minimal period after {@link #wakeUp() }
+     * @param clock clock to measure time and to wait by
+     */
+    public AdaptivePollingScheduler(
+            long minPeriod, long maxPeriod, long expectationTimeout, Clock clock
+    ) {
+        this.minPeriod = checkMinPeriod(minPeriod);
+        this.maxPeriod = checkMaxPeriod(maxPeriod, minPeriod);
+        this.expectationTimeout = checkExpectationTimeout(expectationTimeout);
+        this.clock = checkClock(clock);
+        this.period = minPeriod;
+    }
+    
+    /**
+     * Waits for the time of next poll. After the waiting the polling period 
+     * is doubled up to the maximal period, unless some activity is reported
+     * meanwhile or some data is expected.
+     * @throws InterruptedException if the calling thread has been interrupted
+     *         while waiting
+     */
+    public void awaitNextPoll() throws InterruptedException {
+        synchronized ( synchroPeriod ) {
+            long waitStart = clock.nanoTime();
+            long remaining = period;
+            while ( !wakeUpRequested && (remaining > 0) ) {
+                clock.await(synchroPeriod, remaining);
+                remaining = period - (clock.nanoTime() - waitStart) / MILISEC_TO_NANOSEC;
+            }
+            wakeUpRequested = false;
+            
+            if ( dataExpected ) {
+                long expectationTime = clock.nanoTime() - expectationStart;
+                if ( expectationTime < expectationTimeout * MILISEC_TO_NANOSEC ) {
+                    period = minPeriod;
+                    return;
+                }
+                dataExpected = false;
+            }
+            period = Math.min(period * 2, maxPeriod);
+        }
+    }
+    
+    /**
+     * Reports some activity on the device - data has been received. Polling 
+     * period is set to the minimal period and expectation of data ends.
+     */
+    public void activity() {
+        synchronized ( synchroPeriod ) {
+            period = minPeriod;
+            dataExpected = false;
+        }
+    }
+    
+    /**
+     * Requests immediate poll and starts expectation of data - the device is
+     * polled with the minimal period until some activity is reported or 
+     * the expectation timeout passes. If the polling thread is waiting for 
+     * next poll, it is woken up.
+     */
+    public void wakeUp() {
+        synchronized ( synchroPeriod ) {
+            period = minPeriod;
+            dataExpected = true;
+            expectationStart = clock.nanoTime();
+            wakeUpRequested = true;
+            synchroPeriod.notify();
+        }
+    }
+    
+    /**
+     * @return actual polling period [in ms]
+     */
+    public long getPeriod() {
+        synchronized ( synchroPeriod ) {
+            return period;
+        }
+    }
+}
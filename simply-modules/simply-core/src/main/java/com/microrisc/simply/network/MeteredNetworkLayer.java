@@ -0,0 +1,133 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network;
+
+import com.microrisc.simply.NetworkData;
+import com.microrisc.simply.NetworkLayerListener;
+import com.microrisc.simply.SimplyException;
+import com.microrisc.simply.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Network layer, which counts frames and bytes passing through an underlying
+ * network layer.
+ * <p>
+ * Counters are maintained per network under names
+ * {@code network.<network ID>.frames.sent}, 
+ * {@code network.<network ID>.frames.received}, 
+ * {@code network.<network ID>.bytes.sent}, 
+ * {@code network.<network ID>.bytes.received} and 
+ * {@code network.<network ID>.send.errors}.
+ * 
+ * @author agent
+ */
+public final class MeteredNetworkLayer implements NetworkLayer, NetworkLayerListener {
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(MeteredNetworkLayer.class);
+    
+    /** Underlying network layer. */
+    private final NetworkLayer networkLayer;
+    
+    /** Registry of metrics. */
+    private final MetricsRegistry registry;
+    
+    /** Registered listener. */
+    private volatile NetworkLayerListener listener = null;
+    
+    
+    private static NetworkLayer checkNetworkLayer(NetworkLayer networkLayer) {
+        if ( networkLayer == null ) {
+            throw new IllegalArgumentException("Network layer cannot be null");
+        }
+        return networkLayer;
+    }
+    
+    private static MetricsRegistry checkRegistry(MetricsRegistry registry) {
+        if ( registry == null ) {
+            throw new IllegalArgumentException("Registry cannot be null");
+        }
+        return registry;
+    }
+    
+    
+    /**
+     * Creates new metered network layer.
+     * @param networkLayer underlying network layer
+     * @param registry registry to maintain counters in
+     */
+    public MeteredNetworkLayer(NetworkLayer networkLayer, MetricsRegistry registry) {
+        this.networkLayer = checkNetworkLayer(networkLayer);
+        this.registry = checkRegistry(registry);
+    }
+    
+    /**
+     * @return underlying network layer
+     */
+    public NetworkLayer getNetworkLayer() {
+        return networkLayer;
+    }
+    
+    @Override
+    public void registerListener(NetworkLayerListener listener) {
+        this.listener = listener;
+        networkLayer.registerListener(this);
+        logger.info("Listener registered");
+    }
+
+    @Override
+    public void unregisterListener() {
+        networkLayer.unregisterListener();
+        this.listener = null;
+        logger.info("Listener unregistered");
+    }
+
+    @Override
+    public void sendData(NetworkData data) throws NetworkLayerException {
+        String prefix = "network." + data.getNetworkId();
+        try {
+            networkLayer.sendData(data);
+        } catch ( NetworkLayerException e ) {
+            registry.getCounter(prefix + ".send.errors").increment();
+            throw e;
+        }
+        registry.getCounter(prefix + ".frames.sent").increment();
+        registry.getCounter(prefix + ".bytes.sent").add(PacketNetworkData.getDataLength(data));
+    }
+    
+    @Override
+    public void onGetData(NetworkData data) {
+        String prefix = "network." + data.getNetworkId();
+        registry.getCounter(prefix + ".frames.received").increment();
+        registry.getCounter(prefix + ".bytes.received").add(PacketNetworkData.getDataLength(data));
+        
+        NetworkLayerListener actualListener = listener;
+        if ( actualListener != null ) {
+            actualListener.onGetData(data);
+        }
+    }
+
+    @Override
+    public void start() throws SimplyException {
+        networkLayer.start();
+    }
+
+    @Override
+    public void destroy() {
+        networkLayer.destroy();
+    }
+}
@@ -0,0 +1,110 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network;
+
+import com.microrisc.simply.BytePacket;
+import com.microrisc.simply.NetworkData;
+
+/**
+ * Network data backed by byte packet.
+ * <p>
+ * Data in the {@code short[]} form are created on the first call of 
+ * {@link #getData() } only, so layers, which work with bytes, do not pay for
+ * conversions.
+ * 
+ * @author agent
+ */
+public final class PacketNetworkData extends BaseNetworkData {
+    /** Packet. */
+    private final BytePacket packet;
+    
+    /** Data in the {@code short[]} form, created on demand. */
+    private volatile short[] shortData = null;
+    
+    
+    private static BytePacket checkPacket(BytePacket packet) {
+        if ( packet == null ) {
+            throw new IllegalArgumentException("Packet cannot be null");
+        }
+        return packet;
+    }
+    
+    
+    /**
+     * Returns packet of specified network data. If the data are not backed by
+     * packet, the packet is created from them.
+     * @param networkData network data
+     * @return packet of {@code networkData}
+     */
+    public static BytePacket toPacket(NetworkData networkData) {
+        if ( networkData instanceof PacketNetworkData ) {
+            return ((PacketNetworkData)networkData).getPacket();
+        }
+        return BytePacket.fromShorts(networkData.getData());
+    }
+    
+    /**
+     * Returns length of specified network data without converting them.
+     * @param networkData network data
+     * @return length of {@code networkData}
+     */
+    public static int getDataLength(NetworkData networkData) {
+        if ( networkData instanceof PacketNetworkData ) {
+            return ((PacketNetworkData)networkData).getPacket().length();
+        }
+        return networkData.getData().length;
+    }
+    
+    
+    /**
+     * Creates new network data object.
+     * @param packet packet to send
+     * @param networkId ID of destination network
+     */
+    public PacketNetworkData(BytePacket packet, String networkId) {
+        super(null, networkId);
+        this.packet = checkPacket(packet);
+    }
+    
+    /**
+     * @return packet
+     */
+    public BytePacket getPacket() {
+        return packet;
+    }
+    
+    /**
+     * @return effective data in the {@code short[]} form
+     */
+    @Override
+    public short[] getData() {
+        short[] data = shortData;
+        if ( data == null ) {
+            data = packet.toShortArray();
+            shortData = data;
+        }
+        return data;
+    }
+    
+    @Override
+    public String toString() {
+        return ("{ " +
+                "data=" + packet +
+                ", network ID=" + networkId + 
+                " }");
+    }
+}
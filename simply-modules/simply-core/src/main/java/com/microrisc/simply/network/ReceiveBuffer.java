@@ -0,0 +1,94 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network;
+
+/**
+ * Buffer for one frame received by network layer.
+ * <p>
+ * Receive buffers are taken from {@link ReceiveBufferPool}, filled by reader 
+ * thread of network layer, handed off to listener caller thread and returned 
+ * back into the pool after the frame has been processed.
+ * 
+ * @author agent
+ */
+public final class ReceiveBuffer {
+    /** Bytes of the buffer. */
+    private final byte[] bytes;
+    
+    /** Length of received frame. */
+    private int length = 0;
+    
+    /** Source of received frame. */
+    private Object source = null;
+    
+    
+    /**
+     * Creates new receive buffer of specified size.
+     * @param size size of the buffer [in bytes]
+     */
+    ReceiveBuffer(int size) {
+        this.bytes = new byte[size];
+    }
+    
+    /**
+     * @return bytes of the buffer
+     */
+    public byte[] array() {
+        return bytes;
+    }
+    
+    /**
+     * @return length of received frame
+     */
+    public int getLength() {
+        return length;
+    }
+    
+    /**
+     * Sets length of received frame.
+     * @param length length of received frame
+     */
+    public void setLength(int length) {
+        if ( (length < 0) || (length > bytes.length) ) {
+            throw new IllegalArgumentException(
+                    "Length must be in range [0, " + bytes.length + "]"
+            );
+        }
+        this.length = length;
+    }
+    
+    /**
+     * @return source of received frame, {@code null} if not set
+     */
+    public Object getSource() {
+        return source;
+    }
+    
+    /**
+     * Sets source of received frame, for example connection info of sender.
+     * @param source source of received frame
+     */
+    public void setSource(Object source) {
+        this.source = source;
+    }
+    
+    // prepares the buffer for next use
+    void reset() {
+        length = 0;
+        source = null;
+    }
+}
@@ -0,0 +1,103 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of receive buffers of the same size.
+ * <p>
+ * If there is no free buffer in the pool, new buffer is created. At most
+ * capacity of the pool buffers is kept for reuse, other returned buffers are 
+ * left for garbage collection. Pool is thread safe and neither acquiring nor
+ * releasing of buffers allocates any objects, if a free buffer is available.
+ * 
+ * @author agent
+ */
+public final class ReceiveBufferPool {
+    /** Size of buffers [in bytes]. */
+    private final int bufferSize;
+    
+    /** Free buffers. */
+    private final BlockingQueue<ReceiveBuffer> freeBuffers;
+    
+    
+    private static int checkBufferSize(int bufferSize) {
+        if ( bufferSize <= 0 ) {
+            throw new IllegalArgumentException("Buffer size must be > 0");
+        }
+        return bufferSize;
+    }
+    
+    private static int checkCapacity(int capacity) {
+        if ( capacity <= 0 ) {
+            throw new IllegalArgumentException("Capacity must be > 0");
+        }
+        return capacity;
+    }
+    
+    
+    /**
+     * Creates new pool.
+     * @param bufferSize size of buffers [in bytes]
+     * @param capacity maximal number of free buffers kept in the pool
+     */
+    public ReceiveBufferPool(int bufferSize, int capacity) {
+        this.bufferSize = checkBufferSize(bufferSize);
+        this.freeBuffers = new ArrayBlockingQueue<>(checkCapacity(capacity));
+    }
+    
+    /**
+     * Returns free buffer. 
+     * @return free buffer
+     */
+    public ReceiveBuffer acquire() {
+        ReceiveBuffer buffer = freeBuffers.poll();
+        if ( buffer == null ) {
+            buffer = new ReceiveBuffer(bufferSize);
+        }
+        return buffer;
+    }
+    
+    /**
+     * Returns specified buffer back into the pool. The buffer must not be 
+     * used after it has been released.
+     * @param buffer buffer to release
+     */
+    public void release(ReceiveBuffer buffer) {
+        if ( buffer.array().length != bufferSize ) {
+            throw new IllegalArgumentException("Buffer does not belong to this pool");
+        }
+        buffer.reset();
+        freeBuffers.offer(buffer);
+    }
+    
+    /**
+     * @return size of buffers [in bytes]
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+    
+    /**
+     * @return actual number of free buffers in the pool
+     */
+    public int getFreeBuffersCount() {
+        return freeBuffers.size();
+    }
+}
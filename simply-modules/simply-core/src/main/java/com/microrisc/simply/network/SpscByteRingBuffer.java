@@ -0,0 +1,133 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network;
+
+/**
+ * Bounded lock-free queue of bytes for hand-off of data from exactly one 
+ * producer thread to exactly one consumer thread.
+ * <p>
+ * Bytes are stored in preallocated ring, so offering and polling do not 
+ * allocate any objects. Method {@link #offer(byte[], int, int) } may only be 
+ * called by the producer thread, methods {@link #poll() } and {@link #clear() } 
+ * only by the consumer thread. Methods {@link #isEmpty() } and {@link #size() } 
+ * may be called by any thread.
+ * <p>
+ * The queue does not block. Threads, which need to wait for data, must
+ * use their own signalling after successful offer.
+ * 
+ * @author agent
+ */
+public final class SpscByteRingBuffer {
+    /** Ring of bytes. */
+    private final byte[] ring;
+    
+    /** Sequence numbers of head and tail of the ring. */
+    private final SpscRingIndex index;
+    
+    
+    private static void checkRange(byte[] data, int offset, int length) {
+        if ( data == null ) {
+            throw new IllegalArgumentException("Data cannot be null");
+        }
+        if ( (offset < 0) || (length < 0) || (offset + length > data.length) ) {
+            throw new IllegalArgumentException("Range out of data bounds");
+        }
+    }
+    
+    
+    /**
+     * Creates new ring buffer. 
+     * @param capacity minimal capacity of the buffer [in bytes], it is rounded 
+     *                 up to the nearest power of 2
+     */
+    public SpscByteRingBuffer(int capacity) {
+        this.index = new SpscRingIndex(capacity);
+        this.ring = new byte[index.capacity()];
+    }
+    
+    /**
+     * Inserts bytes of specified range of specified array at the tail of 
+     * the queue. If there is not enough free space, only the leading part of 
+     * the range, which fits in, is inserted. Must be called by the producer 
+     * thread only.
+     * @param data source array
+     * @param offset start of the range in {@code data}
+     * @param length length of the range
+     * @return number of inserted bytes
+     */
+    public int offer(byte[] data, int offset, int length) {
+        checkRange(data, offset, length);
+        
+        int toInsert = Math.min(index.free(length), length);
+        int ringIndex = index.indexOf(index.tail());
+        int firstPart = Math.min(toInsert, ring.length - ringIndex);
+        System.arraycopy(data, offset, ring, ringIndex, firstPart);
+        System.arraycopy(data, offset + firstPart, ring, 0, toInsert - firstPart);
+        
+        // publishes the bytes to the consumer
+        index.publish(toInsert);
+        return toInsert;
+    }
+    
+    /**
+     * Removes and returns byte at the head of the queue. Must be called by 
+     * the consumer thread only.
+     * @return byte at the head of the queue as unsigned value <br>
+     *         {@code -1}, if the queue is empty
+     */
+    public int poll() {
+        if ( index.available() == 0 ) {
+            return -1;
+        }
+        
+        int value = ring[index.indexOf(index.head())] & 0xFF;
+        
+        // frees the byte for the producer
+        index.release(1);
+        return value;
+    }
+    
+    /**
+     * Removes all bytes from the queue. Must be called by the consumer thread
+     * only.
+     */
+    public void clear() {
+        index.releaseAll();
+    }
+    
+    /**
+     * @return {@code true} if the queue is empty <br>
+     *         {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+    
+    /**
+     * @return actual number of bytes in the queue
+     */
+    public int size() {
+        return index.size();
+    }
+    
+    /**
+     * @return capacity of the queue [in bytes]
+     */
+    public int capacity() {
+        return ring.length;
+    }
+}
@@ -0,0 +1,126 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network;
+
+/**
+ * Bounded lock-free queue for hand-off of items from exactly one producer 
+ * thread to exactly one consumer thread.
+ * <p>
+ * Items are stored in preallocated ring of slots, so offering and polling
+ * do not allocate any objects. Method {@link #offer(java.lang.Object) } may
+ * only be called by the producer thread, methods {@link #poll() } and 
+ * {@link #clear() } only by the consumer thread. Methods {@link #isEmpty() }
+ * and {@link #size() } may be called by any thread.
+ * <p>
+ * The queue does not block. Threads, which need to wait for items, must
+ * use their own signalling after successful offer.
+ * 
+ * @author agent
+ * @param <E> type of items
+ */
+public final class SpscRingBuffer<E> {
+    /** Slots of the ring. */
+    private final Object[] slots;
+    
+    /** Sequence numbers of head and tail of the ring. */
+    private final SpscRingIndex index;
+    
+    
+    /**
+     * Creates new ring buffer. 
+     * @param capacity minimal capacity of the buffer, it is rounded up to 
+     *                 the nearest power of 2
+     */
+    public SpscRingBuffer(int capacity) {
+        this.index = new SpscRingIndex(capacity);
+        this.slots = new Object[index.capacity()];
+    }
+    
+    /**
+     * Inserts specified item at the tail of the queue. Must be called by 
+     * the producer thread only.
+     * @param item item to insert
+     * @return {@code true} if the item has been inserted <br>
+     *         {@code false} if the queue is full
+     */
+    public boolean offer(E item) {
+        if ( item == null ) {
+            throw new IllegalArgumentException("Item cannot be null");
+        }
+        
+        if ( index.free(1) == 0 ) {
+            return false;
+        }
+        
+        slots[index.indexOf(index.tail())] = item;
+        
+        // publishes the item to the consumer
+        index.publish(1);
+        return true;
+    }
+    
+    /**
+     * Removes and returns item at the head of the queue. Must be called by 
+     * the consumer thread only.
+     * @return item at the head of the queue <br>
+     *         {@code null}, if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        if ( index.available() == 0 ) {
+            return null;
+        }
+        
+        int slotIndex = index.indexOf(index.head());
+        E item = (E)slots[slotIndex];
+        slots[slotIndex] = null;
+        
+        // frees the slot for the producer
+        index.release(1);
+        return item;
+    }
+    
+    /**
+     * Removes all items from the queue. Must be called by the consumer thread
+     * only.
+     */
+    public void clear() {
+        while ( poll() != null ) {}
+    }
+    
+    /**
+     * @return {@code true} if the queue is empty <br>
+     *         {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+    
+    /**
+     * @return actual number of items in the queue
+     */
+    public int size() {
+        return index.size();
+    }
+    
+    /**
+     * @return capacity of the queue
+     */
+    public int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,177 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sequence numbers of head and tail of a ring shared by exactly one producer
+ * thread and exactly one consumer thread. Used by ring buffers, which hold 
+ * storage of the ring.
+ * <p>
+ * Methods {@link #tail() }, {@link #free(int) } and {@link #publish(int) } may 
+ * only be called by the producer thread, methods {@link #head() }, 
+ * {@link #available() }, {@link #release(int) } and {@link #releaseAll() } only 
+ * by the consumer thread. 
+ * 
+ * @author agent
+ */
+final class SpscRingIndex {
+    /** Capacity of the ring, power of 2. */
+    private final int capacity;
+    
+    /** Mask for getting index in the ring from sequence number. */
+    private final int mask;
+    
+    /** Sequence number of next item to poll. Written by the consumer only. */
+    private final AtomicLong head = new AtomicLong(0);
+    
+    /** Sequence number of next item to offer. Written by the producer only. */
+    private final AtomicLong tail = new AtomicLong(0);
+    
+    // last known head - accessed by the producer only
+    private long cachedHead = 0;
+    
+    // last known tail - accessed by the consumer only
+    private long cachedTail = 0;
+    
+    
+    private static int checkCapacity(int capacity) {
+        if ( capacity <= 0 ) {
+            throw new IllegalArgumentException("Capacity must be > 0");
+        }
+        if ( capacity > (1 << 30) ) {
+            throw new IllegalArgumentException("Capacity cannot be greater than " + (1 << 30));
+        }
+        return capacity;
+    }
+    
+    // returns the least power of 2 greater than or equal to specified value
+    private static int toPowerOfTwo(int value) {
+        int highestBit = Integer.highestOneBit(value);
+        return ( highestBit == value )? value : highestBit << 1;
+    }
+    
+    
+    /**
+     * Creates new index of a ring.
+     * @param capacity minimal capacity of the ring, it is rounded up to 
+     *                 the nearest power of 2
+     */
+    SpscRingIndex(int capacity) {
+        this.capacity = toPowerOfTwo(checkCapacity(capacity));
+        this.mask = this.capacity - 1;
+    }
+    
+    /**
+     * @return capacity of the ring
+     */
+    int capacity() {
+        return capacity;
+    }
+    
+    /**
+     * @param sequence sequence number
+     * @return index in the ring of item with {@code sequence} number
+     */
+    int indexOf(long sequence) {
+        return (int)sequence & mask;
+    }
+    
+    /**
+     * @return sequence number of next item to offer
+     */
+    long tail() {
+        return tail.get();
+    }
+    
+    /**
+     * Returns number of free slots. Head written by the consumer is read 
+     * only, if the last known number of free slots is less than required.
+     * @param required number of required free slots
+     * @return number of free slots
+     */
+    int free(int required) {
+        long actualTail = tail.get();
+        int free = capacity - (int)(actualTail - cachedHead);
+        if ( free < required ) {
+            cachedHead = head.get();
+            free = capacity - (int)(actualTail - cachedHead);
+        }
+        return free;
+    }
+    
+    /**
+     * Publishes specified number of items written at the tail to the consumer.
+     * @param count number of items
+     */
+    void publish(int count) {
+        tail.lazySet(tail.get() + count);
+    }
+    
+    /**
+     * @return sequence number of next item to poll
+     */
+    long head() {
+        return head.get();
+    }
+    
+    /**
+     * Returns number of items available to the consumer. Tail written by 
+     * the producer is read only, if no item is known to be available.
+     * @return number of available items
+     */
+    int available() {
+        long actualHead = head.get();
+        if ( actualHead >= cachedTail ) {
+            cachedTail = tail.get();
+        }
+        return (int)(cachedTail - actualHead);
+    }
+    
+    /**
+     * Frees specified number of items at the head for the producer.
+     * @param count number of items
+     */
+    void release(int count) {
+        head.lazySet(head.get() + count);
+    }
+    
+    /**
+     * Frees all published items for the producer.
+     */
+    void releaseAll() {
+        cachedTail = tail.get();
+        head.lazySet(cachedTail);
+    }
+    
+    /**
+     * @return {@code true} if there is no item in the ring <br>
+     *         {@code false} otherwise
+     */
+    boolean isEmpty() {
+        return ( head.get() >= tail.get() );
+    }
+    
+    /**
+     * @return actual number of items in the ring
+     */
+    int size() {
+        long actualHead = head.get();
+        return (int)(tail.get() - actualHead);
+    }
+}
@@ -16,6 +16,9 @@
 
 package com.microrisc.simply.protocol;
 
+import com.microrisc.simply.BytePacket;
+import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.SimplyException;
 import com.microrisc.simply.protocol.mapping.ProtocolMapping;
 
 /**
@@ -35,4 +38,14 @@ public abstract class AbstractMessageConvertor implements MessageConvertor {
     protected AbstractMessageConvertor(ProtocolMapping protocolMapping) {
         this.protocolMapping = protocolMapping;
     }
+    
+    /**
+     * Default implementation creates the packet from the message returned by
+     * {@link #convertToProtoFormat(com.microrisc.simply.CallRequest) }.
+     * Subclasses should override it to create the packet directly.
+     */
+    @Override
+    public BytePacket convertToProtoPacket(CallRequest callRequest) throws SimplyException {
+        return BytePacket.fromShorts(convertToProtoFormat(callRequest));
+    }
 }
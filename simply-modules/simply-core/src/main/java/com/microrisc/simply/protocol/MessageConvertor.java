@@ -17,6 +17,7 @@
 package com.microrisc.simply.protocol;
 
 import com.microrisc.simply.AbstractMessage;
+import com.microrisc.simply.BytePacket;
 import com.microrisc.simply.CallRequest;
 import com.microrisc.simply.SimplyException;
 import com.microrisc.simply.NetworkData;
@@ -36,6 +37,16 @@ public interface MessageConvertor {
      */
     short[] convertToProtoFormat(CallRequest callRequest) throws SimplyException;
     
+    /**
+     * Converts specified call request to packet of used application protocol
+     * and returns it. Returned packet has the same content as the message 
+     * returned by {@link #convertToProtoFormat(com.microrisc.simply.CallRequest) }.
+     * @param callRequest call request to convert
+     * @return request converted to packet of used protocol
+     * @throws SimplyException if an error has occured during conversion
+     */
+    BytePacket convertToProtoPacket(CallRequest callRequest) throws SimplyException;
+    
     /**
      * Converts specified message of used protocol to Device Object format and
      * returns it.
@@ -18,19 +18,18 @@ package com.microrisc.simply.protocol;
 
 import com.microrisc.simply.AbstractMessage;
 import com.microrisc.simply.BaseCallResponse;
+import com.microrisc.simply.BytePacket;
 import com.microrisc.simply.CallRequest;
 import com.microrisc.simply.SimplyException;
 import com.microrisc.simply.NetworkData;
 import com.microrisc.simply.SimpleMessageSource;
 import com.microrisc.simply.SimpleMethodMessageSource;
 import com.microrisc.simply.protocol.mapping.CallRequestToPacketMapping;
-import com.microrisc.simply.protocol.mapping.PacketFragment;
 import com.microrisc.simply.protocol.mapping.PacketToCallResponseMapping;
 import com.microrisc.simply.protocol.mapping.ProtocolMapping;
+import com.microrisc.simply.protocol.mapping.RequestPacketTemplate;
 import com.microrisc.simply.typeconvertors.ValueConversionException;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,33 +56,32 @@ public class SimpleMessageConvertor extends AbstractMessageConvertor {
         logger.debug("convertToProtoFormat - start: callRequest={}", callRequest);
         
         CallRequestToPacketMapping reqToPacketMapping = protocolMapping.
-                getCallRequestToPacketMapping();  
-        List<PacketFragment> serProtoData = reqToPacketMapping.getSerializedProtocolData();
-        List<PacketFragment> serNetworkData = reqToPacketMapping.
-                getSerializedNetworkData(callRequest.getNetworkId()
+                getCallRequestToPacketMapping();
+        RequestPacketTemplate template = reqToPacketMapping.getRequestPacketTemplate(
+                callRequest.getDeviceInterface(), callRequest.getMethodId()
         );
-        List<PacketFragment> serNodeData = reqToPacketMapping.getSerializedNodeData(
-                callRequest.getNodeId()
+        short[] requestPacket = template.createPacket(
+                callRequest.getNetworkId(), callRequest.getNodeId(), callRequest.getArgs()
         );
-        List<PacketFragment> serIfaceData = reqToPacketMapping.getSerializedInterfaceData(
-                callRequest.getDeviceInterface()
-        );
-        List<PacketFragment> serMethodData = reqToPacketMapping.getSerializedMethodData(
-                callRequest.getDeviceInterface(), callRequest.getMethodId());
-        List<PacketFragment> serMethodArgs = reqToPacketMapping.getSerializedMethodArgs(
-                callRequest.getDeviceInterface(), callRequest.getMethodId(), callRequest.getArgs());
         
-        List<PacketFragment> allFragments = new LinkedList<PacketFragment>();
-        allFragments.addAll(serProtoData);
-        allFragments.addAll(serNetworkData);
-        allFragments.addAll(serNodeData);
-        allFragments.addAll(serIfaceData);
-        allFragments.addAll(serMethodData);
-        allFragments.addAll(serMethodArgs);
+        logger.debug("convertToProtoFormat - end: {}", requestPacket);
+        return requestPacket;
+    }
+    
+    @Override
+    public BytePacket convertToProtoPacket(CallRequest callRequest) throws SimplyException {
+        logger.debug("convertToProtoPacket - start: callRequest={}", callRequest);
         
-        short[] requestPacket = RequestPacketCreator.createRequestPacket(allFragments);
+        CallRequestToPacketMapping reqToPacketMapping = protocolMapping.
+                getCallRequestToPacketMapping();
+        RequestPacketTemplate template = reqToPacketMapping.getRequestPacketTemplate(
+                callRequest.getDeviceInterface(), callRequest.getMethodId()
+        );
+        BytePacket requestPacket = template.createBytePacket(
+                callRequest.getNetworkId(), callRequest.getNodeId(), callRequest.getArgs()
+        );
         
-        logger.debug("convertToProtoFormat - end: {}", requestPacket);
+        logger.debug("convertToProtoPacket - end: {}", requestPacket);
         return requestPacket;
     }
 
@@ -18,6 +18,7 @@ package com.microrisc.simply.protocol;
 
 import com.microrisc.simply.AbstractMessage;
 import com.microrisc.simply.BaseCallResponse;
+import com.microrisc.simply.BytePacket;
 import com.microrisc.simply.CallRequest;
 import com.microrisc.simply.SimplyException;
 import com.microrisc.simply.NetworkData;
@@ -25,7 +26,9 @@ import com.microrisc.simply.NetworkLayerService;
 import com.microrisc.simply.SimpleMessageSource;
 import com.microrisc.simply.SimpleMethodMessageSource;
 import com.microrisc.simply.errors.CallRequestProcessingError;
-import com.microrisc.simply.network.BaseNetworkData;
+import com.microrisc.simply.network.PacketNetworkData;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -58,6 +61,9 @@ public final class SimpleProtocolLayer extends AbstractProtocolLayer {
     }
     
     
+    /** Clock to measure time by. */
+    private final Clock clock = Clocks.getDefaultClock();
+    
     /** List of all requests, which was sent to network layer. */
     private List<TimeRequest> sentRequests = new LinkedList<TimeRequest>();
     
@@ -84,7 +90,7 @@ public final class SimpleProtocolLayer extends AbstractProtocolLayer {
         Iterator<TimeRequest> requestIt = sentRequests.iterator();
         while ( requestIt.hasNext() ) {
             TimeRequest sentRequest = requestIt.next();
-            long requestDuration = System.currentTimeMillis() - sentRequest.sentTime;
+            long requestDuration = clock.currentTimeMillis() - sentRequest.sentTime;
             
             if ( requestDuration > maxRequestDuration ) {
                 logger.debug("removed request ( time exceed ): {}", sentRequest);
@@ -229,15 +235,15 @@ public final class SimpleProtocolLayer extends AbstractProtocolLayer {
         logger.debug("sendRequest - start: request={}", request);
         
         // conversion to format used by application protocol
-        short[] protoMsg = msgConvertor.convertToProtoFormat(request);
+        BytePacket protoMsg = msgConvertor.convertToProtoPacket(request);
         
         // must be performed altogether
         // if response comes before sentRequest.add(), error encounters
         synchronized ( synchroSentRequest ) {
             // maintenance of already sent requests
             maintainSentRequest(request);
-            networkLayerService.sendData( new BaseNetworkData(protoMsg, request.getNetworkId()) );
-            sentRequests.add( new TimeRequest(request, System.currentTimeMillis()) );
+            networkLayerService.sendData( new PacketNetworkData(protoMsg, request.getNetworkId()) );
+            sentRequests.add( new TimeRequest(request, clock.currentTimeMillis()) );
         }
         
         logger.debug("sendRequest - end");
@@ -87,4 +87,13 @@ public interface CallRequestToPacketMapping {
      */
     List<PacketFragment> getSerializedProtocolData();
     
+    /**
+     * Returns precompiled template of packets of call requests of specified method.
+     * @param devInterface Device Interface, which the method belongs to
+     * @param methodId method ID
+     * @return template of packets of call requests of specified method
+     * @throws ProtocolMappingException if an error has occurred
+     */
+    RequestPacketTemplate getRequestPacketTemplate(Class devInterface, String methodId) 
+            throws ProtocolMappingException;
 }
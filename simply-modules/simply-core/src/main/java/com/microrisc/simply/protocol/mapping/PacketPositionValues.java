@@ -17,6 +17,7 @@
 package com.microrisc.simply.protocol.mapping;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -115,6 +116,13 @@ public final class PacketPositionValues {
         return values.contains(value);
     }
     
+    /**
+     * @return unmodifiable set of values, which can be at the position
+     */
+    public Set<Short> getValues() {
+        return Collections.unmodifiableSet(values);
+    }
+    
     @Override
     public String toString() {
         return ("{ " +
@@ -0,0 +1,147 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.protocol.mapping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of packet patterns by value of one key position in the packet.
+ * <p>
+ * Key position is the position, which is constrained by the most of the
+ * indexed patterns. Each pattern, which constrains the key position, is
+ * registered under each value allowed at that position. Patterns, which do
+ * not constrain the key position, are returned as candidates for any packet.
+ * Returned candidates only fulfil the key position - the rest of their
+ * patterns must still be checked by the caller.
+ * 
+ * @author agent
+ * @param <T> type of indexed items
+ */
+final class PacketValuesIndex<T> {
+    /** Key position, -1 if there is no position to index by. */
+    private final int keyPosition;
+    
+    /** Items, whose patterns do not constrain the key position. */
+    private final List<T> unindexedItems;
+    
+    /** Candidates for each value at the key position. */
+    private final Map<Short, List<T>> candidates;
+    
+    
+    // returns position constrained by the most of the patterns
+    private static int findKeyPosition(Iterable<List<PacketPositionValues>> patterns) {
+        Map<Integer, Integer> positionCounts = new HashMap<>();
+        for ( List<PacketPositionValues> pattern : patterns ) {
+            for ( PacketPositionValues posValues : pattern ) {
+                Integer count = positionCounts.get(posValues.getPosition());
+                positionCounts.put(
+                        posValues.getPosition(), (count == null)? 1 : count + 1
+                );
+            }
+        }
+        
+        int keyPosition = -1;
+        int maxCount = 0;
+        for ( Map.Entry<Integer, Integer> entry : positionCounts.entrySet() ) {
+            int position = entry.getKey();
+            int count = entry.getValue();
+            if ( (count > maxCount) || ((count == maxCount) && (position < keyPosition)) ) {
+                maxCount = count;
+                keyPosition = position;
+            }
+        }
+        return keyPosition;
+    }
+    
+    // returns values of the pattern at specified position, or null
+    private static PacketPositionValues getPositionValues(
+            List<PacketPositionValues> pattern, int position
+    ) {
+        for ( PacketPositionValues posValues : pattern ) {
+            if ( posValues.getPosition() == position ) {
+                return posValues;
+            }
+        }
+        return null;
+    }
+    
+    
+    /**
+     * Creates new index of specified items.
+     * @param patterns items to index together with their packet patterns
+     */
+    PacketValuesIndex(Map<T, List<PacketPositionValues>> patterns) {
+        this.keyPosition = findKeyPosition(patterns.values());
+        Map<Short, List<T>> indexedItems = new HashMap<>();
+        List<T> unindexed = new LinkedList<>();
+        
+        for ( Map.Entry<T, List<PacketPositionValues>> entry : patterns.entrySet() ) {
+            PacketPositionValues keyValues = getPositionValues(entry.getValue(), keyPosition);
+            if ( keyValues == null ) {
+                unindexed.add(entry.getKey());
+                continue;
+            }
+            
+            for ( Short value : keyValues.getValues() ) {
+                List<T> items = indexedItems.get(value);
+                if ( items == null ) {
+                    items = new LinkedList<>();
+                    indexedItems.put(value, items);
+                }
+                items.add(entry.getKey());
+            }
+        }
+        
+        // unindexed items are candidates for each value too
+        this.candidates = new HashMap<>();
+        for ( Map.Entry<Short, List<T>> entry : indexedItems.entrySet() ) {
+            List<T> valueCandidates = new ArrayList<>(entry.getValue());
+            valueCandidates.addAll(unindexed);
+            candidates.put(entry.getKey(), Collections.unmodifiableList(valueCandidates));
+        }
+        this.unindexedItems = Collections.unmodifiableList(new ArrayList<T>(unindexed));
+    }
+    
+    /**
+     * Returns items, which can match specified packet.
+     * @param packet packet
+     * @return items, which can match specified packet
+     */
+    List<T> getCandidates(short[] packet) {
+        if ( (keyPosition < 0) || (keyPosition >= packet.length) ) {
+            return unindexedItems;
+        }
+        
+        List<T> valueCandidates = candidates.get(packet[keyPosition]);
+        if ( valueCandidates == null ) {
+            return unindexedItems;
+        }
+        return valueCandidates;
+    }
+    
+    /**
+     * @return key position, -1 if there is no position to index by
+     */
+    int getKeyPosition() {
+        return keyPosition;
+    }
+}
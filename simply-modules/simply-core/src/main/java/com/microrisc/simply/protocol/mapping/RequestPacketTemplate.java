@@ -0,0 +1,244 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.protocol.mapping;
+
+import com.microrisc.simply.BytePacket;
+import com.microrisc.simply.typeconvertors.ValueConversionException;
+import java.util.List;
+
+/**
+ * Precompiled mapping of call requests of one method into protocol packets.
+ * <p>
+ * All constant fragments - protocol, Device Interface and method ones - are
+ * merged into one packet image at compile time. Only network, node and 
+ * method arguments are serialized for each request and the final packet is 
+ * created in one pass, with the same result as if all fragments were put 
+ * together by {@link com.microrisc.simply.protocol.RequestPacketCreator} 
+ * in the order: protocol, network, node, interface, method, arguments.
+ * 
+ * @author agent
+ */
+public final class RequestPacketTemplate {
+    /** Constant part of the packet. */
+    private final short[] constantImage;
+    
+    /** Constant part of the packet as bytes. */
+    private final byte[] byteConstantImage;
+    
+    /** 
+     * Positions occupied by interface and method constants - these have
+     * precedence over network and node data.
+     */
+    private final boolean[] overridingPositions;
+    
+    /** Network mappings. */
+    private final ValueToPacketMapping[] networkMappings;
+    
+    /** Node mappings. */
+    private final ValueToPacketMapping[] nodeMappings;
+    
+    /** Arguments mappings. */
+    private final ValueToPacketMapping[] argMappings;
+    
+    
+    // returns length of packet needed to hold specified constant mappings
+    private static int getLength(List<ConstValueToPacketMapping> constMappings, int length) {
+        for ( ConstValueToPacketMapping constMapping : constMappings ) {
+            int endPos = constMapping.getStartingPosition() + constMapping.getConvertedValue().length;
+            if ( endPos > length ) {
+                length = endPos;
+            }
+        }
+        return length;
+    }
+    
+    // writes specified constant mappings into the image
+    private static void writeConstants(
+            List<ConstValueToPacketMapping> constMappings, short[] image, boolean[] positions
+    ) {
+        for ( ConstValueToPacketMapping constMapping : constMappings ) {
+            short[] value = constMapping.getConvertedValue();
+            int startPos = constMapping.getStartingPosition();
+            System.arraycopy(value, 0, image, startPos, value.length);
+            if ( positions != null ) {
+                for ( int pos = startPos; pos < startPos + value.length; pos++ ) {
+                    positions[pos] = true;
+                }
+            }
+        }
+    }
+    
+    // serializes specified value by each of specified mappings
+    private static short[][] serialize(ValueToPacketMapping[] mappings, Object value) 
+            throws ValueConversionException {
+        short[][] serValues = new short[mappings.length][];
+        for ( int mappingId = 0; mappingId < mappings.length; mappingId++ ) {
+            serValues[mappingId] = Serializer.serialize(mappings[mappingId], value);
+        }
+        return serValues;
+    }
+    
+    // returns length of packet needed to hold specified serialized values
+    private static int getLength(
+            ValueToPacketMapping[] mappings, short[][] serValues, int length
+    ) {
+        for ( int mappingId = 0; mappingId < mappings.length; mappingId++ ) {
+            int endPos = mappings[mappingId].getStartingPosition() + serValues[mappingId].length;
+            if ( endPos > length ) {
+                length = endPos;
+            }
+        }
+        return length;
+    }
+    
+    // writes serialized values into the packet, overriding positions are skipped
+    private void writeValues(
+            ValueToPacketMapping[] mappings, short[][] serValues, short[] packet, 
+            boolean skipOverriding
+    ) {
+        for ( int mappingId = 0; mappingId < mappings.length; mappingId++ ) {
+            short[] serValue = serValues[mappingId];
+            int startPos = mappings[mappingId].getStartingPosition();
+            if ( !skipOverriding ) {
+                System.arraycopy(serValue, 0, packet, startPos, serValue.length);
+                continue;
+            }
+            
+            for ( int valueId = 0; valueId < serValue.length; valueId++ ) {
+                int pos = startPos + valueId;
+                if ( (pos >= overridingPositions.length) || !overridingPositions[pos] ) {
+                    packet[pos] = serValue[valueId];
+                }
+            }
+        }
+    }
+    
+    // writes serialized values into the byte packet, overriding positions are skipped
+    private void writeValues(
+            ValueToPacketMapping[] mappings, short[][] serValues, byte[] packet, 
+            boolean skipOverriding
+    ) {
+        for ( int mappingId = 0; mappingId < mappings.length; mappingId++ ) {
+            short[] serValue = serValues[mappingId];
+            int startPos = mappings[mappingId].getStartingPosition();
+            for ( int valueId = 0; valueId < serValue.length; valueId++ ) {
+                int pos = startPos + valueId;
+                if ( !skipOverriding || (pos >= overridingPositions.length) 
+                        || !overridingPositions[pos] 
+                ) {
+                    packet[pos] = (byte)serValue[valueId];
+                }
+            }
+        }
+    }
+    
+    
+    /**
+     * Compiles new template.
+     * @param protocolConstants protocol constant mappings
+     * @param networkMappings network mappings
+     * @param nodeMappings node mappings
+     * @param ifaceConstants Device Interface constant mappings
+     * @param methodConstants method constant mappings
+     * @param argMappings method arguments mappings
+     */
+    public RequestPacketTemplate(
+            List<ConstValueToPacketMapping> protocolConstants,
+            List<ValueToPacketMapping> networkMappings,
+            List<ValueToPacketMapping> nodeMappings,
+            List<ConstValueToPacketMapping> ifaceConstants,
+            List<ConstValueToPacketMapping> methodConstants,
+            List<ValueToPacketMapping> argMappings
+    ) {
+        int length = getLength(protocolConstants, 0);
+        length = getLength(ifaceConstants, length);
+        length = getLength(methodConstants, length);
+        
+        this.constantImage = new short[length];
+        this.overridingPositions = new boolean[length];
+        writeConstants(protocolConstants, constantImage, null);
+        writeConstants(ifaceConstants, constantImage, overridingPositions);
+        writeConstants(methodConstants, constantImage, overridingPositions);
+        this.byteConstantImage = BytePacket.fromShorts(constantImage).array();
+        
+        this.networkMappings = networkMappings.toArray(new ValueToPacketMapping[0]);
+        this.nodeMappings = nodeMappings.toArray(new ValueToPacketMapping[0]);
+        this.argMappings = argMappings.toArray(new ValueToPacketMapping[0]);
+    }
+    
+    /**
+     * Creates protocol packet of call request with specified values.
+     * @param networkId network ID
+     * @param nodeId node ID
+     * @param args method arguments
+     * @return protocol packet
+     * @throws ValueConversionException if an error has occurred during serialization
+     */
+    public short[] createPacket(String networkId, String nodeId, Object[] args) 
+            throws ValueConversionException {
+        short[][] serNetwork = serialize(networkMappings, networkId);
+        short[][] serNode = serialize(nodeMappings, nodeId);
+        
+        short[][] serArgs = new short[argMappings.length][];
+        for ( int argId = 0; argId < argMappings.length; argId++ ) {
+            serArgs[argId] = Serializer.serialize(argMappings[argId], args[argId]);
+        }
+        
+        int length = getLength(networkMappings, serNetwork, constantImage.length);
+        length = getLength(nodeMappings, serNode, length);
+        length = getLength(argMappings, serArgs, length);
+        
+        short[] packet = new short[length];
+        System.arraycopy(constantImage, 0, packet, 0, constantImage.length);
+        writeValues(networkMappings, serNetwork, packet, true);
+        writeValues(nodeMappings, serNode, packet, true);
+        writeValues(argMappings, serArgs, packet, false);
+        return packet;
+    }
+    
+    /**
+     * Creates protocol packet of call request with specified values directly
+     * as bytes. Created packet has the same content as the one created by 
+     * {@link #createPacket(java.lang.String, java.lang.String, java.lang.Object[]) }.
+     * @param networkId network ID
+     * @param nodeId node ID
+     * @param args method arguments
+     * @return protocol packet
+     * @throws ValueConversionException if an error has occurred during serialization
+     */
+    public BytePacket createBytePacket(String networkId, String nodeId, Object[] args) 
+            throws ValueConversionException {
+        short[][] serNetwork = serialize(networkMappings, networkId);
+        short[][] serNode = serialize(nodeMappings, nodeId);
+        
+        short[][] serArgs = new short[argMappings.length][];
+        for ( int argId = 0; argId < argMappings.length; argId++ ) {
+            serArgs[argId] = Serializer.serialize(argMappings[argId], args[argId]);
+        }
+        
+        int length = getLength(networkMappings, serNetwork, byteConstantImage.length);
+        length = getLength(nodeMappings, serNode, length);
+        length = getLength(argMappings, serArgs, length);
+        
+        byte[] packet = new byte[length];
+        System.arraycopy(byteConstantImage, 0, packet, 0, byteConstantImage.length);
+        writeValues(networkMappings, serNetwork, packet, true);
+        writeValues(nodeMappings, serNode, packet, true);
+        writeValues(argMappings, serArgs, packet, false);
+        return BytePacket.wrap(packet);
+    }
+}
@@ -22,6 +22,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +46,10 @@ implements CallRequestToPacketMapping {
     /** Device Interface mappings. */
     private Map<Class, InterfaceToPacketMapping> ifaceMappings = null;
     
+    /** Compiled request packet templates of methods of each Device Interface. */
+    private final ConcurrentMap<Class, ConcurrentMap<String, RequestPacketTemplate>> 
+            templates = new ConcurrentHashMap<>();
+    
     
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(SimpleCallRequestToPacketMapping.class);
@@ -237,6 +243,52 @@ implements CallRequestToPacketMapping {
         return serArgs;
     }
     
+    @Override
+    public RequestPacketTemplate getRequestPacketTemplate(Class devInterface, String methodId) 
+            throws ProtocolMappingException {
+        ConcurrentMap<String, RequestPacketTemplate> ifaceTemplates = templates.get(devInterface);
+        if ( ifaceTemplates != null ) {
+            RequestPacketTemplate template = ifaceTemplates.get(methodId);
+            if ( template != null ) {
+                return template;
+            }
+        }
+        
+        logger.debug("getRequestPacketTemplate - start: devInterface={}, "
+                + "methodId={}", devInterface, methodId);
+        
+        InterfaceToPacketMapping ifaceMapping = ifaceMappings.get(devInterface);
+        if ( ifaceMapping == null ) {
+            throw new ProtocolMappingException("Interface mapping not found. "
+                + " Device Interface: " + devInterface.getName());
+        }
+        
+        MethodToPacketMapping methodMapping = ifaceMapping.getMethodMapping(methodId);
+        if ( methodMapping == null ) {
+            throw new ProtocolMappingException("Method mapping not found. "
+                + " Method ID: " + methodId);
+        }
+        
+        RequestPacketTemplate template = new RequestPacketTemplate(
+                constantMappings, networkMappings, nodeMappings,
+                ifaceMapping.getConstantMappings(), methodMapping.getConstantMappings(),
+                methodMapping.getArgMappings()
+        );
+        
+        if ( ifaceTemplates == null ) {
+            ConcurrentMap<String, RequestPacketTemplate> newIfaceTemplates 
+                    = new ConcurrentHashMap<>();
+            ifaceTemplates = templates.putIfAbsent(devInterface, newIfaceTemplates);
+            if ( ifaceTemplates == null ) {
+                ifaceTemplates = newIfaceTemplates;
+            }
+        }
+        ifaceTemplates.putIfAbsent(methodId, template);
+        
+        logger.debug("getRequestPacketTemplate - end: {}", template);
+        return template;
+    }
+    
     @Override
     public String toString() {
         return ("{ " +
@@ -17,7 +17,8 @@
 package com.microrisc.simply.protocol.mapping;
 
 import com.microrisc.simply.typeconvertors.ValueConversionException;
-import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -26,6 +27,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Stores mappings from protocol packets to Device Objects. 
+ * <p>
+ * Interface and method mappings are indexed by packet values at construction
+ * time, so that only mappings, which can match a packet, are checked during
+ * decoding. Mappings must not be modified after construction of this object.
  * 
  * @author Michal Konopa
  */
@@ -44,6 +49,12 @@ implements PacketToCallResponseMapping {
     /** Additional data mapping. */
     private final PacketToValueMapping additionalDataMapping;
     
+    /** Index of interface mappings. */
+    private final PacketValuesIndex<PacketToInterfaceMapping> interfacesIndex;
+    
+    /** Indices of method mappings of each Device Interface. */
+    private final Map<Class, PacketValuesIndex<PacketToMethodMapping>> methodsIndices;
+    
     
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(SimplePacketToCallResponseMapping.class);
@@ -51,22 +62,15 @@ implements PacketToCallResponseMapping {
     // Indicates, wheather specified packet fullfils specified packet values.
     private boolean isCompatible(short[] packet, List<PacketPositionValues> packetPosValues) 
     {
-        logger.debug("isCompatible - start: packet={}, packetValues={}", 
-                packet, packetPosValues);
-        
         for (PacketPositionValues packetPosValue : packetPosValues) {
             if (packetPosValue.getPosition() >= packet.length) {
-                logger.debug("isCompatible - end: {}", false);
                 return false;
             }
             
             if (!packetPosValue.canBeAtPosition(packet[packetPosValue.getPosition()])) {
-                logger.debug("isCompatible - end: {}", false);
                 return false;
             }
         }
-        
-        logger.debug("isCompatible - end: {}", true);
         return true;
     }
     
@@ -78,11 +82,7 @@ implements PacketToCallResponseMapping {
      *         {@code false} otherwise
      */
     private boolean isResultCompatible(short[] packet, PacketToValueMapping resultMapping) {
-        logger.debug("isResultCompatible - start: packet={}, resultMapping={}", 
-                packet, resultMapping);
-        
         if (resultMapping.isUpToEnd()) {
-            logger.debug("isResultCompatible - end: {}", true);
             return true;
         }
         
@@ -91,13 +91,35 @@ implements PacketToCallResponseMapping {
             lastResultPos += resultMapping.getLength();
         }
         
-        if (lastResultPos == packet.length - 1) {
-            logger.debug("isResultCompatible - end: {}", true);
-            return true;
+        return (lastResultPos == packet.length - 1);
+    }
+    
+    // creates index of specified interface mappings
+    private static PacketValuesIndex<PacketToInterfaceMapping> createInterfacesIndex(
+            Map<Class, PacketToInterfaceMapping> interfaceMappings
+    ) {
+        Map<PacketToInterfaceMapping, List<PacketPositionValues>> patterns 
+                = new LinkedHashMap<>();
+        for (PacketToInterfaceMapping ifaceMapping : interfaceMappings.values()) {
+            patterns.put(ifaceMapping, ifaceMapping.getPacketValues());
         }
-        
-        logger.debug("isResultCompatible - end: {}", false);
-        return false;
+        return new PacketValuesIndex<>(patterns);
+    }
+    
+    // creates indices of method mappings of specified interface mappings
+    private static Map<Class, PacketValuesIndex<PacketToMethodMapping>> createMethodsIndices(
+            Map<Class, PacketToInterfaceMapping> interfaceMappings
+    ) {
+        Map<Class, PacketValuesIndex<PacketToMethodMapping>> indices = new HashMap<>();
+        for (Map.Entry<Class, PacketToInterfaceMapping> entry : interfaceMappings.entrySet()) {
+            Map<PacketToMethodMapping, List<PacketPositionValues>> patterns 
+                    = new LinkedHashMap<>();
+            for (PacketToMethodMapping methodMapping : entry.getValue().getMethodMappings()) {
+                patterns.put(methodMapping, methodMapping.getPacketValues());
+            }
+            indices.put(entry.getKey(), new PacketValuesIndex<>(patterns));
+        }
+        return indices;
     }
     
     /**
@@ -117,6 +139,8 @@ implements PacketToCallResponseMapping {
         this.nodeMapping = nodeMapping;
         this.interfaceMappings = interfaceMappings;
         this.additionalDataMapping = additionalDataMapping;
+        this.interfacesIndex = createInterfacesIndex(interfaceMappings);
+        this.methodsIndices = createMethodsIndices(interfaceMappings);
     }
     
     @Override
@@ -152,7 +176,7 @@ implements PacketToCallResponseMapping {
         int bestEquality = 0;
         Class devIface = null;
         
-        for (PacketToInterfaceMapping ifaceMapping : interfaceMappings.values()) {
+        for (PacketToInterfaceMapping ifaceMapping : interfacesIndex.getCandidates(packet)) {
             List<PacketPositionValues> packetValues = ifaceMapping.getPacketValues();
             if (isCompatible(packet, packetValues)) {
                 if (packetValues.size() > bestEquality) {
@@ -172,8 +196,8 @@ implements PacketToCallResponseMapping {
                 devInterface, packet
         );
         
-        PacketToInterfaceMapping ifaceMapping = interfaceMappings.get(devInterface);
-        if (ifaceMapping == null) {
+        PacketValuesIndex<PacketToMethodMapping> methodsIndex = methodsIndices.get(devInterface);
+        if (methodsIndex == null) {
             logger.warn("Interface mapping not found");
             logger.debug("getMethodId - end: null");
             return null;
@@ -182,8 +206,7 @@ implements PacketToCallResponseMapping {
         int bestEquality = 0;
         String methodId = null;
         
-        Collection<PacketToMethodMapping> methodMappings = ifaceMapping.getMethodMappings();
-        for (PacketToMethodMapping methodMapping : methodMappings) {
+        for (PacketToMethodMapping methodMapping : methodsIndex.getCandidates(packet)) {
             List<PacketPositionValues> patterns = methodMapping.getPacketValues();
             if (isCompatible(packet, patterns)) {
                 if (isResultCompatible(packet, methodMapping.getResultMapping())) {
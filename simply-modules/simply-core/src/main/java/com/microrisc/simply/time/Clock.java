@@ -0,0 +1,68 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.time;
+
+/**
+ * Source of time and of timed waiting for components, whose behaviour depends
+ * on passing of time, e.g. protocol layers or connectors.
+ * <p>
+ * Time returned by a clock is monotonic and has no relation to the wall-clock
+ * time. It can be used only for measuring of time intervals. 
+ * <p>
+ * Components must not use {@code System.currentTimeMillis}, 
+ * {@code Object.wait(long)} and {@code Thread.sleep} directly for protocol
+ * timing. They should use some clock instead, so that the time can be 
+ * simulated, see {@link VirtualClock}.
+ * 
+ * @author agent
+ */
+public interface Clock {
+    
+    /**
+     * Returns actual time of this clock.
+     * @return actual time [in ns]
+     */
+    long nanoTime();
+    
+    /**
+     * Returns actual time of this clock.
+     * @return actual time [in ms]
+     */
+    long currentTimeMillis();
+    
+    /**
+     * Causes the current thread to sleep for specified amount of time 
+     * of this clock.
+     * @param millis time to sleep [in ms]
+     * @throws InterruptedException if the current thread has been interrupted
+     * @throws IllegalArgumentException if {@code millis} is less than 0
+     */
+    void sleep(long millis) throws InterruptedException;
+    
+    /**
+     * Causes the current thread to wait on specified monitor until some other
+     * thread notifies the monitor or specified amount of time of this clock
+     * elapses. Semantics is the same as of {@code Object.wait(long)}, 
+     * including spurious wakeups - the current thread must own the monitor 
+     * and 0 timeout means waiting until notified.
+     * @param monitor monitor to wait on
+     * @param timeout maximal time to wait [in ms]
+     * @throws InterruptedException if the current thread has been interrupted
+     * @throws IllegalArgumentException if {@code timeout} is less than 0
+     */
+    void await(Object monitor, long timeout) throws InterruptedException;
+}
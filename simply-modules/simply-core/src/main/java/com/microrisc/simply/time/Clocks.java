@@ -0,0 +1,59 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.time;
+
+/**
+ * Access to the default clock.
+ * <p>
+ * Components, which are created by factories, take the default clock at the 
+ * time of their creation. To run the whole library in a virtual time, set 
+ * the default clock before creating the Simply object. Default clock is 
+ * initially {@link SystemClock}.
+ * 
+ * @author agent
+ */
+public final class Clocks {
+    // default clock
+    private static volatile Clock defaultClock = SystemClock.getInstance();
+    
+    
+    private static Clock checkClock(Clock clock) {
+        if ( clock == null ) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        return clock;
+    }
+    
+    private Clocks() {}
+    
+    /**
+     * @return the default clock
+     */
+    public static Clock getDefaultClock() {
+        return defaultClock;
+    }
+    
+    /**
+     * Sets the default clock. Components created before this call keep using
+     * the previous default clock.
+     * @param clock new default clock
+     * @throws IllegalArgumentException if {@code clock} is {@code null}
+     */
+    public static void setDefaultClock(Clock clock) {
+        defaultClock = checkClock(clock);
+    }
+}
@@ -0,0 +1,63 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.time;
+
+/**
+ * Clock measuring real time.
+ * <p>
+ * Time is derived from {@code System.nanoTime}, so it is not affected by 
+ * changes of the system time.
+ * 
+ * @author agent
+ */
+public final class SystemClock implements Clock {
+    // multiplier for getting number of miliseconds from number of nanoseconds 
+    private static final long NANOSEC_IN_MILISEC = 1000000;
+    
+    /** Singleton. */
+    private static final SystemClock instance = new SystemClock();
+    
+    
+    private SystemClock() {}
+    
+    /**
+     * @return {@code SystemClock} instance
+     */
+    public static SystemClock getInstance() {
+        return instance;
+    }
+    
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.nanoTime() / NANOSEC_IN_MILISEC;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    @Override
+    public void await(Object monitor, long timeout) throws InterruptedException {
+        monitor.wait(timeout);
+    }
+}
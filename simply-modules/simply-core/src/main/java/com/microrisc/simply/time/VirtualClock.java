@@ -0,0 +1,357 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.time;
+
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Clock, whose time passes only when the clock is advanced.
+ * <p>
+ * Threads sleeping or waiting on this clock are registered together with 
+ * deadlines of their waiting. Advancing of the clock wakes up all threads, 
+ * whose deadlines have been reached. So flows consisting mostly of waiting,
+ * e.g. autonetwork, load code or FRC, can be run much faster than in real time.
+ * <p>
+ * The clock can be advanced manually, see {@link #advance(long) } and 
+ * {@link #advanceToNextDeadline() }, or automatically, see 
+ * {@link #startAutoAdvance(long) }. Automatic advancing jumps to the nearest
+ * deadline each time no thread has used the clock for specified period of real
+ * time, i.e. when all threads are supposed to wait for passing of time. 
+ * Because of that, all timing of simulated flow, including simulated network,
+ * must be driven by the same virtual clock.
+ * <p>
+ * Threads, which advance the clock, must not own any monitor, which other 
+ * threads wait on using this clock. Threads sleeping on this clock must not 
+ * own such monitor either.
+ * 
+ * @author agent
+ */
+public final class VirtualClock implements Clock {
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(VirtualClock.class);
+    
+    // multiplier for getting number of nanoseconds from number of miliseconds
+    private static final long NANOSEC_IN_MILISEC = 1000000;
+    
+    /** Default idle period of automatic advancing [in ms]. */
+    public static final long AUTO_ADVANCE_IDLE_PERIOD_DEFAULT = 5;
+    
+    
+    // registered waiting of one thread
+    private static final class Waiter {
+        // monitor to notify, null for sleeping threads
+        final Object monitor;
+        final long deadline;
+        final long order;
+        
+        Waiter(Object monitor, long deadline, long order) {
+            this.monitor = monitor;
+            this.deadline = deadline;
+            this.order = order;
+        }
+        
+        Object getMonitor() {
+            return ( monitor != null )? monitor : this;
+        }
+    }
+    
+    // orders waiters by deadlines and by order of registration
+    private static final Comparator<Waiter> DEADLINE_ORDER = new Comparator<Waiter>() {
+        @Override
+        public int compare(Waiter waiter1, Waiter waiter2) {
+            if ( waiter1.deadline != waiter2.deadline ) {
+                return ( waiter1.deadline < waiter2.deadline )? -1 : 1;
+            }
+            if ( waiter1.order != waiter2.order ) {
+                return ( waiter1.order < waiter2.order )? -1 : 1;
+            }
+            return 0;
+        }
+    };
+    
+    
+    /** Registered waiters. */
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(16, DEADLINE_ORDER);
+    
+    /** Synchronization object for waiters and changing of time. */
+    private final Object synchroWaiters = new Object();
+    
+    // number of registrations of waiters so far
+    private long registrationsCounter = 0;
+    
+    /** Actual time [in ns]. */
+    private volatile long time;
+    
+    /** Real time of the last use of the clock [in ns]. */
+    private volatile long lastActivityTime = System.nanoTime();
+    
+    /** Thread of automatic advancing, if started. */
+    private AutoAdvancer autoAdvancer = null;
+    
+    
+    // advances the clock each time, when it is not used for the idle period
+    private class AutoAdvancer extends Thread {
+        // idle period [in ns]
+        private final long idlePeriod;
+        
+        AutoAdvancer(long idlePeriod) {
+            super("VirtualClock-AutoAdvancer");
+            this.idlePeriod = idlePeriod;
+        }
+        
+        @Override
+        public void run() {
+            while ( !this.isInterrupted() ) {
+                long idleTime = System.nanoTime() - lastActivityTime;
+                if ( idleTime >= idlePeriod ) {
+                    if ( advanceToNextDeadline() ) {
+                        continue;
+                    }
+                    idleTime = 0;
+                }
+                
+                try {
+                    TimeUnit.NANOSECONDS.sleep(idlePeriod - idleTime);
+                } catch ( InterruptedException ex ) {
+                    break;
+                }
+            }
+            logger.info("Automatic advancing of virtual clock end");
+        }
+    }
+    
+    
+    private static long checkTime(long time, String name) {
+        if ( time < 0 ) {
+            throw new IllegalArgumentException(name + " cannot be less than 0");
+        }
+        return time;
+    }
+    
+    private static long checkIdlePeriod(long idlePeriod) {
+        if ( idlePeriod <= 0 ) {
+            throw new IllegalArgumentException("Idle period must be > 0");
+        }
+        return idlePeriod;
+    }
+    
+    private void updateActivityTime() {
+        lastActivityTime = System.nanoTime();
+    }
+    
+    // registers new waiter with deadline after specified timeout
+    private Waiter registerWaiter(Object monitor, long timeout) {
+        synchronized ( synchroWaiters ) {
+            Waiter waiter = new Waiter(
+                    monitor, time + timeout * NANOSEC_IN_MILISEC, registrationsCounter++
+            );
+            waiters.add(waiter);
+            return waiter;
+        }
+    }
+    
+    private void unregisterWaiter(Waiter waiter) {
+        synchronized ( synchroWaiters ) {
+            waiters.remove(waiter);
+        }
+    }
+    
+    // moves the time to specified value and wakes up all expired waiters
+    private void advanceTo(long newTime) {
+        List<Waiter> expiredWaiters = new LinkedList<>();
+        synchronized ( synchroWaiters ) {
+            if ( newTime > time ) {
+                time = newTime;
+            }
+            while ( !waiters.isEmpty() && waiters.peek().deadline <= time ) {
+                expiredWaiters.add(waiters.poll());
+            }
+        }
+        
+        for ( Waiter waiter : expiredWaiters ) {
+            Object monitor = waiter.getMonitor();
+            synchronized ( monitor ) {
+                monitor.notifyAll();
+            }
+        }
+        
+        // woken up threads must have time to react
+        updateActivityTime();
+    }
+    
+    
+    /**
+     * Creates new virtual clock with the time set to 0.
+     */
+    public VirtualClock() {
+        this(0);
+    }
+    
+    /**
+     * Creates new virtual clock with specified initial time.
+     * @param startTime initial time [in ms]
+     * @throws IllegalArgumentException if {@code startTime} is less than 0
+     */
+    public VirtualClock(long startTime) {
+        this.time = checkTime(startTime, "Start time") * NANOSEC_IN_MILISEC;
+    }
+    
+    @Override
+    public long nanoTime() {
+        updateActivityTime();
+        return time;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return nanoTime() / NANOSEC_IN_MILISEC;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        checkTime(millis, "Sleeping time");
+        updateActivityTime();
+        if ( Thread.interrupted() ) {
+            throw new InterruptedException();
+        }
+        if ( millis == 0 ) {
+            return;
+        }
+        
+        Waiter waiter = registerWaiter(null, millis);
+        try {
+            synchronized ( waiter ) {
+                while ( time < waiter.deadline ) {
+                    waiter.wait();
+                }
+            }
+        } finally {
+            unregisterWaiter(waiter);
+            updateActivityTime();
+        }
+    }
+
+    @Override
+    public void await(Object monitor, long timeout) throws InterruptedException {
+        checkTime(timeout, "Timeout");
+        updateActivityTime();
+        if ( timeout == 0 ) {
+            monitor.wait();
+            updateActivityTime();
+            return;
+        }
+        
+        Waiter waiter = registerWaiter(monitor, timeout);
+        try {
+            monitor.wait();
+        } finally {
+            unregisterWaiter(waiter);
+            updateActivityTime();
+        }
+    }
+    
+    /**
+     * Advances the time by specified amount and wakes up all threads, whose 
+     * deadlines have been reached. The time is moved in one step.
+     * @param millis amount of time to advance by [in ms]
+     * @throws IllegalArgumentException if {@code millis} is less than 0
+     */
+    public void advance(long millis) {
+        checkTime(millis, "Advance time");
+        advanceTo(time + millis * NANOSEC_IN_MILISEC);
+    }
+    
+    /**
+     * Advances the time to the nearest deadline of registered threads and wakes
+     * up all threads with that deadline.
+     * @return {@code true} if the time has been advanced <br>
+     *         {@code false} if there is no thread waiting on this clock
+     */
+    public boolean advanceToNextDeadline() {
+        long deadline;
+        synchronized ( synchroWaiters ) {
+            Waiter nextWaiter = waiters.peek();
+            if ( nextWaiter == null ) {
+                return false;
+            }
+            deadline = nextWaiter.deadline;
+        }
+        advanceTo(deadline);
+        return true;
+    }
+    
+    /**
+     * @return number of threads actually waiting on this clock with timeout
+     */
+    public int getWaitersNumber() {
+        synchronized ( synchroWaiters ) {
+            return waiters.size();
+        }
+    }
+    
+    /**
+     * Starts automatic advancing of this clock. The clock is advanced to 
+     * the nearest deadline each time it is not used for specified period 
+     * of real time.
+     * @param idlePeriod period of real time [in ms]
+     * @throws IllegalArgumentException if {@code idlePeriod} is not greater than 0
+     * @throws IllegalStateException if automatic advancing is already started
+     */
+    public synchronized void startAutoAdvance(long idlePeriod) {
+        checkIdlePeriod(idlePeriod);
+        if ( autoAdvancer != null ) {
+            throw new IllegalStateException("Automatic advancing already started.");
+        }
+        
+        autoAdvancer = new AutoAdvancer(idlePeriod * NANOSEC_IN_MILISEC);
+        autoAdvancer.setDaemon(true);
+        autoAdvancer.start();
+        logger.info("Automatic advancing of virtual clock started: idle period={}", idlePeriod);
+    }
+    
+    /**
+     * Starts automatic advancing of this clock with default idle period.
+     * @throws IllegalStateException if automatic advancing is already started
+     */
+    public void startAutoAdvance() {
+        startAutoAdvance(AUTO_ADVANCE_IDLE_PERIOD_DEFAULT);
+    }
+    
+    /**
+     * Stops automatic advancing of this clock, if it is started.
+     */
+    public synchronized void stopAutoAdvance() {
+        if ( autoAdvancer == null ) {
+            return;
+        }
+        
+        autoAdvancer.interrupt();
+        try {
+            autoAdvancer.join();
+        } catch ( InterruptedException ex ) {
+            logger.warn("Stopping of automatic advancing interrupted.");
+            Thread.currentThread().interrupt();
+        }
+        autoAdvancer = null;
+    }
+}
@@ -0,0 +1,146 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.tracing;
+
+import com.microrisc.simply.CallRequest;
+import java.util.UUID;
+
+/**
+ * Event of lifecycle of a call request.
+ * 
+ * @author agent
+ */
+public final class CallRequestEvent {
+    // multiplier for getting number of miliseconds from number of nanoseconds 
+    private static final double NANOSEC_TO_MILISEC = 1.0/1000000;
+    
+    private final UUID requestId;
+    private final String networkId;
+    private final String nodeId;
+    private final Class deviceInterface;
+    private final String methodId;
+    private final CallRequestStage stage;
+    private final long time;
+    private final long duration;
+    
+    
+    private static CallRequest checkRequest(CallRequest request) {
+        if ( request == null ) {
+            throw new IllegalArgumentException("Request cannot be null");
+        }
+        return request;
+    }
+    
+    private static CallRequestStage checkStage(CallRequestStage stage) {
+        if ( stage == null ) {
+            throw new IllegalArgumentException("Stage cannot be null");
+        }
+        return stage;
+    }
+    
+    
+    /**
+     * Creates new event of specified request.
+     * @param request request, which the event relates to
+     * @param stage stage, which the request has reached
+     * @param time time of the event [in ns], as returned by the clock of 
+     *             the component, which has created the event
+     * @param duration duration of the stage [in ns], as specified by 
+     *                 {@link CallRequestStage}
+     */
+    public CallRequestEvent(CallRequest request, CallRequestStage stage, long time, long duration) {
+        checkRequest(request);
+        this.requestId = request.getId();
+        this.networkId = request.getNetworkId();
+        this.nodeId = request.getNodeId();
+        this.deviceInterface = request.getDeviceInterface();
+        this.methodId = request.getMethodId();
+        this.stage = checkStage(stage);
+        this.time = time;
+        this.duration = duration;
+    }
+
+    /**
+     * @return ID of the request
+     */
+    public UUID getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return ID of network of the request
+     */
+    public String getNetworkId() {
+        return networkId;
+    }
+
+    /**
+     * @return ID of node of the request
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return device interface of called method
+     */
+    public Class getDeviceInterface() {
+        return deviceInterface;
+    }
+
+    /**
+     * @return ID of called method
+     */
+    public String getMethodId() {
+        return methodId;
+    }
+
+    /**
+     * @return stage, which the request has reached
+     */
+    public CallRequestStage getStage() {
+        return stage;
+    }
+
+    /**
+     * @return time of the event [in ns]
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return duration of the stage [in ns]
+     */
+    public long getDuration() {
+        return duration;
+    }
+    
+    @Override
+    public String toString() {
+        return ("{ " +
+                "request ID=" + requestId +
+                ", stage=" + stage +
+                ", network ID=" + networkId +
+                ", node ID=" + nodeId +
+                ", device interface=" + 
+                    (( deviceInterface == null )? null : deviceInterface.getSimpleName()) +
+                ", method ID=" + methodId +
+                ", duration=" + String.format("%.3f", duration * NANOSEC_TO_MILISEC) + " ms" +
+                " }");
+    }
+}
@@ -0,0 +1,96 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.tracing;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Distribution of events of call requests lifecycle to registered listeners.
+ * <p>
+ * Components processing call requests check {@link #isEnabled() } before 
+ * creating of each event, so if no listener is registered, the only cost of 
+ * tracing is reading of one volatile field.
+ * 
+ * @author agent
+ */
+public final class CallRequestEvents {
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(CallRequestEvents.class);
+    
+    /** Registered listeners. */
+    private static final List<CallRequestEventsListener> listeners 
+            = new CopyOnWriteArrayList<>();
+    
+    /** Indicates, wheather there is at least one registered listener. */
+    private static volatile boolean enabled = false;
+    
+    
+    private CallRequestEvents() {}
+    
+    private static CallRequestEventsListener checkListener(CallRequestEventsListener listener) {
+        if ( listener == null ) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        return listener;
+    }
+    
+    /**
+     * Registers specified listener.
+     * @param listener listener to register
+     */
+    public static synchronized void addListener(CallRequestEventsListener listener) {
+        listeners.add(checkListener(listener));
+        enabled = true;
+        logger.info("Listener registered: {}", listener);
+    }
+    
+    /**
+     * Unregisters specified listener.
+     * @param listener listener to unregister
+     */
+    public static synchronized void removeListener(CallRequestEventsListener listener) {
+        listeners.remove(checkListener(listener));
+        enabled = !listeners.isEmpty();
+        logger.info("Listener unregistered: {}", listener);
+    }
+    
+    /**
+     * @return {@code true} if there is at least one registered listener <br>
+     *         {@code false} otherwise
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Delivers specified event to all registered listeners. Exceptions thrown 
+     * by listeners are logged and do not affect processing of the request.
+     * @param event event to deliver
+     */
+    public static void fire(CallRequestEvent event) {
+        for ( CallRequestEventsListener listener : listeners ) {
+            try {
+                listener.onCallRequestEvent(event);
+            } catch ( RuntimeException e ) {
+                logger.error("Listener {} failed on event {}", listener, event, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.tracing;
+
+/**
+ * Listener of events of call requests lifecycle.
+ * <p>
+ * Listeners are called synchronously by threads processing call requests, 
+ * so the processing should be fast and must not block.
+ * 
+ * @author agent
+ */
+public interface CallRequestEventsListener {
+    
+    /**
+     * Called, when a call request reaches new stage of its lifecycle.
+     * @param event event
+     */
+    void onCallRequestEvent(CallRequestEvent event);
+}
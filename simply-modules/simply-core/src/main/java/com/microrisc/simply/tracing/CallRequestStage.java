@@ -0,0 +1,71 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.tracing;
+
+/**
+ * Stages of lifecycle of call requests. Duration reported with each stage is 
+ * specified in the description of the stage.
+ * 
+ * @author agent
+ */
+public enum CallRequestStage {
+    /** Request has been put into the queue of requests to process. Duration is 0. */
+    QUEUED,
+    
+    /** 
+     * Request has been sent to protocol layer. Duration is the time from 
+     * putting of the request into the queue, including waiting of protocol 
+     * layer until the network is free for sending.
+     */
+    SENT,
+    
+    /** 
+     * Confirmation of the request has been received from the network. Duration 
+     * is the time from sending of the request into the network.
+     */
+    CONFIRMATION_RECEIVED,
+    
+    /** 
+     * Response of the request has been received from the network. Duration
+     * is the time from sending of the request into the network.
+     */
+    RESPONSE_RECEIVED,
+    
+    /** 
+     * Result of the request has been delivered to its addressee. Duration is
+     * the time from taking of the request from the queue.
+     */
+    RESULT_DELIVERED,
+    
+    /** 
+     * Processing of the request has been cancelled. Duration is the time 
+     * from putting of the request into the queue.
+     */
+    CANCELLED,
+    
+    /** 
+     * No response of the request has arrived in its maximal processing time. 
+     * Duration is the time from sending of the request into the network.
+     */
+    TIMEOUT,
+    
+    /** 
+     * Processing of the request has failed. Duration is the time from putting
+     * of the request into the queue.
+     */
+    ERROR
+}
@@ -0,0 +1,86 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply;
+
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of BytePacket.
+ * 
+ * @author agent
+ */
+public class BytePacketTest {
+    
+    /**
+     * Values of bytes, including values from 0x80, survive conversion from 
+     * and back to the {@code short[]} form.
+     */
+    @Test
+    public void testShortsRoundTrip() {
+        short[] data = new short[] { 0x00, 0x01, 0x7F, 0x80, 0x81, 0xAA, 0xFE, 0xFF };
+        BytePacket packet = BytePacket.fromShorts(data);
+        
+        assertEquals(data.length, packet.length());
+        assertArrayEquals(data, packet.toShortArray());
+        assertEquals(0x80, packet.get(3));
+        assertEquals(0xFF, packet.get(7));
+        assertEquals("[0, 1, 127, 128, 129, 170, 254, 255]", packet.toString());
+    }
+    
+    /**
+     * Wrapped packet is backed by the array, copied packet is independent 
+     * of its buffer.
+     */
+    @Test
+    public void testWrapAndCopy() {
+        byte[] buffer = new byte[] { 1, (byte)0x90, 3, 4 };
+        BytePacket wrapped = BytePacket.wrap(buffer);
+        BytePacket copied = BytePacket.copyOf(buffer, 1, 2);
+        
+        buffer[1] = 5;
+        assertSame(buffer, wrapped.array());
+        assertEquals(5, wrapped.get(1));
+        assertArrayEquals(new short[] { 0x90, 3 }, copied.toShortArray());
+    }
+    
+    /**
+     * Packet is copied into destination array and it is readable by read-only
+     * buffer.
+     */
+    @Test
+    public void testCopyToAndByteBuffer() {
+        BytePacket packet = BytePacket.wrap(new byte[] { 1, (byte)0xC0 });
+        byte[] dest = new byte[4];
+        packet.copyTo(dest, 1);
+        assertArrayEquals(new byte[] { 0, 1, (byte)0xC0, 0 }, dest);
+        
+        ByteBuffer buffer = packet.asByteBuffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(2, buffer.remaining());
+        assertEquals(0xC0, buffer.get(1) & 0xFF);
+    }
+    
+    /**
+     * Packet cannot be created from null data.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullShorts() {
+        BytePacket.fromShorts(null);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply;
+
+import com.microrisc.simply.time.VirtualClock;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of CallResultFutures.
+ *
+ * @author agent
+ */
+public class CallResultFuturesTest {
+
+    // maximal time duration of futures [in ms]
+    private static final long MAX_TIME_DURATION = 1000;
+
+    private VirtualClock clock;
+    private CallResultFutures futures;
+
+    private static CallRequestProcessingInfo createResult(UUID callId) {
+        return new CallRequestProcessingInfo(callId, CallRequestProcessingState.RESULT_ARRIVED);
+    }
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        futures = new CallResultFutures(
+                new ConcurrentCallRequestProcessingInfoContainer(), MAX_TIME_DURATION, clock
+        );
+    }
+
+    /**
+     * Future of delivered result is completed and removed.
+     */
+    @Test
+    public void testCompletion() {
+        UUID callId = UUID.randomUUID();
+        CallResultFuture future = futures.getFuture(callId);
+        assertFalse(future.isDone());
+        assertEquals(1, futures.getFuturesCount());
+
+        CallRequestProcessingInfo result = createResult(callId);
+        futures.complete(callId, result);
+        assertTrue(future.isDone());
+        assertSame(result, future.getNow());
+        assertEquals(0, futures.getFuturesCount());
+    }
+
+    /**
+     * Future got after the result has been delivered is completed and it is
+     * not kept.
+     */
+    @Test
+    public void testResultDeliveredBeforeFuture() {
+        UUID callId = UUID.randomUUID();
+        CallRequestProcessingInfo result = createResult(callId);
+        futures.complete(callId, result);
+
+        CallResultFuture future = futures.getFuture(callId);
+        assertTrue(future.isDone());
+        assertSame(result, future.getNow());
+        assertEquals(0, futures.getFuturesCount());
+        assertTrue(futures.await(callId, 1));
+    }
+
+    /**
+     * Future got concurrently with delivery of the result is always completed
+     * and no future is kept.
+     */
+    @Test
+    public void testConcurrentDeliveryAndRegistration() throws InterruptedException {
+        for ( int i = 0; i < 1000; i++ ) {
+            final UUID callId = UUID.randomUUID();
+            final CountDownLatch startLatch = new CountDownLatch(1);
+            final AtomicReference<CallResultFuture> futureRef = new AtomicReference<>();
+
+            Thread registeringThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch ( InterruptedException e ) {
+                        return;
+                    }
+                    futureRef.set(futures.getFuture(callId));
+                }
+            });
+            registeringThread.start();
+
+            startLatch.countDown();
+            futures.complete(callId, createResult(callId));
+            registeringThread.join();
+
+            assertTrue(futureRef.get().isDone());
+            assertEquals(0, futures.getFuturesCount());
+        }
+    }
+
+    /**
+     * Future, whose result has not been delivered within the maximal time
+     * duration, is forgotten.
+     */
+    @Test
+    public void testFutureExpired() {
+        UUID expiringId = UUID.randomUUID();
+        CallResultFuture expiringFuture = futures.getFuture(expiringId);
+
+        clock.advance(MAX_TIME_DURATION - 1);
+        UUID callId = UUID.randomUUID();
+        futures.getFuture(callId);
+        assertEquals(2, futures.getFuturesCount());
+
+        clock.advance(1);
+        futures.complete(callId, createResult(callId));
+        assertEquals(0, futures.getFuturesCount());
+
+        // late result is stored, but the expired future is not completed
+        futures.complete(expiringId, createResult(expiringId));
+        assertFalse(expiringFuture.isDone());
+        assertTrue(futures.getFuture(expiringId).isDone());
+    }
+}
@@ -0,0 +1,161 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply;
+
+import com.microrisc.simply.time.VirtualClock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of ConcurrentResultsContainer.
+ * 
+ * @author agent
+ */
+public class ConcurrentResultsContainerTest {
+    
+    /**
+     * Put items are got until removed.
+     */
+    @Test
+    public void testPutGetRemove() {
+        ConcurrentResultsContainer<String> container = new ConcurrentResultsContainer<>();
+        UUID uid1 = UUID.randomUUID();
+        UUID uid2 = UUID.randomUUID();
+        
+        container.put(uid1, "first");
+        container.put(uid2, "second");
+        assertEquals(2, container.size());
+        assertEquals("first", container.get(uid1));
+        assertEquals("second", container.get(uid2));
+        assertNull(container.get(UUID.randomUUID()));
+        
+        container.put(uid1, "replaced");
+        assertEquals(2, container.size());
+        assertEquals("replaced", container.get(uid1));
+        
+        container.remove(uid1);
+        assertNull(container.get(uid1));
+        assertEquals(1, container.size());
+    }
+    
+    /**
+     * Items are disposed after maximal time of existence.
+     */
+    @Test
+    public void testExpiration() {
+        VirtualClock clock = new VirtualClock();
+        ConcurrentResultsContainer<String> container 
+                = new ConcurrentResultsContainer<>(10, 50, clock);
+        UUID uid = UUID.randomUUID();
+        
+        container.put(uid, "item");
+        assertEquals("item", container.get(uid));
+        
+        clock.advance(49);
+        assertEquals("item", container.get(uid));
+        
+        clock.advance(1);
+        assertNull(container.get(uid));
+        assertEquals(0, container.size());
+    }
+    
+    /**
+     * Expired items are disposed by advancing of the wheel, even if they 
+     * are not accessed.
+     */
+    @Test
+    public void testExpirationOfNotAccessedItems() {
+        VirtualClock clock = new VirtualClock();
+        ConcurrentResultsContainer<String> container 
+                = new ConcurrentResultsContainer<>(10, 50, clock);
+        for ( int i = 0; i < 5; i++ ) {
+            container.put(UUID.randomUUID(), "item" + i);
+        }
+        assertEquals(5, container.size());
+        
+        clock.advance(200);
+        UUID uid = UUID.randomUUID();
+        container.put(uid, "fresh");
+        assertEquals(1, container.size());
+        assertEquals("fresh", container.get(uid));
+    }
+    
+    /**
+     * The oldest items are disposed, when the capacity is exceeded.
+     */
+    @Test
+    public void testCapacity() {
+        ConcurrentResultsContainer<Integer> container = new ConcurrentResultsContainer<>(3, 60000);
+        List<UUID> uids = new ArrayList<>();
+        for ( int i = 0; i < 5; i++ ) {
+            UUID uid = UUID.randomUUID();
+            uids.add(uid);
+            container.put(uid, i);
+        }
+        
+        assertEquals(3, container.size());
+        assertNull(container.get(uids.get(0)));
+        assertNull(container.get(uids.get(1)));
+        for ( int i = 2; i < 5; i++ ) {
+            assertEquals(Integer.valueOf(i), container.get(uids.get(i)));
+        }
+    }
+    
+    /**
+     * Items put by more threads at once are all got by theirs readers.
+     */
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        final ConcurrentResultsContainer<Integer> container = new ConcurrentResultsContainer<>();
+        final int threadsNum = 8;
+        final int itemsNum = 1000;
+        final AtomicInteger errorsNum = new AtomicInteger(0);
+        
+        List<Thread> threads = new ArrayList<>();
+        for ( int t = 0; t < threadsNum; t++ ) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for ( int i = 0; i < itemsNum; i++ ) {
+                        UUID uid = UUID.randomUUID();
+                        container.put(uid, i);
+                        if ( !Integer.valueOf(i).equals(container.get(uid)) ) {
+                            errorsNum.incrementAndGet();
+                        }
+                        if ( (i % 2) == 0 ) {
+                            container.remove(uid);
+                        }
+                    }
+                }
+            });
+        }
+        
+        for ( Thread thread : threads ) {
+            thread.start();
+        }
+        for ( Thread thread : threads ) {
+            thread.join();
+        }
+        
+        assertEquals(0, errorsNum.get());
+        assertEquals(threadsNum * itemsNum / 2, container.size());
+    }
+}
@@ -0,0 +1,254 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.connector;
+
+import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.CallResult;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import com.microrisc.simply.time.VirtualClock;
+import java.util.UUID;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of CallResultsCache.
+ * 
+ * @author agent
+ */
+public class CallResultsCacheTest {
+    
+    // interface of testing device
+    private static interface TestingDevice {
+    }
+    
+    // reading methods are cacheable, writing invalidates results of the node 
+    // or of all nodes of the network, if it is broadcasted
+    private static class TestingPolicy implements CallResultsCachingPolicy {
+        @Override
+        public long getTimeToLive(CallRequest request) {
+            return request.getMethodId().equals("read")? 1000 : 0;
+        }
+
+        @Override
+        public boolean invalidates(CallRequest request, CallRequest cachedRequest) {
+            return request.getNetworkId().equals(cachedRequest.getNetworkId())
+                    && ( (request.getNodeId() == null) 
+                            || request.getNodeId().equals(cachedRequest.getNodeId()) );
+        }
+    }
+    
+    private Clock origClock;
+    private VirtualClock clock;
+    
+    private static CallRequest createRequest(String nodeId, String methodId, Object... args) {
+        return createNetworkRequest("1", nodeId, methodId, args);
+    }
+    
+    private static CallRequest createNetworkRequest(
+            String networkId, String nodeId, String methodId, Object... args
+    ) {
+        return new CallRequest(UUID.randomUUID(), networkId, nodeId, TestingDevice.class, 
+                methodId, args
+        );
+    }
+    
+    @Before
+    public void setUp() {
+        origClock = Clocks.getDefaultClock();
+        clock = new VirtualClock();
+        Clocks.setDefaultClock(clock);
+    }
+    
+    @After
+    public void tearDown() {
+        Clocks.setDefaultClock(origClock);
+    }
+    
+    /**
+     * Result of equal request is returned until its time to live expires.
+     */
+    @Test
+    public void testTimeToLive() {
+        CallResultsCache cache = new CallResultsCache(new TestingPolicy());
+        CallRequest request = createRequest("1", "read", 5);
+        CallResult result = new CallResult(10);
+        
+        cache.put(request, result, cache.registerDispatch(request));
+        assertSame(result, cache.get(createRequest("1", "read", 5)));
+        assertNull(cache.get(createRequest("1", "read", 6)));
+        
+        clock.advance(999);
+        assertSame(result, cache.get(request));
+        
+        clock.advance(1);
+        assertNull(cache.get(request));
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getHitsCount());
+        assertEquals(2, cache.getMissesCount());
+    }
+    
+    /**
+     * Results of non cacheable requests are not stored.
+     */
+    @Test
+    public void testNotCacheable() {
+        CallResultsCache cache = new CallResultsCache(new TestingPolicy());
+        CallRequest request = createRequest("1", "write");
+        
+        assertEquals(CallResultsCache.NO_TICKET, cache.registerDispatch(request));
+        cache.put(request, new CallResult(10), CallResultsCache.NO_TICKET);
+        assertNull(cache.get(request));
+        assertEquals(0, cache.size());
+    }
+    
+    /**
+     * Least recently used result is evicted from full cache.
+     */
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        CallResultsCache cache = new CallResultsCache(new TestingPolicy(), 2);
+        CallRequest request1 = createRequest("1", "read");
+        CallRequest request2 = createRequest("2", "read");
+        CallRequest request3 = createRequest("3", "read");
+        
+        cache.put(request1, new CallResult(1), cache.registerDispatch(request1));
+        cache.put(request2, new CallResult(2), cache.registerDispatch(request2));
+        assertNotNull(cache.get(request1));
+        
+        cache.put(request3, new CallResult(3), cache.registerDispatch(request3));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionsCount());
+        assertNotNull(cache.get(request1));
+        assertNull(cache.get(request2));
+        assertNotNull(cache.get(request3));
+    }
+    
+    /**
+     * Writing to a node removes cached results of that node only.
+     */
+    @Test
+    public void testInvalidation() {
+        CallResultsCache cache = new CallResultsCache(new TestingPolicy());
+        CallRequest requestA = createRequest("1", "read");
+        CallRequest requestB = createRequest("2", "read");
+        
+        cache.put(requestA, new CallResult(1), cache.registerDispatch(requestA));
+        cache.put(requestB, new CallResult(2), cache.registerDispatch(requestB));
+        cache.invalidate(createRequest("1", "write"));
+        
+        assertNull(cache.get(requestA));
+        assertNotNull(cache.get(requestB));
+        assertEquals(1, cache.getInvalidationsCount());
+    }
+    
+    /**
+     * Result of a reading dispatched before writing to the same node is not 
+     * stored, concurrent reading of another node is stored.
+     */
+    @Test
+    public void testInvalidationOfPendingDispatches() {
+        CallResultsCache cache = new CallResultsCache(new TestingPolicy());
+        CallRequest requestA = createRequest("1", "read");
+        CallRequest requestB = createRequest("2", "read");
+        
+        long ticketA = cache.registerDispatch(requestA);
+        long ticketB = cache.registerDispatch(requestB);
+        
+        CallRequest writeA = createRequest("1", "write");
+        cache.invalidate(writeA);
+        cache.registerDispatch(writeA);
+        
+        cache.put(requestA, new CallResult(1), ticketA);
+        cache.put(requestB, new CallResult(2), ticketB);
+        
+        assertNull(cache.get(requestA));
+        assertNotNull(cache.get(requestB));
+        
+        // reading dispatched after the writing is stored
+        cache.put(requestA, new CallResult(3), cache.registerDispatch(requestA));
+        assertEquals(3, cache.get(requestA).getMethodCallResult());
+    }
+    
+    /**
+     * Result of a dispatch is stored only once and not after clearing.
+     */
+    @Test
+    public void testClear() {
+        CallResultsCache cache = new CallResultsCache(new TestingPolicy());
+        CallRequest request = createRequest("1", "read");
+        
+        long ticket = cache.registerDispatch(request);
+        cache.clear();
+        cache.put(request, new CallResult(1), ticket);
+        assertNull(cache.get(request));
+        
+        ticket = cache.registerDispatch(request);
+        cache.put(request, new CallResult(2), ticket);
+        cache.clear();
+        cache.put(request, new CallResult(3), ticket);
+        assertNull(cache.get(request));
+    }
+    
+    /**
+     * Broadcasted writing removes cached results of all nodes of its network 
+     * only.
+     */
+    @Test
+    public void testBroadcastInvalidation() {
+        CallResultsCache cache = new CallResultsCache(new TestingPolicy());
+        CallRequest requestA = createRequest("1", "read");
+        CallRequest requestB = createRequest("2", "read");
+        CallRequest otherNetworkRequest = createNetworkRequest("2", "1", "read");
+        
+        cache.put(requestA, new CallResult(1), cache.registerDispatch(requestA));
+        long ticketB = cache.registerDispatch(requestB);
+        cache.put(otherNetworkRequest, new CallResult(3), 
+                cache.registerDispatch(otherNetworkRequest)
+        );
+        cache.invalidate(createRequest(null, "write"));
+        cache.put(requestB, new CallResult(2), ticketB);
+        
+        assertNull(cache.get(requestA));
+        assertNull(cache.get(requestB));
+        assertNotNull(cache.get(otherNetworkRequest));
+        assertEquals(1, cache.getInvalidationsCount());
+    }
+    
+    /**
+     * Released ticket is forgotten and its result is not stored.
+     */
+    @Test
+    public void testReleaseDispatch() {
+        CallResultsCache cache = new CallResultsCache(new TestingPolicy());
+        CallRequest request = createRequest("1", "read");
+        
+        long ticket = cache.registerDispatch(request);
+        assertEquals(1, cache.getPendingDispatchesCount());
+        
+        cache.releaseDispatch(ticket);
+        assertEquals(0, cache.getPendingDispatchesCount());
+        cache.put(request, new CallResult(1), ticket);
+        assertNull(cache.get(request));
+        
+        cache.put(request, new CallResult(2), cache.registerDispatch(request));
+        assertEquals(0, cache.getPendingDispatchesCount());
+        assertNotNull(cache.get(request));
+    }
+}
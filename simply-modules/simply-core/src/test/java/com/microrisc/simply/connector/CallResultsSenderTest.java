@@ -0,0 +1,220 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.connector;
+
+import com.microrisc.simply.CallRequestProcessingInfo;
+import com.microrisc.simply.CallRequestProcessingState;
+import com.microrisc.simply.ConnectorListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of CallResultsSender.
+ * 
+ * @author agent
+ */
+public class CallResultsSenderTest {
+    
+    // records IDs of received processing infos
+    private static class RecordingListener implements ConnectorListener {
+        final List<UUID> receivedIds = Collections.synchronizedList(new ArrayList<UUID>());
+        final CountDownLatch receivedLatch;
+        
+        RecordingListener(int expectedNum) {
+            this.receivedLatch = new CountDownLatch(expectedNum);
+        }
+        
+        @Override
+        public void onCallRequestProcessingInfo(CallRequestProcessingInfo procInfo, UUID callId) {
+            receivedIds.add(callId);
+            receivedLatch.countDown();
+        }
+    }
+    
+    private CallResultsSender sender;
+    
+    private UUID addInfo(ConnectorListener addressee) {
+        UUID callId = UUID.randomUUID();
+        sender.associateCallRequestWithAddressee(callId, addressee);
+        sender.addCallRequestProcessingInfo(
+                new CallRequestProcessingInfo(callId, CallRequestProcessingState.RESULT_ARRIVED)
+        );
+        return callId;
+    }
+    
+    @Before
+    public void setUp() throws Exception {
+        sender = new CallResultsSender(2);
+        sender.start();
+    }
+    
+    @After
+    public void tearDown() {
+        sender.destroy();
+    }
+    
+    /**
+     * Processing infos are delivered to one addressee in the order of adding.
+     */
+    @Test
+    public void testOrderOfDelivery() throws InterruptedException {
+        RecordingListener listener = new RecordingListener(100);
+        List<UUID> callIds = new ArrayList<>();
+        for ( int i = 0; i < 100; i++ ) {
+            callIds.add(addInfo(listener));
+        }
+        
+        assertTrue(listener.receivedLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(callIds, listener.receivedIds);
+        assertEquals(100, sender.getSentCount());
+        assertEquals(0, sender.getFailedCount());
+    }
+    
+    /**
+     * Processing info of call request without addressee is not sent.
+     */
+    @Test
+    public void testNoAddressee() {
+        UUID callId = UUID.randomUUID();
+        sender.addCallRequestProcessingInfo(
+                new CallRequestProcessingInfo(callId, CallRequestProcessingState.RESULT_ARRIVED)
+        );
+        assertEquals(0, sender.getQueueDepth());
+        assertNull(sender.getCallRequestProcessingInfo(callId));
+    }
+    
+    /**
+     * Blocked addressee doesn't delay delivery to other addressees. Pending 
+     * processing info is available until it is sent.
+     */
+    @Test
+    public void testBlockedAddressee() throws InterruptedException {
+        final CountDownLatch blockingLatch = new CountDownLatch(1);
+        final CountDownLatch blockedLatch = new CountDownLatch(1);
+        ConnectorListener blockedListener = new ConnectorListener() {
+            @Override
+            public void onCallRequestProcessingInfo(CallRequestProcessingInfo procInfo, UUID callId) {
+                blockedLatch.countDown();
+                try {
+                    blockingLatch.await();
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        
+        addInfo(blockedListener);
+        assertTrue(blockedLatch.await(5, TimeUnit.SECONDS));
+        UUID waitingId = addInfo(blockedListener);
+        assertNotNull(sender.getCallRequestProcessingInfo(waitingId));
+        
+        RecordingListener listener = new RecordingListener(10);
+        for ( int i = 0; i < 10; i++ ) {
+            addInfo(listener);
+        }
+        assertTrue(listener.receivedLatch.await(5, TimeUnit.SECONDS));
+        assertNotNull(sender.getCallRequestProcessingInfo(waitingId));
+        
+        blockingLatch.countDown();
+    }
+    
+    /**
+     * Failure of an addressee is counted and doesn't stop the delivery.
+     */
+    @Test
+    public void testFailingAddressee() throws InterruptedException {
+        ConnectorListener failingListener = new ConnectorListener() {
+            @Override
+            public void onCallRequestProcessingInfo(CallRequestProcessingInfo procInfo, UUID callId) {
+                throw new IllegalStateException("Testing failure");
+            }
+        };
+        
+        addInfo(failingListener);
+        RecordingListener listener = new RecordingListener(1);
+        addInfo(listener);
+        
+        assertTrue(listener.receivedLatch.await(5, TimeUnit.SECONDS));
+        long waitEnd = System.currentTimeMillis() + 5000;
+        while ( (sender.getFailedCount() == 0) && (System.currentTimeMillis() < waitEnd) ) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, sender.getFailedCount());
+    }
+    
+    /**
+     * Lanes of addressees are removed after theirs processing infos are sent. 
+     * New processing info of the same addressee is delivered by a new lane.
+     */
+    @Test
+    public void testDrainedLanesRemoved() throws InterruptedException {
+        List<RecordingListener> listeners = new ArrayList<>();
+        for ( int i = 0; i < 3; i++ ) {
+            RecordingListener listener = new RecordingListener(10);
+            listeners.add(listener);
+            for ( int j = 0; j < 10; j++ ) {
+                addInfo(listener);
+            }
+        }
+        for ( RecordingListener listener : listeners ) {
+            assertTrue(listener.receivedLatch.await(5, TimeUnit.SECONDS));
+        }
+        
+        long waitEnd = System.currentTimeMillis() + 5000;
+        while ( (sender.getLanesCount() != 0) && (System.currentTimeMillis() < waitEnd) ) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, sender.getLanesCount());
+        
+        RecordingListener listener = listeners.get(0);
+        UUID callId = addInfo(listener);
+        long receivedWaitEnd = System.currentTimeMillis() + 5000;
+        while ( !listener.receivedIds.contains(callId) 
+                && (System.currentTimeMillis() < receivedWaitEnd) 
+        ) {
+            Thread.sleep(10);
+        }
+        assertTrue(listener.receivedIds.contains(callId));
+    }
+    
+    /**
+     * Processing infos are delivered in the order of adding, even if lanes 
+     * of the addressee are removed and created again meanwhile.
+     */
+    @Test
+    public void testOrderOfDeliveryWithRemovedLanes() throws InterruptedException {
+        RecordingListener listener = new RecordingListener(1000);
+        List<UUID> callIds = new ArrayList<>();
+        for ( int i = 0; i < 1000; i++ ) {
+            callIds.add(addInfo(listener));
+            if ( i % 10 == 0 ) {
+                Thread.yield();
+            }
+        }
+        
+        assertTrue(listener.receivedLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(callIds, listener.receivedIds);
+    }
+}
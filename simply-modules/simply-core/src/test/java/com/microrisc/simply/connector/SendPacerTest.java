@@ -0,0 +1,118 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.connector;
+
+import com.microrisc.simply.time.VirtualClock;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of SendPacer. Time runs on manually advanced virtual clock.
+ * 
+ * @author agent
+ */
+public class SendPacerTest {
+    
+    /**
+     * With burst of 1, subsequent sends are paused by the interval.
+     */
+    @Test
+    public void testInterval() {
+        VirtualClock clock = new VirtualClock();
+        SendPacer pacer = new SendPacer(100, 1, clock);
+        
+        assertEquals(0, pacer.getWaitTime());
+        pacer.onSend();
+        assertEquals(100, pacer.getWaitTime());
+        
+        clock.advance(40);
+        assertEquals(60, pacer.getWaitTime());
+        
+        clock.advance(60);
+        assertEquals(0, pacer.getWaitTime());
+        pacer.onSend();
+        assertEquals(100, pacer.getWaitTime());
+    }
+    
+    /**
+     * Idle pacer doesn't accumulate more permits than the burst.
+     */
+    @Test
+    public void testBurst() {
+        VirtualClock clock = new VirtualClock();
+        SendPacer pacer = new SendPacer(100, 3, clock);
+        
+        clock.advance(1000);
+        for ( int i = 0; i < 3; i++ ) {
+            assertEquals(0, pacer.getWaitTime());
+            pacer.onSend();
+        }
+        assertEquals(100, pacer.getWaitTime());
+        
+        clock.advance(100);
+        assertEquals(0, pacer.getWaitTime());
+        pacer.onSend();
+        assertEquals(100, pacer.getWaitTime());
+    }
+    
+    /**
+     * Repeated send waits at least for the minimal pause from the last send.
+     */
+    @Test
+    public void testMinimalPause() {
+        VirtualClock clock = new VirtualClock();
+        SendPacer pacer = new SendPacer(20, 1, clock);
+        
+        pacer.onSend();
+        assertEquals(20, pacer.getWaitTime());
+        assertEquals(50, pacer.getWaitTime(50));
+        assertEquals(20, pacer.getWaitTime(10));
+        
+        clock.advance(30);
+        assertEquals(0, pacer.getWaitTime());
+        assertEquals(20, pacer.getWaitTime(50));
+        
+        clock.advance(20);
+        assertEquals(0, pacer.getWaitTime(50));
+    }
+    
+    /**
+     * Zero interval permits all sends at once.
+     */
+    @Test
+    public void testZeroInterval() {
+        VirtualClock clock = new VirtualClock();
+        SendPacer pacer = new SendPacer(0, 1, clock);
+        
+        for ( int i = 0; i < 10; i++ ) {
+            assertEquals(0, pacer.getWaitTime());
+            pacer.onSend();
+        }
+        
+        pacer.setInterval(10);
+        pacer.onSend();
+        assertEquals(10, pacer.getWaitTime());
+    }
+    
+    /**
+     * Invalid parameters are refused.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBurst() {
+        new SendPacer(10, 0, new VirtualClock());
+    }
+}
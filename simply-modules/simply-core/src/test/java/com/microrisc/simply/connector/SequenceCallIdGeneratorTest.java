@@ -0,0 +1,101 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.connector;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of SequenceCallIdGenerator.
+ * 
+ * @author agent
+ */
+public class SequenceCallIdGeneratorTest {
+    
+    // number of generating threads
+    private static final int THREADS_NUM = 4;
+    
+    // number of identifiers generated by one thread
+    private static final int IDS_PER_THREAD = 10000;
+    
+    /**
+     * Identifiers generated concurrently by more threads are unique.
+     */
+    @Test
+    public void testUniquenessAcrossThreads() throws InterruptedException {
+        final SequenceCallIdGenerator generator = new SequenceCallIdGenerator();
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final List<List<UUID>> generatedIds = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        
+        for ( int i = 0; i < THREADS_NUM; i++ ) {
+            final List<UUID> threadIds = new ArrayList<>(IDS_PER_THREAD);
+            generatedIds.add(threadIds);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch ( InterruptedException e ) {
+                        return;
+                    }
+                    for ( int j = 0; j < IDS_PER_THREAD; j++ ) {
+                        threadIds.add(generator.generateCallId());
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        
+        startLatch.countDown();
+        for ( Thread thread : threads ) {
+            thread.join();
+        }
+        
+        Set<UUID> uniqueIds = new HashSet<>();
+        for ( List<UUID> threadIds : generatedIds ) {
+            assertEquals(IDS_PER_THREAD, threadIds.size());
+            uniqueIds.addAll(threadIds);
+        }
+        assertEquals(THREADS_NUM * IDS_PER_THREAD, uniqueIds.size());
+    }
+    
+    /**
+     * All identifiers of one generator share the prefix, identifiers of 
+     * different generators differ in it.
+     */
+    @Test
+    public void testPrefix() {
+        SequenceCallIdGenerator generator = new SequenceCallIdGenerator();
+        UUID firstId = generator.generateCallId();
+        UUID secondId = generator.generateCallId();
+        
+        assertEquals(firstId.getMostSignificantBits(), secondId.getMostSignificantBits());
+        assertEquals(firstId.getLeastSignificantBits() + 1, secondId.getLeastSignificantBits());
+        
+        UUID otherId = new SequenceCallIdGenerator().generateCallId();
+        assertNotEquals(firstId.getMostSignificantBits(), otherId.getMostSignificantBits());
+        assertNotEquals(firstId, otherId);
+    }
+}
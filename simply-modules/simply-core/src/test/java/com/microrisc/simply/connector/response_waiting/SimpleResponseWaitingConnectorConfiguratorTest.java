@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.connector.response_waiting;
+
+import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.ProtocoLayerListener;
+import com.microrisc.simply.ProtocolLayerService;
+import com.microrisc.simply.SimplyException;
+import com.microrisc.simply.connector.CallIdGenerator;
+import com.microrisc.simply.connector.RandomCallIdGenerator;
+import com.microrisc.simply.connector.SequenceCallIdGenerator;
+import com.microrisc.simply.metrics.MetricsRegistry;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of configuring of call ID generator by 
+ * SimpleResponseWaitingConnectorConfigurator.
+ *
+ * @author agent
+ */
+public class SimpleResponseWaitingConnectorConfiguratorTest {
+
+    // protocol layer, which ignores all requests
+    private static class IgnoringProtocolLayer implements ProtocolLayerService {
+        @Override
+        public void registerListener(ProtocoLayerListener listener) {
+        }
+
+        @Override
+        public void unregisterListener() {
+        }
+
+        @Override
+        public void sendRequest(CallRequest request) throws SimplyException {
+        }
+
+        @Override
+        public void sendRequest(CallRequest request, long procTime) throws SimplyException {
+        }
+    }
+
+    private SimpleResponseWaitingConnector connector;
+
+    private CallIdGenerator configureCallIdGenerator(String generatorName) {
+        Configuration configuration = new BaseConfiguration();
+        configuration.setProperty("connector.callIdGenerator", generatorName);
+        new SimpleResponseWaitingConnectorConfigurator().configure(connector, configuration);
+        return connector.getCallIdGenerator();
+    }
+
+    @Before
+    public void setUp() {
+        connector = new SimpleResponseWaitingConnector(
+                new IgnoringProtocolLayer(), new MetricsRegistry(), "test"
+        );
+    }
+
+    /**
+     * Sequence generator is used, if no generator is configured.
+     */
+    @Test
+    public void testDefaultGenerator() {
+        new SimpleResponseWaitingConnectorConfigurator().configure(
+                connector, new BaseConfiguration()
+        );
+        assertTrue(connector.getCallIdGenerator() instanceof SequenceCallIdGenerator);
+    }
+
+    /**
+     * Configured name chooses between the sequence and the random generator.
+     */
+    @Test
+    public void testConfiguredGenerator() {
+        assertTrue(configureCallIdGenerator("random") instanceof RandomCallIdGenerator);
+        assertTrue(configureCallIdGenerator("sequence") instanceof SequenceCallIdGenerator);
+    }
+
+    /**
+     * Unknown generator name is refused.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedGenerator() {
+        configureCallIdGenerator("unknown");
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.connector.response_waiting;
+
+import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.ProtocoLayerListener;
+import com.microrisc.simply.ProtocolLayerService;
+import com.microrisc.simply.SimplyException;
+import com.microrisc.simply.metrics.MetricsRegistry;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of metrics of SimpleResponseWaitingConnector.
+ *
+ * @author agent
+ */
+public class SimpleResponseWaitingConnectorTest {
+
+    // protocol layer, which ignores all requests
+    private static class IgnoringProtocolLayer implements ProtocolLayerService {
+        @Override
+        public void registerListener(ProtocoLayerListener listener) {
+        }
+
+        @Override
+        public void unregisterListener() {
+        }
+
+        @Override
+        public void sendRequest(CallRequest request) throws SimplyException {
+        }
+
+        @Override
+        public void sendRequest(CallRequest request, long procTime) throws SimplyException {
+        }
+    }
+
+    /**
+     * Connectors sharing one registry keep their own metrics, destroying
+     * of one connector doesn't remove metrics of the other one.
+     */
+    @Test
+    public void testMetricsOfMoreConnectors() throws SimplyException {
+        MetricsRegistry metrics = new MetricsRegistry();
+        SimpleResponseWaitingConnector connectorA
+                = new SimpleResponseWaitingConnector(new IgnoringProtocolLayer(), metrics, "a");
+        SimpleResponseWaitingConnector connectorB
+                = new SimpleResponseWaitingConnector(new IgnoringProtocolLayer(), metrics, "b");
+        connectorA.start();
+        connectorB.start();
+
+        assertEquals(2, metrics.getGauges("a.").size());
+        assertEquals(2, metrics.getGauges("b.").size());
+        assertTrue(metrics.getCounters("a.").containsKey("a.requests.sent"));
+        assertTrue(metrics.getCounters("b.").containsKey("b.requests.sent"));
+
+        connectorA.destroy();
+        assertTrue(metrics.getGauges("a.").isEmpty());
+        assertEquals(2, metrics.getGauges("b.").size());
+        connectorB.destroy();
+    }
+
+    /**
+     * Each connector gets its own default metrics prefix.
+     */
+    @Test
+    public void testDefaultMetricsPrefixes() {
+        SimpleResponseWaitingConnector connectorA
+                = new SimpleResponseWaitingConnector(new IgnoringProtocolLayer());
+        SimpleResponseWaitingConnector connectorB
+                = new SimpleResponseWaitingConnector(new IgnoringProtocolLayer());
+
+        assertTrue(connectorA.getMetricsPrefix().startsWith("connector."));
+        assertFalse(connectorA.getMetricsPrefix().equals(connectorB.getMetricsPrefix()));
+    }
+}
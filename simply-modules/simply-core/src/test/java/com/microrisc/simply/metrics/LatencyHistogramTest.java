@@ -0,0 +1,107 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.metrics;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of LatencyHistogram.
+ * 
+ * @author agent
+ */
+public class LatencyHistogramTest {
+    // multiplier for getting number of nanoseconds from number of miliseconds
+    private static final long MILISEC_TO_NANOSEC = 1000000;
+    
+    // maximal relative error of percentiles
+    private static final double MAX_RELATIVE_ERROR = 0.125;
+    
+    // asserts, that reported value is within error bounds of exact value
+    private static void assertWithinBounds(double exactValue, double reportedValue) {
+        assertTrue("Reported " + reportedValue + " less than " + exactValue, 
+                reportedValue >= exactValue
+        );
+        assertTrue("Reported " + reportedValue + " too far from " + exactValue, 
+                reportedValue <= exactValue * (1 + MAX_RELATIVE_ERROR)
+        );
+    }
+    
+    /**
+     * Empty histogram reports zeros.
+     */
+    @Test
+    public void testEmpty() {
+        LatencySnapshot snapshot = new LatencyHistogram().getSnapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMean(), 0);
+        assertEquals(0, snapshot.getP99(), 0);
+        assertEquals(0, snapshot.getMax(), 0);
+    }
+    
+    /**
+     * Small values have exact buckets, negative values are recorded as 0.
+     */
+    @Test
+    public void testSmallValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5000);
+        histogram.record(3000);
+        histogram.record(7000);
+        
+        LatencySnapshot snapshot = histogram.getSnapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(0.003, snapshot.getP50(), 1e-9);
+        assertEquals(0.007, snapshot.getMax(), 1e-9);
+        assertEquals(10.0 / 3 / 1000, snapshot.getMean(), 1e-9);
+    }
+    
+    /**
+     * Percentiles are within error bounds and never exceed the maximum.
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for ( int millis = 1; millis <= 1000; millis++ ) {
+            histogram.record(millis * MILISEC_TO_NANOSEC);
+        }
+        
+        LatencySnapshot snapshot = histogram.getSnapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500.5, snapshot.getMean(), 1e-9);
+        assertWithinBounds(500, snapshot.getP50());
+        assertWithinBounds(900, snapshot.getP90());
+        assertWithinBounds(990, snapshot.getP99());
+        assertEquals(1000, snapshot.getP999(), 1e-9);
+        assertEquals(1000, snapshot.getMax(), 1e-9);
+    }
+    
+    /**
+     * Each value is reported within error bounds over wide range of values.
+     */
+    @Test
+    public void testBucketBounds() {
+        for ( long micros = 1; micros < 1000000000L; micros = micros * 3 + 1 ) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(micros * 1000);
+            histogram.record(micros * 1000 * 2);
+            
+            // median is the first value, its bucket is bounded by the second one
+            assertWithinBounds(micros / 1000.0, histogram.getSnapshot().getP50());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network;
+
+import com.microrisc.simply.time.VirtualClock;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of AdaptivePollingScheduler. Time runs on automatically advanced 
+ * virtual clock.
+ * 
+ * @author agent
+ */
+public class AdaptivePollingSchedulerTest {
+    private VirtualClock clock;
+    private AdaptivePollingScheduler scheduler;
+    
+    // waits for next poll and returns duration of the waiting [in ms]
+    private long awaitNextPoll() throws InterruptedException {
+        long start = clock.currentTimeMillis();
+        scheduler.awaitNextPoll();
+        return clock.currentTimeMillis() - start;
+    }
+    
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        clock.startAutoAdvance(1);
+        scheduler = new AdaptivePollingScheduler(1, 64, 100, clock);
+    }
+    
+    @After
+    public void tearDown() {
+        clock.stopAutoAdvance();
+    }
+    
+    /**
+     * Period is doubled after each poll without activity up to the maximum.
+     */
+    @Test
+    public void testBackOff() throws InterruptedException {
+        long[] expectedWaits = { 1, 2, 4, 8, 16, 32, 64, 64 };
+        for ( long expectedWait : expectedWaits ) {
+            assertEquals(expectedWait, awaitNextPoll());
+        }
+        assertEquals(64, scheduler.getPeriod());
+    }
+    
+    /**
+     * Activity sets the period back to the minimum.
+     */
+    @Test
+    public void testActivity() throws InterruptedException {
+        for ( int i = 0; i < 10; i++ ) {
+            awaitNextPoll();
+        }
+        scheduler.activity();
+        assertEquals(1, scheduler.getPeriod());
+        assertEquals(1, awaitNextPoll());
+        assertEquals(2, awaitNextPoll());
+    }
+    
+    /**
+     * After wake up, the period is held at the minimum until the expectation
+     * timeout passes.
+     */
+    @Test
+    public void testExpectationTimeout() throws InterruptedException {
+        for ( int i = 0; i < 10; i++ ) {
+            awaitNextPoll();
+        }
+        
+        scheduler.wakeUp();
+        assertEquals(0, awaitNextPoll());
+        for ( int i = 0; i < 100; i++ ) {
+            assertEquals(1, awaitNextPoll());
+        }
+        
+        // expectation timed out
+        assertEquals(2, scheduler.getPeriod());
+        assertEquals(2, awaitNextPoll());
+        assertEquals(4, awaitNextPoll());
+    }
+    
+    /**
+     * Activity during expectation ends the expectation.
+     */
+    @Test
+    public void testActivityEndsExpectation() throws InterruptedException {
+        scheduler.wakeUp();
+        awaitNextPoll();
+        assertEquals(1, awaitNextPoll());
+        
+        scheduler.activity();
+        assertEquals(1, awaitNextPoll());
+        assertEquals(2, awaitNextPoll());
+        assertEquals(4, awaitNextPoll());
+    }
+    
+    /**
+     * Wake up cuts waiting for next poll short.
+     */
+    @Test
+    public void testWakeUpWhileWaiting() throws InterruptedException {
+        for ( int i = 0; i < 10; i++ ) {
+            awaitNextPoll();
+        }
+        clock.stopAutoAdvance();
+        
+        Thread waker = new Thread() {
+            @Override
+            public void run() {
+                // waits until the polling thread waits on the clock
+                while ( clock.getWaitersNumber() == 0 ) {
+                    Thread.yield();
+                }
+                scheduler.wakeUp();
+            }
+        };
+        waker.start();
+        
+        assertEquals(0, awaitNextPoll());
+        waker.join();
+        assertEquals(1, scheduler.getPeriod());
+    }
+    
+    /**
+     * Invalid periods are refused.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPeriods() {
+        new AdaptivePollingScheduler(10, 5);
+    }
+}
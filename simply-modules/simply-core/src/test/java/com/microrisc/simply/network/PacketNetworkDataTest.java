@@ -0,0 +1,75 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network;
+
+import com.microrisc.simply.BytePacket;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of PacketNetworkData.
+ * 
+ * @author agent
+ */
+public class PacketNetworkDataTest {
+    
+    /**
+     * Data in the {@code short[]} form are created once and cached.
+     */
+    @Test
+    public void testCachedData() {
+        BytePacket packet = BytePacket.wrap(new byte[] { 1, (byte)0x80, (byte)0xFF });
+        PacketNetworkData networkData = new PacketNetworkData(packet, "1");
+        
+        short[] data = networkData.getData();
+        assertArrayEquals(new short[] { 1, 0x80, 0xFF }, data);
+        assertSame(data, networkData.getData());
+        assertEquals("1", networkData.getNetworkId());
+    }
+    
+    /**
+     * Packet of packet network data is returned without conversion.
+     */
+    @Test
+    public void testToPacketOfPacketData() {
+        BytePacket packet = BytePacket.wrap(new byte[] { 1, 2 });
+        PacketNetworkData networkData = new PacketNetworkData(packet, "1");
+        
+        assertSame(packet, PacketNetworkData.toPacket(networkData));
+        assertEquals(2, PacketNetworkData.getDataLength(networkData));
+    }
+    
+    /**
+     * Packet of plain network data is created from its data.
+     */
+    @Test
+    public void testToPacketOfBaseData() {
+        BaseNetworkData networkData = new BaseNetworkData(new short[] { 0x10, 0x80, 0xFF }, "1");
+        
+        BytePacket packet = PacketNetworkData.toPacket(networkData);
+        assertArrayEquals(new byte[] { 0x10, (byte)0x80, (byte)0xFF }, packet.array());
+        assertEquals(3, PacketNetworkData.getDataLength(networkData));
+    }
+    
+    /**
+     * Packet network data cannot be created without packet.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullPacket() {
+        new PacketNetworkData(null, "1");
+    }
+}
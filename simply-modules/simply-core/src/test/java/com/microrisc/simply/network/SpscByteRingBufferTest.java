@@ -0,0 +1,160 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of SpscByteRingBuffer.
+ * 
+ * @author agent
+ */
+public class SpscByteRingBufferTest {
+    
+    /**
+     * Capacity is rounded up to power of 2.
+     */
+    @Test
+    public void testCapacity() {
+        assertEquals(8, new SpscByteRingBuffer(5).capacity());
+        assertEquals(8, new SpscByteRingBuffer(8).capacity());
+        assertEquals(1, new SpscByteRingBuffer(1).capacity());
+    }
+    
+    /**
+     * Invalid capacity is refused.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCapacity() {
+        new SpscByteRingBuffer(0);
+    }
+    
+    /**
+     * Bytes are polled in order of offering, as unsigned values.
+     */
+    @Test
+    public void testOfferAndPoll() {
+        SpscByteRingBuffer buffer = new SpscByteRingBuffer(8);
+        assertTrue(buffer.isEmpty());
+        assertEquals(-1, buffer.poll());
+        
+        assertEquals(3, buffer.offer(new byte[] { 1, (byte)0xFF, 3 }, 0, 3));
+        assertEquals(3, buffer.size());
+        assertFalse(buffer.isEmpty());
+        
+        assertEquals(1, buffer.poll());
+        assertEquals(0xFF, buffer.poll());
+        assertEquals(3, buffer.poll());
+        assertEquals(-1, buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+    
+    /**
+     * Only the part of data, which fits into free space, is inserted.
+     */
+    @Test
+    public void testOfferFull() {
+        SpscByteRingBuffer buffer = new SpscByteRingBuffer(4);
+        byte[] data = new byte[] { 1, 2, 3, 4, 5, 6 };
+        
+        assertEquals(4, buffer.offer(data, 0, 6));
+        assertEquals(0, buffer.offer(data, 4, 2));
+        
+        assertEquals(1, buffer.poll());
+        assertEquals(1, buffer.offer(data, 4, 2));
+        for ( int expected = 2; expected <= 5; expected++ ) {
+            assertEquals(expected, buffer.poll());
+        }
+        assertTrue(buffer.isEmpty());
+    }
+    
+    /**
+     * Data inserted over the end of the ring continue at its start.
+     */
+    @Test
+    public void testWrapAround() {
+        SpscByteRingBuffer buffer = new SpscByteRingBuffer(8);
+        byte[] data = new byte[] { 10, 11, 12, 13, 14, 15 };
+        
+        for ( int round = 0; round < 10; round++ ) {
+            assertEquals(6, buffer.offer(data, 0, 6));
+            for ( int i = 0; i < 6; i++ ) {
+                assertEquals(10 + i, buffer.poll());
+            }
+        }
+        assertTrue(buffer.isEmpty());
+    }
+    
+    /**
+     * Clearing removes all bytes and frees the whole ring.
+     */
+    @Test
+    public void testClear() {
+        SpscByteRingBuffer buffer = new SpscByteRingBuffer(4);
+        buffer.offer(new byte[] { 1, 2, 3 }, 0, 3);
+        buffer.clear();
+        
+        assertTrue(buffer.isEmpty());
+        assertEquals(-1, buffer.poll());
+        assertEquals(4, buffer.offer(new byte[] { 4, 5, 6, 7 }, 0, 4));
+        assertEquals(4, buffer.poll());
+    }
+    
+    /**
+     * Bytes are handed off from producer thread to consumer thread in order.
+     */
+    @Test
+    public void testHandOff() throws InterruptedException {
+        final SpscByteRingBuffer buffer = new SpscByteRingBuffer(16);
+        final int bytesNum = 100000;
+        
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                byte[] data = new byte[7];
+                int next = 0;
+                while ( next < bytesNum ) {
+                    int length = Math.min(data.length, bytesNum - next);
+                    for ( int i = 0; i < length; i++ ) {
+                        data[i] = (byte)(next + i);
+                    }
+                    int inserted = 0;
+                    while ( inserted < length ) {
+                        int count = buffer.offer(data, inserted, length - inserted);
+                        if ( count == 0 ) {
+                            Thread.yield();
+                        }
+                        inserted += count;
+                    }
+                    next += length;
+                }
+            }
+        };
+        producer.start();
+        
+        for ( int expected = 0; expected < bytesNum; expected++ ) {
+            int value;
+            while ( (value = buffer.poll()) == -1 ) {
+                Thread.yield();
+            }
+            assertEquals(expected & 0xFF, value);
+        }
+        producer.join();
+        assertTrue(buffer.isEmpty());
+    }
+}
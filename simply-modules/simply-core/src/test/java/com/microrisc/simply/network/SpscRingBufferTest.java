@@ -0,0 +1,132 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of SpscRingBuffer.
+ * 
+ * @author agent
+ */
+public class SpscRingBufferTest {
+    
+    /**
+     * Capacity is rounded up to power of 2.
+     */
+    @Test
+    public void testCapacity() {
+        assertEquals(16, new SpscRingBuffer<String>(9).capacity());
+        assertEquals(16, new SpscRingBuffer<String>(16).capacity());
+    }
+    
+    /**
+     * Items are polled in order of offering, full queue refuses items.
+     */
+    @Test
+    public void testOfferAndPoll() {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(4);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+        
+        for ( int i = 0; i < 4; i++ ) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+        
+        assertEquals(Integer.valueOf(0), buffer.poll());
+        assertTrue(buffer.offer(4));
+        for ( int i = 1; i <= 4; i++ ) {
+            assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+    
+    /**
+     * Items offered over the end of the ring continue at its start.
+     */
+    @Test
+    public void testWrapAround() {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(4);
+        for ( int i = 0; i < 100; i++ ) {
+            assertTrue(buffer.offer(i));
+            assertTrue(buffer.offer(i + 1000));
+            assertEquals(Integer.valueOf(i), buffer.poll());
+            assertEquals(Integer.valueOf(i + 1000), buffer.poll());
+        }
+        assertTrue(buffer.isEmpty());
+    }
+    
+    /**
+     * Clearing removes all items.
+     */
+    @Test
+    public void testClear() {
+        SpscRingBuffer<String> buffer = new SpscRingBuffer<>(4);
+        buffer.offer("a");
+        buffer.offer("b");
+        buffer.clear();
+        
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+        for ( int i = 0; i < 4; i++ ) {
+            assertTrue(buffer.offer("c"));
+        }
+    }
+    
+    /**
+     * Null items are refused.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullItem() {
+        new SpscRingBuffer<String>(4).offer(null);
+    }
+    
+    /**
+     * Items are handed off from producer thread to consumer thread in order.
+     */
+    @Test
+    public void testHandOff() throws InterruptedException {
+        final SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(8);
+        final int itemsNum = 100000;
+        
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for ( int i = 0; i < itemsNum; i++ ) {
+                    while ( !buffer.offer(i) ) {
+                        Thread.yield();
+                    }
+                }
+            }
+        };
+        producer.start();
+        
+        for ( int expected = 0; expected < itemsNum; expected++ ) {
+            Integer item;
+            while ( (item = buffer.poll()) == null ) {
+                Thread.yield();
+            }
+            assertEquals(expected, item.intValue());
+        }
+        producer.join();
+        assertTrue(buffer.isEmpty());
+    }
+}
@@ -0,0 +1,113 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.microrisc.simply.protocol.mapping;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of PacketValuesIndex.
+ * 
+ * @author agent
+ */
+public class PacketValuesIndexTest {
+    
+    private static List<PacketPositionValues> pattern(PacketPositionValues... values) {
+        return Arrays.asList(values);
+    }
+    
+    private static void assertCandidates(List<String> candidates, String... expected) {
+        assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(candidates));
+        assertEquals(expected.length, candidates.size());
+    }
+    
+    /**
+     * Key position is the position constrained by the most of the patterns.
+     */
+    @Test
+    public void selectsMostConstrainedPosition() {
+        Map<String, List<PacketPositionValues>> patterns = new LinkedHashMap<>();
+        patterns.put("a", pattern(new PacketPositionValues(0, (short)1), 
+                new PacketPositionValues(3, (short)5))
+        );
+        patterns.put("b", pattern(new PacketPositionValues(3, (short)6)));
+        patterns.put("c", pattern(new PacketPositionValues(2, (short)7), 
+                new PacketPositionValues(3, (short)7))
+        );
+        
+        assertEquals(3, new PacketValuesIndex<>(patterns).getKeyPosition());
+    }
+    
+    /**
+     * Equally constrained positions - the lowest one is selected.
+     */
+    @Test
+    public void selectsLowestPositionOnTie() {
+        Map<String, List<PacketPositionValues>> patterns = new LinkedHashMap<>();
+        patterns.put("a", pattern(new PacketPositionValues(4, (short)1)));
+        patterns.put("b", pattern(new PacketPositionValues(2, (short)1)));
+        
+        assertEquals(2, new PacketValuesIndex<>(patterns).getKeyPosition());
+    }
+    
+    @Test
+    public void returnsCandidatesByKeyValue() {
+        Map<String, List<PacketPositionValues>> patterns = new LinkedHashMap<>();
+        patterns.put("a", pattern(new PacketPositionValues(1, (short)1)));
+        patterns.put("b", pattern(new PacketPositionValues(1, new short[] { 1, 2 })));
+        patterns.put("c", pattern(new PacketPositionValues(1, (short)3)));
+        patterns.put("any", Collections.<PacketPositionValues>emptyList());
+        PacketValuesIndex<String> index = new PacketValuesIndex<>(patterns);
+        
+        assertCandidates(index.getCandidates(new short[] { 0, 1 }), "a", "b", "any");
+        assertCandidates(index.getCandidates(new short[] { 0, 2 }), "b", "any");
+        assertCandidates(index.getCandidates(new short[] { 0, 3 }), "c", "any");
+    }
+    
+    /**
+     * Only unconstrained items can match packets with unknown key value or 
+     * packets too short to contain the key position.
+     */
+    @Test
+    public void returnsUnindexedCandidatesOtherwise() {
+        Map<String, List<PacketPositionValues>> patterns = new LinkedHashMap<>();
+        patterns.put("a", pattern(new PacketPositionValues(1, (short)1)));
+        patterns.put("b", pattern(new PacketPositionValues(1, (short)2)));
+        patterns.put("any", Collections.<PacketPositionValues>emptyList());
+        PacketValuesIndex<String> index = new PacketValuesIndex<>(patterns);
+        
+        assertCandidates(index.getCandidates(new short[] { 0, 5 }), "any");
+        assertCandidates(index.getCandidates(new short[] { 0 }), "any");
+    }
+    
+    @Test
+    public void emptyIndexHasNoKeyPosition() {
+        PacketValuesIndex<String> index = new PacketValuesIndex<>(
+                new LinkedHashMap<String, List<PacketPositionValues>>()
+        );
+        
+        assertEquals(-1, index.getKeyPosition());
+        assertTrue(index.getCandidates(new short[] { 1, 2, 3 }).isEmpty());
+    }
+}
@@ -0,0 +1,210 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.microrisc.simply.protocol.mapping;
+
+import com.microrisc.simply.BytePacket;
+import com.microrisc.simply.protocol.RequestPacketCreator;
+import com.microrisc.simply.typeconvertors.AbstractConvertor;
+import com.microrisc.simply.typeconvertors.ValueConversionException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of RequestPacketTemplate.
+ * <p>
+ * Packets created by the template are compared with packets created by 
+ * RequestPacketCreator from fragments in the order: protocol, network, node, 
+ * interface, method, arguments.
+ * 
+ * @author agent
+ */
+public class RequestPacketTemplateTest {
+    
+    // converts strings to their characters and short arrays to themselves
+    private static final AbstractConvertor CONVERTOR = new AbstractConvertor() {
+        @Override
+        public short[] toProtoValue(Object value) throws ValueConversionException {
+            if ( value instanceof short[] ) {
+                return ((short[]) value).clone();
+            }
+            if ( value instanceof String ) {
+                String str = (String) value;
+                short[] protoValue = new short[str.length()];
+                for ( int i = 0; i < str.length(); i++ ) {
+                    protoValue[i] = (short) (str.charAt(i) & 0xFF);
+                }
+                return protoValue;
+            }
+            throw new ValueConversionException("Unsupported value: " + value);
+        }
+
+        @Override
+        public Object toObject(short[] protoValue) throws ValueConversionException {
+            throw new UnsupportedOperationException();
+        }
+    };
+    
+    
+    private List<ConstValueToPacketMapping> protocolConstants 
+            = Collections.<ConstValueToPacketMapping>emptyList();
+    private List<ValueToPacketMapping> networkMappings 
+            = Collections.<ValueToPacketMapping>emptyList();
+    private List<ValueToPacketMapping> nodeMappings 
+            = Collections.<ValueToPacketMapping>emptyList();
+    private List<ConstValueToPacketMapping> ifaceConstants 
+            = Collections.<ConstValueToPacketMapping>emptyList();
+    private List<ConstValueToPacketMapping> methodConstants 
+            = Collections.<ConstValueToPacketMapping>emptyList();
+    private List<ValueToPacketMapping> argMappings 
+            = Collections.<ValueToPacketMapping>emptyList();
+    
+    
+    private static ConstValueToPacketMapping constant(int position, int... values) {
+        short[] value = new short[values.length];
+        for ( int i = 0; i < values.length; i++ ) {
+            value[i] = (short) values[i];
+        }
+        return new ConstValueToPacketMapping(position, value);
+    }
+    
+    private static ValueToPacketMapping mapping(int position) {
+        return new ValueToPacketMapping(position, CONVERTOR);
+    }
+    
+    private static void addConstants(
+            List<PacketFragment> fragments, List<ConstValueToPacketMapping> constants
+    ) {
+        for ( ConstValueToPacketMapping constant : constants ) {
+            fragments.add( new PacketFragment(
+                    constant.getStartingPosition(), constant.getConvertedValue()
+            ));
+        }
+    }
+    
+    private static void addValue(
+            List<PacketFragment> fragments, ValueToPacketMapping mapping, Object value
+    ) throws ValueConversionException {
+        fragments.add( new PacketFragment(
+                mapping.getStartingPosition(), Serializer.serialize(mapping, value)
+        ));
+    }
+    
+    // creates the packet fragment by fragment
+    private short[] createByFragments(String networkId, String nodeId, Object[] args) 
+            throws ValueConversionException {
+        List<PacketFragment> fragments = new LinkedList<>();
+        addConstants(fragments, protocolConstants);
+        for ( ValueToPacketMapping networkMapping : networkMappings ) {
+            addValue(fragments, networkMapping, networkId);
+        }
+        for ( ValueToPacketMapping nodeMapping : nodeMappings ) {
+            addValue(fragments, nodeMapping, nodeId);
+        }
+        addConstants(fragments, ifaceConstants);
+        addConstants(fragments, methodConstants);
+        for ( int argId = 0; argId < argMappings.size(); argId++ ) {
+            addValue(fragments, argMappings.get(argId), args[argId]);
+        }
+        return RequestPacketCreator.createRequestPacket(fragments);
+    }
+    
+    // checks, that the template creates the same packets as the creator
+    private void assertEquivalent(String networkId, String nodeId, Object... args) 
+            throws ValueConversionException {
+        RequestPacketTemplate template = new RequestPacketTemplate(
+                protocolConstants, networkMappings, nodeMappings, 
+                ifaceConstants, methodConstants, argMappings
+        );
+        short[] expected = createByFragments(networkId, nodeId, args);
+        
+        assertArrayEquals(expected, template.createPacket(networkId, nodeId, args));
+        assertArrayEquals(
+                BytePacket.fromShorts(expected).array(), 
+                template.createBytePacket(networkId, nodeId, args).array()
+        );
+    }
+    
+    /**
+     * Layout with disjoint fragments.
+     */
+    @Test
+    public void disjointFragments() throws ValueConversionException {
+        nodeMappings = Arrays.asList(mapping(0));
+        ifaceConstants = Arrays.asList(constant(2, 0x06));
+        methodConstants = Arrays.asList(constant(3, 0x01), constant(4, 0xFF, 0xFF));
+        argMappings = Arrays.asList(mapping(6), mapping(8));
+        
+        assertEquivalent("1", "AB", new short[] { 0x10, 0x20 }, new short[] { 0xF0 });
+    }
+    
+    /**
+     * Interface and method constants override network and node data.
+     */
+    @Test
+    public void interfaceAndMethodOverrideNode() throws ValueConversionException {
+        networkMappings = Arrays.asList(mapping(1));
+        nodeMappings = Arrays.asList(mapping(0));
+        ifaceConstants = Arrays.asList(constant(1, 0x06));
+        methodConstants = Arrays.asList(constant(2, 0x81));
+        
+        assertEquivalent("NET", "NODE");
+    }
+    
+    /**
+     * Network and node data override protocol constants.
+     */
+    @Test
+    public void nodeOverridesProtocolConstants() throws ValueConversionException {
+        protocolConstants = Arrays.asList(constant(0, 0xAA, 0xBB, 0xCC, 0xDD));
+        networkMappings = Arrays.asList(mapping(3));
+        nodeMappings = Arrays.asList(mapping(1));
+        methodConstants = Arrays.asList(constant(2, 0x11));
+        
+        assertEquivalent("N", "XYZ");
+    }
+    
+    /**
+     * Arguments override all constants.
+     */
+    @Test
+    public void argumentsOverrideConstants() throws ValueConversionException {
+        protocolConstants = Arrays.asList(constant(0, 0x01));
+        ifaceConstants = Arrays.asList(constant(1, 0x02));
+        methodConstants = Arrays.asList(constant(2, 0x03, 0x04));
+        argMappings = Arrays.asList(mapping(0), mapping(3));
+        
+        assertEquivalent("1", "1", new short[] { 0x10, 0x11 }, new short[] { 0x20, 0x21 });
+    }
+    
+    /**
+     * Network and node data behind the constants extend the packet.
+     */
+    @Test
+    public void variableDataExtendPacket() throws ValueConversionException {
+        ifaceConstants = Arrays.asList(constant(0, 0x06));
+        networkMappings = Arrays.asList(mapping(4));
+        nodeMappings = Arrays.asList(mapping(2));
+        
+        assertEquivalent("NETWORK", "N");
+        assertEquivalent("1", "NODE_IDENTIFIER");
+    }
+}
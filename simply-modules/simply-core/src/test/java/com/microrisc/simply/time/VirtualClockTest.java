@@ -0,0 +1,183 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.time;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of VirtualClock.
+ * 
+ * @author agent
+ */
+public class VirtualClockTest {
+    
+    // thread sleeping for specified time on specified clock
+    private static class Sleeper extends Thread {
+        final VirtualClock clock;
+        final long sleepTime;
+        volatile long wakeUpTime = -1;
+        
+        Sleeper(VirtualClock clock, long sleepTime) {
+            this.clock = clock;
+            this.sleepTime = sleepTime;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                clock.sleep(sleepTime);
+                wakeUpTime = clock.currentTimeMillis();
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    // waits until specified number of threads waits on specified clock
+    private static void awaitWaiters(VirtualClock clock, int waitersNum) {
+        while ( clock.getWaitersNumber() < waitersNum ) {
+            Thread.yield();
+        }
+    }
+    
+    /**
+     * Time passes only when the clock is advanced.
+     */
+    @Test
+    public void testAdvance() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(5);
+        assertEquals(5, clock.currentTimeMillis());
+        assertEquals(5000000, clock.nanoTime());
+        
+        Thread.sleep(20);
+        assertEquals(5, clock.currentTimeMillis());
+        
+        clock.advance(10);
+        assertEquals(15, clock.currentTimeMillis());
+    }
+    
+    /**
+     * Sleeping thread is woken up when its deadline is reached.
+     */
+    @Test
+    public void testSleep() throws InterruptedException {
+        VirtualClock clock = new VirtualClock();
+        Sleeper sleeper = new Sleeper(clock, 100);
+        sleeper.start();
+        awaitWaiters(clock, 1);
+        
+        clock.advance(50);
+        sleeper.join(50);
+        assertTrue(sleeper.isAlive());
+        
+        clock.advance(50);
+        sleeper.join(5000);
+        assertFalse(sleeper.isAlive());
+        assertEquals(100, sleeper.wakeUpTime);
+        assertEquals(0, clock.getWaitersNumber());
+    }
+    
+    /**
+     * Advancing to the next deadline wakes up threads in order of deadlines.
+     */
+    @Test
+    public void testAdvanceToNextDeadline() throws InterruptedException {
+        VirtualClock clock = new VirtualClock();
+        Sleeper longSleeper = new Sleeper(clock, 30);
+        Sleeper shortSleeper = new Sleeper(clock, 10);
+        longSleeper.start();
+        shortSleeper.start();
+        awaitWaiters(clock, 2);
+        
+        assertTrue(clock.advanceToNextDeadline());
+        assertEquals(10, clock.currentTimeMillis());
+        shortSleeper.join(5000);
+        assertEquals(10, shortSleeper.wakeUpTime);
+        assertTrue(longSleeper.isAlive());
+        
+        assertTrue(clock.advanceToNextDeadline());
+        longSleeper.join(5000);
+        assertEquals(30, longSleeper.wakeUpTime);
+        
+        assertFalse(clock.advanceToNextDeadline());
+        assertEquals(30, clock.currentTimeMillis());
+    }
+    
+    /**
+     * Waiting on a monitor ends by notification before the deadline.
+     */
+    @Test
+    public void testAwaitNotified() throws InterruptedException {
+        final VirtualClock clock = new VirtualClock();
+        final Object monitor = new Object();
+        final boolean[] notified = new boolean[1];
+        
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                synchronized ( monitor ) {
+                    try {
+                        while ( !notified[0] ) {
+                            clock.await(monitor, 1000);
+                        }
+                    } catch ( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        waiter.start();
+        awaitWaiters(clock, 1);
+        
+        synchronized ( monitor ) {
+            notified[0] = true;
+            monitor.notifyAll();
+        }
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+        assertEquals(0, clock.currentTimeMillis());
+        assertEquals(0, clock.getWaitersNumber());
+    }
+    
+    /**
+     * Automatic advancing lets sleeping thread pass virtual time quickly.
+     */
+    @Test
+    public void testAutoAdvance() throws InterruptedException {
+        VirtualClock clock = new VirtualClock();
+        clock.startAutoAdvance(1);
+        try {
+            long realStart = System.currentTimeMillis();
+            for ( int i = 0; i < 10; i++ ) {
+                clock.sleep(60000);
+            }
+            assertEquals(600000, clock.currentTimeMillis());
+            assertTrue(System.currentTimeMillis() - realStart < 60000);
+        } finally {
+            clock.stopAutoAdvance();
+        }
+    }
+    
+    /**
+     * Negative times are refused.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeAdvance() {
+        new VirtualClock().advance(-1);
+    }
+}
@@ -0,0 +1,276 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.iqrf.dpa.connector;
+
+import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.CallRequestPriority;
+import com.microrisc.simply.CallResult;
+import com.microrisc.simply.connector.CallRequestIdempotencyPolicy;
+import com.microrisc.simply.connector.CallRequestKey;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Coalescing of equal idempotent call requests.
+ * <p>
+ * Each idempotent call request, which is waiting for processing or waiting for 
+ * its result, is a primary request of a group. Equal idempotent call request 
+ * of the same or lower priority is attached to the group instead of being sent 
+ * into the network again. The result of the primary request is then delivered 
+ * to all members of the group. Each member gets its own copy of the result. 
+ * <p>
+ * Call requests without node ID ( broadcasts ) are never coalesced. 
+ * 
+ * @author agent
+ */
+final class CallRequestsCoalescer {
+    
+    // group of coalesced call requests
+    private static final class Group {
+        final CallRequest request;
+        final CallRequestKey key;
+        final CallRequestPriority priority;
+        
+        // call requests, which the result will be delivered to, mapped by IDs
+        final Map<UUID, CallRequest> members = new LinkedHashMap<>();
+        
+        Group(CallRequest request, CallRequestPriority priority) {
+            this.request = request;
+            this.key = new CallRequestKey(request);
+            this.priority = priority;
+            members.put(request.getId(), request);
+        }
+    }
+    
+    
+    /** Active groups indexed by ID of their primary request. */
+    private final Map<UUID, Group> groups = new HashMap<>();
+    
+    /** 
+     * Groups, which equal call requests are attached to, indexed by key of 
+     * their primary request. 
+     */
+    private final Map<CallRequestKey, Group> groupsByKey = new HashMap<>();
+    
+    /** IDs of primary requests indexed by ID of attached requests. */
+    private final Map<UUID, UUID> primaryIds = new HashMap<>();
+    
+    /** Idempotency policy, {@code null} means no coalescing. */
+    private volatile CallRequestIdempotencyPolicy idempotencyPolicy = null;
+    
+    /** Number of attached call requests. */
+    private long coalescedCount = 0;
+    
+    
+    private boolean isCoalescable(CallRequest request) {
+        if ( request.getNodeId() == null ) {
+            return false;
+        }
+        CallRequestIdempotencyPolicy policy = idempotencyPolicy;
+        return ( (policy != null) && policy.isIdempotent(request) );
+    }
+    
+    private void removeGroup(Group group) {
+        groups.remove(group.request.getId());
+        if ( groupsByKey.get(group.key) == group ) {
+            groupsByKey.remove(group.key);
+        }
+    }
+    
+    // returns copy of specified value, if it is an array
+    private static Object copyValue(Object value) {
+        if ( (value == null) || !value.getClass().isArray() ) {
+            return value;
+        }
+        int length = Array.getLength(value);
+        Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+        System.arraycopy(value, 0, copy, 0, length);
+        return copy;
+    }
+    
+    /**
+     * Returns copy of specified result to deliver to a member of a group or
+     * to store into the results cache.
+     * Array values are copied, other values of results are immutable.
+     * @param result result to copy
+     * @return copy of {@code result}, {@code null} if {@code result} is {@code null}
+     */
+    static CallResult copyResult(CallResult result) {
+        if ( result == null ) {
+            return null;
+        }
+        return new CallResult( copyValue(result.getMethodCallResult()), 
+                copyValue(result.getAdditionalInfo())
+        );
+    }
+    
+    
+    /**
+     * Sets idempotency policy.
+     * @param idempotencyPolicy policy to use, {@code null} switches coalescing off
+     */
+    void setIdempotencyPolicy(CallRequestIdempotencyPolicy idempotencyPolicy) {
+        this.idempotencyPolicy = idempotencyPolicy;
+    }
+    
+    /**
+     * @return idempotency policy, {@code null} if coalescing is switched off
+     */
+    CallRequestIdempotencyPolicy getIdempotencyPolicy() {
+        return idempotencyPolicy;
+    }
+    
+    /**
+     * Attaches specified call request to the group of equal call request, 
+     * if there is any.
+     * @param request call request to attach
+     * @param priority priority of the call request
+     * @return {@code true} if {@code request} has been attached <br>
+     *         {@code false} if {@code request} must be processed on its own
+     */
+    synchronized boolean attach(CallRequest request, CallRequestPriority priority) {
+        if ( groupsByKey.isEmpty() || !isCoalescable(request) ) {
+            return false;
+        }
+        
+        Group group = groupsByKey.get(new CallRequestKey(request));
+        
+        // request must not wait longer, than without coalescing
+        if ( (group == null) || (priority.compareTo(group.priority) < 0) ) {
+            return false;
+        }
+        
+        group.members.put(request.getId(), request);
+        primaryIds.put(request.getId(), group.request.getId());
+        coalescedCount++;
+        return true;
+    }
+    
+    /**
+     * Registers specified call request as a primary request, which equal 
+     * call requests can be attached to.
+     * @param request call request to register
+     * @param priority priority of the call request
+     */
+    synchronized void register(CallRequest request, CallRequestPriority priority) {
+        if ( !isCoalescable(request) ) {
+            return;
+        }
+        
+        Group group = new Group(request, priority);
+        groups.put(request.getId(), group);
+        
+        // equal requests are attached to the group of the highest priority
+        Group keyGroup = groupsByKey.get(group.key);
+        if ( (keyGroup == null) || (priority.compareTo(keyGroup.priority) < 0) ) {
+            groupsByKey.put(group.key, group);
+        }
+    }
+    
+    /**
+     * Returns ID of call request, which is really processed instead of 
+     * specified one.
+     * @param requestId ID of call request
+     * @return ID of primary request, if {@code requestId} is attached <br>
+     *         {@code requestId} otherwise
+     */
+    synchronized UUID getProcessedRequestId(UUID requestId) {
+        UUID primaryId = primaryIds.get(requestId);
+        return ( primaryId != null )? primaryId : requestId;
+    }
+    
+    /**
+     * Closes group of specified primary request. No more requests can be 
+     * attached to the group.
+     * @param primary primary request
+     * @return call requests, which the result of the primary request is to 
+     *         be delivered to
+     */
+    synchronized List<CallRequest> close(CallRequest primary) {
+        Group group = groups.get(primary.getId());
+        if ( group == null ) {
+            return Collections.singletonList(primary);
+        }
+        
+        removeGroup(group);
+        for ( UUID memberId : group.members.keySet() ) {
+            primaryIds.remove(memberId);
+        }
+        return new ArrayList<>(group.members.values());
+    }
+    
+    /**
+     * Seals group of specified primary request. No more requests can be
+     * attached to the group, but its members still wait for the result of
+     * the primary request, until the group is closed.
+     * @param primary primary request
+     * @return call requests, which the result of the primary request is to
+     *         be delivered to
+     */
+    synchronized List<CallRequest> seal(CallRequest primary) {
+        Group group = groups.get(primary.getId());
+        if ( group == null ) {
+            return Collections.singletonList(primary);
+        }
+
+        if ( groupsByKey.get(group.key) == group ) {
+            groupsByKey.remove(group.key);
+        }
+        return new ArrayList<>(group.members.values());
+    }
+
+    /**
+     * Cancels specified call request.
+     * @param requestId ID of call request to cancel
+     * @return ID of call request, whose processing is to be cancelled <br>
+     *         {@code null} if the processing must continue, because there 
+     *         are other requests waiting for its result
+     */
+    synchronized UUID cancel(UUID requestId) {
+        UUID primaryId = primaryIds.remove(requestId);
+        if ( primaryId == null ) {
+            primaryId = requestId;
+        }
+        
+        Group group = groups.get(primaryId);
+        if ( group == null ) {
+            return requestId;
+        }
+        
+        group.members.remove(requestId);
+        if ( !group.members.isEmpty() ) {
+            return null;
+        }
+        
+        removeGroup(group);
+        return primaryId;
+    }
+    
+    /**
+     * @return number of call requests, which have been attached to equal
+     *         call requests
+     */
+    synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+}
@@ -0,0 +1,104 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.iqrf.dpa.connector;
+
+/**
+ * Statistics of call requests of one priority waiting in connector's queue.
+ * 
+ * @author agent
+ */
+public final class CallRequestsQueueStatistics {
+    private final int queueDepth;
+    private final long takenCount;
+    private final long averageWaitTime;
+    private final long maxWaitTime;
+    
+    
+    /**
+     * Creates new statistics.
+     * @param queueDepth number of requests actually waiting in the queue
+     * @param takenCount number of requests taken from the queue for processing
+     * @param averageWaitTime average time of waiting of taken requests [in ms]
+     * @param maxWaitTime maximal time of waiting of taken requests [in ms]
+     */
+    public CallRequestsQueueStatistics(
+            int queueDepth, long takenCount, long averageWaitTime, long maxWaitTime
+    ) {
+        this.queueDepth = queueDepth;
+        this.takenCount = takenCount;
+        this.averageWaitTime = averageWaitTime;
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    /**
+     * @return number of requests actually waiting in the queue
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return number of requests taken from the queue for processing
+     */
+    public long getTakenCount() {
+        return takenCount;
+    }
+
+    /**
+     * @return average time of waiting of taken requests in the queue [in ms]
+     */
+    public long getAverageWaitTime() {
+        return averageWaitTime;
+    }
+
+    /**
+     * @return maximal time of waiting of taken requests in the queue [in ms]
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+    
+    /**
+     * Returns statistics, which merges this statistics with specified one. 
+     * Depths of queues and counts of taken requests are summed, average wait 
+     * time is weighted by counts of taken requests.
+     * @param other statistics to merge with
+     * @return merged statistics
+     */
+    public CallRequestsQueueStatistics merge(CallRequestsQueueStatistics other) {
+        long mergedTakenCount = takenCount + other.takenCount;
+        long mergedAverageWaitTime = 0;
+        if ( mergedTakenCount > 0 ) {
+            mergedAverageWaitTime = ( averageWaitTime * takenCount 
+                    + other.averageWaitTime * other.takenCount ) / mergedTakenCount;
+        }
+        return new CallRequestsQueueStatistics(
+                queueDepth + other.queueDepth, mergedTakenCount, 
+                mergedAverageWaitTime, Math.max(maxWaitTime, other.maxWaitTime)
+        );
+    }
+    
+    @Override
+    public String toString() {
+        return ("{ " +
+                "queue depth=" + queueDepth +
+                ", taken=" + takenCount +
+                ", average wait time=" + averageWaitTime +
+                ", max wait time=" + maxWaitTime +
+                " }");
+    }
+}
@@ -19,6 +19,7 @@ package com.microrisc.simply.iqrf.dpa.connector;
 import com.microrisc.simply.AbstractMessage;
 import com.microrisc.simply.BaseCallResponse;
 import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.CallRequestPriority;
 import com.microrisc.simply.CallRequestProcessingInfo;
 import com.microrisc.simply.CallRequestProcessingState;
 import static com.microrisc.simply.CallRequestProcessingState.ERROR;
@@ -34,24 +35,69 @@ import com.microrisc.simply.asynchrony.BaseAsynchronousMessage;
 import com.microrisc.simply.asynchrony.AsynchronousMessagesGenerator;
 import com.microrisc.simply.asynchrony.AsynchronousMessagesGeneratorListener;
 import com.microrisc.simply.connector.AbstractConnector;
-import com.microrisc.simply.connector.CallResultsSender;
+import com.microrisc.simply.connector.CallRequestIdempotencyPolicy;
+import com.microrisc.simply.connector.CallResultsCache;
+import com.microrisc.simply.connector.SendPacer;
 import com.microrisc.simply.connector.response_waiting.ResponseWaitingConnector;
 import com.microrisc.simply.errors.DispatchingRequestToProtocolLayerError;
 import com.microrisc.simply.errors.CallRequestProcessingError;
 import com.microrisc.simply.iqrf.dpa.asynchrony.DPA_AsynchronousMessage;
 import com.microrisc.simply.iqrf.dpa.broadcasting.BroadcastRequest;
 import com.microrisc.simply.iqrf.dpa.broadcasting.BroadcastingConnectorService;
+import com.microrisc.simply.metrics.Counter;
+import com.microrisc.simply.metrics.Gauge;
+import com.microrisc.simply.metrics.LatencyHistogram;
+import com.microrisc.simply.metrics.Metrics;
+import com.microrisc.simply.metrics.MetricsRegistry;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import com.microrisc.simply.tracing.CallRequestEvent;
+import com.microrisc.simply.tracing.CallRequestEvents;
+import com.microrisc.simply.tracing.CallRequestStage;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Simple response waiting connector supporting DPA.
+ * <p>
+ * Call requests are processed in lanes, one lane per network. Requests of 
+ * the same network are sent one by one in the order of theirs priorities, 
+ * requests of different networks ( e.g. different gateways ) are processed 
+ * in parallel, so slow network doesn't delay others. Minimal pause between 
+ * sending requests and maximal queue wait time apply to each lane separately.
+ * Lane, which has nothing to process for {@link #MAX_LANE_IDLE_TIME}, is 
+ * closed and created again on the next request or message of its network.
+ * <p>
+ * If no response to a sent call request arrives in its maximal processing 
+ * time, the request becomes idle: no more requests are coalesced with it and 
+ * it waits in its lane for a late response at most for the maximal idle time. 
+ * Late response is delivered to the request and to all requests coalesced 
+ * with it. Lane doesn't close, while it has idle requests.
+ * <p>
+ * Connector maintains following metrics in its metrics registry, names of 
+ * the metrics start with the metrics prefix of the connector: <br>
+ * - {@code <prefix>.queue.depth.<priority>}, {@code <prefix>.queue.wait.<priority>}:
+ *   depths of queues of requests to process and wait times in them <br>
+ * - {@code <prefix>.requests.sent}, {@code <prefix>.requests.errors}, 
+ *   {@code <prefix>.requests.timeouts}, {@code <prefix>.requests.cancelled}:
+ *   counts of processed requests <br>
+ * - {@code <prefix>.processing}: times from sending of requests to arrival
+ *   of theirs responses <br>
+ * - {@code <prefix>.lanes}, {@code <prefix>.requests.idle}, 
+ *   {@code <prefix>.results.queue.depth},
+ *   {@code <prefix>.cache.hits}, {@code <prefix>.cache.misses}: gauges <br>
+ * Metrics prefix is {@code connector.<number of the connector>} by default, 
+ * so metrics of more connectors in one registry don't overwrite each other.
+ * <p>
+ * Stages of lifecycle of call requests are reported to {@link CallRequestEvents}.
  * 
  * @author Michal Konopa
  */
@@ -75,9 +121,19 @@ implements
         CallRequest callRequest;
         long maxProcTime;
         
+        // ticket of dispatching in results cache and the cache, which 
+        // issued it
+        long cacheTicket = CallResultsCache.NO_TICKET;
+        CallResultsCache ticketCache = null;
+        
+        // time of putting into the queue and of sending to protocol layer [in ns]
+        final long queueTime;
+        long sendTime = 0;
+        
         public CallRequestToProcess(CallRequest callRequest, long maxProcTime) {
             this.callRequest = callRequest;
             this.maxProcTime = maxProcTime;
+            this.queueTime = clock.nanoTime();
         }
     }
     
@@ -91,8 +147,6 @@ implements
         }
     }
     
-    private CallResultsSender callResultsSender = null;
-    
     
     // implementation of some aspects of asynchronous messages generator
     private class AsyncMsgGeneratorImpl {
@@ -150,12 +204,45 @@ implements
     
     
     /**
-     * Responsible for sending requests to underlaying network and receiving 
+     * Lane of processing of call requests of one network. Each network is 
+     * an independent half-duplex channel, so each lane has its own queue of 
+     * requests, pacing of sending and state of the request in process. 
+     * Requests of the same network are processed in the order given by 
+     * the queue, requests of different networks are processed in parallel.
+     * <p>
+     * Lane sends requests to underlaying network and receives 
      * messages (responses) from that network.
      */
-    private class WorkerThread extends Thread {
-        /** Time, when last request was sended. */
-        private long lastSendTime = 0;
+    private class NetworkLane extends Thread {
+        // ID of the network
+        private final String networkId;
+        
+        // queue of incomming call requests to process, ordered by priorities
+        private final PriorityCallRequestsQueue<CallRequestToProcess> requestsToProcess 
+                = new PriorityCallRequestsQueue<>(metrics, metricsPrefix + ".queue.wait");
+        
+        // synchronization object for requestsToProcess
+        private final Object syncRequestsToProcess = new Object();
+        
+        // queue of messages received from protocol layer
+        private final Queue<AbstractMessage> msgFromProtoLayer = new ConcurrentLinkedQueue<>(); 
+        
+        // synchronization object for messages incomming from protocol layer
+        private final Object syncMsgfromProtoLayer = new Object();
+        
+        // synchronization object for situation, when there is some waiting 
+        // request or some message from protocol layer
+        private final Object syncRequestOrMessage = new Object();
+        
+        // queue of asynchronous messages received from protocol layer
+        private final Queue<DPA_AsynchronousMessage> asyncMsgFromProtoLayer 
+                = new ConcurrentLinkedQueue<>();
+        
+        // synchronization object for asynchronous messages incomming from protocol layer
+        private final Object syncAsyncMsgfromProtoLayer = new Object(); 
+        
+        // pacing of sending requests to protocol layer
+        private final SendPacer sendPacer;
         
         // call request, which was lastly sent to underlaying network
         private CallRequestToProcess lastRequestToProc = null;
@@ -166,50 +253,182 @@ implements
         // synchronization for cancelling a request
         private final Object syncCancelRequest = new Object();
         
-        /** 
-         * Returns value of sleep time before sending next request to
-         * protocol layer.
-         * @param sendAttempt send attempt
+        // indicates, wheather this lane has been closed for being idle
+        private volatile boolean closed = false;
+        
+        // sent requests, whose response hasn't arrived in theirs maximal 
+        // processing time, waiting for a late response
+        private final Queue<IdleRequest> idleRequests = new ConcurrentLinkedQueue<>();
+        
+        // synchronization object for idleRequests
+        private final Object syncIdleRequests = new Object();
+        
+        
+        NetworkLane(String networkId, long betweenSendPause, long maxQueueWaitTime) {
+            super("DPA_Connector lane " + networkId);
+            this.networkId = networkId;
+            this.sendPacer = new SendPacer(betweenSendPause, SendPacer.DEFAULT_BURST, clock);
+            this.requestsToProcess.setMaxWaitTime(maxQueueWaitTime);
+        }
+        
+        /**
+         * Adds specified request into the queue of requests to process.
+         * @param requestToProcess request to add
+         * @param priority priority of the request
+         * @param coalesce if the request can be coalesced with equal requests
+         * @return {@code true} if the request has been added <br>
+         *         {@code false} if this lane has been closed
          */
-        private long getSleepTimeBeforeSend(int sendAttempt) {
-            long waitedTime = System.currentTimeMillis() - lastSendTime;
-            if ( sendAttempt > 0 ) {
-                if ( attemptPause > betweenSendPause ) {
-                    return ( attemptPause - waitedTime );
-                } else {
-                    return ( betweenSendPause - waitedTime );
+        boolean addRequest(
+                CallRequestToProcess requestToProcess, CallRequestPriority priority, 
+                boolean coalesce
+        ) {
+            synchronized ( syncRequestOrMessage ) {
+                if ( closed ) {
+                    return false;
+                }
+                synchronized( syncRequestsToProcess ) {
+                    if ( coalesce ) {
+                        coalescer.register(requestToProcess.callRequest, priority);
+                    }
+                    requestsToProcess.offer( requestToProcess, priority );
+                    syncRequestsToProcess.notifyAll();
+                }
+                syncRequestOrMessage.notifyAll();
+            }
+            return true;
+        }
+        
+        // adds specified message from protocol layer, returns false if this 
+        // lane has been closed
+        boolean addMessage(AbstractMessage message) {
+            synchronized ( syncRequestOrMessage ) {
+                if ( closed ) {
+                    return false;
+                }
+                synchronized( syncMsgfromProtoLayer ) {
+                    msgFromProtoLayer.offer(message);
+                    syncMsgfromProtoLayer.notifyAll();
+                }
+                syncRequestOrMessage.notifyAll();
+            }
+            return true;
+        }
+        
+        // adds specified asynchronous message from protocol layer, returns
+        // false if this lane has been closed 
+        boolean addAsynchronousMessage(DPA_AsynchronousMessage message) {
+            synchronized ( syncRequestOrMessage ) {
+                if ( closed ) {
+                    return false;
                 }
+                synchronized( syncAsyncMsgfromProtoLayer ) {
+                    asyncMsgFromProtoLayer.offer(message);
+                    syncAsyncMsgfromProtoLayer.notifyAll();
+                }
+                syncRequestOrMessage.notifyAll();
             }
-            return ( betweenSendPause - waitedTime );
-        }   
+            return true;
+        }
+        
+        // indicates, wheather this lane has been closed for being idle
+        boolean isClosed() {
+            return closed;
+        }
+        
+        // indicates, wheather specified request is in process in this lane
+        boolean isInProcess(UUID requestId) {
+            return requestId.equals(currProcRequestInfo.getRequestId());
+        }
+        
+        // indicates, wheather specified request is idle in this lane
+        boolean isIdle(UUID requestId) {
+            for ( IdleRequest idleRequest : idleRequests ) {
+                if ( idleRequest.reqToProc.callRequest.getId().equals(requestId) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        // returns number of idle requests of this lane
+        int getIdleRequestsCount() {
+            return idleRequests.size();
+        }
+        
+        // returns statistics of waiting of requests of specified priority
+        CallRequestsQueueStatistics getQueueStatistics(CallRequestPriority priority) {
+            return requestsToProcess.getStatistics(priority);
+        }
+        
+        // sets minimal pause between sending requests
+        void setBetweenSendPause(long betweenSendPause) {
+            sendPacer.setInterval(betweenSendPause);
+        }
+        
+        // sets maximal time of waiting of call request in the queue
+        void setMaxQueueWaitTime(long maxQueueWaitTime) {
+            requestsToProcess.setMaxWaitTime(maxQueueWaitTime);
+        }
         
         /**
-         * Sends specified DO method call request to protocol layer.
+         * Waits until repeated sending of the last request is permitted. 
+         * Waiting is finished sooner, if the last request is cancelled.
+         * @return {@code true} if the repeated sending is permitted <br>
+         *         {@code false} if the last request has been cancelled
+         */
+        private boolean waitForRepeatedSend() throws InterruptedException {
+            synchronized ( syncMsgfromProtoLayer ) {
+                long waitTime = sendPacer.getWaitTime(attemptPause);
+                while ( waitTime > 0 && !isCancelledLastRequest ) {
+                    clock.await(syncMsgfromProtoLayer, waitTime);
+                    waitTime = sendPacer.getWaitTime(attemptPause);
+                }
+                return !isCancelledLastRequest;
+            }
+        }
+        
+        /**
+         * Sends specified DO method call request to protocol layer. Sending of 
+         * the first attempt must be already permitted by send pacer. If sending
+         * fails, it is repeated after the attempt pause - at most 
+         * {@code maxSendAttempts} attempts are made.
          * @param request DO method call-request
+         * @return {@code true} if the request has been sent <br>
+         *         {@code false} if the request has been cancelled before 
+         *         a repeated attempt
          */
-        private void sendRequestToProtocolLayer(CallRequestToProcess request) 
+        private boolean sendRequestToProtocolLayer(CallRequestToProcess request) 
                 throws SimplyException, InterruptedException 
         {
             logger.debug("sendRequestToProtocolLayer - start: request={}", request);
             
             int sendAttempt = 0;
-            boolean sentOK = false;
-            while ( (sendAttempt < maxSendAttempts && ( sentOK == false )) ) { 
-                long sleepTime = getSleepTimeBeforeSend(sendAttempt);
-                
-                // pause between sending request to protocol layer
-                if ( sleepTime > 0) {
-                    Thread.sleep(sleepTime);
+            while ( true ) { 
+                // pause between attempts of sending request to protocol layer
+                if ( (sendAttempt > 0) && !waitForRepeatedSend() ) {
+                    logger.debug("sendRequestToProtocolLayer - end: cancelled");
+                    return false;
                 }
                 
-                protocolLayerService.sendRequest(request.callRequest, request.maxProcTime);
-                sentOK = true;
-               
-                lastSendTime = System.currentTimeMillis();                
                 sendAttempt++;
+                try {
+                    protocolLayerService.sendRequest(request.callRequest, request.maxProcTime);
+                    break;
+                } catch ( SimplyException ex ) {
+                    if ( sendAttempt >= maxSendAttempts ) {
+                        throw ex;
+                    }
+                    logger.warn("Sending request failed, attempt {}: {}", 
+                            sendAttempt, ex.getMessage()
+                    );
+                } finally {
+                    sendPacer.onSend();
+                }
             }
             
-            logger.debug("sendRequestToProtocolLayer - end:");
+            logger.debug("sendRequestToProtocolLayer - end: sent");
+            return true;
         }
         
         /**
@@ -229,11 +448,11 @@ implements
             CallRequestProcessingError procError = response.getProcessingError();
             if  ( procError != null ) {
                 procInfo = new CallRequestProcessingInfo(
-                    currProcRequestInfo.getRequestId(), ERROR, callResult, procError
+                    response.getRequestId(), ERROR, callResult, procError
                 );
             } else {
                 procInfo = new CallRequestProcessingInfo(
-                    currProcRequestInfo.getRequestId(), RESULT_ARRIVED, callResult
+                    response.getRequestId(), RESULT_ARRIVED, callResult
                 );
             }
             
@@ -270,6 +489,30 @@ implements
             return false;
         }
         
+        /**
+         * Delivers specified response of specified request to the request and 
+         * to all requests coalesced with it.
+         */
+        private void processResponse(
+                CallRequestToProcess reqToProc, BaseCallResponse response
+        ) {
+            CallRequestProcessingInfo procInfo = createCallRequestProcessingInfo( response );
+            storeToResultsCache(reqToProc, procInfo);
+            List<CallRequest> addressedRequests 
+                    = sendCallRequestProcessingInfo(reqToProc, procInfo);
+            if ( CallRequestEvents.isEnabled() ) {
+                if ( procInfo.getState() == ERROR ) {
+                    fireCallRequestEvents(addressedRequests, 
+                            CallRequestStage.ERROR, reqToProc.queueTime
+                    );
+                } else {
+                    fireCallRequestEvents(addressedRequests, 
+                            CallRequestStage.RESULT_DELIVERED, reqToProc.sendTime
+                    );
+                }
+            }
+        }
+        
         // Processes next message in the input queue from protocol layer.
         private void processNextIncommingMessage() {
             logger.debug("processNextIncommingMessage - start:");
@@ -281,12 +524,17 @@ implements
                 BaseCallResponse response = (BaseCallResponse) message;
                 if ( response.getRequestId().equals(currProcRequestInfo.getRequestId()) ) {
                     logger.info("Response found");
-                    CallRequestProcessingInfo procInfo = createCallRequestProcessingInfo( response );
-                    callResultsSender.addCallRequestProcessingInfo(procInfo);
+                    processResponse(lastRequestToProc, response);
                 } else {
-                    logger.warn("Response not matching to the last request. "
-                            + "Response will be discarded."
-                    );
+                    IdleRequest idleRequest = removeIdleRequest(response.getRequestId());
+                    if ( idleRequest != null ) {
+                        logger.info("Late response of idle request found");
+                        processResponse(idleRequest.reqToProc, response);
+                    } else {
+                        logger.warn("Response not matching to the last request. "
+                                + "Response will be discarded."
+                        );
+                    }
                 }     
             } else {
                 logger.info("Non response type of message found: {}", message);
@@ -295,6 +543,14 @@ implements
             logger.debug("processNextIncommingMessage - end");
         }
         
+        // processes messages preceding the response of the last request, 
+        // e.g. late responses of idle requests
+        private void processMessagesBeforeResponse() {
+            while ( !msgFromProtoLayer.isEmpty() && !responseArrivedForLastRequest() ) {
+                processNextIncommingMessage();
+            }
+        }
+        
         // processes all messages incomming from protocol layer
         private void processAllIncommingMessages() {
             while ( !msgFromProtoLayer.isEmpty() ) {
@@ -343,7 +599,7 @@ implements
                 this.requestId = requestId;
             }
             
-            public UUID getRequestId() {
+            public synchronized UUID getRequestId() {
                 return requestId;
             }
             
@@ -380,46 +636,88 @@ implements
         private final Object syncCurrProcRequestInfo = new Object(); 
         
         
-        // sets maximal processing time for specified request 
-        public void setCallRequestProcessingTime(UUID reqId, long maxProcTime) {
-            synchronized ( syncRequestsToProcess ) {
-                for ( CallRequestToProcess reqToProc : requestsToProcess ) {
-                    if ( reqToProc.callRequest.getId().equals(reqId) ) {
-                        reqToProc.maxProcTime = maxProcTime;
-                        return;
+        // indicates, wheather specified idle request exceeded max idle time period
+        private boolean isMaxIdleTimeExceeded(IdleRequest idleRequest) {
+            long idleTime = clock.currentTimeMillis() - idleRequest.startIdleTime;
+            return ( idleTime > maxCallRequestIdleTime );
+        }
+        
+        // removes idle requests, which exceeded max idle time period
+        private void removeMaxTimeExceededIdleRequests() {
+            synchronized ( syncIdleRequests ) {
+                Iterator<IdleRequest> requestIt = idleRequests.iterator();
+                while ( requestIt.hasNext() ) {
+                    IdleRequest idleRequest = requestIt.next();
+                    if ( isMaxIdleTimeExceeded(idleRequest) ) {
+                        requestIt.remove();
+                        coalescer.close(idleRequest.reqToProc.callRequest);
+                        releaseCacheTicket(idleRequest.reqToProc);
                     }
                 }
             }
-            
+        }
+        
+        /**
+         * Removes specified request from idle requests.
+         * @return removed idle request <br>
+         *         {@code null} if the request is not idle in this lane
+         */
+        private IdleRequest removeIdleRequest(UUID reqId) {
+            removeMaxTimeExceededIdleRequests();
             synchronized ( syncIdleRequests ) {
-                boolean found = false;
                 Iterator<IdleRequest> requestIt = idleRequests.iterator();
                 while ( requestIt.hasNext() ) {
                     IdleRequest idleRequest = requestIt.next();
-                    long idleTime = System.currentTimeMillis() - idleRequest.startIdleTime;
-                    if ( idleTime > maxCallRequestIdleTime ) {
+                    if ( idleRequest.reqToProc.callRequest.getId().equals(reqId) ) {
                         requestIt.remove();
-                        continue;
+                        return idleRequest;
                     }
-                    
-                    if ( found ) {
-                        continue;
+                }
+            }
+            return null;
+        }
+        
+        /**
+         * Sets maximal processing time for specified request, if it is waiting
+         * in the queue of this lane or it is idle in this lane. Maximal idle 
+         * time of idle request starts again. If {@code onlyLonger} is 
+         * {@code true}, the time is set only if it is longer than the current one.
+         * @return {@code true} if the request has been found
+         */
+        boolean setCallRequestProcessingTime(UUID reqId, long maxProcTime, boolean onlyLonger) {
+            synchronized ( syncRequestsToProcess ) {
+                for ( CallRequestToProcess reqToProc : requestsToProcess ) {
+                    if ( reqToProc.callRequest.getId().equals(reqId) ) {
+                        if ( !onlyLonger || isLongerProcessingTime(maxProcTime, reqToProc.maxProcTime) ) {
+                            reqToProc.maxProcTime = maxProcTime;
+                        }
+                        return true;
                     }
-                    
+                }
+            }
+            
+            removeMaxTimeExceededIdleRequests();
+            synchronized ( syncIdleRequests ) {
+                for ( IdleRequest idleRequest : idleRequests ) {
                     if ( idleRequest.reqToProc.callRequest.getId().equals(reqId) ) {
-                        idleRequest.startIdleTime = System.currentTimeMillis();
-                        idleRequest.reqToProc.maxProcTime = maxProcTime;
-                        found = true;
+                        idleRequest.startIdleTime = clock.currentTimeMillis();
+                        if ( !onlyLonger 
+                                || isLongerProcessingTime(maxProcTime, idleRequest.reqToProc.maxProcTime) 
+                        ) {
+                            idleRequest.reqToProc.maxProcTime = maxProcTime;
+                        }
+                        return true;
                     }
                 }
             }
+            return false;
         } 
         
         /**
          * Returns processing info of specified request or null, if no such 
-         * request was found.
+         * request is waiting, in process or idle in this lane.
          */
-        public CallRequestProcessingInfo getCallRequestProcessingInfo(UUID reqId) {
+        CallRequestProcessingInfo getCallRequestProcessingInfo(UUID reqId) {
             // if the request is waiting in input requests queue
             synchronized( syncRequestsToProcess ) {
                 for ( CallRequestToProcess reqToProcess : requestsToProcess ) {
@@ -430,128 +728,145 @@ implements
             }
             
             synchronized ( syncCurrProcRequestInfo ) {
-                if ( currProcRequestInfo.getRequestId().equals(reqId) ) {
+                if ( reqId.equals(currProcRequestInfo.getRequestId()) ) {
                     return currProcRequestInfo.getCallRequestProcessingInfo();
                 }
             }
             
-            CallRequestProcessingInfo procInfo = null; 
-            
+            removeMaxTimeExceededIdleRequests();
             synchronized ( syncIdleRequests ) {
-                boolean found = false;
-                Iterator<IdleRequest> requestIt = idleRequests.iterator();
-                while ( requestIt.hasNext() ) {
-                    IdleRequest idleRequest = requestIt.next();
-                    long idleTime = System.currentTimeMillis() - idleRequest.startIdleTime;
-                    if ( idleTime > maxCallRequestIdleTime ) {
-                        requestIt.remove();
-                        continue;
-                    }
-                    
-                    if ( found ) {
-                        continue;
-                    }
-                    
+                for ( IdleRequest idleRequest : idleRequests ) {
                     if ( idleRequest.reqToProc.callRequest.getId().equals(reqId) ) {
-                        procInfo = new CallRequestProcessingInfo(reqId, WAITING_FOR_PROCESSING );
-                        found = true;
+                        return new CallRequestProcessingInfo( reqId, WAITING_FOR_PROCESSING );
                     }
                 }
             }
             
-            // could be NULL
-            return procInfo;
+            return null;
         }
         
         /**
-         * Cancels processing of specified request.
+         * Cancels processing of specified request, if it is waiting, in 
+         * process or idle in this lane.
          * @param reqId ID of request to cancel
+         * @return {@code true} if the request has been found
          */
-        public void cancelCallRequest(UUID reqId) {
+        boolean cancelCallRequest(UUID reqId) {
             // must be tied together because the last request is polled from 
             // requests to process
             synchronized ( syncCancelRequest ) {
                 synchronized ( syncMsgfromProtoLayer ) {
-                    if ( lastRequestToProc.callRequest.getId().equals(reqId) ) {
+                    if ( (lastRequestToProc != null) 
+                            && lastRequestToProc.callRequest.getId().equals(reqId) 
+                    ) {
                         isCancelledLastRequest = true;
                         syncMsgfromProtoLayer.notifyAll();
-                        return;
+                        return true;
                     }
                 }
             
+                boolean found = false;
                 synchronized ( syncRequestsToProcess ) {
                     Iterator<CallRequestToProcess> requestIt = requestsToProcess.iterator();
                     while ( requestIt.hasNext() ) {
                         CallRequestToProcess reqToProc = requestIt.next();
                         if ( reqToProc.callRequest.getId().equals(reqId) ) {
                             requestIt.remove();
+                            releaseCacheTicket(reqToProc);
+                            found = true;
+                            if ( CallRequestEvents.isEnabled() ) {
+                                fireCallRequestEvent(reqToProc, 
+                                        CallRequestStage.CANCELLED, reqToProc.queueTime
+                                );
+                            }
                         }
                     }
                 }
+                if ( found ) {
+                    return true;
+                }
             }
             
-            synchronized ( syncIdleRequests ) {
-                boolean found = false;
-                Iterator<IdleRequest> requestIt = idleRequests.iterator();
-                while ( requestIt.hasNext() ) {
-                    IdleRequest idleRequest = requestIt.next();
-                    long idleTime = System.currentTimeMillis() - idleRequest.startIdleTime;
-                    if ( idleTime > maxCallRequestIdleTime ) {
-                        requestIt.remove();
-                        continue;
-                    }
-                    
-                    if ( found ) {
-                        continue;
-                    }
-                    
-                    if ( idleRequest.reqToProc.callRequest.getId().equals(reqId) ) {
-                        requestIt.remove();
-                        found = true;
-                    }
-                }
+            IdleRequest idleRequest = removeIdleRequest(reqId);
+            if ( idleRequest == null ) {
+                return false;
             }
+            releaseCacheTicket(idleRequest.reqToProc);
+            requestsCancelledCounter.increment();
+            if ( CallRequestEvents.isEnabled() ) {
+                fireCallRequestEvent(idleRequest.reqToProc, 
+                        CallRequestStage.CANCELLED, idleRequest.reqToProc.queueTime
+                );
+            }
+            return true;
         }
         
-        // removes idle requests, which exceeded max idle time period
-        private void removeMaxTimeExceededIdleRequests() {
-            synchronized ( syncIdleRequests ) {
-                Iterator<IdleRequest> requestIt = idleRequests.iterator();
-                while ( requestIt.hasNext() ) {
-                    IdleRequest idleRequest = requestIt.next();
-                    long idleTime = System.currentTimeMillis() - idleRequest.startIdleTime;
-                    if ( idleTime > maxCallRequestIdleTime ) {
-                        requestIt.remove();
-                    }
-                }
+        
+        /**
+         * Ends processing of the last request. Final processing info of 
+         * the request has already been passed to the results sender, so 
+         * the request is not reported as being in process anymore and it 
+         * cannot be cancelled.
+         */
+        private void finishLastRequest() {
+            synchronized ( syncMsgfromProtoLayer ) {
+                lastRequestToProc = null;
             }
+            currProcRequestInfo.setRequestId(null);
         }
         
-        
         @Override
         public void run() {
             while ( true ) {
                 if ( this.isInterrupted() ) {
-                    logger.info("Worker thread end");
+                    logger.info("Lane thread end: network={}", networkId);
                     return;
                 }
                 
-                // waiting for the situation, when there is some request or
-                // some message from the protocol layer
+                // waiting for the situation, when there is some request permitted 
+                // to send or some message from the protocol layer
                 synchronized( syncRequestOrMessage ) {
-                    while ( requestsToProcess.isEmpty() && asyncMsgFromProtoLayer.isEmpty() ) {
+                    long idleStartTime = clock.currentTimeMillis();
+                    while ( asyncMsgFromProtoLayer.isEmpty() && msgFromProtoLayer.isEmpty() ) {
+                        long waitTime = 0;
+                        if ( !requestsToProcess.isEmpty() ) {
+                            waitTime = sendPacer.getWaitTime();
+                            if ( waitTime == 0 ) {
+                                break;
+                            }
+                        } else {
+                            long idleTime = clock.currentTimeMillis() - idleStartTime;
+                            if ( idleTime >= MAX_LANE_IDLE_TIME ) {
+                                // lane waiting for late responses is not idle
+                                removeMaxTimeExceededIdleRequests();
+                                if ( idleRequests.isEmpty() ) {
+                                    closed = true;
+                                    break;
+                                }
+                                idleStartTime = clock.currentTimeMillis();
+                                idleTime = 0;
+                            }
+                            waitTime = MAX_LANE_IDLE_TIME - idleTime;
+                        }
+                        
                         try {
-                            syncRequestOrMessage.wait();
+                            clock.await(syncRequestOrMessage, waitTime);
                         } catch ( InterruptedException e ) {
                             logger.warn(
-                                "Worker thread interrupted while waiting on requests"
-                                + " and messages", e
+                                "Lane thread interrupted while waiting on requests"
+                                + " and messages: network={}", networkId, e
                             );
                             return;
                         }
                     }
                 }
                 
+                if ( closed ) {
+                    lanes.remove(networkId, this);
+                    logger.info("Idle lane closed: network={}", networkId);
+                    return;
+                }
+                
                 // processing of asynchronous messages
                 synchronized ( syncAsyncMsgfromProtoLayer ) {
                     if ( !asyncMsgFromProtoLayer.isEmpty() ) {
@@ -559,10 +874,15 @@ implements
                     }
                 }
                 
+                // processing of late responses of idle requests
+                if ( !msgFromProtoLayer.isEmpty() ) {
+                    processAllIncommingMessages();
+                }
+                
                 synchronized ( syncCancelRequest ) {
-                    // checking, if there are some new requests to process
+                    // checking, if there are some new requests permitted to send
                     synchronized( syncRequestsToProcess ) {
-                        if ( !requestsToProcess.isEmpty() ) {
+                        if ( !requestsToProcess.isEmpty() && sendPacer.getWaitTime() == 0 ) {
                             lastRequestToProc = requestsToProcess.poll();
                             isCancelledLastRequest = false;
                         } else {
@@ -584,23 +904,53 @@ implements
                 
                 boolean respArrivedForLastRequest = false;
                 boolean requestSentOk = false;
+                boolean requestCancelled = false;
+                lastRequestToProc.sendTime = clock.nanoTime();
                 
                 // sending last request to protocol layer
                 try {
-                    sendRequestToProtocolLayer( lastRequestToProc );
-                    requestSentOk = true;
+                    if ( !sendRequestToProtocolLayer( lastRequestToProc ) ) {
+                        requestCancelled = true;
+                    } else {
+                        requestSentOk = true;
+                        requestsSentCounter.increment();
+                        if ( CallRequestEvents.isEnabled() ) {
+                            fireCallRequestEvent(lastRequestToProc, 
+                                    CallRequestStage.SENT, lastRequestToProc.queueTime
+                            );
+                        }
+                    }
                 } catch ( Exception ex ) {
+                    requestsErrorsCounter.increment();
                     // dispatching error
                     logger.error("Send request to protocol layer error", ex);
                     currProcRequestInfo.setAll( lastRequestToProc.callRequest.getId(), ERROR, 
                             null, new DispatchingRequestToProtocolLayerError(ex)
                     );
-                    callResultsSender.addCallRequestProcessingInfo(
-                            currProcRequestInfo.getCallRequestProcessingInfo() 
+                    List<CallRequest> addressedRequests = sendCallRequestProcessingInfo(
+                            lastRequestToProc, currProcRequestInfo.getCallRequestProcessingInfo() 
                     );
+                    if ( CallRequestEvents.isEnabled() ) {
+                        fireCallRequestEvents(addressedRequests, 
+                                CallRequestStage.ERROR, lastRequestToProc.queueTime
+                        );
+                    }
                 } 
                 
+                // cancelled during the pause between sending attempts
+                if ( requestCancelled ) {
+                    requestsCancelledCounter.increment();
+                    if ( CallRequestEvents.isEnabled() ) {
+                        fireCallRequestEvent(lastRequestToProc, 
+                                CallRequestStage.CANCELLED, lastRequestToProc.queueTime
+                        );
+                    }
+                    coalescer.close(lastRequestToProc.callRequest);
+                }
+                
                 if ( !requestSentOk ) {
+                    releaseCacheTicket(lastRequestToProc);
+                    finishLastRequest();
                     removeMaxTimeExceededIdleRequests();
                     continue;
                 }
@@ -611,16 +961,17 @@ implements
                     // while-cycle is needed because other responses may
                     // arrive to the connector
                     long timeToWait = lastRequestToProc.maxProcTime;
+                    processMessagesBeforeResponse();
                     respArrivedForLastRequest = responseArrivedForLastRequest();
                     
                     while ( !respArrivedForLastRequest && !isCancelledLastRequest ) {
                         try {
                             if ( lastRequestToProc.maxProcTime == UNLIMITED_MAXIMAL_PROCESSING_TIME ) {
-                                    syncMsgfromProtoLayer.wait();
+                                clock.await(syncMsgfromProtoLayer, 0);
                             } else {
-                                long startTime = System.nanoTime();
-                                syncMsgfromProtoLayer.wait( timeToWait );
-                                double timeElapsed = (System.nanoTime() - startTime) * NANOSEC_TO_MILISEC;
+                                long startTime = clock.nanoTime();
+                                clock.await(syncMsgfromProtoLayer, timeToWait);
+                                double timeElapsed = (clock.nanoTime() - startTime) * NANOSEC_TO_MILISEC;
 
                                 if ( timeElapsed >= timeToWait ) {
                                     break;
@@ -628,96 +979,109 @@ implements
                                 
                                 timeToWait -= timeElapsed; 
                             }
+                            processMessagesBeforeResponse();
                             respArrivedForLastRequest = responseArrivedForLastRequest();
                         } catch ( InterruptedException e ) {
                             logger.warn(
-                                    "Worker thread interrupted while waiting on response", e
+                                    "Lane thread interrupted while waiting on response: "
+                                    + "network={}", networkId, e
                             );
                             return;
                         }
                     }
                 }
 
+                if ( respArrivedForLastRequest ) {
+                    processingHistogram.record(clock.nanoTime() - lastRequestToProc.sendTime);
+                } else if ( isCancelledLastRequest ) {
+                    releaseCacheTicket(lastRequestToProc);
+                    requestsCancelledCounter.increment();
+                    if ( CallRequestEvents.isEnabled() ) {
+                        fireCallRequestEvent(lastRequestToProc, 
+                                CallRequestStage.CANCELLED, lastRequestToProc.queueTime
+                        );
+                    }
+                } else {
+                    // no more requests can be coalesced with the last request, 
+                    // it waits for a late response as an idle request
+                    requestsTimeoutsCounter.increment();
+                    List<CallRequest> addressedRequests 
+                            = coalescer.seal(lastRequestToProc.callRequest);
+                    synchronized ( syncIdleRequests ) {
+                        idleRequests.add( new IdleRequest(lastRequestToProc, clock.currentTimeMillis()) );
+                    }
+                    if ( CallRequestEvents.isEnabled() ) {
+                        fireCallRequestEvents(addressedRequests, 
+                                CallRequestStage.TIMEOUT, lastRequestToProc.sendTime
+                        );
+                    }
+                }
+                
                 // process arrived messages
                 if ( !msgFromProtoLayer.isEmpty() ) {
                     processAllIncommingMessages();
                     if ( !respArrivedForLastRequest ) {
                         // there wasn't a response for a last request
                         logger.warn("No messages arrived for the last request.");
-                        if ( !isCancelledLastRequest ) {
-                            idleRequests.add( new IdleRequest(lastRequestToProc, System.currentTimeMillis()) );
-                        }
-                    }
-                } else {
-                    // no messages arrived in the timeout
-                    if ( !isCancelledLastRequest ) {
-                        idleRequests.add( new IdleRequest(lastRequestToProc, System.currentTimeMillis()) );
                     }
+                } else if ( !respArrivedForLastRequest ) {
                     logger.warn("No messages arrived at timeout");
                 }
                 
+                if ( respArrivedForLastRequest || isCancelledLastRequest ) {
+                    coalescer.close(lastRequestToProc.callRequest);
+                }
+                
+                finishLastRequest();
+                
                 // removes idle requests, which exceeded max idle time period
                 removeMaxTimeExceededIdleRequests();
             }
         }
     }
     
-    /** 
-     * Worker thread: sending call requests to protocol layer and receiving 
-     * messages from protocol layer to connector. 
-     */
-    private WorkerThread workerThread = null;
+    /** Registry of metrics. */
+    private final MetricsRegistry metrics;
     
-    /** 
-     * Queue of incomming call requests to process.
-     */
-    private Queue<CallRequestToProcess> requestsToProcess = new ConcurrentLinkedQueue<>();
+    /** Prefix of names of metrics of this connector. */
+    private final String metricsPrefix;
     
-    /**
-     * Synchronization object for {@code requestsToProcess}. 
-     */
-    private final Object syncRequestsToProcess = new Object();
+    /** Number of requests sent to protocol layer. */
+    private final Counter requestsSentCounter;
     
+    /** Number of requests, whose sending to protocol layer failed. */
+    private final Counter requestsErrorsCounter;
     
-    /**
-     * Idle requests.
-     */
-    private Queue<IdleRequest> idleRequests = new ConcurrentLinkedQueue<>();
+    /** Number of sent requests, whose response has not arrived in time. */
+    private final Counter requestsTimeoutsCounter;
     
-    /**
-     * Synchronization object for {@code idleRequests}. 
-     */
-    private final Object syncIdleRequests = new Object();
+    /** Number of sent requests cancelled during waiting for response. */
+    private final Counter requestsCancelledCounter;
     
+    /** Times from sending of requests to arrival of theirs responses. */
+    private final LatencyHistogram processingHistogram;
     
+    /** Names of registered gauges. */
+    private final List<String> gaugesNames = new LinkedList<>();
     
     /** 
-     * Queue of messages received from protocol layer.  
-     */  
-    private Queue<AbstractMessage> msgFromProtoLayer = new ConcurrentLinkedQueue<>(); 
-    
-    /**
-     * Synchronization object for messages incomming from protocol layer.
+     * Lanes of processing of call requests: sending call requests to protocol 
+     * layer and receiving messages from protocol layer to connector. Mapped
+     * by IDs of networks.
      */
-    private final Object syncMsgfromProtoLayer = new Object();
-   
-    /** 
-     * Synchronization object for situation, when there is some waiting request 
-     * or some message from protocol layer.
-     */
-    private final Object syncRequestOrMessage = new Object();
-    
+    private final ConcurrentMap<String, NetworkLane> lanes = new ConcurrentHashMap<>();
     
+    /** Synchronization object for creating, starting and terminating of lanes. */
+    private final Object syncLanes = new Object();
     
     /** 
-     * Queue of asynchronous messages received from protocol layer.  
-     */  
-    private Queue<DPA_AsynchronousMessage> asyncMsgFromProtoLayer = new ConcurrentLinkedQueue<>();
-    
-    /**
-     * Synchronization object for asynchronous messages incomming from protocol layer.
+     * Time, after which lane with nothing to process is closed [in miliseconds]. 
      */
-    private final Object syncAsyncMsgfromProtoLayer = new Object(); 
+    public static final long MAX_LANE_IDLE_TIME = 60000;
+    
+    /** Indicates, wheather this connector has been started. */
+    private boolean isStarted = false;
+    
     
     
     private static long MAX_CALL_REQUEST_IDLE_TIME_DEFAULT = 30000;
@@ -764,6 +1128,18 @@ implements
     /** Minimal pause between sending requests [in miliseconds]. */
     private volatile long betweenSendPause = BETWEEN_SEND_PAUSE_DEFAULT;
     
+    /** Cache of call results, {@code null} means no caching. */
+    private volatile CallResultsCache resultsCache = null;
+    
+    /** Coalescing of equal idempotent call requests. */
+    private final CallRequestsCoalescer coalescer = new CallRequestsCoalescer();
+    
+    /** Clock to measure time and to wait by. */
+    private final Clock clock = Clocks.getDefaultClock();
+    
+    /** Maximal time of waiting of call request in the queue [in miliseconds]. */
+    private volatile long maxQueueWaitTime = PriorityCallRequestsQueue.DEFAULT_MAX_WAIT_TIME;
+    
     
     private static ConnectedDeviceObject checkDeviceObject(ConnectedDeviceObject deviceObject) {
         if ( deviceObject == null ) {
@@ -800,6 +1176,17 @@ implements
         return maxProcTime;
     }
     
+    // indicates, whether the first processing time is longer than the second one
+    private static boolean isLongerProcessingTime(long procTime, long otherProcTime) {
+        if ( otherProcTime == UNLIMITED_MAXIMAL_PROCESSING_TIME ) {
+            return false;
+        }
+        if ( procTime == UNLIMITED_MAXIMAL_PROCESSING_TIME ) {
+            return true;
+        }
+        return ( procTime > otherProcTime );
+    }
+    
     private static UUID checkRequestId(UUID requestId) {
         if ( requestId == null ) {
             throw new IllegalArgumentException("Call request ID cannot be null");
@@ -821,40 +1208,255 @@ implements
         return networkId;
     }
     
+    private static MetricsRegistry checkMetricsRegistry(MetricsRegistry metrics) {
+        if ( metrics == null ) {
+            throw new IllegalArgumentException("Metrics registry cannot be null");
+        }
+        return metrics;
+    }
+    
+    private static String checkMetricsPrefix(String metricsPrefix) {
+        if ( metricsPrefix == null ) {
+            throw new IllegalArgumentException("Metrics prefix cannot be null");
+        }
+        if ( metricsPrefix.isEmpty() ) {
+            throw new IllegalArgumentException("Metrics prefix cannot be empty");
+        }
+        return metricsPrefix;
+    }
+    
     
     
     /**
-     * Creates new response-waiting connector.
+     * Creates new response-waiting connector. Its metrics are maintained in 
+     * the default metrics registry under the prefix 
+     * {@code connector.<number of the connector>}.
      * @param protocolLayerService protocol layer service to use
      * @throws IllegalArgumentException if {@code protocolLayerService} is {@code null}
      */
     public DPA_Connector(ProtocolLayerService protocolLayerService) {
-       super( protocolLayerService );
-       this.callResultsSender = new CallResultsSender();
-       this.workerThread = new WorkerThread();
-       this.asyncMsgGenerator = new AsyncMsgGeneratorImpl();
+        this(protocolLayerService, Metrics.getDefaultRegistry(), createDefaultMetricsPrefix());
+    }
+    
+    /**
+     * Creates new response-waiting connector, which maintains its metrics 
+     * in specified registry under specified prefix. Connectors sharing 
+     * the same registry must use different prefixes.
+     * @param protocolLayerService protocol layer service to use
+     * @param metrics registry of metrics
+     * @param metricsPrefix prefix of names of metrics of the connector
+     * @throws IllegalArgumentException if {@code protocolLayerService} or 
+     *         {@code metrics} is {@code null} or {@code metricsPrefix} is 
+     *         {@code null} or empty
+     */
+    public DPA_Connector(
+            ProtocolLayerService protocolLayerService, MetricsRegistry metrics,
+            String metricsPrefix
+    ) {
+        super( protocolLayerService );
+        this.metrics = checkMetricsRegistry(metrics);
+        this.metricsPrefix = checkMetricsPrefix(metricsPrefix);
+        this.requestsSentCounter = metrics.getCounter(metricsPrefix + ".requests.sent");
+        this.requestsErrorsCounter = metrics.getCounter(metricsPrefix + ".requests.errors");
+        this.requestsTimeoutsCounter = metrics.getCounter(metricsPrefix + ".requests.timeouts");
+        this.requestsCancelledCounter = metrics.getCounter(metricsPrefix + ".requests.cancelled");
+        this.processingHistogram = metrics.getHistogram(metricsPrefix + ".processing");
+        this.asyncMsgGenerator = new AsyncMsgGeneratorImpl();
+    }
+    
+    /**
+     * Sends specified processing info to the addressee of specified call 
+     * request and to addressees of all call requests coalesced with it.
+     * @param reqToProc processed call request
+     * @param procInfo processing info of {@code reqToProc} to send
+     * @return call requests, whose addressees the processing info has been 
+     *         sent to
+     */
+    private List<CallRequest> sendCallRequestProcessingInfo(
+            CallRequestToProcess reqToProc, CallRequestProcessingInfo procInfo
+    ) {
+        UUID requestId = procInfo.getRequestId();
+        List<CallRequest> addressedRequests = coalescer.close(reqToProc.callRequest);
+        for ( CallRequest addressedRequest : addressedRequests ) {
+            UUID callId = addressedRequest.getId();
+            if ( callId.equals(requestId) ) {
+                callResultsSender.addCallRequestProcessingInfo(procInfo);
+            } else {
+                callResultsSender.addCallRequestProcessingInfo(
+                        new CallRequestProcessingInfo(callId, procInfo.getState(), 
+                                CallRequestsCoalescer.copyResult(procInfo.getCallResult()), 
+                                procInfo.getError()
+                        )
+                );
+            }
+        }
+        return addressedRequests;
+    }
+    
+    /**
+     * Delivers event of specified stage of specified call request to tracing 
+     * listeners.
+     * @param reqToProc call request
+     * @param stage reached stage
+     * @param startTime start time of duration of the stage [in ns]
+     */
+    private void fireCallRequestEvent(
+            CallRequestToProcess reqToProc, CallRequestStage stage, long startTime
+    ) {
+        long time = clock.nanoTime();
+        CallRequestEvents.fire(
+                new CallRequestEvent(reqToProc.callRequest, stage, time, time - startTime)
+        );
+    }
+    
+    /**
+     * Delivers events of specified stage of specified coalesced call requests 
+     * to tracing listeners. All of them have the duration of the processed 
+     * call request.
+     * @param requests call requests
+     * @param stage reached stage
+     * @param startTime start time of duration of the stage [in ns]
+     */
+    private void fireCallRequestEvents(
+            List<CallRequest> requests, CallRequestStage stage, long startTime
+    ) {
+        long time = clock.nanoTime();
+        for ( CallRequest request : requests ) {
+            CallRequestEvents.fire(
+                    new CallRequestEvent(request, stage, time, time - startTime)
+            );
+        }
+    }
+    
+    /**
+     * Returns lane of specified network. If the lane doesn't exist yet or it
+     * has been closed, new lane is created and started, if this connector has 
+     * already been started.
+     * @param networkId ID of the network, {@code null} for messages of 
+     *        unknown network
+     * @return lane of {@code networkId}
+     */
+    private NetworkLane getLane(String networkId) {
+        String laneKey = String.valueOf(networkId);
+        NetworkLane lane = lanes.get(laneKey);
+        if ( (lane != null) && !lane.isClosed() ) {
+            return lane;
+        }
+        
+        synchronized ( syncLanes ) {
+            lane = lanes.get(laneKey);
+            if ( (lane == null) || lane.isClosed() ) {
+                lane = new NetworkLane(laneKey, betweenSendPause, maxQueueWaitTime);
+                lanes.put(laneKey, lane);
+                if ( isStarted ) {
+                    lane.start();
+                }
+                logger.info("New lane created: network={}", laneKey);
+            }
+        }
+        return lane;
+    }
+    
+    // adds specified request into the lane of specified network
+    private void addRequestToLane(
+            String networkId, CallRequestToProcess requestToProcess, 
+            CallRequestPriority priority, boolean coalesce
+    ) {
+        // lane can be closed for being idle just now, new one is created then
+        while ( !getLane(networkId).addRequest(requestToProcess, priority, coalesce) ) {
+            logger.debug("Lane closed, request will be added to the new one: network={}", networkId);
+        }
     }
     
     /**
+     * Stores result of specified call request into the results cache, which 
+     * the dispatching of the call request is registered in. Copy of the result 
+     * is stored, so that changes of the delivered result don't affect the 
+     * cached one. If the processing ended with an error, the ticket of 
+     * the dispatching is released.
+     * @param reqToProc processed call request
+     * @param procInfo processing info of {@code reqToProc}
+     */
+    private void storeToResultsCache(
+            CallRequestToProcess reqToProc, CallRequestProcessingInfo procInfo
+    ) {
+        if ( reqToProc.cacheTicket == CallResultsCache.NO_TICKET ) {
+            return;
+        }
+        if ( procInfo.getState() == RESULT_ARRIVED ) {
+            reqToProc.ticketCache.put(reqToProc.callRequest, 
+                    CallRequestsCoalescer.copyResult(procInfo.getCallResult()), 
+                    reqToProc.cacheTicket
+            );
+            reqToProc.cacheTicket = CallResultsCache.NO_TICKET;
+        } else {
+            releaseCacheTicket(reqToProc);
+        }
+    }
+    
+    /**
+     * Releases ticket of dispatching of specified call request in the results
+     * cache, because its result will not be stored.
+     * @param reqToProc processed call request
+     */
+    private void releaseCacheTicket(CallRequestToProcess reqToProc) {
+        if ( reqToProc.cacheTicket != CallResultsCache.NO_TICKET ) {
+            reqToProc.ticketCache.releaseDispatch(reqToProc.cacheTicket);
+            reqToProc.cacheTicket = CallResultsCache.NO_TICKET;
+        }
+    }
+    
+    private static CallRequestPriority checkPriority(CallRequestPriority priority) {
+        if ( priority == null ) {
+            throw new IllegalArgumentException("Call request priority cannot be null");
+        }
+        return priority;
+    }
+    
+    /**
+     * Calls specified method with priority of specified device object.
      * @throws IllegalArgumentException if {@code timeout} is less than or 
      *         equal to 0
      */
     @Override
     public UUID callMethod( ConnectedDeviceObject devObject, Class deviceIface, 
             String methodId, Object[] args, long maxProcTime
+    ) {
+        checkDeviceObject(devObject);
+        return callMethod(devObject, deviceIface, methodId, args, maxProcTime, 
+                devObject.getCallRequestPriority()
+        );
+    }
+    
+    /**
+     * Calls specified method with specified priority. Call requests of higher 
+     * priority are sent to protocol layer before call requests of lower priority.
+     * @param devObject device object, which is the addressee of the call result
+     * @param deviceIface device interface of called method
+     * @param methodId ID of called method
+     * @param args arguments of called method
+     * @param maxProcTime maximal processing time [in ms]
+     * @param priority priority of the call request
+     * @return ID of the call request
+     * @throws IllegalArgumentException if {@code timeout} is less than or 
+     *         equal to 0 or {@code priority} is {@code null}
+     */
+    public UUID callMethod( ConnectedDeviceObject devObject, Class deviceIface, 
+            String methodId, Object[] args, long maxProcTime, CallRequestPriority priority
     ) {
         logger.debug(
                 "callMethod - start: devObject={}, devIface={}, methodId={}, "
-                + "args={}, timeout={}", 
-                devObject, deviceIface, methodId, args, maxProcTime
+                + "args={}, timeout={}, priority={}", 
+                devObject, deviceIface, methodId, args, maxProcTime, priority
         );
         
         checkDeviceObject(devObject);
         checkDeviceInterface(deviceIface);
         checkMethodId( methodId );
         checkMaxProcessingTime( maxProcTime );
+        checkPriority( priority );
         
-        UUID callId = UUID.randomUUID();
+        UUID callId = callIdGenerator.generateCallId();
         CallRequest request = new CallRequest(
                 callId, devObject.getNetworkId(), devObject.getNodeId(), deviceIface, 
                 methodId, args
@@ -864,14 +1466,45 @@ implements
         callResultsSender.associateCallRequestWithAddressee(callId, devObject);
         
         CallRequestToProcess requestToProcess = new CallRequestToProcess(request, maxProcTime);
-        synchronized ( syncRequestOrMessage ) {
-            synchronized( syncRequestsToProcess ) {
-                requestsToProcess.offer( requestToProcess );
-                syncRequestsToProcess.notifyAll();
+        
+        CallResultsCache cache = resultsCache;
+        if ( cache != null ) {
+            CallResult cachedResult = cache.get(request);
+            if ( cachedResult != null ) {
+                // each hit gets its own copy of the cached result
+                callResultsSender.addCallRequestProcessingInfo(
+                        new CallRequestProcessingInfo(callId, RESULT_ARRIVED, 
+                                CallRequestsCoalescer.copyResult(cachedResult)
+                        )
+                );
+                logger.info("New call request served from cache: {}", request);
+                logger.debug("callMethod - end: {}", callId);
+                return callId;
             }
-            syncRequestOrMessage.notifyAll();
+            cache.invalidate(request);
+        }
+        
+        // equal request is already waiting for processing or for its result
+        if ( coalescer.attach(request, priority) ) {
+            logger.info("New call request coalesced: {}", request);
+            logger.debug("callMethod - end: {}", callId);
+            return callId;
         }
         
+        // only dispatching of a request, which is really queued, is registered
+        if ( cache != null ) {
+            requestToProcess.cacheTicket = cache.registerDispatch(request);
+            requestToProcess.ticketCache = cache;
+        }
+        
+        if ( CallRequestEvents.isEnabled() ) {
+            fireCallRequestEvent(requestToProcess, 
+                    CallRequestStage.QUEUED, requestToProcess.queueTime
+            );
+        }
+        
+        addRequestToLane(request.getNetworkId(), requestToProcess, priority, true);
+        
         logger.info("New call request created: {}", request);
         logger.debug("callMethod - end: {}", callId);
         return callId;
@@ -886,20 +1519,48 @@ implements
     
     @Override
     public void setCallRequestMaximalProcessingTime(UUID requestId, long maxProcTime) {
-        workerThread.setCallRequestProcessingTime(
-                checkRequestId(requestId), checkMaxProcessingTime(maxProcTime)
-        );
+        UUID processedRequestId = coalescer.getProcessedRequestId(checkRequestId(requestId));
+        checkMaxProcessingTime(maxProcTime);
+        
+        // attached request can only prolong the time of the shared primary 
+        // request, other requests of its group must not time out sooner
+        boolean onlyLonger = !processedRequestId.equals(requestId);
+        for ( NetworkLane lane : lanes.values() ) {
+            if ( lane.setCallRequestProcessingTime(processedRequestId, maxProcTime, onlyLonger) ) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Returns processing info of specified request from lanes or null, if no 
+     * such request was found there. Lanes keep also idle requests.
+     */
+    private CallRequestProcessingInfo getProcessedRequestInfo(UUID reqId) {
+        for ( NetworkLane lane : lanes.values() ) {
+            CallRequestProcessingInfo procInfo = lane.getCallRequestProcessingInfo(reqId);
+            if ( procInfo != null ) {
+                return procInfo;
+            }
+        }
+        return null;
     }
     
     @Override
     public CallRequestProcessingInfo getCallRequestProcessingInfo(UUID requestId) {
-        CallRequestProcessingInfo procInfo 
-                = workerThread.getCallRequestProcessingInfo(checkRequestId(requestId));
+        UUID processedRequestId = coalescer.getProcessedRequestId(checkRequestId(requestId));
+        CallRequestProcessingInfo procInfo = getProcessedRequestInfo(processedRequestId);
         if ( procInfo != null ) {
-            return procInfo;
+            if ( processedRequestId.equals(requestId) ) {
+                return procInfo;
+            }
+            return new CallRequestProcessingInfo(requestId, procInfo.getState(), 
+                    CallRequestsCoalescer.copyResult(procInfo.getCallResult()), 
+                    procInfo.getError()
+            );
         }
         
-        // if procInfo == null, then workerThread hasn't any information about
+        // if procInfo == null, then lanes haven't any information about
         // specified request - so it is neccessary to query listener thread
         procInfo = callResultsSender.getCallRequestProcessingInfo(requestId);
         return procInfo;
@@ -907,7 +1568,17 @@ implements
 
     @Override
     public void cancelCallRequest(UUID requestId) {
-        workerThread.cancelCallRequest(checkRequestId(requestId));
+        // processing continues, if other coalesced requests wait for the result
+        UUID processedRequestId = coalescer.cancel(checkRequestId(requestId));
+        if ( processedRequestId == null ) {
+            return;
+        }
+        
+        for ( NetworkLane lane : lanes.values() ) {
+            if ( lane.cancelCallRequest(processedRequestId) ) {
+                return;
+            }
+        }
     }
     
     @Override
@@ -930,7 +1601,7 @@ implements
         methodId = checkMethodId(methodId);
         maxProcTime = checkMaxProcessingTime( maxProcTime );
         
-        UUID requestId = UUID.randomUUID();
+        UUID requestId = callIdGenerator.generateCallId();
         BroadcastRequest request = new BroadcastRequest(
                 requestId, networkId, deviceIface, methodId, args
         );
@@ -938,15 +1609,20 @@ implements
         // associate request ID with addressee of its result
         callResultsSender.associateCallRequestWithAddressee(requestId, connListener);
         
+        CallResultsCache cache = resultsCache;
+        if ( cache != null ) {
+            cache.invalidate(request);
+        }
+        
         CallRequestToProcess requestToProcess = new CallRequestToProcess(request, maxProcTime);
-        synchronized ( syncRequestOrMessage ) {
-            synchronized( syncRequestsToProcess ) {
-                requestsToProcess.offer( requestToProcess );
-                syncRequestsToProcess.notifyAll();
-            }
-            syncRequestOrMessage.notifyAll();
+        if ( CallRequestEvents.isEnabled() ) {
+            fireCallRequestEvent(requestToProcess, 
+                    CallRequestStage.QUEUED, requestToProcess.queueTime
+            );
         }
         
+        addRequestToLane(networkId, requestToProcess, CallRequestPriority.NORMAL, false);
+        
         logger.info("New broadcast call request created: {}", request);
         logger.debug("broadcastCallMethod - end: {}", requestId);
         return requestId;
@@ -983,12 +1659,86 @@ implements
     }
     
     
+    // registers specified gauge under specified name relative to the metrics prefix
+    private void registerGauge(String name, Gauge gauge) {
+        String fullName = metricsPrefix + "." + name;
+        metrics.registerGauge(fullName, gauge);
+        gaugesNames.add(fullName);
+    }
+    
+    // registers gauges of this connector
+    private void registerGauges() {
+        for ( CallRequestPriority priority : CallRequestPriority.values() ) {
+            final CallRequestPriority gaugePriority = priority;
+            registerGauge("queue.depth." + priority.name().toLowerCase(), new Gauge() {
+                @Override
+                public long getValue() {
+                    long queueDepth = 0;
+                    for ( NetworkLane lane : lanes.values() ) {
+                        queueDepth += lane.getQueueStatistics(gaugePriority).getQueueDepth();
+                    }
+                    return queueDepth;
+                }
+            });
+        }
+        registerGauge("lanes", new Gauge() {
+            @Override
+            public long getValue() {
+                return lanes.size();
+            }
+        });
+        registerGauge("requests.idle", new Gauge() {
+            @Override
+            public long getValue() {
+                long idleRequestsCount = 0;
+                for ( NetworkLane lane : lanes.values() ) {
+                    idleRequestsCount += lane.getIdleRequestsCount();
+                }
+                return idleRequestsCount;
+            }
+        });
+        registerGauge("results.queue.depth", new Gauge() {
+            @Override
+            public long getValue() {
+                return callResultsSender.getQueueDepth();
+            }
+        });
+        registerGauge("cache.hits", new Gauge() {
+            @Override
+            public long getValue() {
+                CallResultsCache cache = resultsCache;
+                return ( cache == null )? 0 : cache.getHitsCount();
+            }
+        });
+        registerGauge("cache.misses", new Gauge() {
+            @Override
+            public long getValue() {
+                CallResultsCache cache = resultsCache;
+                return ( cache == null )? 0 : cache.getMissesCount();
+            }
+        });
+    }
+    
+    // unregisters gauges of this connector
+    private void unregisterGauges() {
+        for ( String name : gaugesNames ) {
+            metrics.unregisterGauge(name);
+        }
+        gaugesNames.clear();
+    }
+    
     @Override
     public void start() throws SimplyException {
         logger.debug("startMessaging - start:");
         
+        registerGauges();
         callResultsSender.start();
-        workerThread.start();
+        synchronized ( syncLanes ) {
+            isStarted = true;
+            for ( NetworkLane lane : lanes.values() ) {
+                lane.start();
+            }
+        }
         
         // register this connector as a listener of messages from protocol layer 
         this.protocolLayerService.registerListener(this);
@@ -1001,28 +1751,40 @@ implements
     private static final long JOIN_WAIT_TIMEOUT = 2000;
     
     /**
-     * Terminates worker thread.
+     * Terminates threads of all lanes.
      */
-    private void terminateWorkedThread() {
+    private void terminateLanes() {
         logger.debug("stopMessaging - start:");
         
-        // termination signal to worker thread
-        workerThread.interrupt();
+        List<NetworkLane> lanesToTerminate = new LinkedList<>();
+        synchronized ( syncLanes ) {
+            isStarted = false;
+            lanesToTerminate.addAll(lanes.values());
+            lanes.clear();
+        }
+        
+        // termination signal to threads of lanes
+        for ( NetworkLane lane : lanesToTerminate ) {
+            lane.interrupt();
+        }
         
         // indicates, wheather this thread is interrupted
         boolean isInterrupted = false;
-         
-        try {
-            if ( workerThread.isAlive() ) {
-                workerThread.join(JOIN_WAIT_TIMEOUT);
-            }
-        } catch ( InterruptedException e ) {
-            isInterrupted = true;
-            logger.warn("Stop messaging - connector interrupted");
-        }
         
-        if ( !workerThread.isAlive() ) {
-            logger.info("Worker thread stopped.");
+        for ( NetworkLane lane : lanesToTerminate ) {
+            try {
+                if ( lane.isAlive() ) {
+                    lane.join(JOIN_WAIT_TIMEOUT);
+                }
+            } catch ( InterruptedException e ) {
+                isInterrupted = true;
+                logger.warn("Stop messaging - connector interrupted");
+                break;
+            }
+            
+            if ( !lane.isAlive() ) {
+                logger.info("Lane thread stopped: network={}", lane.networkId);
+            }
         }
         
         if ( isInterrupted ) {
@@ -1041,8 +1803,9 @@ implements
         logger.debug("destroy - start:");
         
         protocolLayerService.unregisterListener();
-        terminateWorkedThread();
+        terminateLanes();
         callResultsSender.destroy();
+        unregisterGauges();
         protocolLayerService = null;
         asyncMsgGenerator = null;
         
@@ -1050,30 +1813,65 @@ implements
         logger.debug("destroy - end");
     }
     
+    /**
+     * Returns lane, which specified message (response) belongs to. It is 
+     * the lane, whose request in process or idle request the message 
+     * responses to, or the lane of the network, which the message comes from.
+     * @return lane of {@code message} <br>
+     *         {@code null}, if there is no such lane
+     */
+    private NetworkLane getMessageLane(AbstractMessage message) {
+        if ( message instanceof BaseCallResponse ) {
+            UUID requestId = ((BaseCallResponse) message).getRequestId();
+            if ( requestId != null ) {
+                for ( NetworkLane lane : lanes.values() ) {
+                    if ( lane.isInProcess(requestId) || lane.isIdle(requestId) ) {
+                        return lane;
+                    }
+                }
+            }
+        }
+        
+        AbstractMessage.MessageSource source = message.getMessageSource();
+        if ( source == null ) {
+            return null;
+        }
+        return lanes.get(String.valueOf(source.getNetworkId()));
+    }
+    
     @Override
     public void onGetMessage(AbstractMessage message) {
         logger.debug("onGetMessage - start: data={}", message);
         
-        synchronized ( syncRequestOrMessage ) {
-            if ( message instanceof BaseAsynchronousMessage ) {
-                if ( message instanceof DPA_AsynchronousMessage ) {
-                    synchronized( syncAsyncMsgfromProtoLayer ) {
-                        asyncMsgFromProtoLayer.offer((DPA_AsynchronousMessage) message);
-                        syncAsyncMsgfromProtoLayer.notifyAll();
-                    }
-                } else {
-                    logger.warn(
-                        "Incomming asynchronous message is not of DPA_AsynchronousMessage "
-                        + "type. It will be discarded", message
-                    );
+        if ( message instanceof BaseAsynchronousMessage ) {
+            if ( message instanceof DPA_AsynchronousMessage ) {
+                // messages of unknown network go to the lane of null network
+                AbstractMessage.MessageSource source = message.getMessageSource();
+                String networkId = ( source == null )? null : source.getNetworkId();
+                DPA_AsynchronousMessage asyncMsg = (DPA_AsynchronousMessage) message;
+                while ( !getLane(networkId).addAsynchronousMessage(asyncMsg) ) {
+                    logger.debug("Lane closed, message will be added to the new one: network={}", networkId);
                 }
             } else {
-                synchronized( syncMsgfromProtoLayer ) {
-                    msgFromProtoLayer.offer(message);
-                    syncMsgfromProtoLayer.notifyAll();
-                }   
+                logger.warn(
+                    "Incomming asynchronous message is not of DPA_AsynchronousMessage "
+                    + "type. It will be discarded", message
+                );
+            }
+        } else {
+            NetworkLane lane = getMessageLane(message);
+            if ( lane == null ) {
+                logger.warn("No lane for incomming message. It will be discarded: {}", message);
+                logger.debug("onGetMessage - end");
+                return;
+            }
+            // lane can be closed for being idle just now, new one is created then
+            while ( !lane.addMessage(message) ) {
+                AbstractMessage.MessageSource source = message.getMessageSource();
+                String networkId = ( source == null )? null : source.getNetworkId();
+                logger.debug("Lane closed, message will be added to the new one: network={}", networkId);
+                lane = getLane(networkId);
             }
-            syncRequestOrMessage.notifyAll();
         }
         
         logger.info("New message from protocol layer get: {}", message);
@@ -1230,6 +2028,108 @@ implements
      */
     @Override
     public void setBetweenSendPause(long betweenSendPause) {
-        this.betweenSendPause = checkBetweenSendPause(betweenSendPause);
+        synchronized ( syncLanes ) {
+            this.betweenSendPause = checkBetweenSendPause(betweenSendPause);
+            for ( NetworkLane lane : lanes.values() ) {
+                lane.setBetweenSendPause(betweenSendPause);
+            }
+        }
+    }
+    
+    private static long checkMaxQueueWaitTime(long maxQueueWaitTime) {
+        if ( maxQueueWaitTime <= 0 ) {
+            throw new IllegalArgumentException("Maximal queue wait time must be > 0");
+        }
+        return maxQueueWaitTime;
+    }
+    
+    /**
+     * Sets maximal time of waiting of call request in the queue, after that 
+     * the request is sent regardless of its priority.
+     * @param maxQueueWaitTime maximal wait time [in miliseconds]
+     * @throws IllegalArgumentException if {@code maxQueueWaitTime} is less than 
+     *         or equal to 0
+     */
+    public void setMaxQueueWaitTime(long maxQueueWaitTime) {
+        synchronized ( syncLanes ) {
+            this.maxQueueWaitTime = checkMaxQueueWaitTime(maxQueueWaitTime);
+            for ( NetworkLane lane : lanes.values() ) {
+                lane.setMaxQueueWaitTime(maxQueueWaitTime);
+            }
+        }
+    }
+    
+    /**
+     * @return maximal time of waiting of call request in the queue [in miliseconds],
+     *         after that the request is sent regardless of its priority
+     */
+    public long getMaxQueueWaitTime() {
+        return maxQueueWaitTime;
+    }
+    
+    /**
+     * Returns statistics of waiting of call requests of specified priority
+     * in the queues of all lanes.
+     * @param priority priority of call requests
+     * @return statistics of call requests of {@code priority}
+     * @throws IllegalArgumentException if {@code priority} is {@code null}
+     */
+    public CallRequestsQueueStatistics getQueueStatistics(CallRequestPriority priority) {
+        checkPriority(priority);
+        CallRequestsQueueStatistics statistics = new CallRequestsQueueStatistics(0, 0, 0, 0);
+        for ( NetworkLane lane : lanes.values() ) {
+            statistics = statistics.merge(lane.getQueueStatistics(priority));
+        }
+        return statistics;
+    }
+    
+    /**
+     * Sets idempotency policy used for coalescing of equal call requests.
+     * Idempotent call request, which is equal to a call request waiting for 
+     * processing or for its result, is not sent into the network but gets 
+     * the result of that equal call request.
+     * @param idempotencyPolicy policy to use, {@code null} switches coalescing off
+     */
+    public void setIdempotencyPolicy(CallRequestIdempotencyPolicy idempotencyPolicy) {
+        coalescer.setIdempotencyPolicy(idempotencyPolicy);
+    }
+    
+    /**
+     * @return idempotency policy used for coalescing of equal call requests, 
+     *         {@code null} if coalescing is switched off
+     */
+    public CallRequestIdempotencyPolicy getIdempotencyPolicy() {
+        return coalescer.getIdempotencyPolicy();
+    }
+    
+    /**
+     * @return number of call requests, which have been coalesced with equal 
+     *         call requests instead of being sent into the network
+     */
+    public long getCoalescedCallRequestsCount() {
+        return coalescer.getCoalescedCount();
+    }
+    
+    /**
+     * Sets cache of call results. Cacheable call request, whose valid result 
+     * is in the cache, is not sent into the network and gets the cached result. 
+     * @param resultsCache cache to use, {@code null} switches caching off
+     */
+    public void setResultsCache(CallResultsCache resultsCache) {
+        this.resultsCache = resultsCache;
+    }
+    
+    /**
+     * @return cache of call results, {@code null} if caching is switched off
+     */
+    public CallResultsCache getResultsCache() {
+        return resultsCache;
+    }
+    
+    /**
+     * @return prefix of names of metrics of this connector
+     */
+    public String getMetricsPrefix() {
+        return metricsPrefix;
     }
 }
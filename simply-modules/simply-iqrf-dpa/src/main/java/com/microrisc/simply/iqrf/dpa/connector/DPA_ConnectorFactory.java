@@ -18,11 +18,20 @@ package com.microrisc.simply.iqrf.dpa.connector;
 
 import com.microrisc.simply.protocol.ProtocolLayer;
 import com.microrisc.simply.connector.AbstractConnectorFactory;
+import com.microrisc.simply.connector.CallRequestIdempotencyPolicy;
+import com.microrisc.simply.connector.CallResultsCache;
+import com.microrisc.simply.connector.CallResultsCachingPolicy;
 import com.microrisc.simply.connector.response_waiting.SimpleResponseWaitingConnectorConfigurator;
+import com.microrisc.simply.metrics.Metrics;
 import org.apache.commons.configuration.Configuration;
 
 /**
  * DPA connector factory.
+ * <p>
+ * Metrics of created connectors are maintained in the default metrics registry 
+ * under the prefix configured by the {@code connector.metrics.prefix} key. 
+ * If the prefix is not configured, each connector gets its own prefix 
+ * {@code connector.<number of the connector>}.
  * 
  * @author Michal Konopa
  */
@@ -86,11 +95,74 @@ extends AbstractConnectorFactory<ProtocolLayer, Configuration, DPA_Connector>
         throw new Exception("Unrecognized connector type");
     }
     
+    /**
+     * Returns idempotency policy for coalescing of call requests.
+     * @param configuration source configuration
+     * @return idempotency policy <br>
+     *         {@code null}, if no policy is configured
+     * @throws Exception if an error has occured during creation of the policy
+     */
+    private CallRequestIdempotencyPolicy getIdempotencyPolicy(Configuration configuration) 
+            throws Exception 
+    {
+        String policyClassName = configuration.getString(
+                "connector.coalescing.idempotencyPolicy.class", ""
+        );
+        if ( policyClassName.equals("") ) {
+            return null;
+        }
+        
+        Class policyClass = Class.forName(policyClassName);
+        return (CallRequestIdempotencyPolicy) policyClass.newInstance();
+    }
+    
+    /**
+     * Returns cache of call results.
+     * @param configuration source configuration
+     * @return cache of call results <br>
+     *         {@code null}, if no caching policy is configured
+     * @throws Exception if an error has occured during creation of the cache
+     */
+    private CallResultsCache getResultsCache(Configuration configuration) 
+            throws Exception 
+    {
+        String policyClassName = configuration.getString(
+                "connector.caching.policy.class", ""
+        );
+        if ( policyClassName.equals("") ) {
+            return null;
+        }
+        
+        Class policyClass = Class.forName(policyClassName);
+        CallResultsCachingPolicy policy = (CallResultsCachingPolicy) policyClass.newInstance();
+        
+        int capacity = configuration.getInt(
+                "connector.caching.capacity", CallResultsCache.DEFAULT_CAPACITY
+        );
+        return new CallResultsCache(policy, capacity);
+    }
+    
     private DPA_Connector getSimpleResponseWaitingConnector(
             ProtocolLayer protocolLayer, Configuration configuration
-    ) {
-        DPA_Connector connector = new DPA_Connector(protocolLayer);
+    ) throws Exception {
+        String metricsPrefix = configuration.getString("connector.metrics.prefix", "");
+        DPA_Connector connector = null;
+        if ( metricsPrefix.equals("") ) {
+            connector = new DPA_Connector(protocolLayer);
+        } else {
+            connector = new DPA_Connector(protocolLayer, Metrics.getDefaultRegistry(), metricsPrefix);
+        }
         new SimpleResponseWaitingConnectorConfigurator().configure(connector, configuration);
+        
+        long maxQueueWaitTime = configuration.getLong(
+                "connector.type.responseWaiting.maxQueueWaitTime", -1
+        );
+        if ( maxQueueWaitTime != -1 ) {
+            connector.setMaxQueueWaitTime(maxQueueWaitTime);
+        }
+        
+        connector.setIdempotencyPolicy(getIdempotencyPolicy(configuration));
+        connector.setResultsCache(getResultsCache(configuration));
         return connector;
     }
     
@@ -0,0 +1,336 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.iqrf.dpa.connector;
+
+import com.microrisc.simply.CallRequestPriority;
+import com.microrisc.simply.metrics.LatencyHistogram;
+import com.microrisc.simply.metrics.MetricsRegistry;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue of call requests with priorities.
+ * <p>
+ * Each priority has its own FIFO queue. Requests are taken from the queue 
+ * of the highest priority, which is not empty. To prevent starvation of 
+ * requests of lower priorities, request, which has been waiting longer than 
+ * maximal wait time, is taken first regardless of its priority. 
+ * <p>
+ * Wait times of taken requests can be recorded into latency histograms
+ * of a metrics registry, one histogram per priority.
+ * <p>
+ * Taking of requests and removing of requests via iterator must be 
+ * synchronized externally.
+ * 
+ * @author agent
+ * @param <E> type of requests in the queue
+ */
+public final class PriorityCallRequestsQueue<E> implements Iterable<E> {
+    // multiplier for getting number of nanoseconds from number of miliseconds
+    private static final long MILISEC_TO_NANOSEC = 1000000;
+    
+    /** 
+     * Default maximal time of waiting [in ms], after that the request is 
+     * taken regardless of its priority.
+     */
+    public static final long DEFAULT_MAX_WAIT_TIME = 10000;
+    
+    
+    // request with time of its adding into the queue
+    private static final class Entry<E> {
+        final E request;
+        final long enqueueTime;
+        
+        Entry(E request, long enqueueTime) {
+            this.request = request;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+    
+    // queue of requests of one priority with its statistics
+    private static final class PriorityClass<E> {
+        final Queue<Entry<E>> entries = new ConcurrentLinkedQueue<>();
+        final AtomicInteger depth = new AtomicInteger(0);
+        final AtomicLong takenCount = new AtomicLong(0);
+        final AtomicLong totalWaitTime = new AtomicLong(0);
+        final AtomicLong maxWaitTime = new AtomicLong(0);
+        final LatencyHistogram waitTimes;
+        
+        PriorityClass(LatencyHistogram waitTimes) {
+            this.waitTimes = waitTimes;
+        }
+        
+        void recordTaken(long waitTime) {
+            depth.decrementAndGet();
+            waitTimes.record(waitTime);
+            takenCount.incrementAndGet();
+            totalWaitTime.addAndGet(waitTime);
+            
+            long maxTime = maxWaitTime.get();
+            while ( waitTime > maxTime ) {
+                if ( maxWaitTime.compareAndSet(maxTime, waitTime) ) {
+                    break;
+                }
+                maxTime = maxWaitTime.get();
+            }
+        }
+    }
+    
+    // iterates over requests of all priorities, from the highest one
+    private class RequestsIterator implements Iterator<E> {
+        private int classIndex = 0;
+        private Iterator<Entry<E>> currIterator = classes[0].entries.iterator();
+        
+        // iterator and class of lastly returned request
+        private Iterator<Entry<E>> lastIterator = null;
+        private PriorityClass<E> lastClass = null;
+        
+        @Override
+        public boolean hasNext() {
+            while ( !currIterator.hasNext() && (classIndex < classes.length - 1) ) {
+                classIndex++;
+                currIterator = classes[classIndex].entries.iterator();
+            }
+            return currIterator.hasNext();
+        }
+
+        @Override
+        public E next() {
+            if ( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            lastIterator = currIterator;
+            lastClass = classes[classIndex];
+            return currIterator.next().request;
+        }
+
+        @Override
+        public void remove() {
+            if ( lastIterator == null ) {
+                throw new IllegalStateException("No request to remove");
+            }
+            lastIterator.remove();
+            lastClass.depth.decrementAndGet();
+            lastIterator = null;
+        }
+    }
+    
+    
+    /** Queues of priorities, indexed by priority ordinal. */
+    private final PriorityClass<E>[] classes;
+    
+    /** Clock to measure wait times by. */
+    private final Clock clock = Clocks.getDefaultClock();
+    
+    /** Maximal wait time [in ns]. */
+    private volatile long maxWaitTime = DEFAULT_MAX_WAIT_TIME * MILISEC_TO_NANOSEC;
+    
+    
+    private static CallRequestPriority checkPriority(CallRequestPriority priority) {
+        if ( priority == null ) {
+            throw new IllegalArgumentException("Priority cannot be null");
+        }
+        return priority;
+    }
+    
+    private static MetricsRegistry checkRegistry(MetricsRegistry registry) {
+        if ( registry == null ) {
+            throw new IllegalArgumentException("Registry cannot be null");
+        }
+        return registry;
+    }
+    
+    private static String checkHistogramsName(String histogramsName) {
+        if ( histogramsName == null ) {
+            throw new IllegalArgumentException("Histograms name cannot be null");
+        }
+        if ( histogramsName.isEmpty() ) {
+            throw new IllegalArgumentException("Histograms name cannot be empty");
+        }
+        return histogramsName;
+    }
+    
+    private static long checkMaxWaitTime(long maxWaitTime) {
+        if ( maxWaitTime <= 0 ) {
+            throw new IllegalArgumentException("Maximal wait time must be > 0");
+        }
+        return maxWaitTime;
+    }
+    
+    // returns class to take the next request from
+    private PriorityClass<E> selectClass() {
+        long actualTime = clock.nanoTime();
+        
+        // starving request - the longest waiting one
+        PriorityClass<E> selectedClass = null;
+        long oldestTime = 0;
+        for ( PriorityClass<E> priorityClass : classes ) {
+            Entry<E> head = priorityClass.entries.peek();
+            if ( head == null ) {
+                continue;
+            }
+            if ( actualTime - head.enqueueTime < maxWaitTime ) {
+                continue;
+            }
+            if ( (selectedClass == null) || (head.enqueueTime - oldestTime < 0) ) {
+                selectedClass = priorityClass;
+                oldestTime = head.enqueueTime;
+            }
+        }
+        if ( selectedClass != null ) {
+            return selectedClass;
+        }
+        
+        for ( PriorityClass<E> priorityClass : classes ) {
+            if ( !priorityClass.entries.isEmpty() ) {
+                return priorityClass;
+            }
+        }
+        return null;
+    }
+    
+    
+    /**
+     * Creates new empty queue.
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityCallRequestsQueue() {
+        CallRequestPriority[] priorities = CallRequestPriority.values();
+        this.classes = new PriorityClass[priorities.length];
+        for ( int i = 0; i < priorities.length; i++ ) {
+            classes[i] = new PriorityClass<>(new LatencyHistogram());
+        }
+    }
+    
+    /**
+     * Creates new empty queue, which records wait times of taken requests into 
+     * histograms {@code <histogramsName>.<priority>} of specified registry.
+     * @param registry registry of histograms
+     * @param histogramsName common part of names of histograms
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityCallRequestsQueue(MetricsRegistry registry, String histogramsName) {
+        checkRegistry(registry);
+        checkHistogramsName(histogramsName);
+        
+        CallRequestPriority[] priorities = CallRequestPriority.values();
+        this.classes = new PriorityClass[priorities.length];
+        for ( int i = 0; i < priorities.length; i++ ) {
+            classes[i] = new PriorityClass<>(registry.getHistogram(
+                    histogramsName + "." + priorities[i].name().toLowerCase()
+            ));
+        }
+    }
+    
+    /**
+     * Adds specified request with specified priority at the end of the queue.
+     * @param request request to add
+     * @param priority priority of the request
+     * @throws IllegalArgumentException if {@code priority} is {@code null}
+     */
+    public void offer(E request, CallRequestPriority priority) {
+        PriorityClass<E> priorityClass = classes[checkPriority(priority).ordinal()];
+        priorityClass.entries.offer( new Entry<>(request, clock.nanoTime()) );
+        priorityClass.depth.incrementAndGet();
+    }
+    
+    /**
+     * Takes the next request to process.
+     * @return the next request to process <br>
+     *         {@code null}, if the queue is empty
+     */
+    public E poll() {
+        PriorityClass<E> priorityClass = selectClass();
+        if ( priorityClass == null ) {
+            return null;
+        }
+        
+        Entry<E> entry = priorityClass.entries.poll();
+        if ( entry == null ) {
+            return null;
+        }
+        
+        priorityClass.recordTaken(clock.nanoTime() - entry.enqueueTime);
+        return entry.request;
+    }
+    
+    /**
+     * @return {@code true} if there is no request in the queue
+     */
+    public boolean isEmpty() {
+        for ( PriorityClass<E> priorityClass : classes ) {
+            if ( !priorityClass.entries.isEmpty() ) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns iterator over all requests in the queue, from the requests
+     * of the highest priority.
+     * @return iterator over requests
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new RequestsIterator();
+    }
+    
+    /**
+     * Sets maximal wait time, after that the request is taken regardless 
+     * of its priority.
+     * @param maxWaitTime maximal wait time [in ms]
+     * @throws IllegalArgumentException if {@code maxWaitTime} is less than 
+     *         or equal to 0
+     */
+    public void setMaxWaitTime(long maxWaitTime) {
+        this.maxWaitTime = checkMaxWaitTime(maxWaitTime) * MILISEC_TO_NANOSEC;
+    }
+    
+    /**
+     * @return maximal wait time [in ms], after that the request is taken 
+     *         regardless of its priority
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime / MILISEC_TO_NANOSEC;
+    }
+    
+    /**
+     * Returns statistics of requests of specified priority.
+     * @param priority priority
+     * @return statistics of requests of {@code priority}
+     * @throws IllegalArgumentException if {@code priority} is {@code null}
+     */
+    public CallRequestsQueueStatistics getStatistics(CallRequestPriority priority) {
+        PriorityClass<E> priorityClass = classes[checkPriority(priority).ordinal()];
+        long takenCount = priorityClass.takenCount.get();
+        long averageWaitTime = ( takenCount == 0 )? 
+                0 : priorityClass.totalWaitTime.get() / takenCount;
+        return new CallRequestsQueueStatistics(
+                priorityClass.depth.get(), 
+                takenCount, 
+                averageWaitTime / MILISEC_TO_NANOSEC, 
+                priorityClass.maxWaitTime.get() / MILISEC_TO_NANOSEC
+        );
+    }
+}
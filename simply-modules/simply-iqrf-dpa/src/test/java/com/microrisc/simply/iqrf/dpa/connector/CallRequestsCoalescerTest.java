@@ -0,0 +1,212 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.microrisc.simply.iqrf.dpa.connector;
+
+import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.CallRequestPriority;
+import com.microrisc.simply.CallResult;
+import com.microrisc.simply.connector.CallRequestIdempotencyPolicy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of CallRequestsCoalescer.
+ * 
+ * @author agent
+ */
+public class CallRequestsCoalescerTest {
+    
+    // device interface of testing call requests
+    private interface TestDevice {}
+    
+    // all call requests are idempotent
+    private static final CallRequestIdempotencyPolicy ALL_IDEMPOTENT 
+            = new CallRequestIdempotencyPolicy() {
+                @Override
+                public boolean isIdempotent(CallRequest request) {
+                    return true;
+                }
+            };
+    
+    private CallRequestsCoalescer coalescer;
+    
+    private static CallRequest createRequest(String nodeId) {
+        return new CallRequest(UUID.randomUUID(), "1", nodeId, TestDevice.class, 
+                "read", new Object[] { new short[] { 1, 2 } }
+        );
+    }
+    
+    @Before
+    public void setUp() {
+        coalescer = new CallRequestsCoalescer();
+        coalescer.setIdempotencyPolicy(ALL_IDEMPOTENT);
+    }
+    
+    @Test
+    public void attachesEqualRequest() {
+        CallRequest primary = createRequest("1");
+        CallRequest member = createRequest("1");
+        
+        coalescer.register(primary, CallRequestPriority.NORMAL);
+        assertTrue(coalescer.attach(member, CallRequestPriority.NORMAL));
+        assertEquals(1, coalescer.getCoalescedCount());
+        assertEquals(primary.getId(), coalescer.getProcessedRequestId(member.getId()));
+        
+        assertEquals(Arrays.asList(primary, member), coalescer.close(primary));
+        assertEquals(member.getId(), coalescer.getProcessedRequestId(member.getId()));
+    }
+    
+    @Test
+    public void doesNotAttachWithoutPolicy() {
+        coalescer.setIdempotencyPolicy(null);
+        CallRequest primary = createRequest("1");
+        
+        coalescer.register(primary, CallRequestPriority.NORMAL);
+        assertFalse(coalescer.attach(createRequest("1"), CallRequestPriority.NORMAL));
+    }
+    
+    @Test
+    public void doesNotAttachDifferentRequest() {
+        coalescer.register(createRequest("1"), CallRequestPriority.NORMAL);
+        assertFalse(coalescer.attach(createRequest("2"), CallRequestPriority.NORMAL));
+    }
+    
+    @Test
+    public void doesNotCoalesceBroadcasts() {
+        CallRequest primary = createRequest(null);
+        
+        coalescer.register(primary, CallRequestPriority.NORMAL);
+        assertFalse(coalescer.attach(createRequest(null), CallRequestPriority.NORMAL));
+        assertEquals(Collections.singletonList(primary), coalescer.close(primary));
+    }
+    
+    @Test
+    public void doesNotAttachRequestOfHigherPriority() {
+        coalescer.register(createRequest("1"), CallRequestPriority.NORMAL);
+        
+        assertFalse(coalescer.attach(createRequest("1"), CallRequestPriority.INTERACTIVE));
+        assertTrue(coalescer.attach(createRequest("1"), CallRequestPriority.BULK));
+    }
+    
+    @Test
+    public void attachesToGroupOfHighestPriority() {
+        CallRequest bulkPrimary = createRequest("1");
+        CallRequest interactivePrimary = createRequest("1");
+        CallRequest member = createRequest("1");
+        
+        coalescer.register(bulkPrimary, CallRequestPriority.BULK);
+        coalescer.register(interactivePrimary, CallRequestPriority.INTERACTIVE);
+        assertTrue(coalescer.attach(member, CallRequestPriority.INTERACTIVE));
+        
+        assertEquals(Arrays.asList(interactivePrimary, member), coalescer.close(interactivePrimary));
+        assertEquals(Collections.singletonList(bulkPrimary), coalescer.close(bulkPrimary));
+    }
+    
+    @Test
+    public void closedGroupAcceptsNoMoreRequests() {
+        CallRequest primary = createRequest("1");
+        
+        coalescer.register(primary, CallRequestPriority.NORMAL);
+        coalescer.close(primary);
+        assertFalse(coalescer.attach(createRequest("1"), CallRequestPriority.NORMAL));
+    }
+    
+    @Test
+    public void sealedGroupKeepsMembers() {
+        CallRequest primary = createRequest("1");
+        CallRequest member = createRequest("1");
+        
+        coalescer.register(primary, CallRequestPriority.NORMAL);
+        assertTrue(coalescer.attach(member, CallRequestPriority.NORMAL));
+        assertEquals(Arrays.asList(primary, member), coalescer.seal(primary));
+        
+        assertFalse(coalescer.attach(createRequest("1"), CallRequestPriority.NORMAL));
+        assertEquals(primary.getId(), coalescer.getProcessedRequestId(member.getId()));
+        assertEquals(Arrays.asList(primary, member), coalescer.close(primary));
+    }
+    
+    @Test
+    public void closeOfUnregisteredRequestReturnsTheRequest() {
+        CallRequest request = createRequest("1");
+        assertEquals(Collections.singletonList(request), coalescer.close(request));
+    }
+    
+    @Test
+    public void cancelOfMemberKeepsProcessing() {
+        CallRequest primary = createRequest("1");
+        CallRequest member = createRequest("1");
+        
+        coalescer.register(primary, CallRequestPriority.NORMAL);
+        coalescer.attach(member, CallRequestPriority.NORMAL);
+        
+        assertNull(coalescer.cancel(member.getId()));
+        assertEquals(Collections.singletonList(primary), coalescer.close(primary));
+    }
+    
+    @Test
+    public void cancelOfPrimaryKeepsProcessingForMembers() {
+        CallRequest primary = createRequest("1");
+        CallRequest member = createRequest("1");
+        
+        coalescer.register(primary, CallRequestPriority.NORMAL);
+        coalescer.attach(member, CallRequestPriority.NORMAL);
+        
+        // the member still waits for the result of the primary request
+        assertNull(coalescer.cancel(primary.getId()));
+        assertEquals(primary.getId(), coalescer.getProcessedRequestId(member.getId()));
+        
+        List<CallRequest> addressees = coalescer.close(primary);
+        assertEquals(Collections.singletonList(member), addressees);
+    }
+    
+    @Test
+    public void cancelOfAllMembersCancelsProcessing() {
+        CallRequest primary = createRequest("1");
+        CallRequest member = createRequest("1");
+        
+        coalescer.register(primary, CallRequestPriority.NORMAL);
+        coalescer.attach(member, CallRequestPriority.NORMAL);
+        
+        assertNull(coalescer.cancel(primary.getId()));
+        assertEquals(primary.getId(), coalescer.cancel(member.getId()));
+        assertFalse(coalescer.attach(createRequest("1"), CallRequestPriority.NORMAL));
+    }
+    
+    @Test
+    public void cancelOfUnregisteredRequestReturnsItsId() {
+        UUID requestId = UUID.randomUUID();
+        assertEquals(requestId, coalescer.cancel(requestId));
+    }
+    
+    @Test
+    public void copyResultCopiesArrays() {
+        short[] value = new short[] { 1, 2, 3 };
+        CallResult result = new CallResult(value, "info");
+        
+        CallResult copy = CallRequestsCoalescer.copyResult(result);
+        assertNotSame(value, copy.getMethodCallResult());
+        assertArrayEquals(value, (short[]) copy.getMethodCallResult());
+        assertEquals("info", copy.getAdditionalInfo());
+        assertNull(CallRequestsCoalescer.copyResult(null));
+    }
+}
@@ -0,0 +1,537 @@
+/*
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.microrisc.simply.iqrf.dpa.connector;
+
+import com.microrisc.simply.BaseCallResponse;
+import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.CallRequestProcessingInfo;
+import com.microrisc.simply.CallRequestProcessingState;
+import com.microrisc.simply.ConcurrentCallRequestProcessingInfoContainer;
+import com.microrisc.simply.ConnectedDeviceObject;
+import com.microrisc.simply.ConnectorService;
+import com.microrisc.simply.DeviceInterface;
+import com.microrisc.simply.ProtocoLayerListener;
+import com.microrisc.simply.ProtocolLayerService;
+import com.microrisc.simply.SimpleMessageSource;
+import com.microrisc.simply.SimpleMethodMessageSource;
+import com.microrisc.simply.SimplyException;
+import com.microrisc.simply.connector.CallRequestIdempotencyPolicy;
+import com.microrisc.simply.connector.CallResultsCache;
+import com.microrisc.simply.connector.CallResultsCachingPolicy;
+import com.microrisc.simply.metrics.MetricsRegistry;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import com.microrisc.simply.time.VirtualClock;
+import com.microrisc.simply.tracing.CallRequestEvent;
+import com.microrisc.simply.tracing.CallRequestEvents;
+import com.microrisc.simply.tracing.CallRequestEventsListener;
+import com.microrisc.simply.tracing.CallRequestStage;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of network lanes of DPA_Connector.
+ *
+ * @author agent
+ */
+public class DPA_ConnectorTest {
+
+    // real time to wait for events of the connector [in seconds]
+    private static final long WAIT_TIMEOUT = 5;
+
+    // prefix of metrics of the tested connector
+    private static final String METRICS_PREFIX = "test";
+
+    // interface of testing device
+    @DeviceInterface
+    public static interface TestingDevice {
+    }
+
+    // device object recording received processing infos
+    private static class TestingDeviceObject
+    extends ConnectedDeviceObject implements TestingDevice {
+        final List<CallRequestProcessingInfo> receivedInfos
+                = Collections.synchronizedList(new ArrayList<CallRequestProcessingInfo>());
+        final CountDownLatch receivedLatch = new CountDownLatch(1);
+
+        TestingDeviceObject(String networkId, String nodeId, ConnectorService connector) {
+            super(networkId, nodeId, connector, new ConcurrentCallRequestProcessingInfoContainer());
+        }
+
+        @Override
+        public void onCallRequestProcessingInfo(CallRequestProcessingInfo procInfo, UUID callId) {
+            receivedInfos.add(procInfo);
+            receivedLatch.countDown();
+        }
+
+        CallRequestProcessingInfo awaitInfo() throws InterruptedException {
+            assertTrue(receivedLatch.await(WAIT_TIMEOUT, TimeUnit.SECONDS));
+            return receivedInfos.get(0);
+        }
+    }
+
+    // protocol layer recording sent requests, sending to blocked network waits
+    private static class TestingProtocolLayer implements ProtocolLayerService {
+        final BlockingQueue<CallRequest> sentRequests = new LinkedBlockingQueue<>();
+        final Map<UUID, Long> sentProcTimes = new ConcurrentHashMap<>();
+        final CountDownLatch blockedSendLatch = new CountDownLatch(1);
+        final CountDownLatch unblockingLatch = new CountDownLatch(1);
+        volatile String blockedNetworkId = null;
+
+        @Override
+        public void registerListener(ProtocoLayerListener listener) {
+        }
+
+        @Override
+        public void unregisterListener() {
+        }
+
+        @Override
+        public void sendRequest(CallRequest request) throws SimplyException {
+            sendRequest(request, 0);
+        }
+
+        @Override
+        public void sendRequest(CallRequest request, long procTime) throws SimplyException {
+            if ( request.getNetworkId().equals(blockedNetworkId) ) {
+                blockedSendLatch.countDown();
+                try {
+                    unblockingLatch.await();
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new SimplyException(e);
+                }
+            }
+            sentProcTimes.put(request.getId(), procTime);
+            sentRequests.add(request);
+        }
+
+        CallRequest awaitSentRequest() throws InterruptedException {
+            CallRequest request = sentRequests.poll(WAIT_TIMEOUT, TimeUnit.SECONDS);
+            assertNotNull(request);
+            return request;
+        }
+    }
+
+    // records events of call requests
+    private static class RecordingEventsListener implements CallRequestEventsListener {
+        final List<CallRequestEvent> events
+                = Collections.synchronizedList(new ArrayList<CallRequestEvent>());
+        final CountDownLatch eventsLatch;
+
+        RecordingEventsListener(int expectedNum) {
+            this.eventsLatch = new CountDownLatch(expectedNum);
+        }
+
+        @Override
+        public void onCallRequestEvent(CallRequestEvent event) {
+            events.add(event);
+            eventsLatch.countDown();
+        }
+
+        List<CallRequestEvent> awaitEvents() throws InterruptedException {
+            assertTrue(eventsLatch.await(WAIT_TIMEOUT, TimeUnit.SECONDS));
+            synchronized ( events ) {
+                return new ArrayList<>(events);
+            }
+        }
+    }
+
+    // all call requests are idempotent
+    private static final CallRequestIdempotencyPolicy ALL_IDEMPOTENT
+            = new CallRequestIdempotencyPolicy() {
+                @Override
+                public boolean isIdempotent(CallRequest request) {
+                    return true;
+                }
+            };
+
+    // all results are cacheable, nothing invalidates them
+    private static final CallResultsCachingPolicy ALL_CACHEABLE
+            = new CallResultsCachingPolicy() {
+                @Override
+                public long getTimeToLive(CallRequest request) {
+                    return 1000;
+                }
+
+                @Override
+                public boolean invalidates(CallRequest request, CallRequest cachedRequest) {
+                    return false;
+                }
+            };
+
+    private Clock origClock;
+    private VirtualClock clock;
+    private MetricsRegistry metrics;
+    private TestingProtocolLayer protocolLayer;
+    private DPA_Connector connector;
+
+    private static BaseCallResponse createResponse(CallRequest request) {
+        BaseCallResponse response = new BaseCallResponse(
+                new short[] { 1 }, null,
+                new SimpleMethodMessageSource(
+                        new SimpleMessageSource(request.getNetworkId(), request.getNodeId()),
+                        request.getDeviceInterface(), request.getMethodId()
+                )
+        );
+        response.setRequestId(request.getId());
+        return response;
+    }
+
+    private UUID call(TestingDeviceObject devObject, long maxProcTime) {
+        return connector.callMethod(devObject, TestingDevice.class, "read",
+                new Object[] { 1 }, maxProcTime
+        );
+    }
+
+    // waits until specified number of threads waits on the clock
+    private void awaitWaiters(int waitersNum) {
+        while ( clock.getWaitersNumber() < waitersNum ) {
+            Thread.yield();
+        }
+    }
+
+    // waits until the connector has specified number of lanes
+    private void awaitLanesNumber(long lanesNum) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_TIMEOUT);
+        while ( getLanesNumber() != lanesNum ) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    // waits until specified cache has specified number of pending dispatches
+    private static void awaitPendingDispatchesNumber(CallResultsCache cache, int dispatchesNum)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_TIMEOUT);
+        while ( cache.getPendingDispatchesCount() != dispatchesNum ) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    // waits until the connector has specified number of idle requests
+    private void awaitIdleRequestsNumber(long idleRequestsNum) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_TIMEOUT);
+        while ( getIdleRequestsNumber() != idleRequestsNum ) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private long getIdleRequestsNumber() {
+        String name = METRICS_PREFIX + ".requests.idle";
+        return metrics.getGauges(name).get(name);
+    }
+
+    private long getLanesNumber() {
+        return metrics.getGauges(METRICS_PREFIX + ".lanes").get(METRICS_PREFIX + ".lanes");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        origClock = Clocks.getDefaultClock();
+        clock = new VirtualClock();
+        Clocks.setDefaultClock(clock);
+
+        metrics = new MetricsRegistry();
+        protocolLayer = new TestingProtocolLayer();
+        connector = new DPA_Connector(protocolLayer, metrics, METRICS_PREFIX);
+        connector.start();
+    }
+
+    @After
+    public void tearDown() {
+        protocolLayer.unblockingLatch.countDown();
+        connector.destroy();
+        Clocks.setDefaultClock(origClock);
+    }
+
+    /**
+     * Request of one network is processed while sending to another network
+     * is blocked.
+     */
+    @Test
+    public void testNetworksIndependence() throws InterruptedException {
+        protocolLayer.blockedNetworkId = "2";
+        TestingDeviceObject blockedDevice = new TestingDeviceObject("2", "1", connector);
+        call(blockedDevice, 1000);
+        assertTrue(protocolLayer.blockedSendLatch.await(WAIT_TIMEOUT, TimeUnit.SECONDS));
+
+        TestingDeviceObject device = new TestingDeviceObject("1", "1", connector);
+        UUID callId = call(device, 1000);
+        CallRequest request = protocolLayer.awaitSentRequest();
+        assertEquals(callId, request.getId());
+        connector.onGetMessage(createResponse(request));
+
+        assertEquals(CallRequestProcessingState.RESULT_ARRIVED, device.awaitInfo().getState());
+        assertTrue(blockedDevice.receivedInfos.isEmpty());
+        assertEquals(2, getLanesNumber());
+    }
+
+    /**
+     * Lane closed for being idle is replaced by the new one and requests of
+     * its network are processed further.
+     */
+    @Test
+    public void testClosedLaneReplaced() throws InterruptedException {
+        TestingDeviceObject firstDevice = new TestingDeviceObject("1", "1", connector);
+        call(firstDevice, 1000);
+        connector.onGetMessage(createResponse(protocolLayer.awaitSentRequest()));
+        assertEquals(CallRequestProcessingState.RESULT_ARRIVED, firstDevice.awaitInfo().getState());
+
+        // lane waits for new requests, until it is idle for too long
+        awaitWaiters(1);
+        clock.advance(DPA_Connector.MAX_LANE_IDLE_TIME);
+        awaitLanesNumber(0);
+
+        TestingDeviceObject secondDevice = new TestingDeviceObject("1", "2", connector);
+        UUID callId = call(secondDevice, 1000);
+        CallRequest request = protocolLayer.awaitSentRequest();
+        assertEquals(callId, request.getId());
+        connector.onGetMessage(createResponse(request));
+
+        assertEquals(CallRequestProcessingState.RESULT_ARRIVED, secondDevice.awaitInfo().getState());
+        assertEquals(1, getLanesNumber());
+    }
+
+    /**
+     * Timed out request and requests coalesced with it wait for a late 
+     * response as idle. New equal request is not coalesced with the idle one.
+     * Late response is delivered to all of them.
+     */
+    @Test
+    public void testLateResponseOfIdleRequest() throws InterruptedException {
+        connector.setIdempotencyPolicy(ALL_IDEMPOTENT);
+
+        List<TestingDeviceObject> devices = new ArrayList<>();
+        List<UUID> callIds = new ArrayList<>();
+        for ( int i = 0; i < 3; i++ ) {
+            TestingDeviceObject device = new TestingDeviceObject("1", "1", connector);
+            devices.add(device);
+            callIds.add(call(device, 1000));
+        }
+        CallRequest request = protocolLayer.awaitSentRequest();
+        assertEquals(callIds.get(0), request.getId());
+
+        // lane waits for the response
+        awaitWaiters(1);
+        clock.advance(1000);
+        awaitIdleRequestsNumber(1);
+
+        for ( int i = 0; i < devices.size(); i++ ) {
+            assertTrue(devices.get(i).receivedInfos.isEmpty());
+            assertEquals(CallRequestProcessingState.WAITING_FOR_PROCESSING, 
+                    connector.getCallRequestProcessingInfo(callIds.get(i)).getState()
+            );
+        }
+
+        TestingDeviceObject newDevice = new TestingDeviceObject("1", "1", connector);
+        UUID newCallId = call(newDevice, 1000);
+        assertEquals(newCallId, protocolLayer.awaitSentRequest().getId());
+
+        connector.onGetMessage(createResponse(request));
+        for ( int i = 0; i < devices.size(); i++ ) {
+            CallRequestProcessingInfo procInfo = devices.get(i).awaitInfo();
+            assertEquals(callIds.get(i), procInfo.getRequestId());
+            assertEquals(CallRequestProcessingState.RESULT_ARRIVED, procInfo.getState());
+        }
+        awaitIdleRequestsNumber(0);
+        assertTrue(newDevice.receivedInfos.isEmpty());
+    }
+
+    /**
+     * Request coalesced with a waiting one cannot shorten maximal processing 
+     * time of the shared request, it can only prolong it.
+     */
+    @Test
+    public void testProcessingTimeOfCoalescedRequest() throws InterruptedException {
+        connector.setIdempotencyPolicy(ALL_IDEMPOTENT);
+
+        // lane is busy with a request of another node
+        call(new TestingDeviceObject("1", "2", connector), 1000);
+        CallRequest busyRequest = protocolLayer.awaitSentRequest();
+
+        TestingDeviceObject primaryDevice = new TestingDeviceObject("1", "1", connector);
+        TestingDeviceObject memberDevice = new TestingDeviceObject("1", "1", connector);
+        UUID primaryId = call(primaryDevice, 10000);
+        UUID memberId = call(memberDevice, 100);
+
+        connector.setCallRequestMaximalProcessingTime(memberId, 100);
+        connector.onGetMessage(createResponse(busyRequest));
+        CallRequest request = protocolLayer.awaitSentRequest();
+        assertEquals(primaryId, request.getId());
+        assertEquals(10000L, (long)protocolLayer.sentProcTimes.get(primaryId));
+
+        // attached request waits as long as the shared one
+        awaitWaiters(1);
+        clock.advance(100);
+        connector.onGetMessage(createResponse(request));
+        assertEquals(CallRequestProcessingState.RESULT_ARRIVED, primaryDevice.awaitInfo().getState());
+        assertEquals(CallRequestProcessingState.RESULT_ARRIVED, memberDevice.awaitInfo().getState());
+    }
+
+    /**
+     * Request coalesced with a waiting one prolongs maximal processing time
+     * of the shared request.
+     */
+    @Test
+    public void testProcessingTimeProlongedByCoalescedRequest() throws InterruptedException {
+        connector.setIdempotencyPolicy(ALL_IDEMPOTENT);
+
+        call(new TestingDeviceObject("1", "2", connector), 1000);
+        CallRequest busyRequest = protocolLayer.awaitSentRequest();
+
+        UUID primaryId = call(new TestingDeviceObject("1", "1", connector), 1000);
+        UUID memberId = call(new TestingDeviceObject("1", "1", connector), 1000);
+
+        connector.setCallRequestMaximalProcessingTime(memberId, 5000);
+        connector.setCallRequestMaximalProcessingTime(memberId, 2000);
+        connector.onGetMessage(createResponse(busyRequest));
+        assertEquals(primaryId, protocolLayer.awaitSentRequest().getId());
+        assertEquals(5000L, (long)protocolLayer.sentProcTimes.get(primaryId));
+    }
+
+    /**
+     * Idle request is forgotten after the maximal idle time, its late 
+     * response is discarded then.
+     */
+    @Test
+    public void testIdleRequestExpired() throws InterruptedException {
+        connector.setCallRequestsMaximalIdleTime(5000);
+        TestingDeviceObject device = new TestingDeviceObject("1", "1", connector);
+        UUID callId = call(device, 1000);
+        CallRequest request = protocolLayer.awaitSentRequest();
+
+        awaitWaiters(1);
+        clock.advance(1000);
+        awaitIdleRequestsNumber(1);
+
+        clock.advance(5001);
+        assertNull(connector.getCallRequestProcessingInfo(callId));
+        assertEquals(0, getIdleRequestsNumber());
+
+        connector.onGetMessage(createResponse(request));
+        Thread.sleep(100);
+        assertTrue(device.receivedInfos.isEmpty());
+    }
+
+    /**
+     * Processed request passes stages from queueing to delivery of its result.
+     */
+    @Test
+    public void testEventsOfProcessedRequest() throws InterruptedException {
+        RecordingEventsListener listener = new RecordingEventsListener(3);
+        CallRequestEvents.addListener(listener);
+        try {
+            TestingDeviceObject device = new TestingDeviceObject("1", "1", connector);
+            UUID callId = call(device, 1000);
+            connector.onGetMessage(createResponse(protocolLayer.awaitSentRequest()));
+
+            List<CallRequestEvent> events = listener.awaitEvents();
+            List<CallRequestStage> stages = new ArrayList<>();
+            for ( CallRequestEvent event : events ) {
+                assertEquals(callId, event.getRequestId());
+                stages.add(event.getStage());
+            }
+            assertEquals(
+                    Arrays.asList(CallRequestStage.QUEUED, CallRequestStage.SENT,
+                            CallRequestStage.RESULT_DELIVERED
+                    ),
+                    stages
+            );
+        } finally {
+            CallRequestEvents.removeListener(listener);
+        }
+    }
+
+    /**
+     * Timeout event is fired for the timed out request and for each request
+     * coalesced with it.
+     */
+    @Test
+    public void testEventsOfCoalescedRequests() throws InterruptedException {
+        connector.setIdempotencyPolicy(ALL_IDEMPOTENT);
+        RecordingEventsListener listener = new RecordingEventsListener(5);
+        CallRequestEvents.addListener(listener);
+        try {
+            List<UUID> callIds = new ArrayList<>();
+            for ( int i = 0; i < 3; i++ ) {
+                callIds.add(call(new TestingDeviceObject("1", "1", connector), 1000));
+            }
+            protocolLayer.awaitSentRequest();
+            awaitWaiters(1);
+            clock.advance(1000);
+
+            List<UUID> timedOutIds = new ArrayList<>();
+            for ( CallRequestEvent event : listener.awaitEvents() ) {
+                if ( event.getStage() == CallRequestStage.TIMEOUT ) {
+                    timedOutIds.add(event.getRequestId());
+                } else {
+                    assertEquals(callIds.get(0), event.getRequestId());
+                }
+            }
+            assertEquals(callIds, timedOutIds);
+        } finally {
+            CallRequestEvents.removeListener(listener);
+        }
+    }
+
+    /**
+     * Only requests sent into the network hold dispatches in the results 
+     * cache, the dispatches end with theirs results or cancelling.
+     */
+    @Test
+    public void testDispatchesOfResultsCache() throws InterruptedException {
+        connector.setIdempotencyPolicy(ALL_IDEMPOTENT);
+        CallResultsCache cache = new CallResultsCache(ALL_CACHEABLE);
+        connector.setResultsCache(cache);
+
+        TestingDeviceObject primaryDevice = new TestingDeviceObject("1", "1", connector);
+        TestingDeviceObject memberDevice = new TestingDeviceObject("1", "1", connector);
+        call(primaryDevice, 1000);
+        call(memberDevice, 1000);
+        CallRequest request = protocolLayer.awaitSentRequest();
+        assertEquals(1, cache.getPendingDispatchesCount());
+
+        connector.onGetMessage(createResponse(request));
+        assertEquals(CallRequestProcessingState.RESULT_ARRIVED, primaryDevice.awaitInfo().getState());
+        assertEquals(CallRequestProcessingState.RESULT_ARRIVED, memberDevice.awaitInfo().getState());
+        assertEquals(0, cache.getPendingDispatchesCount());
+        assertEquals(1, cache.size());
+
+        UUID callId = call(new TestingDeviceObject("1", "2", connector), 1000);
+        protocolLayer.awaitSentRequest();
+        assertEquals(1, cache.getPendingDispatchesCount());
+        connector.cancelCallRequest(callId);
+        awaitPendingDispatchesNumber(cache, 0);
+    }
+}
@@ -0,0 +1,161 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.microrisc.simply.iqrf.dpa.connector;
+
+import com.microrisc.simply.CallRequestPriority;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import com.microrisc.simply.time.VirtualClock;
+import java.util.Iterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of PriorityCallRequestsQueue.
+ * 
+ * @author agent
+ */
+public class PriorityCallRequestsQueueTest {
+    private Clock originalClock;
+    private VirtualClock clock;
+    private PriorityCallRequestsQueue<String> queue;
+    
+    @Before
+    public void setUp() {
+        originalClock = Clocks.getDefaultClock();
+        clock = new VirtualClock();
+        Clocks.setDefaultClock(clock);
+        queue = new PriorityCallRequestsQueue<>();
+    }
+    
+    @After
+    public void tearDown() {
+        Clocks.setDefaultClock(originalClock);
+    }
+    
+    @Test
+    public void emptyQueueReturnsNull() {
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+    
+    @Test
+    public void takesHigherPrioritiesFirst() {
+        queue.offer("bulk", CallRequestPriority.BULK);
+        queue.offer("normal", CallRequestPriority.NORMAL);
+        queue.offer("interactive", CallRequestPriority.INTERACTIVE);
+        
+        assertEquals("interactive", queue.poll());
+        assertEquals("normal", queue.poll());
+        assertEquals("bulk", queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+    
+    @Test
+    public void keepsFifoOrderWithinPriority() {
+        queue.offer("n1", CallRequestPriority.NORMAL);
+        queue.offer("n2", CallRequestPriority.NORMAL);
+        queue.offer("n3", CallRequestPriority.NORMAL);
+        
+        assertEquals("n1", queue.poll());
+        assertEquals("n2", queue.poll());
+        assertEquals("n3", queue.poll());
+    }
+    
+    @Test
+    public void promotesStarvingRequest() {
+        queue.setMaxWaitTime(100);
+        queue.offer("bulk", CallRequestPriority.BULK);
+        clock.advance(50);
+        queue.offer("interactive1", CallRequestPriority.INTERACTIVE);
+        queue.offer("interactive2", CallRequestPriority.INTERACTIVE);
+        
+        // bulk request has not waited long enough yet
+        assertEquals("interactive1", queue.poll());
+        
+        clock.advance(50);
+        assertEquals("bulk", queue.poll());
+        assertEquals("interactive2", queue.poll());
+    }
+    
+    @Test
+    public void promotesTheLongestWaitingRequest() {
+        queue.setMaxWaitTime(100);
+        queue.offer("bulk", CallRequestPriority.BULK);
+        clock.advance(10);
+        queue.offer("normal", CallRequestPriority.NORMAL);
+        clock.advance(10);
+        queue.offer("interactive", CallRequestPriority.INTERACTIVE);
+        clock.advance(200);
+        
+        // all requests are starving - the oldest one goes first
+        assertEquals("bulk", queue.poll());
+        assertEquals("normal", queue.poll());
+        assertEquals("interactive", queue.poll());
+    }
+    
+    @Test
+    public void iteratesFromHighestPriority() {
+        queue.offer("bulk", CallRequestPriority.BULK);
+        queue.offer("interactive", CallRequestPriority.INTERACTIVE);
+        queue.offer("normal", CallRequestPriority.NORMAL);
+        
+        Iterator<String> it = queue.iterator();
+        assertEquals("interactive", it.next());
+        assertEquals("normal", it.next());
+        it.remove();
+        assertEquals("bulk", it.next());
+        assertFalse(it.hasNext());
+        
+        assertEquals(0, queue.getStatistics(CallRequestPriority.NORMAL).getQueueDepth());
+        assertEquals("interactive", queue.poll());
+        assertEquals("bulk", queue.poll());
+        assertNull(queue.poll());
+    }
+    
+    @Test
+    public void recordsStatistics() {
+        queue.offer("n1", CallRequestPriority.NORMAL);
+        queue.offer("n2", CallRequestPriority.NORMAL);
+        assertEquals(2, queue.getStatistics(CallRequestPriority.NORMAL).getQueueDepth());
+        
+        clock.advance(30);
+        queue.poll();
+        clock.advance(10);
+        queue.poll();
+        
+        CallRequestsQueueStatistics stats = queue.getStatistics(CallRequestPriority.NORMAL);
+        assertEquals(0, stats.getQueueDepth());
+        assertEquals(2, stats.getTakenCount());
+        assertEquals(35, stats.getAverageWaitTime());
+        assertEquals(40, stats.getMaxWaitTime());
+        assertEquals(0, queue.getStatistics(CallRequestPriority.BULK).getTakenCount());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNullPriority() {
+        queue.offer("request", null);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveMaxWaitTime() {
+        queue.setMaxWaitTime(0);
+    }
+}
@@ -20,6 +20,8 @@ import com.microrisc.simply.BaseNetwork;
 import com.microrisc.simply.CallRequestProcessingState;
 import com.microrisc.simply.DeviceInterfaceMethodId;
 import com.microrisc.simply.Network;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
 import com.microrisc.simply.di_services.MethodIdTransformer;
 import com.microrisc.simply.di_services.WaitingTimeoutService;
 import com.microrisc.simply.errors.CallRequestProcessingError;
@@ -78,6 +80,9 @@ public final class AutoNetworkAlgorithmImpl implements AutoNetworkAlgorithm {
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(AutoNetworkAlgorithmImpl.class);
     
+    /** Clock to wait by. */
+    private final Clock clock = Clocks.getDefaultClock();
+    
     
     /** Minimal discovery TX power. */
     public static final int DISCOVERY_TX_POWER_MIN = 0;
@@ -806,7 +811,7 @@ public final class AutoNetworkAlgorithmImpl implements AutoNetworkAlgorithm {
             }
         
             // wait the whole above broadcast and all peer2peer LP slots
-            Thread.sleep( 
+            clock.sleep( 
                 ( bondedNodes.getNodesNumber() + 1 ) * 40 + bondedNodes.getNodesNumber()  * 60 
             );
         }
@@ -855,7 +860,7 @@ public final class AutoNetworkAlgorithmImpl implements AutoNetworkAlgorithm {
         logger.info("Waiting for prebonding for {} seconds ... ", waitBonding);
 
         try {
-            Thread.sleep(waitBonding * 1000 + 1000);
+            clock.sleep(waitBonding * 1000 + 1000);
         } catch ( InterruptedException ex ) {
             logger.error("Prebonding interrupted");
             if ( bondedNodes.getNodesNumber() > 0 ) {
@@ -934,7 +939,7 @@ public final class AutoNetworkAlgorithmImpl implements AutoNetworkAlgorithm {
             throw new Exception("Error while disabling prebonding.");
         }
         
-        Thread.sleep(100);
+        clock.sleep(100);
         
         short[] extraData = coordFrc.extraResult();
         if ( extraData == null ) {
@@ -1242,7 +1247,7 @@ public final class AutoNetworkAlgorithmImpl implements AutoNetworkAlgorithm {
                 );
                 
                 // waiting with the possibility of interruption
-                Thread.sleep( bondedNodes.getNodesNumber() * 60 + 150 );
+                clock.sleep( bondedNodes.getNodesNumber() * 60 + 150 );
                 
                 newAddrs.add(Integer.valueOf(bondedNode.getBondedAddress()));
                 updateNodesInfo(coordinator);
@@ -1286,7 +1291,7 @@ public final class AutoNetworkAlgorithmImpl implements AutoNetworkAlgorithm {
             throw new Exception("Error while checking new nodes.");
         }
         
-        Thread.sleep(100);
+        clock.sleep(100);
         
         short[] extraData = coordFrc.extraResult();
         if ( extraData == null ) {
@@ -1320,7 +1325,7 @@ public final class AutoNetworkAlgorithmImpl implements AutoNetworkAlgorithm {
                 }
                 
                 // Wait for sure
-                Thread.sleep(( bondedNodes.getNodesNumber() + 1 ) * (40 + 40));
+                clock.sleep(( bondedNodes.getNodesNumber() + 1 ) * (40 + 40));
                 Integer bondedNodesNum = coordinator.removeBondedNode(newAddr);
                 if (bondedNodesNum == null) {
                     logger.error("Removing bond at coordinator {} failed", newAddr);
@@ -1372,7 +1377,7 @@ public final class AutoNetworkAlgorithmImpl implements AutoNetworkAlgorithm {
             }
         
             // wait the whole above broadcast and little bit more
-            Thread.sleep(
+            clock.sleep(
                 ( ( bondedNodes.getNodesNumber() + 1 ) * 60 ) + 150 
             );
         }
@@ -1411,7 +1416,7 @@ public final class AutoNetworkAlgorithmImpl implements AutoNetworkAlgorithm {
                         break;
                     case WAITING_FOR_PROCESSING:
                     case WAITING_FOR_RESULT:
-                        Thread.sleep(1000);
+                        clock.sleep(1000);
                 }
                 if ( procState == CallRequestProcessingState.RESULT_ARRIVED ) {
                     break;
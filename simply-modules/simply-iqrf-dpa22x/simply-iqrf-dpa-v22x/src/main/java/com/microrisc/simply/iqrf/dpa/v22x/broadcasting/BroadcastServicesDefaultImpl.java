@@ -20,6 +20,7 @@ import com.microrisc.simply.CallRequestProcessingInfo;
 import com.microrisc.simply.CallRequestProcessingInfoContainer;
 import com.microrisc.simply.CallRequestProcessingState;
 import com.microrisc.simply.CallResult;
+import com.microrisc.simply.CallResultFutures;
 import com.microrisc.simply.ConnectorListener;
 import com.microrisc.simply.di_services.MethodIdTransformer;
 import com.microrisc.simply.errors.CallRequestProcessingError;
@@ -50,6 +51,9 @@ implements ConnectorListener, BroadcastServices
     /** Incomming results of performed broadcasts. */
     private final CallRequestProcessingInfoContainer results;
     
+    /** Futures of broadcasts, whose results have not arrived yet. */
+    private final CallResultFutures resultFutures;
+    
     /** Last call id. */
     private UUID lastCallId = null;
     
@@ -175,6 +179,7 @@ implements ConnectorListener, BroadcastServices
     ) {
         this.broadcastingConnService = checkBroadcastingConnectorService(broadcastingConnService);
         this.results = checkResultsContainer(resultsContainer);
+        this.resultFutures = new CallResultFutures(this.results);
     }
     
     @Override
@@ -195,10 +200,7 @@ implements ConnectorListener, BroadcastServices
                 procInfo, callId
         );
         
-        synchronized( results ) {
-            results.put(callId, procInfo);
-            results.notify();
-        }
+        resultFutures.complete(callId, procInfo);
         
         logger.debug("onCallRequestProcessingInfo - end");
         logger.info("New result from connector, id={}", callId);
@@ -373,23 +375,7 @@ implements ConnectorListener, BroadcastServices
         // setting processing timeout
         broadcastingConnService.setCallRequestMaximalProcessingTime(callId, timeout);
         
-        long startTime = System.currentTimeMillis();
-        synchronized( results ) {
-            while ( results.get(callId) == null ) {
-                try {
-                    results.wait( timeout );
-                } catch ( InterruptedException e ) {
-                    logger.warn("Get call result - interrupted");
-                    break;
-                }
-                
-                long timeElapsed = System.currentTimeMillis() - startTime;
-                if ( timeElapsed >= timeout ) {
-                    logger.info("Get call result - time elapsed");
-                    break;
-                }
-            }
-        }
+        resultFutures.await(callId, timeout);
         
         T callResult = getCallResultImmediately(callId, resultClass);
         
@@ -438,16 +424,7 @@ implements ConnectorListener, BroadcastServices
         // setting of processing timeout
         broadcastingConnService.setCallRequestMaximalProcessingTime(callId, UNLIMITED_WAITING_TIMEOUT);
         
-        synchronized( results ) {
-            while ( results.get(callId) == null ) {
-                try {
-                    results.wait( 0 );
-                } catch ( InterruptedException e ) {
-                    logger.warn("Get call result - interrupted");
-                    break;
-                }
-            }
-        }
+        resultFutures.await(callId, 0);
         
         T callResult = getCallResultImmediately(callId, resultClass);
         
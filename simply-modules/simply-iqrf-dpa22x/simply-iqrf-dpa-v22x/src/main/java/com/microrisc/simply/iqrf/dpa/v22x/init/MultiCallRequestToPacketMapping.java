@@ -19,6 +19,7 @@ package com.microrisc.simply.iqrf.dpa.v22x.init;
 import com.microrisc.simply.protocol.mapping.CallRequestToPacketMapping;
 import com.microrisc.simply.protocol.mapping.PacketFragment;
 import com.microrisc.simply.protocol.mapping.ProtocolMappingException;
+import com.microrisc.simply.protocol.mapping.RequestPacketTemplate;
 import com.microrisc.simply.typeconvertors.ValueConversionException;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -143,6 +144,18 @@ final class MultiCallRequestToPacketMapping implements CallRequestToPacketMappin
     public List<PacketFragment> getSerializedProtocolData() {
         return mappings[0].getSerializedProtocolData();
     }
+    
+    // all source mappings share the same protocol, network and node mappings
+    @Override
+    public RequestPacketTemplate getRequestPacketTemplate(
+            Class devInterface, String methodId
+    ) throws ProtocolMappingException {
+        CallRequestToPacketMapping requestMapping = classMapping.get(devInterface);
+        if ( requestMapping == null ) {
+            throw new ProtocolMappingException("Device Interface not supported: " + devInterface);
+        }
+        return requestMapping.getRequestPacketTemplate(devInterface, methodId);
+    }
 
     
 }
@@ -0,0 +1,150 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.iqrf.dpa.v22x.protocol;
+
+import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.connector.CallResultsCachingPolicy;
+import com.microrisc.simply.di_services.MethodIdTransformer;
+import com.microrisc.simply.iqrf.dpa.v22x.devices.Coordinator;
+import com.microrisc.simply.iqrf.dpa.v22x.devices.Node;
+import com.microrisc.simply.iqrf.dpa.v22x.devices.OS;
+import com.microrisc.simply.iqrf.dpa.v22x.devices.PeripheralInfoGetter;
+import com.microrisc.simply.iqrf.dpa.v22x.di_services.method_id_transformers.StandardMethodIdTransformers;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caching policy for standard DPA peripherals.
+ * <p>
+ * By default, results of these methods are cached: <br>
+ * - OS: read, readHWPConfiguration <br>
+ * - PeripheralInfoGetter: all methods <br>
+ * - Coordinator: getAddressingInfo, getDiscoveredNodes, getBondedNodes <br>
+ * <p>
+ * Call request, whose result is not cacheable, invalidates cached results 
+ * of the same device interface on the same node ( or on all nodes of the 
+ * network, if the request is broadcasted ). Call requests of OS and Node 
+ * invalidate all cached results of the node, because they can change state 
+ * of the whole node, e.g. by writing HWP configuration or loading code.
+ * 
+ * @author agent
+ */
+public final class DPA_CachingPolicy implements CallResultsCachingPolicy {
+    /** Default time to live of node's information [in ms]. */
+    public static final long NODE_INFO_TIME_TO_LIVE_DEFAULT = 60000;
+    
+    /** Default time to live of network's information [in ms]. */
+    public static final long NETWORK_INFO_TIME_TO_LIVE_DEFAULT = 10000;
+    
+    
+    /** Times to live of results of methods of device interfaces. */
+    private final Map<Class, Map<String, Long>> timesToLive = new ConcurrentHashMap<>();
+    
+    
+    private static MethodIdTransformer getTransformer(Class devIface) {
+        MethodIdTransformer transformer 
+                = StandardMethodIdTransformers.getInstance().getTransformer(devIface);
+        if ( transformer == null ) {
+            throw new IllegalArgumentException(
+                    "Unsupported device interface: " + devIface.getName()
+            );
+        }
+        return transformer;
+    }
+    
+    private static long checkTimeToLive(long timeToLive) {
+        if ( timeToLive < 0 ) {
+            throw new IllegalArgumentException("Time to live cannot be less then 0");
+        }
+        return timeToLive;
+    }
+    
+    private static boolean isNodeWideInterface(Class devIface) {
+        return ( devIface.equals(OS.class) || devIface.equals(Node.class) );
+    }
+    
+    
+    /**
+     * Creates new caching policy with default times to live.
+     */
+    public DPA_CachingPolicy() {
+        setTimeToLive(OS.class, OS.MethodID.READ, NODE_INFO_TIME_TO_LIVE_DEFAULT);
+        setTimeToLive(OS.class, OS.MethodID.READ_HWP_CONFIGURATION, NODE_INFO_TIME_TO_LIVE_DEFAULT);
+        for ( PeripheralInfoGetter.MethodID methodId : PeripheralInfoGetter.MethodID.values() ) {
+            setTimeToLive(PeripheralInfoGetter.class, methodId, NODE_INFO_TIME_TO_LIVE_DEFAULT);
+        }
+        setTimeToLive(Coordinator.class, Coordinator.MethodID.GET_ADDRESSING_INFO, 
+                NETWORK_INFO_TIME_TO_LIVE_DEFAULT
+        );
+        setTimeToLive(Coordinator.class, Coordinator.MethodID.GET_DISCOVERED_NODES, 
+                NETWORK_INFO_TIME_TO_LIVE_DEFAULT
+        );
+        setTimeToLive(Coordinator.class, Coordinator.MethodID.GET_BONDED_NODES, 
+                NETWORK_INFO_TIME_TO_LIVE_DEFAULT
+        );
+    }
+    
+    /**
+     * Sets time to live of results of specified method.
+     * @param devIface device interface
+     * @param methodId ID of method of {@code devIface}
+     * @param timeToLive time to live [in ms], 0 means, that results will 
+     *        not be cached
+     * @throws IllegalArgumentException if {@code devIface} is not standard 
+     *         DPA device interface or {@code timeToLive} is less than 0
+     */
+    public void setTimeToLive(Class devIface, Object methodId, long timeToLive) {
+        String methodIdStr = getTransformer(devIface).transform(methodId);
+        checkTimeToLive(timeToLive);
+        
+        Map<String, Long> methodsTimes = timesToLive.get(devIface);
+        if ( methodsTimes == null ) {
+            methodsTimes = new ConcurrentHashMap<>();
+            timesToLive.put(devIface, methodsTimes);
+        }
+        methodsTimes.put(methodIdStr, timeToLive);
+    }
+    
+    @Override
+    public long getTimeToLive(CallRequest request) {
+        Map<String, Long> methodsTimes = timesToLive.get(request.getDeviceInterface());
+        if ( methodsTimes == null ) {
+            return 0;
+        }
+        Long timeToLive = methodsTimes.get(request.getMethodId());
+        return ( timeToLive != null )? timeToLive : 0;
+    }
+
+    @Override
+    public boolean invalidates(CallRequest request, CallRequest cachedRequest) {
+        if ( !request.getNetworkId().equals(cachedRequest.getNetworkId()) ) {
+            return false;
+        }
+        
+        // broadcasted requests have no node ID
+        if ( (request.getNodeId() != null) 
+                && !request.getNodeId().equals(cachedRequest.getNodeId()) 
+        ) {
+            return false;
+        }
+        
+        if ( request.getDeviceInterface().equals(cachedRequest.getDeviceInterface()) ) {
+            return true;
+        }
+        return isNodeWideInterface(request.getDeviceInterface());
+    }
+}
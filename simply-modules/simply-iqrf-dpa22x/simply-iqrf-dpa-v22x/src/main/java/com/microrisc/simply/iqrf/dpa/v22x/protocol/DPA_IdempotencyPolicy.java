@@ -0,0 +1,83 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.iqrf.dpa.v22x.protocol;
+
+import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.connector.CallRequestIdempotencyPolicy;
+import com.microrisc.simply.di_services.MethodIdTransformer;
+import com.microrisc.simply.iqrf.dpa.v22x.devices.Coordinator;
+import com.microrisc.simply.iqrf.dpa.v22x.devices.IO;
+import com.microrisc.simply.iqrf.dpa.v22x.devices.Node;
+import com.microrisc.simply.iqrf.dpa.v22x.devices.OS;
+import com.microrisc.simply.iqrf.dpa.v22x.devices.PeripheralInfoGetter;
+import com.microrisc.simply.iqrf.dpa.v22x.devices.Thermometer;
+import com.microrisc.simply.iqrf.dpa.v22x.di_services.method_id_transformers.StandardMethodIdTransformers;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Idempotency policy for standard DPA peripherals. Only reading methods, 
+ * which do not change state of the node, are idempotent.
+ * 
+ * @author agent
+ */
+public final class DPA_IdempotencyPolicy implements CallRequestIdempotencyPolicy {
+    /** Idempotent methods of device interfaces. */
+    private final Map<Class, Set<String>> idempotentMethods = new HashMap<>();
+    
+    private void addMethods(Class devIface, Object... methodIds) {
+        MethodIdTransformer transformer 
+                = StandardMethodIdTransformers.getInstance().getTransformer(devIface);
+        Set<String> methodIdsStr = new HashSet<>();
+        for ( Object methodId : methodIds ) {
+            methodIdsStr.add(transformer.transform(methodId));
+        }
+        idempotentMethods.put(devIface, methodIdsStr);
+    }
+    
+    
+    /**
+     * Creates new idempotency policy for standard DPA peripherals.
+     */
+    public DPA_IdempotencyPolicy() {
+        addMethods(Coordinator.class, 
+                Coordinator.MethodID.GET_ADDRESSING_INFO,
+                Coordinator.MethodID.GET_DISCOVERED_NODES,
+                Coordinator.MethodID.GET_BONDED_NODES
+        );
+        addMethods(IO.class, IO.MethodID.GET);
+        addMethods(Node.class, Node.MethodID.READ);
+        addMethods(OS.class, OS.MethodID.READ, OS.MethodID.READ_HWP_CONFIGURATION);
+        addMethods(PeripheralInfoGetter.class, 
+                PeripheralInfoGetter.MethodID.GET_PERIPHERAL_ENUMERATION,
+                PeripheralInfoGetter.MethodID.GET_PERIPHERAL_INFO,
+                PeripheralInfoGetter.MethodID.GET_MORE_PERIPHERALS_INFO
+        );
+        addMethods(Thermometer.class, Thermometer.MethodID.GET);
+    }
+    
+    @Override
+    public boolean isIdempotent(CallRequest request) {
+        Set<String> methodIds = idempotentMethods.get(request.getDeviceInterface());
+        if ( methodIds == null ) {
+            return false;
+        }
+        return methodIds.contains(request.getMethodId());
+    }
+}
@@ -18,6 +18,7 @@ package com.microrisc.simply.iqrf.dpa.v22x.protocol;
 
 import com.microrisc.simply.AbstractMessage;
 import com.microrisc.simply.BaseCallResponse;
+import com.microrisc.simply.BytePacket;
 import com.microrisc.simply.CallRequest;
 import com.microrisc.simply.NetworkData;
 import com.microrisc.simply.NetworkLayerService;
@@ -25,6 +26,11 @@ import com.microrisc.simply.SimpleMessageSource;
 import com.microrisc.simply.SimpleMethodMessageSource;
 import com.microrisc.simply.SimplyException;
 import com.microrisc.simply.asynchrony.BaseAsynchronousMessage;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import com.microrisc.simply.tracing.CallRequestEvent;
+import com.microrisc.simply.tracing.CallRequestEvents;
+import com.microrisc.simply.tracing.CallRequestStage;
 import com.microrisc.simply.di_services.WaitingTimeoutService;
 import com.microrisc.simply.errors.NetworkInternalError;
 import com.microrisc.simply.iqrf.dpa.DPA_ResponseCode;
@@ -37,7 +43,7 @@ import com.microrisc.simply.iqrf.dpa.v22x.di_services.method_id_transformers.Coo
 import com.microrisc.simply.iqrf.dpa.v22x.typeconvertors.DPA_ConfirmationConvertor;
 import com.microrisc.simply.iqrf.dpa.v22x.types.DPA_Confirmation;
 import com.microrisc.simply.iqrf.dpa.v22x.protocol.timing.TimingParamsStorage;
-import com.microrisc.simply.network.BaseNetworkData;
+import com.microrisc.simply.network.PacketNetworkData;
 import com.microrisc.simply.protocol.AbstractProtocolLayer;
 import com.microrisc.simply.protocol.CallRequestComparator;
 import com.microrisc.simply.protocol.MessageConvertor;
@@ -50,12 +56,18 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.microrisc.simply.iqrf.dpa.v22x.init.NetworkInfo;
 
 /**
  * Protocol layer based on DPA_ProtocolProperties of IQRF.
+ * <p>
+ * Each network has its own Protocol State Machine, timing parameters and 
+ * sent requests, so requests into different networks ( coordinators ) can be 
+ * in process concurrently.
  * 
  * @author Michal Konopa
  * @author Martin Strouhal
@@ -63,11 +75,13 @@ import com.microrisc.simply.iqrf.dpa.v22x.init.NetworkInfo;
 //JUNE-2015 - improved determing and using RF mode
 public final class DPA_ProtocolLayer 
 extends AbstractProtocolLayer
-implements ProtocolStateMachineListener
 {
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(DPA_ProtocolLayer.class);
     
+    // multiplier for getting number of nanoseconds from number of miliseconds
+    private static final long MILISEC_TO_NANOSEC = 1000000;
+    
     
     /**
      * Binds sent requests with theirs time of sending.
@@ -183,48 +197,14 @@ implements ProtocolStateMachineListener
         return procTime != WaitingTimeoutService.UNLIMITED_WAITING_TIMEOUT;
     }
     
-    // indicates, wheather a time unlimited request is in process
-    private volatile boolean isTimeUnlimitedRequestInProcess = false;
-    
-    // indicates, wheather a timeout is defined by user
-    private volatile boolean isTimeoutDefinedByUserRequestInProcess = false;
-    
-    /** Last sent request. */
-    private TimeRequest lastRequest = null;
-    
-    /** List of all requests, which was sent to network layer. */
-    private List<TimeRequest> sentRequests = new LinkedList<>();
-    
-    /** Synchronization object for {@code sentRequest} data structure. */
-    private final Object synchroSentRequest = new Object();
-   
-    // timing parameters manager
-    private TimingParamsStorage timingParamsStorage;
-    
-    // for storing of request for timing params storage 
-    private CallRequest requestForTiming = null;
-    
-    
-    /**
-     * For ensuring that sending a request to connected network together with 
-     * performing of all needed settings including manipulation with Protocol Machine
-     * will be executed all at once - without interruption of any other threads.
-     */
-    private final Object synchroSendOrReceive = new Object();
-    
+    /** Clock to measure time by. */
+    private final Clock clock = Clocks.getDefaultClock();
     
     /** Default maximal time duration [in ms] of sent requests in the protocol layer. */
     public static final long MAX_REQUEST_DURATION_DEFAULT = 10000;
     
     /** Maximal time duration [in ms] of sent requests in the protocol layer. */
-    private long maxRequestDuration = MAX_REQUEST_DURATION_DEFAULT;
-    
-    
-    /** State machine supporting DPA protocol communication. */
-    private ProtocolStateMachine protoMachine = null;
-    
-    // state changed in protocol machine
-    private final Object protoMachineStateChangeSignal = new Object();
+    private volatile long maxRequestDuration = MAX_REQUEST_DURATION_DEFAULT;
     
     // type of errors encontered during communication with network layer
     private static enum COMMUNICATION_ERROR_TYPE {
@@ -233,81 +213,454 @@ implements ProtocolStateMachineListener
         MACHINE_INTERNAL_ERROR
     }
     
-    // waits before sending next request 
-    private void doWaitBeforeSendRequest() throws InterruptedException {
-        ProtocolStateMachine.State machineState = null;
-        
-        synchronized ( protoMachineStateChangeSignal ) {
-            machineState = protoMachine.getState();
-            while ( 
-                    !protoMachine.isError()
-                    && (machineState != ProtocolStateMachine.State.FREE_FOR_SEND)  
-                    && (machineState != ProtocolStateMachine.State.WAITING_FOR_CONFIRMATION_ERROR)
-                    && (machineState != ProtocolStateMachine.State.WAITING_FOR_RESPONSE_ERROR)
-                  ) {
-                protoMachineStateChangeSignal.wait();
+    
+    /**
+     * Protocol state of one network. Each network ( i.e. each coordinator ) 
+     * has its own Protocol State Machine, timing parameters and list of sent 
+     * requests, so requests into different networks can be in process 
+     * concurrently. Requests into the same network are sent one by one.
+     */
+    private final class NetworkProtocolState implements ProtocolStateMachineListener {
+        // ID of the network
+        private final String networkId;
+        
+        // indicates, whether a time unlimited request is in process
+        private volatile boolean isTimeUnlimitedRequestInProcess = false;
+        
+        // indicates, whether a timeout is defined by user
+        private volatile boolean isTimeoutDefinedByUserRequestInProcess = false;
+        
+        /** Last sent request. */
+        private volatile TimeRequest lastRequest = null;
+        
+        /** List of all requests, which was sent to network layer. */
+        private final List<TimeRequest> sentRequests = new LinkedList<>();
+        
+        /** Synchronization object for {@code sentRequest} data structure. */
+        private final Object synchroSentRequest = new Object();
+        
+        // timing parameters manager
+        private final TimingParamsStorage timingParamsStorage = new TimingParamsStorage();
+        
+        // for storing of request for timing params storage 
+        private CallRequest requestForTiming = null;
+        
+        /**
+         * For ensuring that sending a request to connected network together with 
+         * performing of all needed settings including manipulation with Protocol Machine
+         * will be executed all at once - without interruption of any other threads.
+         */
+        private final Object synchroSendOrReceive = new Object();
+        
+        /**
+         * Synchronization of sending requests. Requests can come from more threads 
+         * concurrently ( e.g. from more lanes of a connector ), so waiting for 
+         * the possibility to send and the sending itself must be performed by one 
+         * thread at a time.
+         */
+        private final Object synchroSendRequest = new Object();
+        
+        /** State machine supporting DPA protocol communication. */
+        private final ProtocolStateMachine protoMachine;
+        
+        // state changed in protocol machine
+        private final Object protoMachineStateChangeSignal = new Object();
+        
+        
+        NetworkProtocolState(String networkId) {
+            this.networkId = networkId;
+            this.protoMachine = new ProtocolStateMachine(clock);
+        }
+        
+        void start() throws SimplyException {
+            protoMachine.start();
+            protoMachine.registerListener(this);
+        }
+        
+        void destroy() {
+            synchronized ( synchroSentRequest ) {
+                sentRequests.clear();
+            }
+            protoMachine.unregisterListener();
+            protoMachine.destroy();
+        }
+        
+        // waits before sending next request 
+        private void doWaitBeforeSendRequest() throws InterruptedException {
+            ProtocolStateMachine.State machineState = null;
+
+            synchronized ( protoMachineStateChangeSignal ) {
                 machineState = protoMachine.getState();
+                while ( 
+                        !protoMachine.isError()
+                        && (machineState != ProtocolStateMachine.State.FREE_FOR_SEND)  
+                        && (machineState != ProtocolStateMachine.State.WAITING_FOR_CONFIRMATION_ERROR)
+                        && (machineState != ProtocolStateMachine.State.WAITING_FOR_RESPONSE_ERROR)
+                      ) {
+                    protoMachineStateChangeSignal.wait();
+                    machineState = protoMachine.getState();
+                }
+            }
+
+            if ( protoMachine.isError() ) {
+                protoMachine.reset();
+                return;
+            }
+
+            // checking if it is possible to send new request
+            switch ( machineState ) {
+                case WAITING_FOR_CONFIRMATION_ERROR:
+                case WAITING_FOR_RESPONSE_ERROR:
+                    // reseting machine after error
+                    protoMachine.reset();
+                    break;
+                case FREE_FOR_SEND:
+                    break;
+                default:
+                    throw new IllegalStateException("State not expected: " + machineState);
             }
         }
         
-        if ( protoMachine.isError() ) {
-            protoMachine.reset();
-            return;
+        /** 
+         * Deletes invalid requests. Request is invalid, if: <br> 
+         * - its presence in the list exceeds maximal time duration limit
+         * - is equal to specified new request
+         */
+        private void deleteInvalidRequests(CallRequest newRequest) {
+            logger.debug("deleteInvalidRequests - start: newRequest={}", newRequest);
+
+            synchronized ( synchroSentRequest ) {
+                Iterator<TimeRequest> requestIt = sentRequests.iterator();
+                while ( requestIt.hasNext() ) {
+                    TimeRequest sentRequest = requestIt.next();
+                    long requestDuration = clock.currentTimeMillis() - sentRequest.sentTime;
+
+                    if ( requestDuration > maxRequestDuration ) {
+                        logger.debug("removed request ( time exceed ): {}", sentRequest);
+                        requestIt.remove();
+                        continue;
+                    }
+
+                    if ( CallRequestComparator.areEqual(sentRequest.request, newRequest) ) {
+                        logger.debug("removed request ( equality ) : {}", sentRequest);
+                        requestIt.remove();
+                    }
+                }
+            }
+
+            logger.debug("deleteInvalidRequests - end");
+        }
+        
+        /**
+         * Maintenace of sent request list.
+         * @param callRequest new incomming request
+         */
+        private void maintainSentRequest(CallRequest callRequest) {
+            deleteInvalidRequests(callRequest);
+        }
+        
+        /**
+         * Returns call request, which is the specified response the response on
+         * that request. If no such request exists, returns {@code null}.
+         * @param response
+         * @return call request, which is the specified response the response on
+         *         that request
+         */
+        private TimeRequest getCauseRequest(BaseCallResponse response) {
+            logger.debug("getCauseRequest - start: response={}", response);
+
+            for ( TimeRequest timeRequest : sentRequests) {
+                if ( match(timeRequest.request, response) ) {
+                    logger.debug("getCauseRequest - end: {}", timeRequest.request);
+                    return timeRequest;
+                }
+            }
+
+            logger.debug("getCauseRequest - end: null");
+            return null;
         }
         
-        // checking if it is possible to send new request
-        switch ( machineState ) {
-            case WAITING_FOR_CONFIRMATION_ERROR:
-            case WAITING_FOR_RESPONSE_ERROR:
-                // reseting machine after error
-                protoMachine.reset();
-                break;
-            case FREE_FOR_SEND:
-                break;
-            default:
-                throw new IllegalStateException("State not expected: " + machineState);
+        // sends information about encountered error to the registered listener
+        private void sendErrorMessage(COMMUNICATION_ERROR_TYPE errorType, TimeRequest causeRequest) {
+            logger.debug("sendErrorMessage - start: causeRequest={}", causeRequest);
+
+            String errorMsg = null;
+            switch ( errorType ) {
+                case CONFIRMATION_TIMEOUTED:
+                    errorMsg = "Confirmation timeouted";
+                    break;
+                case RESPONSE_TIMEOUTED:
+                    errorMsg = "Response timeouted";
+                    break;
+                case MACHINE_INTERNAL_ERROR:
+                    errorMsg = "Internal error";
+                    break;
+            }
+
+            BaseCallResponse errorResponse = new BaseCallResponse(
+                    new SimpleMethodMessageSource(
+                            new SimpleMessageSource(
+                                    causeRequest.request.getNetworkId(), 
+                                    causeRequest.request.getNodeId()
+                            ), 
+                            causeRequest.request.getDeviceInterface(), 
+                            causeRequest.request.getMethodId()
+                           ), 
+                    new NetworkInternalError(errorMsg)
+            );
+
+            synchronized ( synchroSentRequest ) {
+                errorResponse.setRequestId(causeRequest.request.getId());
+                sentRequests.remove(causeRequest);
+            }
+
+            synchronized ( synchroListener ) {
+                listener.onGetMessage(errorResponse);
+            }
+
+            logger.debug("sendErrorMessage - end");
         }
-    }
-    
-    
-    /** 
-     * Deletes invalid requests. Request is invalid, if: <br> 
-     * - its presence in the list exceeds maximal time duration limit
-     * - is equal to specified new request
-     */
-    private void deleteInvalidRequests(CallRequest newRequest) {
-        logger.debug("deleteInvalidRequests - start: newRequest={}", newRequest);
-        
-        synchronized ( synchroSentRequest ) {
-            Iterator<TimeRequest> requestIt = sentRequests.iterator();
-            while ( requestIt.hasNext() ) {
-                TimeRequest sentRequest = requestIt.next();
-                long requestDuration = System.currentTimeMillis() - sentRequest.sentTime;
-
-                if ( requestDuration > maxRequestDuration ) {
-                    logger.debug("removed request ( time exceed ): {}", sentRequest);
-                    requestIt.remove();
-                    continue;
+        
+        @Override
+        public void onFreeForSend() {
+            synchronized ( protoMachineStateChangeSignal ) {
+                protoMachineStateChangeSignal.notifyAll();
+            }
+        }
+
+        @Override
+        public void onConfirmationTimeouted() {
+            if ( listener != null ) {
+                sendErrorMessage(COMMUNICATION_ERROR_TYPE.CONFIRMATION_TIMEOUTED, lastRequest);
+            }
+
+            synchronized ( protoMachineStateChangeSignal ) {
+                protoMachineStateChangeSignal.notifyAll();
+            }
+        }
+
+        @Override
+        public void onResponseTimeouted() {
+            if ( listener != null ) {
+                sendErrorMessage(COMMUNICATION_ERROR_TYPE.RESPONSE_TIMEOUTED, lastRequest);
+            }
+
+            synchronized ( protoMachineStateChangeSignal ) {
+                protoMachineStateChangeSignal.notifyAll();
+            }
+        }
+
+        @Override
+        public void onError() {
+            if ( listener != null ) {
+                sendErrorMessage(COMMUNICATION_ERROR_TYPE.MACHINE_INTERNAL_ERROR, lastRequest);
+            }
+
+            synchronized ( protoMachineStateChangeSignal ) {
+                protoMachineStateChangeSignal.notifyAll();
+            }
+        }
+        
+        // waits until it is possible to send new request and sends it
+        void sendRequest(CallRequest request, long procTime, BytePacket protoMsg) 
+                throws SimplyException 
+        {
+            synchronized ( synchroSendRequest ) {
+                // waiting until it is possible to send new request
+                try {
+                    doWaitBeforeSendRequest();
+                } catch ( InterruptedException ex ) {
+                    logger.warn(
+                        "Thread interrupted while waiting for sending next request."
+                        + "Request will not be sent", ex
+                    );
+                    return;
+                } catch ( Exception ex ) {
+                    protoMachine.reset();
+                    throw new SimplyException(ex);
+                }
+
+                lastRequest = new TimeRequest(request, clock.currentTimeMillis());
+
+                // must be performed altogether to eliminating the case, when 
+                // response comes to early from underlaying network layer
+                synchronized ( synchroSendOrReceive ) {
+                    // maintenance of already sent requests
+                    maintainSentRequest(request);
+                    networkLayerService.sendData( new PacketNetworkData(protoMsg, request.getNetworkId()) );
+
+                    // broadcast requests are treated as NO TIME UNLIMITED
+                    if ( request instanceof BroadcastRequest ) {
+                        isTimeUnlimitedRequestInProcess = false;
+                        isTimeoutDefinedByUserRequestInProcess = false;
+
+                        try {
+                            protoMachine.newRequest(request, timingParamsStorage.getTimingParams(request));
+                        } catch ( Exception ex ) {
+                            throw new SimplyException(ex);
+                        } 
+                    } else {
+                        synchronized ( synchroSentRequest ) {
+                            sentRequests.add( lastRequest );
+
+                            // TIME UNLIMITED requests go outside of Protocol State Machine
+                            // because the machine works with precise limited timeouts
+                            if ( isTimeUnlimitedRequest(request) ) {
+                                isTimeUnlimitedRequestInProcess = true;
+                            } else {
+                                if ( isTimeoutDefinedByUserRequest(procTime) ) {
+                                    isTimeoutDefinedByUserRequestInProcess = true;
+                                } else {
+                                    isTimeUnlimitedRequestInProcess = false;
+                                    isTimeoutDefinedByUserRequestInProcess = false;
+
+                                    try {
+                                        protoMachine.newRequest(request, timingParamsStorage.getTimingParams(request));
+                                    } catch ( Exception ex ) {
+                                        throw new SimplyException(ex);
+                                    }
+                                }
+                            }
+
+                            // for timing parameters storage
+                            requestForTiming = request;
+                        }
+                    }
+                }
+            }
+        }
+        
+        // processes specified confirmation
+        void confirmationReceived(DPA_Confirmation confirmation) {
+            TimeRequest confirmedRequest = lastRequest;
+            if ( CallRequestEvents.isEnabled() && (confirmedRequest != null) ) {
+                fireCallRequestEvent(confirmedRequest, CallRequestStage.CONFIRMATION_RECEIVED);
+            }
+            
+            // if time unlimited request is in process
+            if ( isTimeUnlimitedRequestInProcess ) {
+                return;
+            }
+            
+            // if timeout was defined by user, standard DPA timing is not used
+            if ( isTimeoutDefinedByUserRequestInProcess ) {
+                return;
+            }
+            
+            synchronized ( synchroSendOrReceive ) {
+                try {
+                    protoMachine.confirmationReceived(confirmation);
+                } catch ( Exception ex ) {
+                    logger.error("Internal error while confirmation reception: {}", ex);
+                    return;
                 }
 
-                if ( CallRequestComparator.areEqual(sentRequest.request, newRequest) ) {
-                    logger.debug("removed request ( equality ) : {}", sentRequest);
-                    requestIt.remove();
+                if ( lastRequest.request instanceof BroadcastRequest ) {
+                    processBroadcastConfirmation((BroadcastRequest) lastRequest.request);
                 }
             }
         }
         
-        logger.debug("deleteInvalidRequests - end");
+        /**
+         * Processes specified response.
+         * @param networkData source network data of the response
+         * @param response response to process
+         */
+        void responseReceived(NetworkData networkData, BaseCallResponse response) {
+            synchronized ( synchroSendOrReceive ) {
+                synchronized ( synchroSentRequest ) {
+                    TimeRequest causeRequest = getCauseRequest(response);
+
+                    if ( causeRequest != null ) {
+                        response.setRequestId(causeRequest.request.getId());
+                        sentRequests.remove(causeRequest);
+                        if ( CallRequestEvents.isEnabled() ) {
+                            fireCallRequestEvent(causeRequest, CallRequestStage.RESPONSE_RECEIVED);
+                        }
+                    } else {
+                        logger.error("Cause request not found for response: {}. "
+                            + "Response will be processed as asynchronous message", response
+                        );
+
+                        processMessage(createAsynchronousMessage(networkData));
+                        return;
+                    }
+                }
+
+                // if time unlimited request is NOT in process 
+                if ( !isTimeUnlimitedRequestInProcess ) {
+
+                    // if timeout NOT defined by user
+                    if ( !isTimeoutDefinedByUserRequestInProcess ) {
+                        try {
+                            protoMachine.responseReceived(networkData.getData());
+                        } catch ( Exception ex ) {
+                            logger.error("Internal error while response reception: {}", ex);
+                            return;
+                        }
+                    }
+                }
+
+                // processing the message incomming from network
+                processMessage(response);
+                timingParamsStorage.updateTimingParams(requestForTiming, response);
+            }
+        }
+    }
+    
+    /** Protocol states of networks mapped by IDs of networks. */
+    private final ConcurrentMap<String, NetworkProtocolState> networkStates 
+            = new ConcurrentHashMap<>();
+    
+    /** Informations about networks mapped by IDs of networks. */
+    private final Map<String, NetworkInfo> networkInfoMap = new HashMap<>();
+    
+    /** 
+     * Synchronization object for creating, starting and destroying of protocol 
+     * states of networks and for informations about networks. 
+     */
+    private final Object synchroNetworkStates = new Object();
+    
+    /** Indicates, whether this protocol layer has been started. */
+    private boolean isStarted = false;
+    
+    
+    // returns key of specified network ID into the map of network states
+    private static String getNetworkKey(String networkId) {
+        return String.valueOf(networkId);
     }
     
     /**
-     * Maintenace of sent request list.
-     * @param callRequest new incomming request
+     * Returns protocol state of specified network. If the state doesn't exist 
+     * yet, it is created and started, if this protocol layer has already been 
+     * started.
      */
-    private void maintainSentRequest(CallRequest callRequest) {
-        deleteInvalidRequests(callRequest);
+    private NetworkProtocolState getNetworkState(String networkId) throws SimplyException {
+        String networkKey = getNetworkKey(networkId);
+        NetworkProtocolState networkState = networkStates.get(networkKey);
+        if ( networkState != null ) {
+            return networkState;
+        }
+        
+        synchronized ( synchroNetworkStates ) {
+            networkState = networkStates.get(networkKey);
+            if ( networkState == null ) {
+                networkState = new NetworkProtocolState(networkId);
+                NetworkInfo networkInfo = networkInfoMap.get(networkKey);
+                if ( networkInfo != null ) {
+                    networkState.protoMachine.configure(networkId, networkInfo);
+                }
+                if ( isStarted ) {
+                    networkState.start();
+                }
+                networkStates.put(networkKey, networkState);
+                logger.info("New network protocol state created: network={}", networkId);
+            }
+        }
+        return networkState;
     }
     
+    
     /**
      * Returns {@code true} if the specified response can be a response for 
      * specified request. Otherwise returns {@code false}.
@@ -321,32 +674,9 @@ implements ProtocolStateMachineListener
         return SimpleRequestToResponseMatcher.match(request, callResponse);
     }
     
-    /**
-     * Returns call request, which is the specified response the response on
-     * that request. If no such request exists, returns {@code null}.
-     * @param response
-     * @return call request, which is the specified response the response on
-     *         that request
-     */
-    private TimeRequest getCauseRequest(BaseCallResponse response) {
-        logger.debug("getCauseRequest - start: response={}", response);
-        
-        for ( TimeRequest timeRequest : sentRequests) {
-            if ( match(timeRequest.request, response) ) {
-                logger.debug("getCauseRequest - end: {}", timeRequest.request);
-                return timeRequest;
-            }
-        }
-        
-        logger.debug("getCauseRequest - end: null");
-        return null;
-    }
-    
     /**
      * Processes specified message.
-     * 
      * @param message message to process
-     * @param msgPacket message source protocol packet
      */
     private void processMessage(AbstractMessage message) {
         logger.debug("processMessage - start: message={}", message);
@@ -367,56 +697,13 @@ implements ProtocolStateMachineListener
             synchronized ( synchroListener ) {
                 listener.onGetMessage(message);
             }
-            timingParamsStorage.updateTimingParams(requestForTiming, (BaseCallResponse)message);
         }
         
         logger.debug("processResponse - end");
     }
     
-    // sends information about encountered error to the registered listener
-    private void sendErrorMessage(COMMUNICATION_ERROR_TYPE errorType, TimeRequest causeRequest) {
-        logger.debug("sendErrorMessage - start: causeRequest={}", causeRequest);
-        
-        String errorMsg = null;
-        switch ( errorType ) {
-            case CONFIRMATION_TIMEOUTED:
-                errorMsg = "Confirmation timeouted";
-                break;
-            case RESPONSE_TIMEOUTED:
-                errorMsg = "Response timeouted";
-                break;
-            case MACHINE_INTERNAL_ERROR:
-                errorMsg = "Internal error";
-                break;
-        }
-        
-        BaseCallResponse errorResponse = new BaseCallResponse(
-                new SimpleMethodMessageSource(
-                        new SimpleMessageSource(
-                                causeRequest.request.getNetworkId(), 
-                                causeRequest.request.getNodeId()
-                        ), 
-                        causeRequest.request.getDeviceInterface(), 
-                        causeRequest.request.getMethodId()
-                       ), 
-                new NetworkInternalError(errorMsg)
-        );
-        
-        synchronized ( synchroSentRequest ) {
-            errorResponse.setRequestId(causeRequest.request.getId());
-            sentRequests.remove(causeRequest);
-        }
-        
-        synchronized ( synchroListener ) {
-            listener.onGetMessage(errorResponse);
-        }
-        
-        logger.debug("sendErrorMessage - end");
-    }
-    
-    // processes specified broadcast confirmation
-    private void processBroadcastConfirmation(DPA_Confirmation confirmation) {
-        BroadcastRequest request = (BroadcastRequest) lastRequest.request;
+    // processes confirmation of specified broadcast request
+    private void processBroadcastConfirmation(BroadcastRequest request) {
         BaseCallResponse response = new BaseCallResponse(
                 BroadcastResult.OK, 
                 null,
@@ -475,51 +762,9 @@ implements ProtocolStateMachineListener
             MessageConvertor msgConvertor
     ) {
         super(networkLayerService, msgConvertor);
-        protoMachine = new ProtocolStateMachine();
         initTimeUnlimitedRequests();
-        timingParamsStorage = new TimingParamsStorage();
     }    
     
-    @Override
-    public void onFreeForSend() {
-        synchronized ( protoMachineStateChangeSignal ) {
-            protoMachineStateChangeSignal.notifyAll();
-        }
-    }
-    
-    @Override
-    public void onConfirmationTimeouted() {
-        if ( listener != null ) {
-            sendErrorMessage(COMMUNICATION_ERROR_TYPE.CONFIRMATION_TIMEOUTED, lastRequest);
-        }
-        
-        synchronized ( protoMachineStateChangeSignal ) {
-            protoMachineStateChangeSignal.notifyAll();
-        }
-    }
-    
-    @Override
-    public void onResponseTimeouted() {
-        if ( listener != null ) {
-            sendErrorMessage(COMMUNICATION_ERROR_TYPE.RESPONSE_TIMEOUTED, lastRequest);
-        }
-        
-        synchronized ( protoMachineStateChangeSignal ) {
-            protoMachineStateChangeSignal.notifyAll();
-        }
-    }
-    
-    @Override
-    public void onError() {
-        if ( listener != null ) {
-            sendErrorMessage(COMMUNICATION_ERROR_TYPE.MACHINE_INTERNAL_ERROR, lastRequest);
-        }
-        
-        synchronized ( protoMachineStateChangeSignal ) {
-            protoMachineStateChangeSignal.notifyAll();
-        }
-    }
-    
     /**
      * This method works as follows: <br>
      * 1. Converts specified request into sequence of bytes. If an error has
@@ -528,6 +773,9 @@ implements ProtocolStateMachineListener
      *    method is called.
      * 2. New {@code NetworkData} object is created and send into the network layer. 
      * 3. New {@code TimeRequest} object is created and stored into {@code sentRequest}.
+     * <p>
+     * Sending is performed within protocol state of the network of the request, 
+     * so requests into different networks don't wait for each other.
      */
     @Override
     public void sendRequest(CallRequest request, long procTime) throws SimplyException {
@@ -538,70 +786,10 @@ implements ProtocolStateMachineListener
         }
         
         // conversion to format used by application protocol
-        short[] protoMsg = msgConvertor.convertToProtoFormat(request);
+        BytePacket protoMsg = msgConvertor.convertToProtoPacket(request);
         
-        // waiting until it is possible to send new request
-        try {
-            doWaitBeforeSendRequest();
-        } catch ( InterruptedException ex ) {
-            logger.warn(
-                "Thread interrupted while waiting for sending next request."
-                + "Request will not be sent", ex
-            );
-            return;
-        } catch ( Exception ex ) {
-            protoMachine.reset();
-            throw new SimplyException(ex);
-        }
+        getNetworkState(request.getNetworkId()).sendRequest(request, procTime, protoMsg);
         
-        lastRequest = new TimeRequest(request, System.currentTimeMillis());
-        
-        // must be performed altogether to eliminating the case, when 
-        // response comes to early from underlaying network layer
-        synchronized ( synchroSendOrReceive ) {
-            // maintenance of already sent requests
-            maintainSentRequest(request);
-            networkLayerService.sendData( new BaseNetworkData(protoMsg, request.getNetworkId()) );
-            
-            // broadcast requests are treated as NO TIME UNLIMITED
-            if ( request instanceof BroadcastRequest ) {
-                isTimeUnlimitedRequestInProcess = false;
-                isTimeoutDefinedByUserRequestInProcess = false;
-               
-                try {
-                    protoMachine.newRequest(request, timingParamsStorage.getTimingParams(request));
-                } catch ( Exception ex ) {
-                    throw new SimplyException(ex);
-                } 
-            } else {
-                synchronized ( synchroSentRequest ) {
-                    sentRequests.add( lastRequest );
-                    
-                    // TIME UNLIMITED requests go outside of Protocol State Machine
-                    // because the machine works with precise limited timeouts
-                    if ( isTimeUnlimitedRequest(request) ) {
-                        isTimeUnlimitedRequestInProcess = true;
-                    } else {
-                        if ( isTimeoutDefinedByUserRequest(procTime) ) {
-                            isTimeoutDefinedByUserRequestInProcess = true;
-                        } else {
-                            isTimeUnlimitedRequestInProcess = false;
-                            isTimeoutDefinedByUserRequestInProcess = false;
-                            
-                            try {
-                                protoMachine.newRequest(request, timingParamsStorage.getTimingParams(request));
-                            } catch ( Exception ex ) {
-                                throw new SimplyException(ex);
-                            }
-                        }
-                    }
-                    
-                    // for timing parameters storage
-                    requestForTiming = request;
-                }
-            }
-        }
-      
         logger.debug("sendRequest - end");
     }
     
@@ -615,8 +803,12 @@ implements ProtocolStateMachineListener
         logger.debug("start - start:");
         
         super.start();
-        protoMachine.start();
-        protoMachine.registerListener(this);
+        synchronized ( synchroNetworkStates ) {
+            isStarted = true;
+            for ( NetworkProtocolState networkState : networkStates.values() ) {
+                networkState.start();
+            }
+        }
         
         logger.info("Started");
         logger.debug("start - end");
@@ -628,14 +820,14 @@ implements ProtocolStateMachineListener
         
         super.destroy();
         
-        sentRequests.clear();
-        sentRequests = null;
-        
-        protoMachine.unregisterListener();
-        protoMachine.destroy();
-        protoMachine = null;
-        
-        timingParamsStorage = null;
+        synchronized ( synchroNetworkStates ) {
+            isStarted = false;
+            for ( NetworkProtocolState networkState : networkStates.values() ) {
+                networkState.destroy();
+            }
+            networkStates.clear();
+            networkInfoMap.clear();
+        }
         
         logger.info("Destroyed");
         logger.debug("destroy - end");
@@ -651,7 +843,6 @@ implements ProtocolStateMachineListener
             return;
         }
         
-        // identification of response code
         DPA_ResponseCode responseCode = null;
         try {
             responseCode = DPA_ProtocolProperties.getResponseCode(networkData.getData());
@@ -661,6 +852,11 @@ implements ProtocolStateMachineListener
             return;
         }
         
+        // protocol state of the network, which the data comes from
+        NetworkProtocolState networkState = networkStates.get(
+                getNetworkKey(networkData.getNetworkId())
+        );
+        
         // all confirmations are filtered out
         if ( responseCode == DPA_ResponseCode.CONFIRMATION ) {
             DPA_Confirmation confirmation = null;
@@ -672,35 +868,21 @@ implements ProtocolStateMachineListener
                 System.arraycopy(networkData.getData(), DPA_ProtocolProperties.PDATA_START, 
                         confirmData, 0, confirmData.length
                 );
-                confirmation = (DPA_Confirmation)DPA_ConfirmationConvertor.
-                        getInstance().toObject(confirmData);
+                confirmation = (DPA_Confirmation)DPA_ConfirmationConvertor
+                        .getInstance().toObject(confirmData);
             } catch ( ValueConversionException ex ) {
                 logger.error("Error in conversion of confirmation. Network data={}", networkData);
                 logger.debug("onGetData - end");
                 return;
             }
             
-            // if time unlimited request is NOT in process 
-            if ( !isTimeUnlimitedRequestInProcess ) {
-                
-                // if timeout was not defined by user, use standard DPA timing
-                if ( !isTimeoutDefinedByUserRequestInProcess ) {
-                    synchronized ( synchroSendOrReceive ) {
-                        try {
-                            protoMachine.confirmationReceived(confirmation);
-                        } catch ( Exception ex ) {
-                            logger.error("Internal error while confirmation reception: {}", ex);
-                            logger.debug("onGetData - end");
-                            return;
-                        }
-
-                        if ( lastRequest.request instanceof BroadcastRequest ) {
-                            processBroadcastConfirmation(confirmation);
-                        }
-                    }
-                }
+            if ( networkState == null ) {
+                logger.warn("Confirmation from network without sent requests: {}", networkData);
+                logger.debug("onGetData - end");
+                return;
             }
-
+            networkState.confirmationReceived(confirmation);
+            
             logger.debug("onGetData - confirmation arrived: {}", networkData);
             return;
         }
@@ -735,56 +917,42 @@ implements ProtocolStateMachineListener
             return;
         }
         
-        synchronized ( synchroSendOrReceive ) {
-            synchronized ( synchroSentRequest ) {
-                BaseCallResponse response = (BaseCallResponse)message;
-                TimeRequest causeRequest = getCauseRequest(response);
-            
-                if ( causeRequest != null ) {
-                    response.setRequestId(causeRequest.request.getId());
-                    sentRequests.remove(causeRequest);
-                } else {
-                    logger.error("Cause request not found for response: {}. "
-                        + "Response will be processed as asynchronous message", response
-                    );
-                    
-                    DPA_AsynchronousMessage asyncResponse = createAsynchronousMessage(networkData); 
-                    processMessage(asyncResponse);
-                    
-                    logger.debug("onGetData - end");
-                    return;
-                }
-            }
-            
-            // if time unlimited request is NOT in process 
-            if ( !isTimeUnlimitedRequestInProcess ) {
-                
-                // if not timeout defined by user
-                if ( !isTimeoutDefinedByUserRequestInProcess ) {
-                    try {
-                        protoMachine.responseReceived(networkData.getData());
-                    } catch ( Exception ex ) {
-                        logger.error("Internal error while response reception: {}", ex);
-                        logger.debug("onGetData - end");
-                        return;
-                    }
-                }
-            }
-            
-            // processing the message incomming from network
-            processMessage(message);
+        BaseCallResponse response = (BaseCallResponse)message;
+        if ( networkState == null ) {
+            logger.error("Cause request not found for response: {}. "
+                + "Response will be processed as asynchronous message", response
+            );
+            processMessage(createAsynchronousMessage(networkData));
+        } else {
+            networkState.responseReceived(networkData, response);
         }
         
         logger.debug("onGetData - end");
     }
     
+    // delivers event of specified stage of specified request to tracing listeners
+    private void fireCallRequestEvent(TimeRequest timeRequest, CallRequestStage stage) {
+        long duration = (clock.currentTimeMillis() - timeRequest.sentTime) * MILISEC_TO_NANOSEC;
+        CallRequestEvents.fire(
+                new CallRequestEvent(timeRequest.request, stage, clock.nanoTime(), duration)
+        );
+    }
+    
     /**
      * Configures the protocol layer according to specified information about network.
      * @param networkId ID of network which the information relate to
      * @param info information about network
      */
     public void configure(String networkId, NetworkInfo info){
-        this.protoMachine.configure(networkId, info);
+        synchronized ( synchroNetworkStates ) {
+            String networkKey = getNetworkKey(networkId);
+            networkInfoMap.put(networkKey, info);
+            
+            NetworkProtocolState networkState = networkStates.get(networkKey);
+            if ( networkState != null ) {
+                networkState.protoMachine.configure(networkId, info);
+            }
+        }
     }
     
     /** Checks specified maximal time duration. */
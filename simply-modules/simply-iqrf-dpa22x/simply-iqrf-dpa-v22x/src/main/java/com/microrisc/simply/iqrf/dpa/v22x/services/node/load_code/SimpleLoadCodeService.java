@@ -32,6 +32,8 @@ import com.microrisc.simply.iqrf.dpa.v22x.types.FRC_Data;
 import com.microrisc.simply.iqrf.dpa.v22x.types.LoadingCodeProperties;
 import com.microrisc.simply.iqrf.dpa.v22x.types.LoadResult;
 import com.microrisc.simply.iqrf.types.VoidType;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
 import com.microrisc.simply.services.BaseServiceResult;
 import com.microrisc.simply.services.ServiceParameters;
 import com.microrisc.simply.services.ServiceResult;
@@ -73,6 +75,9 @@ extends BaseService implements LoadCodeService {
     private static final int TIMEOUT_AFTER_LOAD = 5 + 100 + 300 + 300;
     
     
+    // clock to wait by
+    private final Clock clock = Clocks.getDefaultClock();
+    
     // is message printing enabled or not
     private boolean isPrintingMessagesEnabled = false;
     
@@ -1195,7 +1200,7 @@ extends BaseService implements LoadCodeService {
                 if ( getNumOfSuccessfullyLoadedNodes(coordLoadResult.getResult()) > 0 ) {
                     logger.debug("Waiting after coordinator code load.");
                     try {
-                        Thread.sleep(TIMEOUT_AFTER_LOAD);
+                        clock.sleep(TIMEOUT_AFTER_LOAD);
                         waitedAfterCoordCodeLoad = true;
                     } catch ( InterruptedException ex ) {
                         logger.error("Waiting after coordinator code load interrupted.");
@@ -1249,7 +1254,7 @@ extends BaseService implements LoadCodeService {
         int successfullyLoadedNodesNum = getNumOfSuccessfullyLoadedNodes(loadResult.getResult());
         if ( !(successfullyLoadedNodesNum == 1 && waitedAfterCoordCodeLoad) ) {
             try {
-                Thread.sleep(TIMEOUT_AFTER_LOAD);
+                clock.sleep(TIMEOUT_AFTER_LOAD);
             } catch ( InterruptedException ex ) {
                 logger.error("Waiting after code load interrupted.");
             }
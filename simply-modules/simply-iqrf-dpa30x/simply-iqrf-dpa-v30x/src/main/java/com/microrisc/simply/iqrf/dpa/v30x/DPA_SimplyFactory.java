@@ -16,10 +16,9 @@
 
 package com.microrisc.simply.iqrf.dpa.v30x;
 
+import com.microrisc.simply.CallRequestProcessingInfoContainerFactory;
 import com.microrisc.simply.ConnectionStack;
 import com.microrisc.simply.ConnectorService;
-import com.microrisc.simply.HashMapCallRequestProcessingInfoContainer;
-import com.microrisc.simply.HashMapResultsContainer;
 import com.microrisc.simply.Network;
 import com.microrisc.simply.SimplyException;
 import com.microrisc.simply.asynchrony.AsynchronousMessagesGenerator;
@@ -70,19 +69,11 @@ public final class DPA_SimplyFactory {
             throw new SimplyException("Connector doesn't support broadcasting.");
         }
         
-        int capacity = configuration.getInt(
-                "dpa.broadcasting.resultsContainer.capacity", 
-                HashMapResultsContainer.DEFAULT_CAPACITY
-        );
-        
-        long maxTimeDuration = configuration.getLong(
-                "dpa.broadcasting.resultsContainer.maxTimeDuration",
-                HashMapResultsContainer.DEFAULT_MAX_TIME_DURATION
-        );
-        
         return new BroadcastServicesDefaultImpl(
             (BroadcastingConnectorService) connectorService, 
-            new HashMapCallRequestProcessingInfoContainer(capacity, maxTimeDuration)
+            CallRequestProcessingInfoContainerFactory.createContainer(
+                    configuration, "dpa.broadcasting.resultsContainer"
+            )
         );
     }
     
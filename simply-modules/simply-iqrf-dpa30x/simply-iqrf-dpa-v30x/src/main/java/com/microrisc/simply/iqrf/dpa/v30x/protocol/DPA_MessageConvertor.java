@@ -18,6 +18,7 @@ package com.microrisc.simply.iqrf.dpa.v30x.protocol;
 
 import com.microrisc.simply.AbstractMessage;
 import com.microrisc.simply.BaseCallResponse;
+import com.microrisc.simply.BytePacket;
 import com.microrisc.simply.CallRequest;
 import com.microrisc.simply.SimplyException;
 import com.microrisc.simply.NetworkData;
@@ -29,16 +30,13 @@ import com.microrisc.simply.iqrf.dpa.asynchrony.SimpleDPA_AsynchronousMessageSou
 import com.microrisc.simply.iqrf.dpa.broadcasting.BroadcastRequest;
 import com.microrisc.simply.iqrf.dpa.v30x.DPA_ResponseCode;
 import com.microrisc.simply.iqrf.dpa.v30x.devices.PeripheralInfoGetter;
-import com.microrisc.simply.protocol.RequestPacketCreator;
 import com.microrisc.simply.protocol.SimpleMessageConvertor;
 import com.microrisc.simply.protocol.mapping.CallRequestToPacketMapping;
-import com.microrisc.simply.protocol.mapping.PacketFragment;
 import com.microrisc.simply.protocol.mapping.PacketToCallResponseMapping;
 import com.microrisc.simply.protocol.mapping.ProtocolMapping;
+import com.microrisc.simply.protocol.mapping.RequestPacketTemplate;
 import com.microrisc.simply.typeconvertors.ValueConversionException;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -102,44 +100,49 @@ public final class DPA_MessageConvertor extends SimpleMessageConvertor {
         super(protocolMapping);
     }
     
+    // returns ID of destination node of specified request
+    private static String getDestinationNodeId(CallRequest callRequest) {
+        if ( callRequest instanceof BroadcastRequest ) {
+            return String.valueOf(BROADCAST_ADDRESS);
+        }
+        return callRequest.getNodeId();
+    }
+    
     @Override
     public short[] convertToProtoFormat(CallRequest callRequest) throws SimplyException {
         logger.debug("convertToProtoFormat - start: callRequest={}", callRequest);
         
         CallRequestToPacketMapping reqToPacketMapping = protocolMapping.
-                getCallRequestToPacketMapping();  
-        List<PacketFragment> serProtoData = reqToPacketMapping.getSerializedProtocolData();
-        List<PacketFragment> serNetworkData = reqToPacketMapping.
-                getSerializedNetworkData(callRequest.getNetworkId()
+                getCallRequestToPacketMapping();
+        RequestPacketTemplate template = reqToPacketMapping.getRequestPacketTemplate(
+                callRequest.getDeviceInterface(), callRequest.getMethodId()
         );
         
-        List<PacketFragment> serNodeData = null;
+        short[] requestPacket = template.createPacket(
+                callRequest.getNetworkId(), getDestinationNodeId(callRequest), 
+                callRequest.getArgs()
+        );
         
-        if ( callRequest instanceof BroadcastRequest ) {
-            serNodeData = reqToPacketMapping.getSerializedNodeData(String.valueOf(BROADCAST_ADDRESS));
-        } else {
-            serNodeData = reqToPacketMapping.getSerializedNodeData(callRequest.getNodeId());
-        }
+        logger.debug("convertToProtoFormat - end: {}", requestPacket);
+        return requestPacket;
+    }
+    
+    @Override
+    public BytePacket convertToProtoPacket(CallRequest callRequest) throws SimplyException {
+        logger.debug("convertToProtoPacket - start: callRequest={}", callRequest);
         
-        List<PacketFragment> serIfaceData = reqToPacketMapping.getSerializedInterfaceData(
-                callRequest.getDeviceInterface()
+        CallRequestToPacketMapping reqToPacketMapping = protocolMapping.
+                getCallRequestToPacketMapping();
+        RequestPacketTemplate template = reqToPacketMapping.getRequestPacketTemplate(
+                callRequest.getDeviceInterface(), callRequest.getMethodId()
         );
-        List<PacketFragment> serMethodData = reqToPacketMapping.getSerializedMethodData(
-                callRequest.getDeviceInterface(), callRequest.getMethodId());
-        List<PacketFragment> serMethodArgs = reqToPacketMapping.getSerializedMethodArgs(
-                callRequest.getDeviceInterface(), callRequest.getMethodId(), callRequest.getArgs());
-        
-        List<PacketFragment> allFragments = new LinkedList<>();
-        allFragments.addAll(serProtoData);
-        allFragments.addAll(serNetworkData);
-        allFragments.addAll(serNodeData);
-        allFragments.addAll(serIfaceData);
-        allFragments.addAll(serMethodData);
-        allFragments.addAll(serMethodArgs);
         
-        short[] requestPacket = RequestPacketCreator.createRequestPacket(allFragments);
+        BytePacket requestPacket = template.createBytePacket(
+                callRequest.getNetworkId(), getDestinationNodeId(callRequest), 
+                callRequest.getArgs()
+        );
         
-        logger.debug("convertToProtoFormat - end: {}", requestPacket);
+        logger.debug("convertToProtoPacket - end: {}", requestPacket);
         return requestPacket;
     }
     
@@ -19,6 +19,9 @@ package com.microrisc.simply.iqrf.dpa.v30x.protocol;
 import com.microrisc.simply.CallRequest;
 import com.microrisc.simply.ManageableObject;
 import com.microrisc.simply.SimplyException;
+import com.microrisc.simply.metrics.Metrics;
+import com.microrisc.simply.metrics.MetricsRegistry;
+import com.microrisc.simply.time.Clock;
 import com.microrisc.simply.iqrf.dpa.broadcasting.BroadcastRequest;
 import com.microrisc.simply.iqrf.dpa.v30x.types.DPA_Confirmation;
 import com.microrisc.simply.iqrf.RF_Mode;
@@ -40,6 +43,13 @@ import com.microrisc.simply.iqrf.dpa.v30x.init.NetworkInfo;
 /**
  * State machine for better handling of individual states within the process of 
  * DPA protocol's message exchange. 
+ * <p>
+ * Times from sending of requests to reception of confirmations and responses
+ * are recorded into the {@code protocol.<network ID>.confirmation} and
+ * {@code protocol.<network ID>.response} histograms of the default metrics 
+ * registry, timeouts of waiting for them into the 
+ * {@code protocol.<network ID>.confirmation.timeouts} and
+ * {@code protocol.<network ID>.response.timeouts} counters.
  * 
  * @author Michal Konopa
  * @author Martin Strouhal
@@ -50,6 +60,9 @@ final class ProtocolStateMachine implements ManageableObject {
     /** Logger. */
     private static final org.slf4j.Logger logger = LoggerFactory.getLogger(ProtocolStateMachine.class);
     
+    // multiplier for getting number of nanoseconds from number of miliseconds
+    private static final long MILISEC_TO_NANOSEC = 1000000;
+    
     
     // currently used RF mode
     private RF_Mode rfMode = RF_Mode.STD;
@@ -132,6 +145,9 @@ final class ProtocolStateMachine implements ManageableObject {
     // signal of state change
     private final Object stateChangeSignal = new Object();
     
+    // clock to measure time and to wait by
+    private final Clock clock;
+    
     // event triggered state change timeout [in ms]
     private static final long STATE_CHANGE_TIMEOUT = 1500;
     
@@ -139,7 +155,9 @@ final class ProtocolStateMachine implements ManageableObject {
     private volatile boolean error = false;
     
     
-    // waits for state change
+    // waits for state change - the state is changed by the waiting time counter
+    // immediately, so the timeout guards the counter thread only and it is 
+    // measured in real time
     private void waitForStateChangeSignal() {
         synchronized ( stateChangeSignal ) {
             while ( stateChanged == false ) {
@@ -502,14 +520,14 @@ final class ProtocolStateMachine implements ManageableObject {
             long timeToWaitAfterResponse 
                 = ( confirmation.getHops() + 1 ) * confirmation.getTimeslotLength() * 10
                 + ( confirmation.getHopsResponse() + 1 ) * actualRespTimeslotLength  * 10
-                - (System.currentTimeMillis() - confirmRecvTime);
+                - (clock.currentTimeMillis() - confirmRecvTime);
             logger.debug("Time to wait after response [in ms]: {}", timeToWaitAfterResponse);
             
             return timeToWaitAfterResponse;
         }
         
         long timeToWaitAfterResponse 
-            = ( actualRespTimeslotLength * 10 ) - (System.currentTimeMillis() - responseRecvTime);
+            = ( actualRespTimeslotLength * 10 ) - (clock.currentTimeMillis() - responseRecvTime);
         logger.debug("Time to wait after response [in ms]: {}", timeToWaitAfterResponse);
         
         return timeToWaitAfterResponse;
@@ -518,7 +536,7 @@ final class ProtocolStateMachine implements ManageableObject {
     private long countTimeToWaitAfterConfirmation() {
         long timeToWaitAfterConfirmation 
                 = ( confirmation.getHops() + 1 ) * confirmation.getTimeslotLength() * 10
-                - (System.currentTimeMillis() - responseRecvTime);
+                - (clock.currentTimeMillis() - responseRecvTime);
         logger.debug("Time to wait after confirmation [in ms]: {}", timeToWaitAfterConfirmation);
         
         return timeToWaitAfterConfirmation;
@@ -628,6 +646,9 @@ final class ProtocolStateMachine implements ManageableObject {
             switch ( actualState ) {
                 case WAITING_FOR_CONFIRMATION:
                     actualState = ProtocolStateMachine.State.WAITING_FOR_CONFIRMATION_ERROR;
+                    metrics.getCounter(
+                            getMetricName(request.getNetworkId(), "confirmation.timeouts")
+                    ).increment();
                     synchronized ( synchroListener ) {
                         if ( listener != null ) {
                             listener.onConfirmationTimeouted();
@@ -636,6 +657,9 @@ final class ProtocolStateMachine implements ManageableObject {
                     break;
                 case WAITING_FOR_RESPONSE:
                     actualState = ProtocolStateMachine.State.WAITING_FOR_RESPONSE_ERROR;
+                    metrics.getCounter(
+                            getMetricName(request.getNetworkId(), "response.timeouts")
+                    ).increment();
                     synchronized ( synchroListener ) {
                         if ( listener != null ) {
                             listener.onResponseTimeouted();
@@ -717,18 +741,18 @@ final class ProtocolStateMachine implements ManageableObject {
                             // 0 means thread to wait until notified
                             if ( waitingTime > 0 ) {
                                 //logger.info("run - waiting for confirmation - before waiting");
-                                long startTime = System.currentTimeMillis();
+                                long startTime = clock.currentTimeMillis();
                                 
                                 logger.debug("waiting for confirmation or response");
                                 
                                 try {
-                                    synchroNewEvent.wait(waitingTime);
+                                    clock.await(synchroNewEvent, waitingTime);
                                 } catch ( InterruptedException ex ) {
                                     logger.warn("Waiting time counter interrupted while waiting on new event");
                                     return;
                                 }
                                 
-                                long endTime = System.currentTimeMillis();
+                                long endTime = clock.currentTimeMillis();
                                 if ( (endTime - startTime) >= waitingTime ) {
                                     timeouted = true;
                                     logger.debug("confirmation or response timeouted");
@@ -750,7 +774,7 @@ final class ProtocolStateMachine implements ManageableObject {
                             logger.debug("waiting for routing");
                             
                             try {
-                                Thread.sleep(waitingTime);
+                                clock.sleep(waitingTime);
                             } catch ( InterruptedException ex ) {
                                 logger.warn("Waiting time counter interrupted while sleeping in 'AFTER' state");
                                 return;
@@ -886,6 +910,16 @@ final class ProtocolStateMachine implements ManageableObject {
     private int responseDataLength = -1;
    
     
+    // registry of metrics
+    private final MetricsRegistry metrics = Metrics.getDefaultRegistry();
+    
+    // network ID of the lastly sent request
+    private String sentRequestNetworkId = null;
+    
+    // time of sending of the lastly sent request [in ms]
+    private long sentRequestTime = -1;
+    
+    
     // listener
     private ProtocolStateMachineListener listener = null;
     
@@ -893,6 +927,21 @@ final class ProtocolStateMachine implements ManageableObject {
     private final Object synchroListener = new Object();
     
     
+    // returns name of specified metric of specified network
+    private static String getMetricName(String networkId, String metric) {
+        return "protocol." + networkId + "." + metric;
+    }
+    
+    // records time from sending of the last request to specified time
+    private void recordTimeFromSentRequest(long recvTime, String metric) {
+        if ( sentRequestNetworkId == null ) {
+            return;
+        }
+        metrics.getHistogram(getMetricName(sentRequestNetworkId, metric)).record(
+                (recvTime - sentRequestTime) * MILISEC_TO_NANOSEC
+        );
+    }
+    
     private boolean isRequestForCoordinator(CallRequest request) {
         return request.getNodeId().equals("0");
     }
@@ -915,11 +964,20 @@ final class ProtocolStateMachine implements ManageableObject {
         return time;
     }
     
+    private static Clock checkClock(Clock clock) {
+        if ( clock == null ) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        return clock;
+    }
+    
     /**
      * Creates new object of Protocol Machine.
      * RF mode will be set to STD.
+     * @param clock clock to measure time and to wait by
      */
-    public ProtocolStateMachine() {
+    public ProtocolStateMachine(Clock clock) {
+        this.clock = checkClock(clock);
         waitingTimeCounter = new WaitingTimeCounter();
         logger.info("Protocol machine successfully created.");
         this.networkInfoMap = new HashMap<>();
@@ -1087,6 +1145,9 @@ final class ProtocolStateMachine implements ManageableObject {
             }
         }
         
+        sentRequestNetworkId = request.getNetworkId();
+        sentRequestTime = clock.currentTimeMillis();
+        
         // signaling that new event has come in and what is the next expected state
         synchronized ( synchroNewEvent ) {
             newEvent = new NewRequestEvent(request, timingParams);
@@ -1139,6 +1200,8 @@ final class ProtocolStateMachine implements ManageableObject {
             }
         }
         
+        recordTimeFromSentRequest(recvTime, "confirmation");
+        
         // signaling that confirmation has come in
         synchronized ( synchroNewEvent ) {
             newEvent = new ConfirmationReceivedEvent(recvTime, confirmation);
@@ -1178,7 +1241,7 @@ final class ProtocolStateMachine implements ManageableObject {
     synchronized public void confirmationReceived(DPA_Confirmation confirmation) 
             throws StateTimeoutedException 
     {
-        confirmationReceived(System.currentTimeMillis(), confirmation);
+        confirmationReceived(clock.currentTimeMillis(), confirmation);
     }
     
     /**
@@ -1212,6 +1275,8 @@ final class ProtocolStateMachine implements ManageableObject {
             }
         }
         
+        recordTimeFromSentRequest(recvTime, "response");
+        
         synchronized ( synchroNewEvent ) {
             newEvent = new ResponseReceivedEvent(recvTime, responseData);
             stateChanged = false;
@@ -1250,7 +1315,7 @@ final class ProtocolStateMachine implements ManageableObject {
     synchronized public void responseReceived(short[] responseData) 
             throws StateTimeoutedException 
     {
-        responseReceived(System.currentTimeMillis(), responseData);
+        responseReceived(clock.currentTimeMillis(), responseData);
     }
     
     /**
@@ -0,0 +1,280 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.microrisc.simply.iqrf.dpa.v30x.protocol;
+
+import com.microrisc.simply.AbstractMessage;
+import com.microrisc.simply.BaseCallResponse;
+import com.microrisc.simply.BytePacket;
+import com.microrisc.simply.CallRequest;
+import com.microrisc.simply.NetworkData;
+import com.microrisc.simply.NetworkLayerListener;
+import com.microrisc.simply.NetworkLayerService;
+import com.microrisc.simply.ProtocoLayerListener;
+import com.microrisc.simply.SimpleMessageSource;
+import com.microrisc.simply.SimpleMethodMessageSource;
+import com.microrisc.simply.SimplyException;
+import com.microrisc.simply.asynchrony.BaseAsynchronousMessage;
+import com.microrisc.simply.di_services.WaitingTimeoutService;
+import com.microrisc.simply.network.BaseNetworkData;
+import com.microrisc.simply.protocol.MessageConvertor;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import com.microrisc.simply.time.VirtualClock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of {@link DPA_ProtocolLayer} with more networks.
+ * 
+ * @author agent
+ */
+public class DPA_ProtocolLayerTest {
+    
+    // device interface of testing requests
+    private interface TestDevice {}
+    
+    // method ID of testing requests
+    private static final String METHOD_ID = "1";
+    
+    // stores sent data
+    private static final class TestingNetworkLayerService implements NetworkLayerService {
+        final List<NetworkData> sentData = new ArrayList<>();
+        
+        @Override
+        public void registerListener(NetworkLayerListener listener) {
+        }
+
+        @Override
+        public void unregisterListener() {
+        }
+
+        @Override
+        public synchronized void sendData(NetworkData data) {
+            sentData.add(data);
+        }
+        
+        synchronized List<String> getSentNetworkIds() {
+            List<String> networkIds = new ArrayList<>();
+            for ( NetworkData data : sentData ) {
+                networkIds.add(data.getNetworkId());
+            }
+            return networkIds;
+        }
+    }
+    
+    // converts all incoming data to responses of coordinator on testing method
+    private static final class TestingMessageConvertor implements MessageConvertor {
+
+        @Override
+        public short[] convertToProtoFormat(CallRequest callRequest) {
+            return new short[] { 0x00, 0x00, 0x00, 0x01, 0xFF, 0xFF };
+        }
+
+        @Override
+        public BytePacket convertToProtoPacket(CallRequest callRequest) {
+            return BytePacket.fromShorts(convertToProtoFormat(callRequest));
+        }
+
+        @Override
+        public AbstractMessage convertToDOFormat(NetworkData networkData) {
+            return new BaseCallResponse(
+                    networkData.getData(), null, 
+                    new SimpleMethodMessageSource(
+                            new SimpleMessageSource(networkData.getNetworkId(), "0"), 
+                            TestDevice.class, METHOD_ID
+                    )
+            );
+        }
+    }
+    
+    // stores received messages
+    private static final class TestingListener implements ProtocoLayerListener {
+        final List<AbstractMessage> messages = new ArrayList<>();
+        
+        @Override
+        public synchronized void onGetMessage(AbstractMessage message) {
+            messages.add(message);
+        }
+        
+        synchronized AbstractMessage getMessage(int index) {
+            return messages.get(index);
+        }
+        
+        synchronized int getMessagesNumber() {
+            return messages.size();
+        }
+    }
+    
+    // sends request in separate thread
+    private final class Sender extends Thread {
+        final CallRequest request;
+        volatile SimplyException exception = null;
+        
+        Sender(CallRequest request) {
+            this.request = request;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                protocolLayer.sendRequest(request, WaitingTimeoutService.UNLIMITED_WAITING_TIMEOUT);
+            } catch ( SimplyException ex ) {
+                exception = ex;
+            }
+        }
+    }
+    
+    
+    private Clock originalClock;
+    private VirtualClock clock;
+    private TestingNetworkLayerService networkLayer;
+    private TestingListener listener;
+    private DPA_ProtocolLayer protocolLayer;
+    
+    
+    private static CallRequest createRequest(String networkId) {
+        return new CallRequest(
+                UUID.randomUUID(), networkId, "0", TestDevice.class, METHOD_ID, new Object[0]
+        );
+    }
+    
+    // data of response of coordinator without error
+    private static NetworkData createResponseData(String networkId) {
+        return new BaseNetworkData(
+                new short[] { 0x00, 0x00, 0x00, 0x81, 0xFF, 0xFF, 0x00, 0x00 }, networkId
+        );
+    }
+    
+    private void sendRequest(CallRequest request) throws SimplyException {
+        protocolLayer.sendRequest(request, WaitingTimeoutService.UNLIMITED_WAITING_TIMEOUT);
+    }
+    
+    private void assertResponse(int messageIndex, CallRequest request) {
+        AbstractMessage message = listener.getMessage(messageIndex);
+        assertTrue(message instanceof BaseCallResponse);
+        BaseCallResponse response = (BaseCallResponse) message;
+        assertEquals(request.getId(), response.getRequestId());
+        assertEquals(request.getNetworkId(), response.getMessageSource().getNetworkId());
+        assertNull(response.getProcessingError());
+    }
+    
+    @Before
+    public void setUp() throws SimplyException {
+        originalClock = Clocks.getDefaultClock();
+        clock = new VirtualClock();
+        Clocks.setDefaultClock(clock);
+        
+        networkLayer = new TestingNetworkLayerService();
+        listener = new TestingListener();
+        protocolLayer = new DPA_ProtocolLayer(networkLayer, new TestingMessageConvertor());
+        protocolLayer.registerListener(listener);
+        protocolLayer.start();
+    }
+    
+    @After
+    public void tearDown() {
+        protocolLayer.destroy();
+        Clocks.setDefaultClock(originalClock);
+    }
+    
+    /**
+     * Request waiting for response in one network doesn't block sending of 
+     * request into other network and responses are matched to the requests 
+     * of their networks in any order.
+     */
+    @Test(timeout = 10000)
+    public void networksAreInterleaved() throws SimplyException {
+        CallRequest request1 = createRequest("1");
+        CallRequest request2 = createRequest("2");
+        
+        sendRequest(request1);
+        sendRequest(request2);
+        assertEquals(2, networkLayer.getSentNetworkIds().size());
+        
+        protocolLayer.onGetData(createResponseData("2"));
+        protocolLayer.onGetData(createResponseData("1"));
+        
+        assertEquals(2, listener.getMessagesNumber());
+        assertResponse(0, request2);
+        assertResponse(1, request1);
+    }
+    
+    /**
+     * Next request into the same network waits for the previous one, while 
+     * requests into other network are sent.
+     */
+    @Test(timeout = 10000)
+    public void requestsOfOneNetworkAreSentOneByOne() 
+            throws SimplyException, InterruptedException {
+        CallRequest request1 = createRequest("1");
+        CallRequest nextRequest1 = createRequest("1");
+        CallRequest request2 = createRequest("2");
+        
+        sendRequest(request1);
+        Sender sender = new Sender(nextRequest1);
+        sender.start();
+        
+        sendRequest(request2);
+        protocolLayer.onGetData(createResponseData("2"));
+        assertResponse(0, request2);
+        
+        // network 1 still waits for the response
+        sender.join(200);
+        assertTrue(sender.isAlive());
+        assertEquals(2, networkLayer.getSentNetworkIds().size());
+        
+        protocolLayer.onGetData(createResponseData("1"));
+        assertResponse(1, request1);
+        
+        // waiting after response is over in virtual time
+        while ( sender.isAlive() ) {
+            clock.advanceToNextDeadline();
+            sender.join(10);
+        }
+        assertNull(sender.exception);
+        
+        List<String> sentNetworkIds = networkLayer.getSentNetworkIds();
+        assertEquals(3, sentNetworkIds.size());
+        assertEquals("1", sentNetworkIds.get(0));
+        assertEquals("2", sentNetworkIds.get(1));
+        assertEquals("1", sentNetworkIds.get(2));
+    }
+    
+    /**
+     * Response from network without sent requests is not matched to requests 
+     * of other networks.
+     */
+    @Test(timeout = 10000)
+    public void responseOfOtherNetworkIsNotMatched() throws SimplyException {
+        CallRequest request1 = createRequest("1");
+        sendRequest(request1);
+        
+        protocolLayer.onGetData(createResponseData("2"));
+        assertEquals(1, listener.getMessagesNumber());
+        assertTrue(listener.getMessage(0) instanceof BaseAsynchronousMessage);
+        
+        protocolLayer.onGetData(createResponseData("1"));
+        assertEquals(2, listener.getMessagesNumber());
+        assertResponse(1, request1);
+    }
+}
@@ -25,9 +25,14 @@ import com.microrisc.simply.network.AbstractNetworkLayer;
 import com.microrisc.simply.network.BaseNetworkData;
 import com.microrisc.simply.network.NetworkConnectionStorage;
 import com.microrisc.simply.network.NetworkLayerException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
-import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
@@ -37,11 +42,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Implements network layer using {@code MqttClient} object.
+ * Implements network layer using {@code MqttAsyncClient} object.
  * <p>
  * This registers itself like an listener of MQTT broker. All data 
  * coming from mqtt interface are forwarder to user's registered network listener. 
  * All data designated to underlying network are published to MQTT broker.
+ * <p>
+ * Publishing is asynchronous - {@link #sendData(com.microrisc.simply.NetworkData) }
+ * does not wait for delivery. Number of messages, whose delivery has not been
+ * completed yet, is bounded by maximal number of in-flight messages. If
+ * the connection to the broker is lost, the layer reconnects in background
+ * with growing pauses between attempts.
  * 
  * @author Martin Strouhal
  */
@@ -51,8 +62,33 @@ public final class MQTTNetworkLayer
     /** Logger. */
     private static final Logger log = LoggerFactory.getLogger(MQTTNetworkLayer.class);
     
+    /** Default QoS of published messages and of the subscription. */
+    public static int DEFAULT_QOS = 1;
+    
+    /** 
+     * Default maximal number of published messages, whose delivery has not 
+     * been completed yet. Equal to default in-flight limit of the client.
+     */
+    public static int MAX_INFLIGHT_MESSAGES = 10;
+    
+    /** Default timeout of connecting, subscribing and disconnecting [in ms]. */
+    public static long OPERATION_TIMEOUT = 30000;
+    
+    /** Default maximal time of waiting for connection when sending [in ms]. */
+    public static long CONNECTION_WAIT_TIMEOUT = 1000;
+    
+    /** Default maximal time of waiting for free place in in-flight window [in ms]. */
+    public static long INFLIGHT_WAIT_TIMEOUT = 5000;
+    
+    /** Default pause before first reconnection attempt [in ms]. */
+    public static long RECONNECT_MIN_PAUSE = 1000;
+    
+    /** Default maximal pause between reconnection attempts [in ms]. */
+    public static long RECONNECT_MAX_PAUSE = 32000;
+    
+    
     /** Mqtt client instance. */
-    private MqttClient mqttClient = null;
+    private IMqttAsyncClient mqttClient = null;
 
     /** Registered network listener. */
     private NetworkLayerListener networkListener = null;
@@ -63,6 +99,83 @@ public final class MQTTNetworkLayer
     private final String publishTopicName;
     private final String subscribeTopicName;
     
+    /** QoS of published messages and of the subscription. */
+    private final int qos;
+    
+    /** Free places in the window of in-flight messages. */
+    private final Semaphore inflightWindow;
+    
+    /** Connection options. */
+    private final MqttConnectOptions connectOptions;
+    
+    /** Synchronization of waiting for connection. */
+    private final Object connectionSynchro = new Object();
+    
+    /** Reconnecting thread, {@code null} if not reconnecting. */
+    private Thread reconnector = null;
+    
+    /** Synchronization of access to the reconnector. */
+    private final Object synchroReconnector = new Object();
+    
+    /** Indicates, that the layer has been destroyed. */
+    private volatile boolean destroyed = false;
+    
+    
+    /**
+     * Releases place in in-flight window, when delivery of published message 
+     * completes - successfully or not.
+     */
+    private class PublishListener implements IMqttActionListener {
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            inflightWindow.release();
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            inflightWindow.release();
+            log.error("Publishing failed", exception);
+        }
+    }
+    
+    /** Single listener for all published messages. */
+    private final PublishListener publishListener = new PublishListener();
+    
+    /**
+     * Reconnects to the broker after connection loss. Pause between attempts
+     * grows twice up to the maximal pause.
+     */
+    private class Reconnector extends Thread {
+        
+        @Override
+        public void run() {
+            long pause = RECONNECT_MIN_PAUSE;
+            
+            while ( !destroyed ) {
+                try {
+                    Thread.sleep(pause);
+                } catch ( InterruptedException ex ) {
+                    log.info("Reconnector thread interrupted");
+                    break;
+                }
+                
+                try {
+                    connectAndSubscribe();
+                    log.info("Reconnected to MQTT broker");
+                    break;
+                } catch ( MqttException ex ) {
+                    log.warn("Reconnection failed: {}", ex.getMessage());
+                }
+                pause = Math.min(pause * 2, RECONNECT_MAX_PAUSE);
+            }
+            
+            synchronized ( synchroReconnector ) {
+                reconnector = null;
+            }
+        }
+    }
+    
     private static NetworkConnectionStorage checkStorage(NetworkConnectionStorage storage) {
         if (storage == null) {
             throw new IllegalArgumentException("Network Connection Storage cannot "
@@ -82,8 +195,78 @@ public final class MQTTNetworkLayer
         return value;
     }
     
+    private static int checkQos(int qos) {
+        if ( (qos < 0) || (qos > 2) ) {
+            throw new IllegalArgumentException("QoS must be 0, 1 or 2");
+        }
+        return qos;
+    }
+    
+    private static int checkMaxInflight(int maxInflight) {
+        if ( maxInflight <= 0 ) {
+            throw new IllegalArgumentException("Maximal number of in-flight messages must be > 0");
+        }
+        return maxInflight;
+    }
+    
+    // connects to the broker and subscribes to incomming data 
+    private void connectAndSubscribe() throws MqttException {
+        mqttClient.connect(connectOptions).waitForCompletion(OPERATION_TIMEOUT);
+        mqttClient.subscribe(subscribeTopicName, qos).waitForCompletion(OPERATION_TIMEOUT);
+        
+        synchronized ( connectionSynchro ) {
+            connectionSynchro.notifyAll();
+        }
+    }
+    
+    // starts reconnecting, if not already running
+    private void startReconnecting() {
+        synchronized ( synchroReconnector ) {
+            if ( destroyed || (reconnector != null) ) {
+                return;
+            }
+            reconnector = new Reconnector();
+            reconnector.start();
+        }
+    }
+    
+    // terminates reconnecting, if running
+    private void terminateReconnecting() {
+        Thread actualReconnector = null;
+        synchronized ( synchroReconnector ) {
+            actualReconnector = reconnector;
+        }
+        
+        if ( actualReconnector == null ) {
+            return;
+        }
+        
+        actualReconnector.interrupt();
+        try {
+            actualReconnector.join();
+        } catch ( InterruptedException ex ) {
+            // restoring interrupt status
+            Thread.currentThread().interrupt();
+            log.warn("Termination of reconnecting interrupted");
+        }
+    }
+    
+    // waits for connection at most specified time
+    private boolean waitForConnection(long timeout) throws InterruptedException {
+        long waitStart = System.currentTimeMillis();
+        synchronized ( connectionSynchro ) {
+            long remaining = timeout;
+            while ( !mqttClient.isConnected() && (remaining > 0) ) {
+                connectionSynchro.wait(remaining);
+                remaining = timeout - (System.currentTimeMillis() - waitStart);
+            }
+        }
+        return mqttClient.isConnected();
+    }
+    
     /**
-     * Creates MQTT network layer object.
+     * Creates MQTT network layer object with default QoS and maximal number of 
+     * in-flight messages.
      * @param connectionStorage storage of network connection
      * @param serverURI for access to the network
      * @param clientId for access to the network
@@ -93,20 +276,47 @@ public final class MQTTNetworkLayer
      */
     public MQTTNetworkLayer(NetworkConnectionStorage connectionStorage, 
             String serverURI, String clientId, String mac)throws MqttException, Exception 
+    {
+        this(connectionStorage, serverURI, clientId, mac, DEFAULT_QOS, MAX_INFLIGHT_MESSAGES);
+    }
+    
+    /**
+     * Creates MQTT network layer object.
+     * @param connectionStorage storage of network connection
+     * @param serverURI for access to the network
+     * @param clientId for access to the network
+     * @param mac address of remote server
+     * @param qos QoS of published messages and of the subscription
+     * @param maxInflight maximal number of published messages, whose delivery
+     *        has not been completed yet
+     * @throws MqttException if some exception has occurred
+     *         during creating of mqtt network layer
+     */
+    public MQTTNetworkLayer(NetworkConnectionStorage connectionStorage, 
+            String serverURI, String clientId, String mac, int qos, int maxInflight
+    ) throws MqttException, Exception 
     {
         super(checkStorage(connectionStorage));
         checkNull(serverURI, "ServerURI");
         checkNull(clientId, "Client ID");
         checkNull(mac, "MAC address of remote server");
+        this.qos = checkQos(qos);
+        this.inflightWindow = new Semaphore(checkMaxInflight(maxInflight));
                 
         String tmpDir = System.getProperty("java.io.tmpdir");
         MqttClientPersistence persistence = new MqttDefaultFilePersistence(tmpDir);
         
-        this.mqttClient = new MqttClient(serverURI, clientId, persistence);
+        this.mqttClient = new MqttAsyncClient(serverURI, clientId, persistence);
         
         publishTopicName = "/gateway/" + mac + "/tx";
         subscribeTopicName = "/gateway/" + mac + "/rx";
         
+        // clean session - deliveries in progress fail on connection loss, 
+        // so their places in in-flight window are always released
+        this.connectOptions = new MqttConnectOptions();
+        connectOptions.setCleanSession(true);
+        connectOptions.setConnectionTimeout(30);
+        
         this.connectionInfo = new BaseMQTTConnectionInfo(serverURI, clientId, mac);
     }
    
@@ -130,14 +340,11 @@ public final class MQTTNetworkLayer
     public void start() throws NetworkLayerException {
         log.debug("start - start:");
 
-        MqttConnectOptions options = new MqttConnectOptions();
-        options.setCleanSession(true);
-        options.setConnectionTimeout(30);
-            
+        // callback must be set before connecting to not miss any message
+        mqttClient.setCallback(this);
+        
         try {
-            mqttClient.connect();
-            mqttClient.subscribe(subscribeTopicName);
-            mqttClient.setCallback(this);
+            connectAndSubscribe();
         } catch (MqttException ex) {
             log.error(ex.getMessage());
             throw new NetworkLayerException(ex.getMessage());
@@ -170,23 +377,27 @@ public final class MQTTNetworkLayer
             );
         }
         
-        // check if it's mqtt connected
-        if(!mqttClient.isConnected()){
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException ex) {
+        // check if it's mqtt connected and waits for free place in in-flight window
+        try {
+            if ( !waitForConnection(CONNECTION_WAIT_TIMEOUT) ) {
                 log.error("Mqtt client is disconnedted. Message cannot be send.");
                 throw new NetworkLayerException("Mqtt client is disconnedted. Message cannot be send.");
             }
+            
+            if ( !inflightWindow.tryAcquire(INFLIGHT_WAIT_TIMEOUT, TimeUnit.MILLISECONDS) ) {
+                log.error("Too many messages in flight. Message cannot be send.");
+                throw new NetworkLayerException("Too many messages in flight. Message cannot be send.");
+            }
+        } catch ( InterruptedException ex ) {
+            throw new NetworkLayerException(ex);
         }
 
         try {
             PublishableMqttMessage mqttMsg = SimpleJsonConvertor.getInstance().toJson(networkData.getData());
-            mqttClient.publish(publishTopicName, mqttMsg);            
-            
-            // in case of socket error on server
-            Thread.sleep(1000);
+            mqttMsg.setQos(qos);
+            mqttClient.publish(publishTopicName, mqttMsg, null, publishListener);
         } catch ( Exception ex ) {
+            inflightWindow.release();
             log.error(ex.getMessage());
             throw new NetworkLayerException(ex);
         }
@@ -198,9 +409,15 @@ public final class MQTTNetworkLayer
     public void destroy() {
         log.debug("destroy - start: ");
 
+        destroyed = true;
+        terminateReconnecting();
+        
         try {
-            mqttClient.unsubscribe(subscribeTopicName);
-            mqttClient.disconnect();
+            if ( mqttClient.isConnected() ) {
+                mqttClient.unsubscribe(subscribeTopicName).waitForCompletion(OPERATION_TIMEOUT);
+                mqttClient.disconnect().waitForCompletion(OPERATION_TIMEOUT);
+            }
+            mqttClient.close();
         } catch (MqttException ex) {
             log.warn(ex.getMessage());
        }
@@ -215,6 +432,7 @@ public final class MQTTNetworkLayer
     @Override
     public void connectionLost(Throwable cause) {
         log.info("Connection lost: " + cause.getMessage());
+        startReconnecting();
     }
 
     @Override
@@ -222,8 +440,12 @@ public final class MQTTNetworkLayer
         log.debug("messageArrived - start: topic={}, message={}", topic, message);
         log.debug(new String(message.getPayload()) + " in " + topic);
         short[] data = SimpleJsonConvertor.getInstance().toIQRF(new String(message.getPayload())).getData();
-        String networkId = connectionStorage.getNetworkId(connectionInfo);
-        networkListener.onGetData(new BaseNetworkData(data, networkId));
+        
+        NetworkLayerListener listener = networkListener;
+        if ( listener != null ) {
+            String networkId = connectionStorage.getNetworkId(connectionInfo);
+            listener.onGetData(new BaseNetworkData(data, networkId));
+        }
         log.debug("messageArrived - end");
     }
 
@@ -29,6 +29,11 @@ import org.apache.commons.configuration.Configuration;
  * - <b>networkLayer.type.mqtt.serverURI</b>: URI of mqtt broker
  * - <b>networkLayer.type.mqtt.clientId</b>: client id used for communication
 * - <b>networkLayer.type.mqtt.remoteMAC</b>: mac address of remote server (eg. bridge-iqrf-mqtt)
+ * - <b>networkLayer.type.mqtt.qos</b>: QoS of published messages, optional, 
+ *      default: {@link MQTTNetworkLayer#DEFAULT_QOS}
+ * - <b>networkLayer.type.mqtt.maxInflight</b>: maximal number of published 
+ *      messages, whose delivery has not been completed yet, optional, 
+ *      default: {@link MQTTNetworkLayer#MAX_INFLIGHT_MESSAGES}
  * 
  * @author Martin Strouhal
  */
@@ -41,14 +46,19 @@ extends AbstractNetworkLayerFactory<Configuration, NetworkLayer> {
         String serverURI;
         String clientId;
         String remoteMAC;
+        int qos;
+        int maxInflight;
         
         NetworkLayerParams(NetworkConnectionStorage connectionStorage, 
-                String serverURI, String clientId, String remoteMAC) 
-        { 
+                String serverURI, String clientId, String remoteMAC,
+                int qos, int maxInflight
+        ) { 
             this.connectionStorage = connectionStorage;
             this.serverURI = serverURI;
             this.clientId = clientId;
             this.remoteMAC = remoteMAC;
+            this.qos = qos;
+            this.maxInflight = maxInflight;
         }
     }
     
@@ -61,7 +71,15 @@ extends AbstractNetworkLayerFactory<Configuration, NetworkLayer> {
         String serverURI = configProps.getString("networkLayer.type.mqtt.serverURI");
         String clientId = configProps.getString("networkLayer.type.mqtt.clientId");
         String remoteMAC = configProps.getString("networkLayer.type.mqtt.remoteMAC");
-        return new NetworkLayerParams(connectionStorage, serverURI, clientId, remoteMAC);
+        int qos = configProps.getInt(
+                "networkLayer.type.mqtt.qos", MQTTNetworkLayer.DEFAULT_QOS
+        );
+        int maxInflight = configProps.getInt(
+                "networkLayer.type.mqtt.maxInflight", MQTTNetworkLayer.MAX_INFLIGHT_MESSAGES
+        );
+        return new NetworkLayerParams(
+                connectionStorage, serverURI, clientId, remoteMAC, qos, maxInflight
+        );
     }
     
     /**
@@ -78,7 +96,8 @@ extends AbstractNetworkLayerFactory<Configuration, NetworkLayer> {
         
         return new MQTTNetworkLayer(
                         networkParams.connectionStorage,
-                        serverURI, clientId, remoteMAC
+                        serverURI, clientId, remoteMAC,
+                        networkParams.qos, networkParams.maxInflight
         );
     }
     
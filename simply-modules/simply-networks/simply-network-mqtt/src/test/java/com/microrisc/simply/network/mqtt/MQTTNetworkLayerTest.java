@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.mqtt;
+
+import com.microrisc.simply.network.AbstractNetworkConnectionInfo;
+import com.microrisc.simply.network.BaseNetworkConnectionStorage;
+import com.microrisc.simply.network.BaseNetworkData;
+import com.microrisc.simply.network.NetworkConnectionStorage;
+import com.microrisc.simply.network.NetworkLayerException;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Tests of MQTTNetworkLayer, which don't need running MQTT broker.
+ *
+ * @author agent
+ */
+public class MQTTNetworkLayerTest {
+
+    // URI of a server, where no broker is running
+    private static final String SERVER_URI = "tcp://127.0.0.1:1";
+    private static final String CLIENT_ID = "test";
+    private static final String MAC = "0123456789AB";
+
+    private static NetworkConnectionStorage createConnectionStorage() {
+        AbstractNetworkConnectionInfo connInfo
+                = new BaseMQTTConnectionInfo(SERVER_URI, CLIENT_ID, MAC);
+        Map<String, AbstractNetworkConnectionInfo> idToConnInfo = new HashMap<>();
+        idToConnInfo.put("1", connInfo);
+        Map<AbstractNetworkConnectionInfo, String> connInfoToId = new HashMap<>();
+        connInfoToId.put(connInfo, "1");
+        return new BaseNetworkConnectionStorage(idToConnInfo, connInfoToId);
+    }
+
+    /**
+     * Maximal number of in-flight messages must be positive.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveMaxInflight() throws Exception {
+        new MQTTNetworkLayer(createConnectionStorage(), SERVER_URI, CLIENT_ID, MAC,
+                MQTTNetworkLayer.DEFAULT_QOS, 0
+        );
+    }
+
+    /**
+     * QoS must be 0, 1 or 2.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQos() throws Exception {
+        new MQTTNetworkLayer(createConnectionStorage(), SERVER_URI, CLIENT_ID, MAC,
+                3, MQTTNetworkLayer.MAX_INFLIGHT_MESSAGES
+        );
+    }
+
+    /**
+     * Sending fails, if the layer is not connected to the broker.
+     */
+    @Test(expected = NetworkLayerException.class)
+    public void testSendDataNotConnected() throws Exception {
+        MQTTNetworkLayer networkLayer = new MQTTNetworkLayer(
+                createConnectionStorage(), SERVER_URI, CLIENT_ID, MAC
+        );
+        try {
+            networkLayer.sendData(new BaseNetworkData(new short[] { 1 }, "1"));
+        } finally {
+            networkLayer.destroy();
+        }
+    }
+}
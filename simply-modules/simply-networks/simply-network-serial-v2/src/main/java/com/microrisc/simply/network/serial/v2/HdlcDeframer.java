@@ -0,0 +1,104 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.serial.v2;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Incremental assembling of HDLC frames from received bytes.
+ * <p>
+ * Bytes between the opening and the closing flag, both flags included,
+ * are collected into fixed frame buffer. Bytes outside of frames are 
+ * skipped and too long frames are discarded. Closing flag of each frame 
+ * serves as opening flag of the next frame too.
+ * 
+ * @author agent
+ */
+final class HdlcDeframer {
+    
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(HdlcDeframer.class);
+    
+    // frame delimiter
+    private static final int FLAG = 0x7E;
+    
+    // bytes of actually assembled frame
+    private final short[] frame;
+    
+    // number of bytes in the frame buffer
+    private int length = 0;
+    
+    // indicates, that the frame buffer contains opening flag
+    private boolean inFrame = false;
+    
+    // indicates, that the rest of actual frame is discarded 
+    private boolean discarding = false;
+    
+    
+    HdlcDeframer(int maxFrameLength) {
+        this.frame = new short[maxFrameLength];
+    }
+    
+    /**
+     * Processes next received byte.
+     * @param value unsigned value of received byte
+     * @return {@code true} if the byte completed a frame <br>
+     *         {@code false} otherwise
+     */
+    boolean process(int value) {
+        if ( value == FLAG ) {
+            // flag after opening flag only - new opening flag
+            if ( inFrame && !discarding && (length > 1) ) {
+                frame[length++] = (short) value;
+                return true;
+            }
+            frame[0] = (short) value;
+            length = 1;
+            inFrame = true;
+            discarding = false;
+            return false;
+        }
+        
+        if ( !inFrame || discarding ) {
+            return false;
+        }
+        
+        // one place must remain for closing flag
+        if ( length == frame.length - 1 ) {
+            logger.warn("Received frame too long, discarded");
+            discarding = true;
+            return false;
+        }
+        
+        frame[length++] = (short) value;
+        return false;
+    }
+    
+    /**
+     * Returns copy of the last completed frame and makes the closing flag
+     * of that frame the opening flag of the next one.
+     */
+    short[] takeFrame() {
+        short[] completedFrame = new short[length];
+        System.arraycopy(frame, 0, completedFrame, 0, length);
+        length = 1;
+        return completedFrame;
+    }
+}
@@ -25,12 +25,8 @@ import com.microrisc.simply.network.AbstractNetworkLayer;
 import com.microrisc.simply.network.BaseNetworkData;
 import com.microrisc.simply.network.NetworkConnectionStorage;
 import com.microrisc.simply.network.NetworkLayerException;
+import com.microrisc.simply.network.SpscByteRingBuffer;
 import com.microrisc.simply.network.comport.BaseCOMPortConnectionInfo;
-import java.io.ByteArrayOutputStream;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import jssc.SerialPort;
 import jssc.SerialPortEvent;
 import jssc.SerialPortEventListener;
@@ -87,9 +83,20 @@ public final class SerialNetworkLayerJssc extends AbstractNetworkLayer {
     private int serialBaudrate = 0;
 
     /**
-     * Data received from Serial.
+     * Default capacity of buffer of data received from Serial [in bytes].
      */
-    private Queue<byte[]> dataFromSerial = null;
+    public static int RECEIVED_DATA_BUFFER_CAPACITY = 4096;
+    
+    /**
+     * Default maximal length of received HDLC frame [in bytes], including
+     * flags and escape bytes. Longer frames are discarded.
+     */
+    public static int MAX_FRAME_LENGTH = 256;
+    
+    /**
+     * Bytes received from Serial. Filled by the jssc event thread only.
+     */
+    private SpscByteRingBuffer dataFromSerial = null;
     
     /**
      * Synchronization between socket reader thread and listener caller thread.
@@ -100,39 +107,6 @@ public final class SerialNetworkLayerJssc extends AbstractNetworkLayer {
      * Reading data from Serial.
      */
     private class SerialReader implements SerialPortEventListener {
-
-        // chunk delimiter
-        private static final byte CHUNK_SEPAR = 0x7E; 
-        
-        // remainder of last data read, which does not comprise a complete chunk
-        byte[] dataRemainder =  null;
-               
-        // reads data chunk from specified position from specified array
-        private byte[] readDataChunk(int startPos, byte[] arr) {
-            if ( arr[startPos] != CHUNK_SEPAR ) {
-                throw new IllegalStateException(
-                        "Bad format of input data. It must begin with " + CHUNK_SEPAR + " byte."
-                );
-            }
-            
-            ByteArrayOutputStream dataChunk = new ByteArrayOutputStream();
-            for ( int pos =  startPos; pos < arr.length; pos++ ) {
-                dataChunk.write(arr[pos] & 0xFF);
-                if ( arr[pos] == CHUNK_SEPAR ) {
-                    if ( pos != startPos ) {
-                        break;
-                    }
-                }
-            }
-            return dataChunk.toByteArray();
-        }
-        
-        // writes specified data chunk into global storage
-        private void writeDataChunkIntoGlobalStorage(byte[] dataChunk) {
-            synchronized ( threadsSynchro ) {
-                dataFromSerial.add(dataChunk);
-            }
-        }
         
         public void serialEvent(SerialPortEvent event) {
             
@@ -147,108 +121,58 @@ public final class SerialNetworkLayerJssc extends AbstractNetworkLayer {
                 return;
             }
         
-            // local data buffer to store data for this call only
             byte buffer[] = null;
             try {
                 buffer = serialPort.readBytes();
             } catch ( SerialPortException ex ) {
-                System.out.println("Reading data failed: " + ex);
+                logger.error("Reading data failed", ex);
                 return;
             }
             
-            byte[] allDataArr = null;
-            
-            // if there is data remainder, it is needed to add it for processing
-            if ( dataRemainder != null ) {
-                allDataArr = new byte[ dataRemainder.length + buffer.length];
-                System.arraycopy(dataRemainder, 0, allDataArr, 0, dataRemainder.length);
-                System.arraycopy(buffer, 0, allDataArr, dataRemainder.length, buffer.length);
-                dataRemainder = null;
-            } else {
-                allDataArr = new byte[buffer.length];
-                System.arraycopy(buffer, 0, allDataArr, 0, buffer.length);
-            }
-            
-            // list of data chunks - each chunk is embraced by CHUNK_SEPAR bytes
-            // with the exception of the last one - it can be without the last CHUNK_SEPAR
-            List<byte[]> dataChunks = new LinkedList<>();
-            
-            int chunkPos = 0;
-            while ( chunkPos < (allDataArr.length-1) ) {
-                byte[] dataChunk = readDataChunk(chunkPos, allDataArr);
-                dataChunks.add(dataChunk);
-                chunkPos += dataChunk.length; 
+            if ( buffer == null ) {
+                return;
             }
             
-            // write all data chunks into the shared storage, with the exception
-            // of the last one, if it is incomplete
-            boolean lastIsComplete = false;
-            for ( int chunkId = 0; chunkId < dataChunks.size(); chunkId++ ) {
-                byte[] dataChunk = dataChunks.get(chunkId);
-                
-                if ( chunkId != (dataChunks.size()-1) ) {
-                    writeDataChunkIntoGlobalStorage(dataChunk);
-                } else {
-                    if ( dataChunk[dataChunk.length-1] == CHUNK_SEPAR ) {
-                        writeDataChunkIntoGlobalStorage(dataChunk);
-                        lastIsComplete = true;
-                    }
-                }
+            // frames are assembled by the listener caller thread
+            int inserted = dataFromSerial.offer(buffer, 0, buffer.length);
+            if ( inserted < buffer.length ) {
+                logger.warn(
+                        "Buffer of received data is full, bytes discarded: {}", 
+                        buffer.length - inserted
+                );
             }
             
-            if ( lastIsComplete ) {
-                logger.info("New data from serial interface: {}", dataFromSerial.toArray());
-                
-                synchronized ( threadsSynchro ) {
-                    dataChunks.clear();
-                    threadsSynchro.notify();
-                }
-            } else {
-                dataRemainder = dataChunks.get(dataChunks.size()-1);
-                dataChunks.clear();
+            synchronized ( threadsSynchro ) {
+                threadsSynchro.notify();
             }
         }
     }
-
+    
     /**
      * Calling listener callback method - when new data has arrived from socket.
      */
     private class ListenerCaller extends Thread {
-
-        // already consumed data from Serial
-        private Queue<byte[]> consumedData = new LinkedList<byte[]>();
-
-        // indicates, wheather new data are from Serial
-        private boolean areDataFromSerial() {
-            return !dataFromSerial.isEmpty();
-        }
-
-        // consume data from serial and adds them into buffer
-        private void consumeDataFromSerial() {
-            while ( !dataFromSerial.isEmpty() ) {
-                byte[] packetData = dataFromSerial.poll();
-                consumedData.add(packetData);
+        
+        // assembles frames from received bytes
+        private final HdlcDeframer deframer = new HdlcDeframer(MAX_FRAME_LENGTH);
+        
+        // sends specified HDLC frame to the listener
+        private void processFrame(short[] frame) {
+            logger.info("Frame from Serial: {}", frame);
+            
+            short[] userData = null;
+            try {
+                userData = HDLC_DataTransformer.getDataFromFrame(frame);
+            } catch ( HDLC_FormatException e ) {
+                logger.error("Error while reading data from HDLC format: ", e);
+                return;
             }
-        }
 
-        /**
-         * Frees up used resources.
-         */
-        private void freeResources() {
-            consumedData.clear();
-        }
-        
-        /** 
-         * Converts specified byte array to its short representations.
-         * All negative values in the byte array will be converted to its 
-         * positive counterparts.
-         */
-        private short[] toShortArr(byte[] byteArr) {
-            short[] shortArr = new short[ byteArr.length ];
-            for ( int i = 0; i < byteArr.length; i++ ) {
-                shortArr[i] = (short) (byteArr[i] & 0xff);
-            } 
-            return shortArr;
+            NetworkLayerListener listener = networkListener;
+            if ( listener != null ) {
+                String networkId = connectionStorage.getNetworkId(connectionInfo);
+                listener.onGetData( new BaseNetworkData(userData, networkId) );
+            }
         }
         
         @Override
@@ -256,41 +180,27 @@ public final class SerialNetworkLayerJssc extends AbstractNetworkLayer {
             while ( true ) {
                 if ( this.isInterrupted() ) {
                     logger.info("Serial caller thread interrupted");
-                    freeResources();
                     return;
                 }
 
-                // consuming new data from Serial
+                // waiting for new data from Serial
                 synchronized ( threadsSynchro ) {
-                    while ( !areDataFromSerial() ) {
+                    while ( dataFromSerial.isEmpty() ) {
                         try {
                             threadsSynchro.wait();
                         } catch (InterruptedException ex) {
                             logger.warn("Serial caller thread interrupted while "
                                     + "waiting on data from Serial.");
-                            freeResources();
                             return;
                         }
                     }
-                    consumeDataFromSerial();
                 }
 
-                // remove data from queue and put send it to listener
-                while ( !consumedData.isEmpty() ) {
-                    short[] packetData = toShortArr(consumedData.poll());
-                    logger.info("Converted data from Serial: {}", packetData);
-                    
-                    short[] userData = null;
-                    try {
-                        userData = HDLC_DataTransformer.getDataFromFrame(packetData);
-                    } catch ( HDLC_FormatException e ) {
-                        logger.error("Error while reading data from HDLC format: ", e);
-                        continue;
-                    }
-
-                    if ( networkListener != null ) {
-                        String networkId = connectionStorage.getNetworkId(connectionInfo);
-                        networkListener.onGetData( new BaseNetworkData(userData, networkId) );
+                // feed the deframer and send completed frames to listener
+                int value;
+                while ( (value = dataFromSerial.poll()) != -1 ) {
+                    if ( deframer.process(value) ) {
+                        processFrame(deframer.takeFrame());
                     }
                 }
             }
@@ -375,6 +285,9 @@ public final class SerialNetworkLayerJssc extends AbstractNetworkLayer {
     public void start() throws NetworkLayerException {
         logger.debug("startReceivingData - start:");
         
+        // init buffer of data comming from Serial - before the reader is registered
+        dataFromSerial = new SpscByteRingBuffer(RECEIVED_DATA_BUFFER_CAPACITY);
+        
         serialPort = new SerialPort( portName );
         
         try {
@@ -393,10 +306,6 @@ public final class SerialNetworkLayerJssc extends AbstractNetworkLayer {
             throw new NetworkLayerException(ex);
         }
 
-        // init queue of data comming from Serial
-        //dataFromSerial = new LinkedList<byte[]>();
-        dataFromSerial = new ConcurrentLinkedDeque<>();
-
         // creating and starting threads
         createAndStartThreads( );
 
@@ -459,13 +368,13 @@ public final class SerialNetworkLayerJssc extends AbstractNetworkLayer {
         
         unregisterListener();
         terminateThreads();
-        dataFromSerial.clear();
         
         try {
             serialPort.closePort();
         } catch (SerialPortException ex) {
             logger.error("Error while closing SerialPort", ex);
         }
+        dataFromSerial.clear();
         serialPort = null;
         
         logger.info("Destroyed");
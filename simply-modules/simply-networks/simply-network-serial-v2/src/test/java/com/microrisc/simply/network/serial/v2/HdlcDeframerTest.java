@@ -0,0 +1,116 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.microrisc.simply.network.serial.v2;
+
+import java.util.LinkedList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of HdlcDeframer.
+ * 
+ * @author agent
+ */
+public class HdlcDeframerTest {
+    
+    // feeds the deframer with specified bytes and returns completed frames
+    private static List<short[]> feed(HdlcDeframer deframer, int... values) {
+        List<short[]> frames = new LinkedList<>();
+        for ( int value : values ) {
+            if ( deframer.process(value) ) {
+                frames.add(deframer.takeFrame());
+            }
+        }
+        return frames;
+    }
+    
+    @Test
+    public void completesFrameOnClosingFlag() {
+        HdlcDeframer deframer = new HdlcDeframer(16);
+        List<short[]> frames = feed(deframer, 0x7E, 0x01, 0x02, 0x03, 0x7E);
+        
+        assertEquals(1, frames.size());
+        assertArrayEquals(new short[] { 0x7E, 0x01, 0x02, 0x03, 0x7E }, frames.get(0));
+    }
+    
+    @Test
+    public void skipsBytesOutsideOfFrames() {
+        HdlcDeframer deframer = new HdlcDeframer(16);
+        List<short[]> frames = feed(deframer, 0x11, 0x22, 0x7E, 0x01, 0x7E);
+        
+        assertEquals(1, frames.size());
+        assertArrayEquals(new short[] { 0x7E, 0x01, 0x7E }, frames.get(0));
+    }
+    
+    @Test
+    public void closingFlagOpensNextFrame() {
+        HdlcDeframer deframer = new HdlcDeframer(16);
+        List<short[]> frames = feed(deframer, 0x7E, 0x01, 0x7E, 0x02, 0x03, 0x7E);
+        
+        assertEquals(2, frames.size());
+        assertArrayEquals(new short[] { 0x7E, 0x01, 0x7E }, frames.get(0));
+        assertArrayEquals(new short[] { 0x7E, 0x02, 0x03, 0x7E }, frames.get(1));
+    }
+    
+    @Test
+    public void consecutiveFlagsDoNotCompleteEmptyFrame() {
+        HdlcDeframer deframer = new HdlcDeframer(16);
+        List<short[]> frames = feed(deframer, 0x7E, 0x7E, 0x7E, 0x05, 0x7E);
+        
+        assertEquals(1, frames.size());
+        assertArrayEquals(new short[] { 0x7E, 0x05, 0x7E }, frames.get(0));
+    }
+    
+    @Test
+    public void discardsOversizeFrame() {
+        HdlcDeframer deframer = new HdlcDeframer(4);
+        
+        // 3 data bytes do not fit together with both flags
+        List<short[]> frames = feed(deframer, 0x7E, 0x01, 0x02, 0x03, 0x7E);
+        assertTrue(frames.isEmpty());
+        
+        // 2 data bytes fit exactly
+        frames = feed(deframer, 0x01, 0x02, 0x7E);
+        assertEquals(1, frames.size());
+        assertArrayEquals(new short[] { 0x7E, 0x01, 0x02, 0x7E }, frames.get(0));
+    }
+    
+    @Test
+    public void resynchronizesAfterBrokenFrame() {
+        HdlcDeframer deframer = new HdlcDeframer(4);
+        
+        // broken frame without closing flag overflows the buffer
+        List<short[]> frames = feed(deframer, 0x7E, 0x01, 0x02, 0x03, 0x04, 0x05);
+        assertTrue(frames.isEmpty());
+        
+        // the next flag starts new frame
+        frames = feed(deframer, 0x7E, 0x09, 0x7E);
+        assertEquals(1, frames.size());
+        assertArrayEquals(new short[] { 0x7E, 0x09, 0x7E }, frames.get(0));
+    }
+    
+    @Test
+    public void takenFrameIsIndependentOfBuffer() {
+        HdlcDeframer deframer = new HdlcDeframer(16);
+        List<short[]> frames = feed(deframer, 0x7E, 0x01, 0x7E, 0x02, 0x7E);
+        
+        assertEquals(2, frames.size());
+        assertArrayEquals(new short[] { 0x7E, 0x01, 0x7E }, frames.get(0));
+    }
+}
@@ -0,0 +1,107 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.simulated;
+
+import com.microrisc.simply.network.simulated.SimulatedNetworkSettings.RF_Mode;
+
+/**
+ * Timing of simulated IQMESH network.
+ * <p>
+ * Formulas follow the ones used by DPA protocol layer to count waiting times,
+ * so that simulated responses arrive in the same time frames, which
+ * the protocol layer expects from real networks.
+ * 
+ * @author agent
+ */
+final class DPA_Timing {
+    
+    // length of internal data added to the data of each RF packet
+    private static final int INTERNAL_DATA_LENGTH = 4;
+    
+    
+    /**
+     * Returns length of timeslot [in 10 ms units] for RF packet with specified
+     * length of data.
+     * @param rfMode RF mode
+     * @param dataLength length of data
+     * @return length of timeslot [in 10 ms units]
+     */
+    static int countTimeslotLength(RF_Mode rfMode, int dataLength) {
+        int length = dataLength + INTERNAL_DATA_LENGTH;
+        switch ( rfMode ) {
+            case STD:
+                if ( length < 16 ) {
+                    return 4;
+                }
+                if ( length < 39 ) {
+                    return 5;
+                }
+                return 6;
+            case LP:
+                if ( length < 11 ) {
+                    return 8;
+                }
+                if ( length < 33 ) {
+                    return 9;
+                }
+                if ( length < 56 ) {
+                    return 10;
+                }
+                return 11;
+            default:
+                throw new IllegalStateException("Unknown RF mode used: " + rfMode);
+        }
+    }
+    
+    /**
+     * Returns time [in ms] of routing of RF packet over specified number of hops.
+     * @param hops number of hops
+     * @param timeslotLength length of timeslot [in 10 ms units]
+     * @return time of routing [in ms]
+     */
+    static long countRoutingTime(int hops, int timeslotLength) {
+        return (hops + 1) * timeslotLength * 10L;
+    }
+    
+    /**
+     * Returns time [in ms] of FRC processing in the network. The constant 
+     * safety margin the protocol layer adds to its waiting time is not included.
+     * @param settings settings of the network
+     * @param userDataLength length of user data of FRC command
+     * @return time of FRC processing [in ms]
+     */
+    static long countFrcTime(SimulatedNetworkSettings settings, int userDataLength) {
+        long time = settings.getBondedNodesNum() * 30L + settings.getFrcResponseTime();
+        int discoveredNodesTerm = settings.getDiscoveredNodesNum() + 2;
+        
+        // standard FRC - at most 2 bytes of user data
+        if ( userDataLength <= 2 ) {
+            return time + discoveredNodesTerm * 100L;
+        }
+        
+        switch ( settings.getRfMode() ) {
+            case STD:
+                return time + discoveredNodesTerm * 110L;
+            case LP:
+                return time + discoveredNodesTerm * 160L;
+            default:
+                throw new IllegalStateException("Unknown RF mode used: " + settings.getRfMode());
+        }
+    }
+    
+    private DPA_Timing() {}
+}
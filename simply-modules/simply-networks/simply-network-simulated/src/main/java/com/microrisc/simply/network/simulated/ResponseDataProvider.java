@@ -0,0 +1,44 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.simulated;
+
+/**
+ * Provider of data of responses of simulated devices.
+ * <p>
+ * Implementing classes must have public parameterless constructor to be 
+ * usable from configuration.
+ * 
+ * @author agent
+ */
+public interface ResponseDataProvider {
+    
+    /**
+     * Returns data of response of specified device to specified request.
+     * @param address address of responding device, {@code 0} for the coordinator
+     * @param pnum peripheral number of the request
+     * @param pcmd command of the request
+     * @param requestData data of the request following DPA header
+     * @param settings settings of simulated network
+     * @return data of the response following DPA header <br>
+     *         {@code null}, if the device does not support the request - 
+     *         error response is sent in that case
+     */
+    short[] getResponseData(
+            int address, int pnum, int pcmd, short[] requestData, 
+            SimulatedNetworkSettings settings
+    );
+}
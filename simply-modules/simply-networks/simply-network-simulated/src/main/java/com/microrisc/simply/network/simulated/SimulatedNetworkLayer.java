@@ -0,0 +1,692 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.simulated;
+
+import com.microrisc.simply.NetworkData;
+import com.microrisc.simply.NetworkLayerListener;
+import com.microrisc.simply.network.AbstractNetworkLayer;
+import com.microrisc.simply.network.BaseNetworkData;
+import com.microrisc.simply.network.NetworkConnectionStorage;
+import com.microrisc.simply.network.NetworkLayerException;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Network layer, which simulates IQRF DPA network consisting of coordinator 
+ * and virtual nodes. No hardware is needed, so the layer serves for load 
+ * testing and benchmarking of upper layers.
+ * <p>
+ * Each request sent to a node is confirmed by the coordinator and then
+ * answered by the node. Times of arrivals of confirmations and responses are
+ * counted from the settings of the network using the same formulas, which 
+ * DPA protocol layer uses for counting of waiting times. Requests are processed
+ * one after another, as the real coordinator does. Broadcast requests are 
+ * only confirmed. Requests sent to the coordinator are answered after the 
+ * response time of the coordinator, except FRC requests, which are answered
+ * after the time of FRC processing in the network.
+ * <p>
+ * Node responses and node contributions to FRC data can be lost with 
+ * specified probability. Randomly chosen nodes can send asynchronous messages
+ * with specified period.
+ * <p>
+ * The layer accepts requests from arbitrary networks and sends confirmations and
+ * responses into the same networks - each network is simulated separately, 
+ * i.e. it has its own coordinator and its own results of FRC, but all 
+ * networks are simulated with the same settings.
+ * <p>
+ * All timing of the layer is driven by a {@link Clock}. If the clock is 
+ * a virtual one, the network is simulated in the virtual time together with 
+ * upper layers.
+ * 
+ * @author agent
+ */
+public final class SimulatedNetworkLayer extends AbstractNetworkLayer {
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(SimulatedNetworkLayer.class);
+    
+    // positions of fields in DPA packets
+    private static final int NADR_POS = 0;
+    private static final int PNUM_POS = 2;
+    private static final int PCMD_POS = 3;
+    private static final int HWPID_POS = 4;
+    private static final int RESPONSE_CODE_POS = 6;
+    private static final int DPA_VALUE_POS = 7;
+    
+    // length of header of requests and responses
+    private static final int REQUEST_HEADER_LENGTH = 6;
+    private static final int RESPONSE_HEADER_LENGTH = 8;
+    
+    // addresses
+    private static final int COORDINATOR_ADDRESS = 0x00;
+    private static final int BROADCAST_ADDRESS = 0xFF;
+    
+    // response codes
+    private static final short NO_ERROR = 0x00;
+    private static final short PCMD_ERROR = 0x02;
+    private static final short NADR_ERROR = 0x08;
+    private static final short ASYNC_RESPONSE = 0x80;
+    private static final short CONFIRMATION = 0xFF;
+    
+    // flag of response in PCMD
+    private static final short RESPONSE_FLAG = 0x80;
+    
+    // any HWPID and HWPID of simulated devices
+    private static final int HWPID_ANY = 0xFFFF;
+    private static final int HWPID_DEFAULT = 0x0000;
+    
+    // DPA value of simulated devices
+    private static final short DPA_VALUE = 0x00;
+    
+    // FRC peripheral and its commands
+    private static final int PNUM_FRC = 0x0D;
+    private static final int PCMD_FRC_SEND = 0x00;
+    private static final int PCMD_FRC_EXTRA_RESULT = 0x01;
+    private static final int PCMD_FRC_SEND_SELECTIVE = 0x02;
+    
+    // lengths of FRC data
+    private static final int FRC_DATA_LENGTH = 55;
+    private static final int FRC_EXTRA_DATA_LENGTH = 9;
+    private static final int FRC_SELECTED_NODES_LENGTH = 30;
+    
+    // first FRC commands returning bytes and 2-bytes values
+    private static final int FRC_FIRST_BYTE_COMMAND = 0x80;
+    private static final int FRC_FIRST_2BYTE_COMMAND = 0xE0;
+    
+    // peripheral of asynchronous messages
+    private static final short PNUM_ASYNC = 0x20;
+    
+    // maximal time to wait for termination of delivery thread [in ms]
+    private static final long DELIVERY_THREAD_JOIN_WAIT_TIMEOUT = 1000;
+    
+    
+    // task planned to be run at specified time
+    private static final class PlannedTask {
+        final Runnable task;
+        final long time;
+        final long order;
+        
+        PlannedTask(Runnable task, long time, long order) {
+            this.task = task;
+            this.time = time;
+            this.order = order;
+        }
+    }
+    
+    // state of one simulated network
+    private static final class NetworkState {
+        // time, when the coordinator finishes processing of the last request
+        long busyUntil = 0;
+        
+        // extra data of the last FRC
+        short[] frcExtraData = new short[FRC_EXTRA_DATA_LENGTH];
+    }
+    
+    // orders planned tasks by time and by order of planning
+    private static final Comparator<PlannedTask> TIME_ORDER = new Comparator<PlannedTask>() {
+        @Override
+        public int compare(PlannedTask task1, PlannedTask task2) {
+            if ( task1.time != task2.time ) {
+                return ( task1.time < task2.time )? -1 : 1;
+            }
+            if ( task1.order != task2.order ) {
+                return ( task1.order < task2.order )? -1 : 1;
+            }
+            return 0;
+        }
+    };
+    
+    
+    /** Registered network listener. */
+    private volatile NetworkLayerListener networkListener = null;
+    
+    /** Settings of simulated network. */
+    private final SimulatedNetworkSettings settings;
+    
+    /** Provider of data of responses. */
+    private final ResponseDataProvider responseDataProvider;
+    
+    /** Random generator for losses and asynchronous messages. */
+    private final Random random;
+    
+    /** Clock to plan deliveries by. */
+    private final Clock clock;
+    
+    /** Planned deliveries of packets and sendings of asynchronous messages. */
+    private final PriorityQueue<PlannedTask> plannedTasks = new PriorityQueue<>(16, TIME_ORDER);
+    
+    /** Synchronization object for {@code plannedTasks}. */
+    private final Object synchroPlannedTasks = new Object();
+    
+    // number of planned tasks so far
+    private long plannedTasksCounter = 0;
+    
+    /** Thread running planned tasks. */
+    private volatile DeliveryThread deliveryThread = null;
+    
+    /** Synchronization of planning of requests processing. */
+    private final Object planningLock = new Object();
+    
+    /** 
+     * States of simulated networks mapped by IDs of networks. Accessed only 
+     * with {@code planningLock}.
+     */
+    private final Map<String, NetworkState> networkStates = new HashMap<>();
+    
+    
+    /**
+     * Delivers packet to the listener.
+     */
+    private class Delivery implements Runnable {
+        private final short[] packet;
+        private final String networkId;
+        
+        Delivery(short[] packet, String networkId) {
+            this.packet = packet;
+            this.networkId = networkId;
+        }
+        
+        @Override
+        public void run() {
+            NetworkLayerListener listener = networkListener;
+            if ( listener == null ) {
+                logger.debug("No listener registered - packet discarded: {}", packet);
+                return;
+            }
+            listener.onGetData(new BaseNetworkData(packet, networkId));
+        }
+    }
+    
+    /**
+     * Sends asynchronous messages from randomly chosen nodes. Each run plans
+     * the next one.
+     */
+    private class AsyncMessagesSender implements Runnable {
+        private final String networkId;
+        private long nextTime;
+        
+        AsyncMessagesSender(String networkId, long firstTime) {
+            this.networkId = networkId;
+            this.nextTime = firstTime;
+        }
+        
+        @Override
+        public void run() {
+            int address = 1 + random.nextInt(settings.getBondedNodesNum());
+            short[] packet = createResponse(
+                    address, PNUM_ASYNC, RESPONSE_FLAG, HWPID_DEFAULT, ASYNC_RESPONSE,
+                    new short[] { (short)random.nextInt(0x100), (short)random.nextInt(0x100) }
+            );
+            new Delivery(packet, networkId).run();
+            
+            nextTime += settings.getAsyncMessagesPeriod();
+            planTask(this, nextTime);
+        }
+    }
+    
+    /**
+     * Runs planned tasks at their times.
+     */
+    private class DeliveryThread extends Thread {
+        
+        DeliveryThread() {
+            super("SimulatedNetworkLayer");
+        }
+        
+        // waits for the nearest planned task and takes it
+        private Runnable takeTask() throws InterruptedException {
+            synchronized ( synchroPlannedTasks ) {
+                while ( true ) {
+                    PlannedTask nextTask = plannedTasks.peek();
+                    if ( nextTask == null ) {
+                        clock.await(synchroPlannedTasks, 0);
+                        continue;
+                    }
+                    
+                    long waitTime = nextTask.time - clock.currentTimeMillis();
+                    if ( waitTime <= 0 ) {
+                        return plannedTasks.poll().task;
+                    }
+                    clock.await(synchroPlannedTasks, waitTime);
+                }
+            }
+        }
+        
+        @Override
+        public void run() {
+            while ( true ) {
+                Runnable task = null;
+                try {
+                    task = takeTask();
+                } catch ( InterruptedException e ) {
+                    logger.info("Delivery thread end");
+                    return;
+                }
+                
+                try {
+                    task.run();
+                } catch ( RuntimeException e ) {
+                    logger.error("Planned task failed", e);
+                }
+            }
+        }
+    }
+    
+    
+    private static NetworkConnectionStorage checkStorage(NetworkConnectionStorage storage) {
+        if ( storage == null ) {
+            throw new IllegalArgumentException("Network Connection Storage cannot be null");
+        }
+        return storage;
+    }
+    
+    private static SimulatedNetworkSettings checkSettings(SimulatedNetworkSettings settings) {
+        if ( settings == null ) {
+            throw new IllegalArgumentException("Settings cannot be null");
+        }
+        return settings;
+    }
+    
+    private static ResponseDataProvider checkResponseDataProvider(
+            ResponseDataProvider responseDataProvider
+    ) {
+        if ( responseDataProvider == null ) {
+            throw new IllegalArgumentException("Response data provider cannot be null");
+        }
+        return responseDataProvider;
+    }
+    
+    private static Clock checkClock(Clock clock) {
+        if ( clock == null ) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        return clock;
+    }
+    
+    private static int getAddress(short[] request) {
+        return request[NADR_POS] | (request[NADR_POS + 1] << 8);
+    }
+    
+    private static int getHwpid(short[] request) {
+        return request[HWPID_POS] | (request[HWPID_POS + 1] << 8);
+    }
+    
+    // request must be at least REQUEST_HEADER_LENGTH long
+    private static short[] getRequestData(short[] request) {
+        short[] requestData = new short[request.length - REQUEST_HEADER_LENGTH];
+        System.arraycopy(request, REQUEST_HEADER_LENGTH, requestData, 0, requestData.length);
+        return requestData;
+    }
+    
+    // creates response packet
+    private static short[] createResponse(
+            int address, int pnum, int pcmd, int hwpid, short responseCode, short[] data
+    ) {
+        short[] response = new short[RESPONSE_HEADER_LENGTH + data.length];
+        response[NADR_POS] = (short)(address & 0xFF);
+        response[NADR_POS + 1] = (short)((address >> 8) & 0xFF);
+        response[PNUM_POS] = (short)pnum;
+        response[PCMD_POS] = (short)(pcmd | RESPONSE_FLAG);
+        response[HWPID_POS] = (short)(hwpid & 0xFF);
+        response[HWPID_POS + 1] = (short)((hwpid >> 8) & 0xFF);
+        response[RESPONSE_CODE_POS] = responseCode;
+        response[DPA_VALUE_POS] = DPA_VALUE;
+        System.arraycopy(data, 0, response, RESPONSE_HEADER_LENGTH, data.length);
+        return response;
+    }
+    
+    // creates response packet to specified request
+    private static short[] createResponse(
+            short[] request, short responseCode, short[] data
+    ) {
+        int hwpid = getHwpid(request);
+        return createResponse(
+                getAddress(request), request[PNUM_POS], request[PCMD_POS],
+                ( hwpid == HWPID_ANY )? HWPID_DEFAULT : hwpid,
+                responseCode, data
+        );
+    }
+    
+    // creates confirmation of specified request
+    private static short[] createConfirmation(
+            short[] request, int hops, int timeslotLength, int hopsResponse
+    ) {
+        short[] confirmation = new short[RESPONSE_HEADER_LENGTH + 3];
+        System.arraycopy(request, 0, confirmation, 0, REQUEST_HEADER_LENGTH);
+        confirmation[RESPONSE_CODE_POS] = CONFIRMATION;
+        confirmation[DPA_VALUE_POS] = DPA_VALUE;
+        confirmation[RESPONSE_HEADER_LENGTH] = (short)hops;
+        confirmation[RESPONSE_HEADER_LENGTH + 1] = (short)timeslotLength;
+        confirmation[RESPONSE_HEADER_LENGTH + 2] = (short)hopsResponse;
+        return confirmation;
+    }
+    
+    // indicates, whether specified node responds - simulation of losses
+    private boolean isResponding() {
+        double lossProbability = settings.getLossProbability();
+        return ( (lossProbability == 0) || (random.nextDouble() >= lossProbability) );
+    }
+    
+    // plans specified task to be run at specified time
+    private void planTask(Runnable task, long time) {
+        synchronized ( synchroPlannedTasks ) {
+            plannedTasks.add(new PlannedTask(task, time, plannedTasksCounter++));
+            synchroPlannedTasks.notifyAll();
+        }
+    }
+    
+    // schedules delivery of specified packet at specified time
+    private void scheduleDelivery(short[] packet, String networkId, long time) {
+        planTask(new Delivery(packet, networkId), time);
+    }
+    
+    // fills in FRC value of specified node
+    private static void putFrcValue(short[] frcData, int frcCommand, int address) {
+        if ( frcCommand < FRC_FIRST_BYTE_COMMAND ) {
+            // bit 0 set, bit 1 cleared
+            frcData[address / 8] |= (short)(1 << (address % 8));
+        } else if ( frcCommand < FRC_FIRST_2BYTE_COMMAND ) {
+            if ( address < frcData.length ) {
+                frcData[address] = (short)address;
+            }
+        } else {
+            if ( 2 * address + 1 < frcData.length ) {
+                frcData[2 * address] = (short)address;
+                frcData[2 * address + 1] = 0;
+            }
+        }
+    }
+    
+    // indicates, whether specified node is selected in selected nodes bitmap
+    private static boolean isSelected(short[] requestData, int address) {
+        int pos = 1 + address / 8;
+        return ( (requestData[pos] & (1 << (address % 8))) != 0 );
+    }
+    
+    // processes FRC in specified network and returns response data 
+    private short[] processFrc(short[] requestData, boolean selective, NetworkState state) {
+        if ( requestData.length < 1 + (selective? FRC_SELECTED_NODES_LENGTH : 0) ) {
+            return null;
+        }
+        
+        int frcCommand = requestData[0];
+        short[] frcData = new short[FRC_DATA_LENGTH + FRC_EXTRA_DATA_LENGTH];
+        int sentToNodesNum = 0;
+        
+        for ( int address = 1; address <= settings.getBondedNodesNum(); address++ ) {
+            if ( selective && !isSelected(requestData, address) ) {
+                continue;
+            }
+            sentToNodesNum++;
+            if ( isResponding() ) {
+                putFrcValue(frcData, frcCommand, address);
+            }
+        }
+        
+        short[] responseData = new short[1 + FRC_DATA_LENGTH];
+        responseData[0] = (short)sentToNodesNum;
+        System.arraycopy(frcData, 0, responseData, 1, FRC_DATA_LENGTH);
+        
+        short[] extraData = new short[FRC_EXTRA_DATA_LENGTH];
+        System.arraycopy(frcData, FRC_DATA_LENGTH, extraData, 0, FRC_EXTRA_DATA_LENGTH);
+        state.frcExtraData = extraData;
+        
+        return responseData;
+    }
+    
+    // processes request addressed to the coordinator, returns time of processing end
+    private long processCoordinatorRequest(
+            short[] request, String networkId, NetworkState state, long startTime
+    ) {
+        int pnum = request[PNUM_POS];
+        int pcmd = request[PCMD_POS];
+        short[] requestData = getRequestData(request);
+        long endTime = startTime + settings.getCoordinatorResponseTime();
+        
+        short[] responseData = null;
+        if ( (pnum == PNUM_FRC) 
+                && ((pcmd == PCMD_FRC_SEND) || (pcmd == PCMD_FRC_SEND_SELECTIVE)) 
+        ) {
+            boolean selective = ( pcmd == PCMD_FRC_SEND_SELECTIVE );
+            responseData = processFrc(requestData, selective, state);
+            if ( responseData != null ) {
+                int userDataPos = 1 + (selective? FRC_SELECTED_NODES_LENGTH : 0);
+                endTime += DPA_Timing.countFrcTime(settings, requestData.length - userDataPos);
+            }
+        } else if ( (pnum == PNUM_FRC) && (pcmd == PCMD_FRC_EXTRA_RESULT) ) {
+            responseData = state.frcExtraData;
+        } else {
+            responseData = responseDataProvider.getResponseData(
+                    COORDINATOR_ADDRESS, pnum, pcmd, requestData, settings
+            );
+        }
+        
+        short[] response = ( responseData != null )? 
+                createResponse(request, NO_ERROR, responseData)
+                : createResponse(request, PCMD_ERROR, new short[0]);
+        scheduleDelivery(response, networkId, endTime);
+        return endTime;
+    }
+    
+    // processes request addressed to node(s), returns time of processing end
+    private long processNodeRequest(short[] request, String networkId, long startTime) {
+        int address = getAddress(request);
+        long confirmationTime = startTime + settings.getCoordinatorResponseTime();
+        
+        // coordinator refuses requests to not bonded nodes
+        if ( (address != BROADCAST_ADDRESS) && (address > settings.getBondedNodesNum()) ) {
+            scheduleDelivery(
+                    createResponse(request, NADR_ERROR, new short[0]), networkId, 
+                    confirmationTime
+            );
+            return confirmationTime;
+        }
+        
+        int hops = settings.getHops();
+        short[] requestData = getRequestData(request);
+        int timeslotLength = DPA_Timing.countTimeslotLength(settings.getRfMode(), requestData.length);
+        long requestArrivalTime = confirmationTime + DPA_Timing.countRoutingTime(hops, timeslotLength);
+        
+        // broadcast is not responded
+        if ( address == BROADCAST_ADDRESS ) {
+            scheduleDelivery(createConfirmation(request, hops, timeslotLength, 0), 
+                    networkId, confirmationTime
+            );
+            return requestArrivalTime;
+        }
+        
+        scheduleDelivery(createConfirmation(request, hops, timeslotLength, hops), 
+                networkId, confirmationTime
+        );
+        
+        short[] responseData = responseDataProvider.getResponseData(
+                address, request[PNUM_POS], request[PCMD_POS], requestData, settings
+        );
+        short[] response = ( responseData != null )? 
+                createResponse(request, NO_ERROR, responseData)
+                : createResponse(request, PCMD_ERROR, new short[0]);
+        
+        int responseTimeslotLength = DPA_Timing.countTimeslotLength(
+                settings.getRfMode(), response.length - RESPONSE_HEADER_LENGTH
+        );
+        long responseTime = requestArrivalTime 
+                + DPA_Timing.countRoutingTime(hops, responseTimeslotLength);
+        
+        if ( isResponding() ) {
+            scheduleDelivery(response, networkId, responseTime);
+        } else {
+            logger.debug("Response lost: {}", response);
+        }
+        return responseTime;
+    }
+    
+    
+    /**
+     * Creates new simulated network layer.
+     * @param connectionStorage storage of network connections
+     * @param settings settings of simulated network
+     * @param responseDataProvider provider of data of responses
+     * @param clock clock to plan deliveries by
+     */
+    public SimulatedNetworkLayer(
+            NetworkConnectionStorage connectionStorage,
+            SimulatedNetworkSettings settings,
+            ResponseDataProvider responseDataProvider,
+            Clock clock
+    ) {
+        super(checkStorage(connectionStorage));
+        this.settings = checkSettings(settings);
+        this.responseDataProvider = checkResponseDataProvider(responseDataProvider);
+        this.clock = checkClock(clock);
+        this.random = new Random(settings.getRandomSeed());
+    }
+    
+    /**
+     * Creates new simulated network layer, which uses the default clock.
+     * @param connectionStorage storage of network connections
+     * @param settings settings of simulated network
+     * @param responseDataProvider provider of data of responses
+     */
+    public SimulatedNetworkLayer(
+            NetworkConnectionStorage connectionStorage,
+            SimulatedNetworkSettings settings,
+            ResponseDataProvider responseDataProvider
+    ) {
+        this(connectionStorage, settings, responseDataProvider, Clocks.getDefaultClock());
+    }
+    
+    /**
+     * Creates new simulated network layer, which uses 
+     * {@link StandardResponseDataProvider} for data of responses.
+     * @param connectionStorage storage of network connections
+     * @param settings settings of simulated network
+     */
+    public SimulatedNetworkLayer(
+            NetworkConnectionStorage connectionStorage,
+            SimulatedNetworkSettings settings
+    ) {
+        this(connectionStorage, settings, new StandardResponseDataProvider());
+    }
+    
+    /**
+     * @return settings of simulated network
+     */
+    public SimulatedNetworkSettings getSettings() {
+        return settings;
+    }
+    
+    @Override
+    public void registerListener(NetworkLayerListener listener) {
+        this.networkListener = listener;
+        logger.info("Listener registered");
+    }
+
+    @Override
+    public void unregisterListener() {
+        networkListener = null;
+        logger.info("Listener unregistered");
+    }
+
+    @Override
+    public void start() throws NetworkLayerException {
+        logger.debug("start - start:");
+        
+        long asyncMessagesPeriod = settings.getAsyncMessagesPeriod();
+        if ( (asyncMessagesPeriod > 0) && (settings.getBondedNodesNum() > 0) ) {
+            long firstTime = clock.currentTimeMillis() + asyncMessagesPeriod;
+            for ( String networkId : connectionStorage.getAllNetworkConnectionInfo().keySet() ) {
+                planTask(new AsyncMessagesSender(networkId, firstTime), firstTime);
+            }
+        }
+        
+        deliveryThread = new DeliveryThread();
+        deliveryThread.setDaemon(true);
+        deliveryThread.start();
+        
+        logger.info("Simulated network started: {}", settings);
+        logger.debug("start - end");
+    }
+
+    @Override
+    public void sendData(NetworkData networkData) throws NetworkLayerException {
+        logger.debug("sendData - start: networkData={}", networkData);
+        
+        if ( deliveryThread == null ) {
+            throw new NetworkLayerException("Network layer not started");
+        }
+        
+        // request must contain at least the whole header
+        short[] request = networkData.getData();
+        if ( request == null ) {
+            throw new NetworkLayerException("Invalid DPA request: no data");
+        }
+        if ( request.length < REQUEST_HEADER_LENGTH ) {
+            throw new NetworkLayerException(
+                    "Invalid DPA request: length " + request.length 
+                    + " is less than length of header " + REQUEST_HEADER_LENGTH
+            );
+        }
+        
+        String networkId = networkData.getNetworkId();
+        synchronized ( planningLock ) {
+            NetworkState state = networkStates.get(networkId);
+            if ( state == null ) {
+                state = new NetworkState();
+                networkStates.put(networkId, state);
+            }
+            
+            long startTime = Math.max(clock.currentTimeMillis(), state.busyUntil);
+            if ( getAddress(request) == COORDINATOR_ADDRESS ) {
+                state.busyUntil = processCoordinatorRequest(request, networkId, state, startTime);
+            } else {
+                state.busyUntil = processNodeRequest(request, networkId, startTime);
+            }
+        }
+        
+        logger.debug("sendData - end");
+    }
+
+    @Override
+    public void destroy() {
+        logger.debug("destroy - start:");
+        
+        networkListener = null;
+        DeliveryThread thread = deliveryThread;
+        if ( thread != null ) {
+            thread.interrupt();
+            try {
+                thread.join(DELIVERY_THREAD_JOIN_WAIT_TIMEOUT);
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                logger.warn("Termination - Simulated Network Layer interrupted");
+            }
+        }
+        
+        synchronized ( synchroPlannedTasks ) {
+            plannedTasks.clear();
+        }
+        
+        logger.info("Simulated Network Layer destroyed");
+        logger.debug("destroy - end");
+    }
+}
@@ -0,0 +1,144 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.simulated;
+
+import com.microrisc.simply.SimplyException;
+import com.microrisc.simply.network.AbstractNetworkLayerFactory;
+import com.microrisc.simply.network.NetworkConnectionStorage;
+import com.microrisc.simply.network.NetworkLayer;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Factory for creation of simulated network layers.
+ * <p>
+ * Network layer type must be set to <b>simulated</b>. Settings of simulated
+ * network are read from following configuration keys: <br>
+ * <b>networkLayer.type.simulated.bondedNodesNum</b> - number of bonded nodes <br>
+ * <b>networkLayer.type.simulated.discoveredNodesNum</b> - number of discovered 
+ *    nodes, default is number of bonded nodes <br>
+ * <b>networkLayer.type.simulated.rfMode</b> - STD or LP <br>
+ * <b>networkLayer.type.simulated.hops</b> - number of hops, default is number
+ *    of discovered nodes + 1 <br>
+ * <b>networkLayer.type.simulated.coordinatorResponseTime</b> - in ms <br>
+ * <b>networkLayer.type.simulated.frcResponseTime</b> - in ms <br>
+ * <b>networkLayer.type.simulated.lossProbability</b> - from interval [0, 1] <br>
+ * <b>networkLayer.type.simulated.asyncMessagesPeriod</b> - in ms, 0 means 
+ *    no asynchronous messages <br>
+ * <b>networkLayer.type.simulated.randomSeed</b> - seed of random generator <br>
+ * <b>networkLayer.type.simulated.responseDataProvider.class</b> - class 
+ *    implementing {@link ResponseDataProvider}, default is 
+ *    {@link StandardResponseDataProvider} <br>
+ * 
+ * @author agent
+ */
+public class SimulatedNetworkLayerFactory 
+extends AbstractNetworkLayerFactory<Configuration, NetworkLayer> {
+    
+    /**
+     * Creates settings of simulated network.
+     * @param configuration source configuration
+     * @return settings of simulated network
+     */
+    private SimulatedNetworkSettings createSettings(Configuration configuration) 
+            throws Exception {
+        int bondedNodesNum = configuration.getInt(
+                "networkLayer.type.simulated.bondedNodesNum", 
+                SimulatedNetworkSettings.BONDED_NODES_NUM_DEFAULT
+        );
+        int discoveredNodesNum = configuration.getInt(
+                "networkLayer.type.simulated.discoveredNodesNum", bondedNodesNum
+        );
+        
+        String rfModeStr = configuration.getString("networkLayer.type.simulated.rfMode", "STD");
+        SimulatedNetworkSettings.RF_Mode rfMode = null;
+        try {
+            rfMode = SimulatedNetworkSettings.RF_Mode.valueOf(rfModeStr.trim());
+        } catch ( IllegalArgumentException ex ) {
+            throw new SimplyException("Unknown RF mode: " + rfModeStr);
+        }
+        
+        int hops = configuration.getInt(
+                "networkLayer.type.simulated.hops", SimulatedNetworkSettings.HOPS_DERIVED
+        );
+        long coordinatorResponseTime = configuration.getLong(
+                "networkLayer.type.simulated.coordinatorResponseTime",
+                SimulatedNetworkSettings.COORDINATOR_RESPONSE_TIME_DEFAULT
+        );
+        long frcResponseTime = configuration.getLong(
+                "networkLayer.type.simulated.frcResponseTime",
+                SimulatedNetworkSettings.FRC_RESPONSE_TIME_DEFAULT
+        );
+        double lossProbability = configuration.getDouble(
+                "networkLayer.type.simulated.lossProbability", 0
+        );
+        long asyncMessagesPeriod = configuration.getLong(
+                "networkLayer.type.simulated.asyncMessagesPeriod", 0
+        );
+        long randomSeed = configuration.getLong(
+                "networkLayer.type.simulated.randomSeed", System.nanoTime()
+        );
+        
+        return new SimulatedNetworkSettings(
+                bondedNodesNum, discoveredNodesNum, rfMode, hops, 
+                coordinatorResponseTime, frcResponseTime, lossProbability, 
+                asyncMessagesPeriod, randomSeed
+        );
+    }
+    
+    /**
+     * Creates provider of data of responses.
+     * @param configuration source configuration
+     * @return provider of data of responses
+     */
+    private ResponseDataProvider createResponseDataProvider(Configuration configuration) 
+            throws Exception {
+        String providerClassName = configuration.getString(
+                "networkLayer.type.simulated.responseDataProvider.class", ""
+        );
+        if ( providerClassName.isEmpty() ) {
+            return new StandardResponseDataProvider();
+        }
+        
+        Class<?> providerClass = Class.forName(providerClassName);
+        if ( !ResponseDataProvider.class.isAssignableFrom(providerClass) ) {
+            throw new SimplyException(
+                    "Class " + providerClassName + " does not implement " 
+                    + ResponseDataProvider.class.getName()
+            );
+        }
+        return (ResponseDataProvider)providerClass.newInstance();
+    }
+    
+    @Override
+    public NetworkLayer getNetworkLayer(NetworkConnectionStorage connectionStorage, 
+            Configuration configuration) throws Exception {
+        String networkLayerTypeStr = configuration.getString("networkLayer.type", "");
+        if ( networkLayerTypeStr.equals("") ) {
+            throw new Exception("Network layer type not specified");
+        }
+        
+        // only for "simulated" layer type
+        if ( !networkLayerTypeStr.equals("simulated") ) {
+            throw new SimplyException("Network layer must be of 'simulated' type.");
+        }
+        
+        return new SimulatedNetworkLayer(
+                connectionStorage, createSettings(configuration), 
+                createResponseDataProvider(configuration)
+        );
+    }
+}
@@ -0,0 +1,252 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.simulated;
+
+/**
+ * Settings of simulated IQRF DPA network.
+ * <p>
+ * Simulated network consists of coordinator and specified number of bonded
+ * nodes with addresses 1 .. {@code bondedNodesNum}. First
+ * {@code discoveredNodesNum} nodes are discovered, i.e. they take part in
+ * routing.
+ * 
+ * @author agent
+ */
+public final class SimulatedNetworkSettings {
+    
+    /**
+     * RF modes of simulated network.
+     */
+    public static enum RF_Mode {
+        /** Standard mode. */
+        STD,
+        
+        /** Low power mode. */
+        LP
+    }
+    
+    /** Maximal number of bonded nodes. */
+    public static final int MAX_BONDED_NODES_NUM = 239;
+    
+    /** Default number of bonded nodes. */
+    public static final int BONDED_NODES_NUM_DEFAULT = 10;
+    
+    /** Default time [in ms] the coordinator takes to answer over its interface. */
+    public static final long COORDINATOR_RESPONSE_TIME_DEFAULT = 20;
+    
+    /** Default FRC response time [in ms] configured at the coordinator. */
+    public static final long FRC_RESPONSE_TIME_DEFAULT = 40;
+    
+    /** Indicates, that number of hops is derived from the number of discovered nodes. */
+    public static final int HOPS_DERIVED = -1;
+    
+    
+    private final int bondedNodesNum;
+    private final int discoveredNodesNum;
+    private final RF_Mode rfMode;
+    private final int hops;
+    private final long coordinatorResponseTime;
+    private final long frcResponseTime;
+    private final double lossProbability;
+    private final long asyncMessagesPeriod;
+    private final long randomSeed;
+    
+    
+    private static int checkBondedNodesNum(int bondedNodesNum) {
+        if ( (bondedNodesNum < 0) || (bondedNodesNum > MAX_BONDED_NODES_NUM) ) {
+            throw new IllegalArgumentException(
+                    "Number of bonded nodes must be in the interval [0, " 
+                    + MAX_BONDED_NODES_NUM + "]"
+            );
+        }
+        return bondedNodesNum;
+    }
+    
+    private static int checkDiscoveredNodesNum(int discoveredNodesNum, int bondedNodesNum) {
+        if ( (discoveredNodesNum < 0) || (discoveredNodesNum > bondedNodesNum) ) {
+            throw new IllegalArgumentException(
+                    "Number of discovered nodes must be in the interval [0, " 
+                    + "number of bonded nodes]"
+            );
+        }
+        return discoveredNodesNum;
+    }
+    
+    private static RF_Mode checkRfMode(RF_Mode rfMode) {
+        if ( rfMode == null ) {
+            throw new IllegalArgumentException("RF mode cannot be null");
+        }
+        return rfMode;
+    }
+    
+    private static int checkHops(int hops) {
+        if ( (hops != HOPS_DERIVED) && ((hops < 1) || (hops > MAX_BONDED_NODES_NUM)) ) {
+            throw new IllegalArgumentException(
+                    "Number of hops must be in the interval [1, " 
+                    + MAX_BONDED_NODES_NUM + "] or " + HOPS_DERIVED
+            );
+        }
+        return hops;
+    }
+    
+    private static long checkTime(long time, String name) {
+        if ( time < 0 ) {
+            throw new IllegalArgumentException(name + " cannot be less then 0");
+        }
+        return time;
+    }
+    
+    private static double checkLossProbability(double lossProbability) {
+        if ( (lossProbability < 0) || (lossProbability > 1) ) {
+            throw new IllegalArgumentException(
+                    "Loss probability must be in the interval [0, 1]"
+            );
+        }
+        return lossProbability;
+    }
+    
+    
+    /**
+     * Creates new settings of simulated network.
+     * @param bondedNodesNum number of bonded nodes
+     * @param discoveredNodesNum number of discovered nodes, cannot be greater
+     *        than {@code bondedNodesNum}
+     * @param rfMode RF mode of the network
+     * @param hops number of hops used to deliver requests and responses, 
+     *        {@code HOPS_DERIVED} for number of discovered nodes + 1
+     * @param coordinatorResponseTime time [in ms] the coordinator takes to 
+     *        answer over its interface
+     * @param frcResponseTime FRC response time [in ms] configured at the coordinator
+     * @param lossProbability probability of loss of node response, 
+     *        from the interval [0, 1]
+     * @param asyncMessagesPeriod period [in ms] of asynchronous messages sent
+     *        by randomly chosen nodes, {@code 0} means no asynchronous messages
+     * @param randomSeed seed of random generator used for losses and asynchronous
+     *        messages
+     */
+    public SimulatedNetworkSettings(
+            int bondedNodesNum, int discoveredNodesNum, RF_Mode rfMode, int hops,
+            long coordinatorResponseTime, long frcResponseTime, 
+            double lossProbability, long asyncMessagesPeriod, long randomSeed
+    ) {
+        this.bondedNodesNum = checkBondedNodesNum(bondedNodesNum);
+        this.discoveredNodesNum = checkDiscoveredNodesNum(discoveredNodesNum, bondedNodesNum);
+        this.rfMode = checkRfMode(rfMode);
+        this.hops = checkHops(hops);
+        this.coordinatorResponseTime = checkTime(
+                coordinatorResponseTime, "Coordinator response time"
+        );
+        this.frcResponseTime = checkTime(frcResponseTime, "FRC response time");
+        this.lossProbability = checkLossProbability(lossProbability);
+        this.asyncMessagesPeriod = checkTime(asyncMessagesPeriod, "Asynchronous messages period");
+        this.randomSeed = randomSeed;
+    }
+    
+    /**
+     * Creates new settings of simulated network of specified number of nodes,
+     * all of which are discovered. Other parameters are set to theirs defaults
+     * and no losses nor asynchronous messages are simulated.
+     * @param bondedNodesNum number of bonded nodes
+     */
+    public SimulatedNetworkSettings(int bondedNodesNum) {
+        this(bondedNodesNum, bondedNodesNum, RF_Mode.STD, HOPS_DERIVED,
+                COORDINATOR_RESPONSE_TIME_DEFAULT, FRC_RESPONSE_TIME_DEFAULT, 
+                0, 0, System.nanoTime()
+        );
+    }
+    
+    /**
+     * @return number of bonded nodes
+     */
+    public int getBondedNodesNum() {
+        return bondedNodesNum;
+    }
+
+    /**
+     * @return number of discovered nodes
+     */
+    public int getDiscoveredNodesNum() {
+        return discoveredNodesNum;
+    }
+
+    /**
+     * @return RF mode of the network
+     */
+    public RF_Mode getRfMode() {
+        return rfMode;
+    }
+
+    /**
+     * @return number of hops used to deliver requests and responses
+     */
+    public int getHops() {
+        if ( hops == HOPS_DERIVED ) {
+            return discoveredNodesNum + 1;
+        }
+        return hops;
+    }
+
+    /**
+     * @return time [in ms] the coordinator takes to answer over its interface
+     */
+    public long getCoordinatorResponseTime() {
+        return coordinatorResponseTime;
+    }
+
+    /**
+     * @return FRC response time [in ms] configured at the coordinator
+     */
+    public long getFrcResponseTime() {
+        return frcResponseTime;
+    }
+
+    /**
+     * @return probability of loss of node response
+     */
+    public double getLossProbability() {
+        return lossProbability;
+    }
+
+    /**
+     * @return period [in ms] of asynchronous messages, {@code 0} if no 
+     *         asynchronous messages are sent
+     */
+    public long getAsyncMessagesPeriod() {
+        return asyncMessagesPeriod;
+    }
+
+    /**
+     * @return seed of random generator
+     */
+    public long getRandomSeed() {
+        return randomSeed;
+    }
+    
+    @Override
+    public String toString() {
+        return ("{ " +
+                "bonded nodes=" + bondedNodesNum +
+                ", discovered nodes=" + discoveredNodesNum +
+                ", RF mode=" + rfMode +
+                ", hops=" + getHops() +
+                ", coordinator response time=" + coordinatorResponseTime +
+                ", FRC response time=" + frcResponseTime +
+                ", loss probability=" + lossProbability +
+                ", async messages period=" + asyncMessagesPeriod +
+                " }");
+    }
+}
@@ -0,0 +1,179 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.simulated;
+
+/**
+ * Provides responses of embedded DPA peripherals.
+ * <p>
+ * Reading commands return fixed, well-formed data of the length the real
+ * peripherals return. All other commands are answered by empty response, 
+ * which is sufficient for commands, whose result is only a confirmation of
+ * the execution.
+ * 
+ * @author agent
+ */
+public class StandardResponseDataProvider implements ResponseDataProvider {
+    
+    // peripheral numbers
+    private static final int PNUM_COORDINATOR = 0x00;
+    private static final int PNUM_NODE = 0x01;
+    private static final int PNUM_OS = 0x02;
+    private static final int PNUM_EEPROM = 0x03;
+    private static final int PNUM_EEEPROM = 0x04;
+    private static final int PNUM_RAM = 0x05;
+    private static final int PNUM_LEDR = 0x06;
+    private static final int PNUM_LEDG = 0x07;
+    private static final int PNUM_IO = 0x09;
+    private static final int PNUM_THERMOMETER = 0x0A;
+    private static final int PNUM_ENUMERATION = 0xFF;
+    
+    // command of getting information about peripheral
+    private static final int PCMD_PERIPHERAL_INFO = 0x3F;
+    
+    // size of bitmap of nodes
+    private static final int NODES_BITMAP_SIZE = 32;
+    
+    // DID of simulated network
+    private static final short NETWORK_DID = 0x2A;
+    
+    // length of HWP configuration, including undocumented byte
+    private static final int HWP_CONFIGURATION_LENGTH = 0x22;
+    
+    
+    // returns bitmap of nodes with addresses 1 .. nodesNum
+    private static short[] createNodesBitmap(int nodesNum) {
+        short[] bitmap = new short[NODES_BITMAP_SIZE];
+        for ( int address = 1; address <= nodesNum; address++ ) {
+            bitmap[address / 8] |= (short)(1 << (address % 8));
+        }
+        return bitmap;
+    }
+    
+    // returns data of memory reading of specified length
+    private static short[] createMemoryData(short[] requestData, int lengthPos) {
+        if ( requestData.length <= lengthPos ) {
+            return null;
+        }
+        return new short[requestData[lengthPos]];
+    }
+    
+    private static short[] getCoordinatorResponseData(
+            int pcmd, SimulatedNetworkSettings settings
+    ) {
+        switch ( pcmd ) {
+            // addressing info
+            case 0x00:
+                return new short[] { (short)settings.getBondedNodesNum(), NETWORK_DID };
+            // discovered nodes
+            case 0x01:
+                return createNodesBitmap(settings.getDiscoveredNodesNum());
+            // bonded nodes
+            case 0x02:
+                return createNodesBitmap(settings.getBondedNodesNum());
+            default:
+                return new short[0];
+        }
+    }
+    
+    private static short[] getNodeResponseData(int address, int pcmd) {
+        // node info
+        if ( pcmd == 0x00 ) {
+            return new short[] { 
+                (short)address, (short)address, 0x00, NETWORK_DID, 0x00, 
+                (short)address, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+            };
+        }
+        return new short[0];
+    }
+    
+    private static short[] getOsResponseData(int address, int pcmd) {
+        switch ( pcmd ) {
+            // OS info: module ID, OS version 4.00, TR-72D, build, RSSI, supply voltage, flags
+            case 0x00:
+                return new short[] { 
+                    (short)address, 0x00, 0x00, 0x81, 0x40, 0x24, 0x78, 0x08, 
+                    0x32, 0x49, 0x00, 0x00
+                };
+            // HWP configuration
+            case 0x02:
+                return new short[HWP_CONFIGURATION_LENGTH];
+            default:
+                return new short[0];
+        }
+    }
+    
+    private static short[] getEnumerationResponseData(
+            int pcmd, SimulatedNetworkSettings settings
+    ) {
+        if ( pcmd != PCMD_PERIPHERAL_INFO ) {
+            return null;
+        }
+        
+        // flags: bit 0 - STD mode, bit 1 - LP mode
+        short flags = ( settings.getRfMode() == SimulatedNetworkSettings.RF_Mode.STD )? 
+                (short)0x01 : (short)0x02;
+        
+        // DPA 3.01, no user peripherals, embedded peripherals up to 
+        // thermometer, HWPID 0x0000
+        return new short[] { 
+            0x01, 0x03, 0x00, 0xEF, 0x06, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, flags
+        };
+    }
+    
+    
+    @Override
+    public short[] getResponseData(
+            int address, int pnum, int pcmd, short[] requestData, 
+            SimulatedNetworkSettings settings
+    ) {
+        if ( pnum == PNUM_ENUMERATION ) {
+            return getEnumerationResponseData(pcmd, settings);
+        }
+        
+        // information about peripheral: type, persistence, parameters
+        if ( pcmd == PCMD_PERIPHERAL_INFO ) {
+            return new short[] { 0x03, 0x03, 0x00, 0x00 };
+        }
+        
+        switch ( pnum ) {
+            case PNUM_COORDINATOR:
+                if ( address != 0 ) {
+                    return null;
+                }
+                return getCoordinatorResponseData(pcmd, settings);
+            case PNUM_NODE:
+                return getNodeResponseData(address, pcmd);
+            case PNUM_OS:
+                return getOsResponseData(address, pcmd);
+            case PNUM_EEPROM:
+            case PNUM_RAM:
+                return ( pcmd == 0x00 )? createMemoryData(requestData, 1) : new short[0];
+            case PNUM_EEEPROM:
+                return ( pcmd == 0x02 )? createMemoryData(requestData, 2) : new short[0];
+            case PNUM_LEDR:
+            case PNUM_LEDG:
+                return ( pcmd == 0x02 )? new short[] { 0x00 } : new short[0];
+            case PNUM_IO:
+                return ( pcmd == 0x02 )? new short[] { 0x00, 0x00 } : new short[0];
+            case PNUM_THERMOMETER:
+                // 22.5 degrees of Celsius
+                return ( pcmd == 0x00 )? new short[] { 0x16, 0x68, 0x01 } : new short[0];
+            default:
+                return new short[0];
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/* 
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.simulated;
+
+import com.microrisc.simply.NetworkData;
+import com.microrisc.simply.NetworkLayerListener;
+import com.microrisc.simply.network.AbstractNetworkConnectionInfo;
+import com.microrisc.simply.network.BaseNetworkConnectionStorage;
+import com.microrisc.simply.network.BaseNetworkData;
+import com.microrisc.simply.network.NetworkLayerException;
+import com.microrisc.simply.network.simulated.SimulatedNetworkSettings.RF_Mode;
+import com.microrisc.simply.time.VirtualClock;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of SimulatedNetworkLayer.
+ * 
+ * @author agent
+ */
+public class SimulatedNetworkLayerTest {
+    
+    // real time to wait for a delivery, which is due [in ms]
+    private static final long DELIVERY_WAIT_TIME = 2000;
+    
+    // real time to wait for a delivery, which is not due yet [in ms]
+    private static final long NO_DELIVERY_WAIT_TIME = 50;
+    
+    // positions in DPA packets
+    private static final int RESPONSE_CODE_POS = 6;
+    private static final int RESPONSE_HEADER_LENGTH = 8;
+    
+    private final VirtualClock clock = new VirtualClock();
+    private final BlockingQueue<NetworkData> received = new LinkedBlockingQueue<>();
+    private SimulatedNetworkLayer networkLayer;
+    
+    
+    // creates and starts network layer with specified number of nodes
+    private void startNetworkLayer(int nodesNum) throws NetworkLayerException {
+        SimulatedNetworkSettings settings = new SimulatedNetworkSettings(
+                nodesNum, nodesNum, RF_Mode.STD, SimulatedNetworkSettings.HOPS_DERIVED,
+                20, 40, 0, 0, 1
+        );
+        networkLayer = new SimulatedNetworkLayer(
+                new BaseNetworkConnectionStorage(
+                        new HashMap<String, AbstractNetworkConnectionInfo>(),
+                        new HashMap<AbstractNetworkConnectionInfo, String>()
+                ),
+                settings, new StandardResponseDataProvider(), clock
+        );
+        networkLayer.registerListener(new NetworkLayerListener() {
+            @Override
+            public void onGetData(NetworkData data) {
+                received.add(data);
+            }
+        });
+        networkLayer.start();
+    }
+    
+    // sends specified request into specified network
+    private void send(String networkId, int... request) throws NetworkLayerException {
+        short[] data = new short[request.length];
+        for ( int i = 0; i < request.length; i++ ) {
+            data[i] = (short)request[i];
+        }
+        networkLayer.sendData(new BaseNetworkData(data, networkId));
+    }
+    
+    // advances the clock to specified time and returns delivered packet
+    private NetworkData receiveAt(long time) throws InterruptedException {
+        clock.advance(time - clock.currentTimeMillis());
+        NetworkData data = received.poll(DELIVERY_WAIT_TIME, TimeUnit.MILLISECONDS);
+        assertNotNull("Nothing delivered at " + time, data);
+        return data;
+    }
+    
+    // advances the clock to specified time and checks, that nothing is delivered
+    private void assertNothingAt(long time) throws InterruptedException {
+        clock.advance(time - clock.currentTimeMillis());
+        assertNull(received.poll(NO_DELIVERY_WAIT_TIME, TimeUnit.MILLISECONDS));
+    }
+    
+    @After
+    public void tearDown() {
+        if ( networkLayer != null ) {
+            networkLayer.destroy();
+        }
+    }
+    
+    /**
+     * Request to a node is confirmed after the coordinator response time and 
+     * answered after routing of the request and of the response.
+     */
+    @Test
+    public void testNodeRequestTiming() throws Exception {
+        startNetworkLayer(2);
+        
+        // LEDR pulse of node 1
+        send("1", 0x01, 0x00, 0x06, 0x03, 0xFF, 0xFF);
+        
+        assertNothingAt(19);
+        NetworkData confirmation = receiveAt(20);
+        assertEquals("1", confirmation.getNetworkId());
+        assertEquals(0xFF, confirmation.getData()[RESPONSE_CODE_POS]);
+        
+        // 3 hops, timeslot of 40 ms: 160 ms for the request and for the response
+        assertNothingAt(339);
+        NetworkData response = receiveAt(340);
+        assertArrayEquals(
+                new short[] { 0x01, 0x00, 0x06, 0x83, 0x00, 0x00, 0x00, 0x00 }, 
+                response.getData()
+        );
+    }
+    
+    /**
+     * Requests of different networks are processed by different coordinators, 
+     * requests of the same network one after another.
+     */
+    @Test
+    public void testNetworksProcessedSeparately() throws Exception {
+        startNetworkLayer(2);
+        
+        send("1", 0x01, 0x00, 0x06, 0x03, 0xFF, 0xFF);
+        send("2", 0x01, 0x00, 0x06, 0x03, 0xFF, 0xFF);
+        send("1", 0x02, 0x00, 0x06, 0x03, 0xFF, 0xFF);
+        
+        assertEquals("1", receiveAt(20).getNetworkId());
+        assertEquals("2", receiveAt(20).getNetworkId());
+        assertEquals("1", receiveAt(340).getNetworkId());
+        assertEquals("2", receiveAt(340).getNetworkId());
+        
+        // the second request of network 1 waits for the end of the first one
+        NetworkData confirmation = receiveAt(360);
+        assertEquals("1", confirmation.getNetworkId());
+        assertEquals(0x02, confirmation.getData()[0]);
+    }
+    
+    /**
+     * Request to a not bonded node is refused by the coordinator with NADR 
+     * error and nothing else is delivered.
+     */
+    @Test
+    public void testNadrError() throws Exception {
+        startNetworkLayer(2);
+        
+        send("1", 0x05, 0x00, 0x06, 0x03, 0xFF, 0xFF);
+        
+        NetworkData response = receiveAt(20);
+        assertArrayEquals(
+                new short[] { 0x05, 0x00, 0x06, 0x83, 0x00, 0x00, 0x08, 0x00 }, 
+                response.getData()
+        );
+        assertNothingAt(10000);
+    }
+    
+    /**
+     * FRC is answered after FRC processing time with data of all responding 
+     * nodes.
+     */
+    @Test
+    public void testFrc() throws Exception {
+        startNetworkLayer(2);
+        
+        // FRC send, prebonding command - returns bits
+        send("1", 0x00, 0x00, 0x0D, 0x00, 0xFF, 0xFF, 0x00);
+        
+        // 2 nodes * 30 + 40 + (2 discovered nodes + 2) * 100
+        assertNothingAt(519);
+        short[] response = receiveAt(520).getData();
+        assertEquals(RESPONSE_HEADER_LENGTH + 1 + 55, response.length);
+        assertEquals(0x00, response[RESPONSE_CODE_POS]);
+        assertEquals(2, response[RESPONSE_HEADER_LENGTH]);
+        assertEquals(0x06, response[RESPONSE_HEADER_LENGTH + 1]);
+    }
+    
+    /**
+     * FRC extra result returns extra data of the last FRC of the same network.
+     */
+    @Test
+    public void testFrcExtraResultPerNetwork() throws Exception {
+        startNetworkLayer(60);
+        
+        // byte FRC in network 1 - values of nodes 55 .. 60 get to extra data
+        send("1", 0x00, 0x00, 0x0D, 0x00, 0xFF, 0xFF, 0x80);
+        
+        // bit FRC in network 2 - no extra data
+        send("2", 0x00, 0x00, 0x0D, 0x00, 0xFF, 0xFF, 0x00);
+        
+        clock.advance(100000);
+        for ( int i = 0; i < 2; i++ ) {
+            assertNotNull(received.poll(DELIVERY_WAIT_TIME, TimeUnit.MILLISECONDS));
+        }
+        
+        // extra results
+        send("2", 0x00, 0x00, 0x0D, 0x01, 0xFF, 0xFF);
+        send("1", 0x00, 0x00, 0x0D, 0x01, 0xFF, 0xFF);
+        clock.advance(100);
+        
+        short[] extraData1 = null;
+        short[] extraData2 = null;
+        for ( int i = 0; i < 2; i++ ) {
+            NetworkData data = received.poll(DELIVERY_WAIT_TIME, TimeUnit.MILLISECONDS);
+            assertNotNull(data);
+            short[] extraData = Arrays.copyOfRange(
+                    data.getData(), RESPONSE_HEADER_LENGTH, data.getData().length
+            );
+            if ( data.getNetworkId().equals("1") ) {
+                extraData1 = extraData;
+            } else {
+                extraData2 = extraData;
+            }
+        }
+        
+        assertArrayEquals(new short[] { 55, 56, 57, 58, 59, 60, 0, 0, 0 }, extraData1);
+        assertArrayEquals(new short[9], extraData2);
+    }
+    
+    /**
+     * Request shorter than DPA header is refused.
+     */
+    @Test(expected = NetworkLayerException.class)
+    public void testShortRequest() throws Exception {
+        startNetworkLayer(2);
+        send("1", 0x01, 0x00, 0x06, 0x03, 0xFF);
+    }
+}
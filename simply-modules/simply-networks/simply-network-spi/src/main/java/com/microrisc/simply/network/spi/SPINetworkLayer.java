@@ -24,17 +24,22 @@ import com.microrisc.simply.NetworkData;
 import com.microrisc.simply.NetworkLayerListener;
 import com.microrisc.simply.network.AbstractNetworkConnectionInfo;
 import com.microrisc.simply.network.AbstractNetworkLayer;
+import com.microrisc.simply.network.AdaptivePollingScheduler;
 import com.microrisc.simply.network.BaseNetworkData;
 import com.microrisc.simply.network.NetworkConnectionStorage;
 import com.microrisc.simply.network.NetworkLayerException;
-import java.util.LinkedList;
-import java.util.Queue;
+import com.microrisc.simply.network.SpscRingBuffer;
 import java.util.logging.Level;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Implements network layer using {@code com.microrisc.rpi.spi.iqrf.SimpleSPI_Master} object.
+ * <p>
+ * Status of SPI slave is polled adaptively: tightly after a request has been 
+ * sent or data has been received, with exponentially growing period when 
+ * the network is idle. Another implementation of {@code SPI_Master}, e.g. a
+ * fake for testing, can be passed into the constructor.
  * 
  * @author Rostislav Spinar
  */
@@ -68,16 +73,26 @@ public final class SPINetworkLayer extends AbstractNetworkLayer {
      * SPI master
      */
     private SPI_Master spiMaster = null;
+    
+    /**
+     * SPI master passed by user, {@code null} if SPI master is created on start.
+     */
+    private final SPI_Master userSpiMaster;
 
     /**
      * SPI-port name for connection.
      */
     private String portName = null;
 
+    /**
+     * Default capacity of queue of data received from SPI.
+     */
+    public static int RECEIVED_DATA_QUEUE_CAPACITY = 256;
+    
     /**
      * Data received from SPI.
      */
-    private Queue<short[]> dataFromSPI = null;
+    private SpscRingBuffer<short[]> dataFromSPI = null;
 
     /**
      * Synchronization to SPI access.
@@ -109,6 +124,31 @@ public final class SPINetworkLayer extends AbstractNetworkLayer {
      */
     private int maxSpiStatusRetries;
     
+    /**
+     * Default minimal period of polling of SPI status [in ms]. SPI status is 
+     * polled with this period while a response is expected, i.e. up to 
+     * {@link AdaptivePollingScheduler#DEFAULT_EXPECTATION_TIMEOUT} after 
+     * each sent request, so it limits the polling to 200 status reads per
+     * second.
+     */
+    public static long MIN_POLLING_PERIOD = 5;
+    
+    /**
+     * Default maximal period of polling of SPI status [in ms].
+     */
+    public static long MAX_POLLING_PERIOD = 64;
+    
+    /**
+     * Default pause between sending attempts, when the module is not 
+     * ready [in ms].
+     */
+    public static long SEND_RETRY_PAUSE = 50;
+    
+    /**
+     * Scheduler of polling of SPI status.
+     */
+    private final AdaptivePollingScheduler pollingScheduler;
+    
     /**
      * Reading data from SPI.
      */
@@ -116,7 +156,7 @@ public final class SPINetworkLayer extends AbstractNetworkLayer {
 
         @Override
         public void run() {
-            short[] buffer = new short[maxRecvPacketSize];
+            short[] buffer = null;
             boolean newDataReceived = false;
             int dataLen = 0;
 
@@ -128,6 +168,8 @@ public final class SPINetworkLayer extends AbstractNetworkLayer {
                 }
 
                 try {
+                    pollingScheduler.awaitNextPoll();
+                    
                     synchronized ( spiSynchro ) {
                         SPI_Status spiStatus = spiMaster.getSlaveStatus();
                         //logger.info("Reading thread SPI status: {}", spiStatus.getValue());
@@ -147,16 +189,18 @@ public final class SPINetworkLayer extends AbstractNetworkLayer {
 
                     // if new data has received add it into the queue
                     if ( newDataReceived ) {
+                        pollingScheduler.activity();
                         logger.info("New data from SPI: {}", convertDataForLog(buffer));
 
-                        synchronized ( threadsSynchro ) {
-                            dataFromSPI.add(buffer);
-                            threadsSynchro.notify();
+                        if ( dataFromSPI.offer(buffer) ) {
+                            synchronized ( threadsSynchro ) {
+                                threadsSynchro.notify();
+                            }
+                        } else {
+                            logger.warn("Queue of received data is full, data discarded");
                         }
                         newDataReceived = false;
                     }
-
-                    Thread.sleep(10);
                 } catch (SPI_Exception ex) {
                     logger.error("Error while receiving SPI interface: ", ex);
                 } catch (InterruptedException ex) {
@@ -172,57 +216,30 @@ public final class SPINetworkLayer extends AbstractNetworkLayer {
      */
     private class ListenerCaller extends Thread {
 
-        // already consumed data from socket
-        private Queue<short[]> consumedData = new LinkedList<>();
-
-        // indicates, wheather new data are from SPI
-        private boolean areDataReadyFromSPI() {
-            return ( !dataFromSPI.isEmpty() );
-        }
-
-        // consume data from spi and adds them into buffer
-        private void consumeDataFromSPI() {
-            while ( !dataFromSPI.isEmpty() ) {
-                short[] packetData = dataFromSPI.poll();
-                consumedData.add(packetData);
-            }
-        }
-
-        /**
-         * Frees up used resources.
-         */
-        private void freeResources() {
-            consumedData.clear();
-        }
-
         @Override
         public void run() {
             while ( true ) {
                 if ( this.isInterrupted() ) {
                     logger.info("SPI caller thread interrupted");
-                    freeResources();
                     return;
                 }
 
-                // consuming new data from SPI
+                // waiting for new data from SPI
                 synchronized ( threadsSynchro ) {
-                    while ( !areDataReadyFromSPI() ) {
+                    while ( dataFromSPI.isEmpty() ) {
                         try {
                             threadsSynchro.wait();
                         } catch ( InterruptedException ex ) {
                             logger.warn("SPI caller thread interrupted while "
                                     + "waiting on data from SPI.");
-                            freeResources();
                             return;
                         }
                     }
-                    consumeDataFromSPI();
                 }
 
                 // remove data from queue and send it to listener
-                while ( !consumedData.isEmpty() ) {
-                    short[] userData = consumedData.poll();
-
+                short[] userData = null;
+                while ( (userData = dataFromSPI.poll()) != null ) {
                     if ( networkListener != null ) {
                         String networkId = connectionStorage.getNetworkId(connectionInfo);
                         networkListener.onGetData(new BaseNetworkData(userData, networkId));
@@ -299,11 +316,30 @@ public final class SPINetworkLayer extends AbstractNetworkLayer {
      * @param portName SPI-port name for communication
      */
     public SPINetworkLayer(NetworkConnectionStorage connectionStorage, String portName) {
+        this(connectionStorage, portName, null);
+    }
+    
+    /**
+     * Creates new SPI network layer object, which uses specified SPI master 
+     * to access the SPI.
+     * @param connectionStorage storage of network SPI-port connections
+     * @param portName SPI-port name for communication
+     * @param spiMaster SPI master to use, if {@code null}, {@code SimpleSPI_Master} 
+     *                  is created on start
+     */
+    public SPINetworkLayer(
+            NetworkConnectionStorage connectionStorage, String portName, 
+            SPI_Master spiMaster
+    ) {
         super(checkStorage(connectionStorage));
         
         this.portName = checkPortName(portName);
         this.connectionInfo = new BaseSPIPortConnectionInfo(portName);
         this.maxSpiStatusRetries = MAX_SPI_STATUS_RETRIES;
+        this.userSpiMaster = spiMaster;
+        this.pollingScheduler = new AdaptivePollingScheduler(
+                MIN_POLLING_PERIOD, MAX_POLLING_PERIOD
+        );
     }
 
     @Override
@@ -312,13 +348,13 @@ public final class SPINetworkLayer extends AbstractNetworkLayer {
 
         try {
             // initialization
-            spiMaster = new SimpleSPI_Master(portName);
+            spiMaster = ( userSpiMaster != null )? userSpiMaster : new SimpleSPI_Master(portName);
         } catch (SPI_Exception ex) {
             throw new NetworkLayerException(ex);
         }
 
         // init queue of data comming from SPI
-        dataFromSPI = new LinkedList<>();
+        dataFromSPI = new SpscRingBuffer<>(RECEIVED_DATA_QUEUE_CAPACITY);
 
         // creating and starting threads
         createAndStartThreads();
@@ -372,8 +408,10 @@ public final class SPINetworkLayer extends AbstractNetworkLayer {
                 int attempt = 0;
                 
                 while (attempt++ < maxSpiStatusRetries) {
-                    // have some space before sending another request
-                    Thread.sleep(50);
+                    // have some space before next attempt
+                    if ( attempt > 1 ) {
+                        Thread.sleep(SEND_RETRY_PAUSE);
+                    }
                     
                     // getting slave status
                     SPI_Status spiStatus = spiMaster.getSlaveStatus();
@@ -395,6 +433,9 @@ public final class SPINetworkLayer extends AbstractNetworkLayer {
                     throw new NetworkLayerException(new SPI_Exception("Data has not been sent to the module!"));
                 }
             }
+            
+            // response is expected
+            pollingScheduler.wakeUp();
         } catch (SPI_Exception sex) {
             throw new NetworkLayerException(sex);
         } catch (InterruptedException iex) {
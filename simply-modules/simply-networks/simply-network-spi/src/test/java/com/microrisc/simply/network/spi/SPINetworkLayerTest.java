@@ -0,0 +1,215 @@
+/*
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.spi;
+
+import com.microrisc.rpi.spi.SPI_Exception;
+import com.microrisc.rpi.spi.iqrf.SPI_Master;
+import com.microrisc.rpi.spi.iqrf.SPI_Status;
+import com.microrisc.simply.network.AbstractNetworkConnectionInfo;
+import com.microrisc.simply.network.BaseNetworkConnectionStorage;
+import com.microrisc.simply.network.BaseNetworkData;
+import com.microrisc.simply.time.Clock;
+import com.microrisc.simply.time.Clocks;
+import com.microrisc.simply.time.VirtualClock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of polling and sending of SPINetworkLayer. SPI is replaced by a fake
+ * SPI master, time of polling runs on manually advanced virtual clock.
+ *
+ * @author agent
+ */
+public class SPINetworkLayerTest {
+
+    // real time to wait for polls of the reader thread [in seconds]
+    private static final long WAIT_TIMEOUT = 5;
+
+    // SPI status of module, which is not ready to communicate
+    private static final int NOT_READY_STATUS = 0x00;
+
+    // fake SPI master recording virtual times of polls of the reader thread
+    private static class FakeSPIMaster implements SPI_Master {
+        final Thread testThread = Thread.currentThread();
+        final VirtualClock clock;
+        final BlockingQueue<Long> pollTimes = new LinkedBlockingQueue<>();
+        final AtomicInteger sentDataNum = new AtomicInteger(0);
+
+        // number of next status reads of the test thread, which find
+        // the module not ready
+        volatile int notReadyStatusReads = 0;
+
+        FakeSPIMaster(VirtualClock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public SPI_Status getSlaveStatus() throws SPI_Exception {
+            if ( Thread.currentThread() != testThread ) {
+                pollTimes.add(clock.currentTimeMillis());
+                return new SPI_Status(SPI_Status.READY_COMM_MODE);
+            }
+            if ( notReadyStatusReads > 0 ) {
+                notReadyStatusReads--;
+                return new SPI_Status(NOT_READY_STATUS);
+            }
+            return new SPI_Status(SPI_Status.READY_COMM_MODE);
+        }
+
+        @Override
+        public void sendData(short[] data) throws SPI_Exception {
+            sentDataNum.incrementAndGet();
+        }
+
+        @Override
+        public short[] readData(int dataLen) throws SPI_Exception {
+            return new short[dataLen];
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        long awaitPoll() throws InterruptedException {
+            Long pollTime = pollTimes.poll(WAIT_TIMEOUT, TimeUnit.SECONDS);
+            assertNotNull(pollTime);
+            return pollTime;
+        }
+    }
+
+    private Clock origClock;
+    private VirtualClock clock;
+    private FakeSPIMaster spiMaster;
+    private SPINetworkLayer networkLayer;
+
+    // waits until the reader thread waits for next poll
+    private void awaitReaderWaiting() {
+        while ( clock.getWaitersNumber() < 1 ) {
+            Thread.yield();
+        }
+    }
+
+    // lets the reader thread poll after its period, returns virtual time of the poll
+    private long nextPoll() throws InterruptedException {
+        awaitReaderWaiting();
+        clock.advanceToNextDeadline();
+        return spiMaster.awaitPoll();
+    }
+
+    // measures real duration of sending of data [in ms]
+    private long sendData() throws Exception {
+        long start = System.nanoTime();
+        networkLayer.sendData(new BaseNetworkData(new short[] { 1, 2, 3 }, "1"));
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        origClock = Clocks.getDefaultClock();
+        clock = new VirtualClock();
+        Clocks.setDefaultClock(clock);
+
+        AbstractNetworkConnectionInfo connInfo = new BaseSPIPortConnectionInfo("spi");
+        Map<String, AbstractNetworkConnectionInfo> idToConnInfo = new HashMap<>();
+        idToConnInfo.put("1", connInfo);
+        Map<AbstractNetworkConnectionInfo, String> connInfoToId = new HashMap<>();
+        connInfoToId.put(connInfo, "1");
+
+        spiMaster = new FakeSPIMaster(clock);
+        networkLayer = new SPINetworkLayer(
+                new BaseNetworkConnectionStorage(idToConnInfo, connInfoToId), "spi",
+                spiMaster
+        );
+        networkLayer.start();
+    }
+
+    @After
+    public void tearDown() {
+        networkLayer.destroy();
+        Clocks.setDefaultClock(origClock);
+    }
+
+    /**
+     * Period of polling of idle module doubles up to the maximal period.
+     */
+    @Test
+    public void testBackOffWhileIdle() throws InterruptedException {
+        long minPeriod = SPINetworkLayer.MIN_POLLING_PERIOD;
+        long maxPeriod = SPINetworkLayer.MAX_POLLING_PERIOD;
+
+        long lastPollTime = clock.currentTimeMillis();
+        long expectedPeriod = minPeriod;
+        for ( int i = 0; i < 8; i++ ) {
+            long pollTime = nextPoll();
+            assertEquals(expectedPeriod, pollTime - lastPollTime);
+            lastPollTime = pollTime;
+            expectedPeriod = Math.min(expectedPeriod * 2, maxPeriod);
+        }
+        assertEquals(maxPeriod, expectedPeriod);
+    }
+
+    /**
+     * Sending of data wakes the backed off reader thread up immediately,
+     * the response is then polled with the minimal period.
+     */
+    @Test
+    public void testWakeUpOnSend() throws Exception {
+        for ( int i = 0; i < 6; i++ ) {
+            nextPoll();
+        }
+
+        awaitReaderWaiting();
+        long sendTime = clock.currentTimeMillis();
+        sendData();
+        assertEquals(sendTime, spiMaster.awaitPoll());
+
+        assertEquals(sendTime + SPINetworkLayer.MIN_POLLING_PERIOD, nextPoll());
+        assertEquals(1, spiMaster.sentDataNum.get());
+    }
+
+    /**
+     * Data is sent to ready module at the first attempt without any pause.
+     */
+    @Test
+    public void testNoPauseOnFirstSendAttempt() throws Exception {
+        long sendDuration = sendData();
+
+        assertEquals(1, spiMaster.sentDataNum.get());
+        assertTrue(sendDuration < SPINetworkLayer.SEND_RETRY_PAUSE);
+    }
+
+    /**
+     * Next sending attempt follows the pause after the module has not been
+     * ready.
+     */
+    @Test
+    public void testPauseBetweenSendAttempts() throws Exception {
+        spiMaster.notReadyStatusReads = 1;
+        long sendDuration = sendData();
+
+        assertEquals(1, spiMaster.sentDataNum.get());
+        assertTrue(sendDuration >= SPINetworkLayer.SEND_RETRY_PAUSE);
+    }
+}
@@ -17,21 +17,25 @@
 package com.microrisc.simply.network.udp;
 
 import com.microrisc.simply.network.udp.gweth.GWETH_DataTransformer;
+import com.microrisc.simply.BytePacket;
 import com.microrisc.simply.NetworkData;
 import com.microrisc.simply.NetworkLayerListener;
 import com.microrisc.simply.network.AbstractNetworkConnectionInfo;
 import com.microrisc.simply.network.AbstractNetworkLayer;
-import com.microrisc.simply.network.BaseNetworkData;
 import com.microrisc.simply.network.NetworkConnectionStorage;
 import com.microrisc.simply.network.NetworkLayerException;
+import com.microrisc.simply.network.PacketNetworkData;
+import com.microrisc.simply.network.ReceiveBuffer;
+import com.microrisc.simply.network.ReceiveBufferPool;
+import com.microrisc.simply.network.SpscRingBuffer;
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.UnknownHostException;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +49,10 @@ import org.slf4j.LoggerFactory;
  * from this information is created connection information for the layer.
  * If a connection information supplied by incomming request is not equal to the one
  * of this layer, error is issued.
+ * <p>
+ * Communication runs over blocking {@code DatagramChannel} with direct buffers.
+ * Reception and sending are independent, reception thread is woken up 
+ * directly by incomming datagrams, so no polling delay is added to frames.
  * 
  * @author Michal Konopa
  */
@@ -70,28 +78,41 @@ public final class UDPNetworkLayer extends AbstractNetworkLayer  {
     /** Remote port number. */
     private int remotePort = -1;
     
-    /** Socket for communication with server. */
-    private DatagramSocket socket = null;
+    /** Address of the server. */
+    private SocketAddress targetSocketAddress = null;
+    
+    /** Channel for communication with server. */
+    private DatagramChannel channel = null;
+    
+    /** Buffer for data to send. */
+    private ByteBuffer sendBuffer = null;
     
-    /** Synchronization to socket access. */
-    private final Object socketSynchro = new Object();
+    /** Synchronization of sending. */
+    private final Object sendSynchro = new Object();
     
     
-    /** Default timeout [in ms] of blocking waiting for reception of packet from the socket. */
+    /** 
+     * Default timeout [in ms] of blocking waiting for reception of packet from 
+     * the socket. Not used by this layer, reception waits until a packet 
+     * arrives or the layer is destroyed.
+     */
     public static int RECEPTION_TIMEOUT_DEFAULT = 100;
     
     /** Default maximal size of received packets [in bytes]. */
     public static int MAX_RECEIVED_PACKET_SIZE = 500;
     
-    /** Timeout [in ms] of blocking waiting for reception of packet from the socket. */
-    private int receptionTimeout;
-    
     /** Maximal size of received packets [in bytes]. */
     private int maxRecvPacketSize;
     
     
-    /** Data received from socket. */
-    private Queue<short[]> dataFromSocket = null;
+    /** Default capacity of queue of received frames. */
+    public static int RECEIVED_FRAMES_QUEUE_CAPACITY = 256;
+    
+    /** Pool of buffers for received frames. */
+    private ReceiveBufferPool receiveBufferPool = null;
+    
+    /** Frames received from socket. */
+    private SpscRingBuffer<ReceiveBuffer> dataFromSocket = null;
     
     /** Synchronization between socket reader thread and listener caller thread. */
     private final Object threadSynchro = new Object();
@@ -101,22 +122,11 @@ public final class UDPNetworkLayer extends AbstractNetworkLayer  {
      * Reading data from connected socket.
      */
     private class SocketReader extends Thread {
-        // extracts data from specified packet and returns it
-        private short[] extractDataFromSocket(DatagramPacket packet) {
-            byte[] packetData = packet.getData();
-            short[] extractedData = new short[packet.getLength()];
-            
-            for (int item = 0; item < packet.getLength(); item++) {
-                extractedData[item] = (short)(packetData[item] & 0xFF);
-            }
-            return extractedData;
-        }
         
         @Override
         public void run() {
-            byte[] buffer = new byte[maxRecvPacketSize];
-            DatagramPacket recvPacket = new DatagramPacket(buffer, buffer.length);
-            boolean newDataReceived = false;
+            // one byte more to recognize datagrams exceeding the maximal size
+            ByteBuffer recvBuffer = ByteBuffer.allocateDirect(maxRecvPacketSize + 1);
             
             while ( true ) {
                 if ( this.isInterrupted() ) {
@@ -124,38 +134,40 @@ public final class UDPNetworkLayer extends AbstractNetworkLayer  {
                     return;
                 }
                 
-                // receive data from socket
+                // receive data from channel - blocks until a datagram arrives
+                recvBuffer.clear();
                 try {
-                    synchronized( socketSynchro ) {
-                        socket.receive(recvPacket);
-                    }
-                    newDataReceived = true;
-                } catch ( SocketTimeoutException ex ) {
-                    logger.debug("Timeout expired");
+                    channel.receive(recvBuffer);
+                } catch ( ClosedChannelException ex ) {
+                    logger.info("Socket reader thread - channel closed");
+                    return;
                 } catch ( IOException ex ) {
                     logger.error("Error while receiving message from socket", ex);
-                }  
+                    continue;
+                }
+                recvBuffer.flip();
                 
-                // if new data has received, extract it from the packet and 
-                // add it into queue
-                if ( newDataReceived ) {
-                    short[] extractedData = extractDataFromSocket(recvPacket); 
-                    logger.info("New data from socket: {}", extractedData);
-                    
-                    synchronized ( threadSynchro ) {
-                        dataFromSocket.add(extractedData);
-                        threadSynchro.notify();
-                    }
+                int length = recvBuffer.remaining();
+                if ( length > maxRecvPacketSize ) {
+                    logger.warn("Received datagram exceeds maximal size of "
+                            + "received packets {}, datagram discarded", maxRecvPacketSize
+                    );
+                    continue;
                 }
                 
-                newDataReceived = false;
+                // hand off the frame to the listener caller
+                ReceiveBuffer buffer = receiveBufferPool.acquire();
+                recvBuffer.get(buffer.array(), 0, length);
+                buffer.setLength(length);
+                logger.info("New data from socket: length={}", length);
                 
-                // sleep for a while to get other threads more processor time 
-                try {
-                    Thread.sleep(10);
-                } catch (InterruptedException ex) {
-                    logger.warn("Socket reader thread interrupted while sleeping");
-                    return;
+                if ( dataFromSocket.offer(buffer) ) {
+                    synchronized ( threadSynchro ) {
+                        threadSynchro.notify();
+                    }
+                } else {
+                    logger.warn("Queue of received frames is full, frame discarded");
+                    receiveBufferPool.release(buffer);
                 }
             }
         }
@@ -165,79 +177,65 @@ public final class UDPNetworkLayer extends AbstractNetworkLayer  {
      * Calling listener callback method - when new data has arrived from socket.
      */
     private class ListenerCaller extends Thread {
-        // already consumed data from socket
-        private Queue<short[]> consumedData = new LinkedList<>();
         
-        // indicates, wheather new data are in socket
-        private boolean areDataInSocket() {
-            if ( dataFromSocket.isEmpty() ) {
-                return false;
+        // delivers data of specified frame to the listener
+        private void deliverFrame(ReceiveBuffer frame) {
+            if ( networkListener == null ) {
+                return;
             }
-            return true;
-        }
-        
-        // consume data from socket and adds them into buffer
-        private void consumeDataFromSocket() {
-            while ( !dataFromSocket.isEmpty() ) {
-                short[] packetData = dataFromSocket.poll();
-                consumedData.add(packetData);
+
+            boolean isAsync = false;
+            BytePacket userData = null;
+
+            try {
+                isAsync = GWETH_DataTransformer.isAsynchronousMessage(
+                        frame.array(), frame.getLength()
+                );
+                if (isAsync) {
+                    userData = GWETH_DataTransformer.getDataFromMessage(
+                            frame.array(), frame.getLength()
+                    );
+                }
+            } catch (Exception e) {
+                logger.error("Error while getting data from message: " + e.getMessage());
+                return;
+            } 
+
+            // we are interested only in asynchronous messages, not in GW own answers 
+            if ( isAsync ) {
+                String networkId = connectionStorage.getNetworkId(connectionInfo);
+                networkListener.onGetData(new PacketNetworkData(userData, networkId));
             }
         }
         
-        /** Frees up used resources. */
-        private void freeResources() {
-            consumedData.clear();
-        }
-        
         @Override
         public void run() {
             while ( true ) {
                 if ( this.isInterrupted() ) {
                     logger.info("Client caller thread interrupted");
-                    freeResources();
                     return;
                 }
                 
-                // consuming new data from socket
+                // waiting for new data from socket
                 synchronized ( threadSynchro ) {
-                    while ( !areDataInSocket() ) {
+                    while ( dataFromSocket.isEmpty() ) {
                         try {
                             threadSynchro.wait();
                         } catch ( InterruptedException ex ) {
                             logger.warn("Client caller thread interrupted while "
                                          + "waiting on data from socket.");
-                            freeResources();
                             return;
                         }
                     }
-                    consumeDataFromSocket();
                 }
                  
-                // remove data from queue and put send it to listener
-                while ( !consumedData.isEmpty() ) {
-                    short[] packetData = consumedData.poll();
-                    
-                    if ( networkListener == null ) {
-                        continue;
-                    }
-                    
-                    boolean isAsync = false;
-                    short[] userData = null;
-
+                // remove frames from queue and send them to listener
+                ReceiveBuffer frame = null;
+                while ( (frame = dataFromSocket.poll()) != null ) {
                     try {
-                        isAsync = GWETH_DataTransformer.isAsynchronousMessage(packetData);
-                        if (isAsync) {
-                            userData = GWETH_DataTransformer.getDataFromMessage(packetData);
-                        }
-                    } catch (Exception e) {
-                        logger.error("Error while getting data from message: " + e.getMessage());
-                        continue;
-                    } 
-                    
-                    // we are interested only in asynchronous messages, not in GW own answers 
-                    if ( isAsync ) {
-                        String networkId = connectionStorage.getNetworkId(connectionInfo);
-                        networkListener.onGetData(new BaseNetworkData(userData, networkId));
+                        deliverFrame(frame);
+                    } finally {
+                        receiveBufferPool.release(frame);
                     }
                 }
             }
@@ -318,16 +316,15 @@ public final class UDPNetworkLayer extends AbstractNetworkLayer  {
     
     
     /**
-     * Creates new UDP client network layer object.
+     * Creates new UDP client network layer object. Reception of packets from 
+     * the socket is waited for without timeout. Received packets exceeding
+     * maximal size are discarded.
      * @param connectionStorage storage of network UDP connections
      * @param localHostName local host name, or {@code null} for the loopback address
      * @param localPort local port number
      * @param remoteHostName remote host name
      * @param remotePort remote port number
      * @param maxRecvPacketSize maximal size of received packets [in bytes].
-     * @param receptionTimeout timeout [in ms] of blocking waiting for reception 
-     *                        of packet from the socket. {@code 0} means infinity
-     *                        waiting.
      */
     public UDPNetworkLayer(
             NetworkConnectionStorage connectionStorage,
@@ -335,8 +332,7 @@ public final class UDPNetworkLayer extends AbstractNetworkLayer  {
             int localPort, 
             String remoteHostName,
             int remotePort,
-            int maxRecvPacketSize, 
-            int receptionTimeout
+            int maxRecvPacketSize
      ) {
         super(checkStorage(connectionStorage));
         try {
@@ -352,17 +348,49 @@ public final class UDPNetworkLayer extends AbstractNetworkLayer  {
             throw new IllegalArgumentException("Target name not valid: " + ex.getMessage());
         }
         this.remotePort = remotePort;
+        this.targetSocketAddress = new InetSocketAddress(targetAddress, remotePort);
         
         this.maxRecvPacketSize = checkMaxRecvPacketSize(maxRecvPacketSize);
-        this.receptionTimeout = checkReceptionTimeout(receptionTimeout);
         
         this.connectionInfo = new BaseUDPConnectionInfo(targetAddress, remotePort);
     }
     
+    /**
+     * Creates new UDP client network layer object.
+     * @param connectionStorage storage of network UDP connections
+     * @param localHostName local host name, or {@code null} for the loopback address
+     * @param localPort local port number
+     * @param remoteHostName remote host name
+     * @param remotePort remote port number
+     * @param maxRecvPacketSize maximal size of received packets [in bytes].
+     * @param receptionTimeout timeout [in ms] of blocking waiting for reception 
+     *                        of packet from the socket. It is only checked to 
+     *                        be nonnegative, reception is waited for without 
+     *                        timeout.
+     * @deprecated reception timeout is not used, use 
+     *             {@link #UDPNetworkLayer(NetworkConnectionStorage, String, int, String, int, int)} 
+     *             instead
+     */
+    @Deprecated
+    public UDPNetworkLayer(
+            NetworkConnectionStorage connectionStorage,
+            String localHostName, 
+            int localPort, 
+            String remoteHostName,
+            int remotePort,
+            int maxRecvPacketSize, 
+            int receptionTimeout
+     ) {
+        this(connectionStorage, localHostName, localPort, remoteHostName, remotePort, 
+                maxRecvPacketSize
+        );
+        checkReceptionTimeout(receptionTimeout);
+    }
+    
     /**
      * Creates new UDP client network layer object. Maximal received packet size
-     * is limited to {@code MAX_RECEIVED_PACKET_SIZE} and blocking waiting for 
-     * packet reception is set to {@code RECEPTION_TIMEOUT_DEFAULT}.
+     * is limited to {@code MAX_RECEIVED_PACKET_SIZE}. Reception of packets 
+     * from the socket is waited for without timeout.
      * @param connectionStorage storage of network UDP connections 
      * @param localHostName local host name, or {@code null} for the loopback address
      * @param localPort local port number
@@ -377,7 +405,7 @@ public final class UDPNetworkLayer extends AbstractNetworkLayer  {
             int remotePort
     ) {
         this(connectionStorage, localHostName, localPort, remoteHostName, remotePort, 
-                MAX_RECEIVED_PACKET_SIZE, RECEPTION_TIMEOUT_DEFAULT);
+                MAX_RECEIVED_PACKET_SIZE);
     }
     
     @Override
@@ -397,14 +425,19 @@ public final class UDPNetworkLayer extends AbstractNetworkLayer  {
         logger.debug("startReceivingData - start:");
         
         try {
-            socket = new DatagramSocket(localPort, localAddress);
-            socket.setSoTimeout(receptionTimeout);
+            channel = DatagramChannel.open();
+            channel.configureBlocking(true);
+            channel.bind(new InetSocketAddress(localAddress, localPort));
         } catch (IOException ex) {
             throw new NetworkLayerException(ex);
         }
+        sendBuffer = ByteBuffer.allocateDirect(maxRecvPacketSize);
         
         // init queue of data comming from socket
-        dataFromSocket = new LinkedList<>();
+        receiveBufferPool = new ReceiveBufferPool(
+                maxRecvPacketSize, RECEIVED_FRAMES_QUEUE_CAPACITY + 1
+        );
+        dataFromSocket = new SpscRingBuffer<>(RECEIVED_FRAMES_QUEUE_CAPACITY);
         
         // creating and starting threads
         createAndStartThreads();
@@ -436,19 +469,20 @@ public final class UDPNetworkLayer extends AbstractNetworkLayer  {
         }
         
         // transforms request's data to protocol format defined by GW
-        short[] dataForGW = GWETH_DataTransformer.transformRequestData(networkData.getData());
-        
-        byte[] buf = new byte[dataForGW.length];
-        for (int item = 0; item < dataForGW.length; item++) {
-            buf[item] = (byte)(dataForGW[item] & 0xFF);
-        }
+        byte[] buf = GWETH_DataTransformer.transformRequestData(
+                PacketNetworkData.toPacket(networkData)
+        );
         
         try {
-            DatagramPacket packet = new DatagramPacket(buf, buf.length, targetAddress, remotePort);
-            
             logger.info("Data will be sent to socket...");
-            synchronized( socketSynchro ) {
-                socket.send(packet);
+            synchronized( sendSynchro ) {
+                if ( sendBuffer.capacity() < buf.length ) {
+                    sendBuffer = ByteBuffer.allocateDirect(buf.length);
+                }
+                sendBuffer.clear();
+                sendBuffer.put(buf);
+                sendBuffer.flip();
+                channel.send(sendBuffer, targetSocketAddress);
             }
             logger.info("Data successfully sent to socket");
         } catch (IOException ex) {
@@ -465,7 +499,11 @@ public final class UDPNetworkLayer extends AbstractNetworkLayer  {
         
         unregisterListener();
         terminateThreads();
-        socket.close();
+        try {
+            channel.close();
+        } catch ( IOException ex ) {
+            logger.error("Error while closing channel", ex);
+        }
         dataFromSocket.clear();
         
         logger.info("Destroyed");
@@ -143,14 +143,14 @@ extends AbstractNetworkLayerFactory<Configuration, NetworkLayer> {
             throw new Exception("Unsupported network layer version: " + version);
         }
         
+        // reception timeout is not used by the layer
         return new UDPNetworkLayer(
                         networkParams.connectionStorage,
                         networkParams.localAddress,
                         networkParams.localPort,
                         networkParams.remoteAddress,
                         networkParams.remotePort,
-                        networkParams.maxRecvPacketSize, 
-                        networkParams.receptionTimeout
+                        networkParams.maxRecvPacketSize
         );
     }
     
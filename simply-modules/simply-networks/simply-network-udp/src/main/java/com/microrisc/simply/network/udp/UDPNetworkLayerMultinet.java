@@ -17,23 +17,34 @@
 package com.microrisc.simply.network.udp;
 
 import com.microrisc.simply.network.udp.gweth.GWETH_DataTransformer;
+import com.microrisc.simply.BytePacket;
 import com.microrisc.simply.NetworkData;
 import com.microrisc.simply.NetworkLayerListener;
 import com.microrisc.simply.network.AbstractNetworkConnectionInfo;
 import com.microrisc.simply.network.AbstractNetworkLayer;
-import com.microrisc.simply.network.BaseNetworkData;
 import com.microrisc.simply.network.NetworkConnectionStorage;
 import com.microrisc.simply.network.NetworkLayerException;
-import com.microrisc.simply.network.udp.BaseUDPConnectionInfo;
-import com.microrisc.simply.network.udp.UDPConnectionInfo;
+import com.microrisc.simply.network.PacketNetworkData;
+import com.microrisc.simply.network.SpscRingBuffer;
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.UnknownHostException;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,7 +53,13 @@ import org.slf4j.LoggerFactory;
  * UDP client. This network layer is specialized to only usage with GW-ETH-01
  * gateway.
  * <p>
- * Working with multiple UDP networks is supported. 
+ * Working with multiple UDP networks is supported. All gateways are served
+ * through one non-blocking {@code DatagramChannel} and one selector thread. 
+ * Received frames are checked in the receive buffer, mapped to networks by 
+ * remote addresses of gateways and dispatched to the listener in serial lanes, 
+ * one lane per network. Lanes are run by a small pool of dispatcher threads, 
+ * so frames of one network are delivered in the order of their reception, 
+ * but a slow network does not delay other networks.
  * 
  * @author Michal Konopa
  */
@@ -51,7 +68,7 @@ public final class UDPNetworkLayerMultinet extends AbstractNetworkLayer {
     private static final Logger logger = LoggerFactory.getLogger(UDPNetworkLayerMultinet.class);
     
     /** Registered network listener. */
-    private NetworkLayerListener networkListener = null;
+    private volatile NetworkLayerListener networkListener = null;
     
     /** Local IP address to bind. */
     private InetAddress localAddress = null;
@@ -59,197 +76,280 @@ public final class UDPNetworkLayerMultinet extends AbstractNetworkLayer {
     /** Local port number. */
     private int localPort = -1;
     
-    /** Socket for communication with server. */
-    private DatagramSocket socket = null;
+    /** Channel for communication with gateways. */
+    private DatagramChannel channel = null;
     
-    /** Synchronization to socket access. */
-    private final Object socketSynchro = new Object();
+    /** Selector of readiness of the channel for reception. */
+    private Selector selector = null;
     
+    /** Selector of readiness of the channel for sending. */
+    private Selector writeSelector = null;
     
-    /** Default timeout [in ms] of blocking waiting for reception of packet from the socket. */
+    /** Buffer for data to send. */
+    private ByteBuffer sendBuffer = null;
+    
+    /** Synchronization of sending. */
+    private final Object sendSynchro = new Object();
+    
+    
+    /** 
+     * Default timeout [in ms] of blocking waiting for reception of packet from 
+     * the socket. Not used by this layer, reception waits until a packet 
+     * arrives or the layer is destroyed.
+     */
     public static int RECEPTION_TIMEOUT_DEFAULT = 100;
     
     /** Default maximal size of received packets [in bytes]. */
     public static int MAX_RECEIVED_PACKET_SIZE = 500;
     
-    /** Timeout [in ms] of blocking waiting for reception of packet from the socket. */
-    private int receptionTimeout;
-    
     /** Maximal size of received packets [in bytes]. */
     private int maxRecvPacketSize;
     
     
-    /**
-     * Packet data.
-     */
-    private class PacketData {
-        BaseUDPConnectionInfo connInfo;
-        short[] data;
-        
-        PacketData(BaseUDPConnectionInfo connInfo, short[] data) {
-            this.connInfo = connInfo;
-            this.data = data; 
-        }
-    }
+    /** Default capacity of queue of received frames of one network. */
+    public static int RECEIVED_FRAMES_QUEUE_CAPACITY = 256;
     
-    /** Data received from socket. */
-    private Queue<PacketData> dataFromSocket = null;
+    /** Default number of threads dispatching received frames to the listener. */
+    public static int DISPATCHER_THREADS_NUM = 2;
     
-    /** Synchronization between socket reader thread and listener caller thread. */
-    private final Object threadSynchro = new Object();
+    // maximal number of frames delivered in one run of a lane, after that 
+    // the lane gives its thread to other lanes
+    private static final int MAX_LANE_BATCH = 16;
     
+    // timeout to wait for dispatcher threads to terminate [in ms]
+    private static final long TERMINATION_WAIT_TIMEOUT = 2000;
+    
+    // timeout to wait for free space in the socket buffer on sending [in ms]
+    private static final long SEND_WAIT_TIMEOUT = 1000;
     
-    /** Frees up used resources. */
-    private void freeResources() {
-        dataFromSocket.clear();
-        dataFromSocket = null;
-        socket = null;
-        connectionStorage = null;
-    }
     
     /**
-     * Reading data from connected socket.
+     * Serial lane of frames received from one network.
      */
-    private class SocketReader extends Thread {
-        // extracts data from specified packet and returns it
-        private PacketData extractDataFromSocket(DatagramPacket packet) {
-            byte[] packetData = packet.getData();
-            short[] extractedData = new short[packet.getLength()];
-            
-            for (int item = 0; item < packet.getLength(); item++) {
-                extractedData[item] = (short)(packetData[item] & 0xFF);
+    private class NetworkLane implements Runnable {
+        // ID of the network, {@code null} for unknown networks
+        private final String networkId;
+        
+        // data of received frames - offered by the reader thread only
+        private final SpscRingBuffer<BytePacket> frames 
+                = new SpscRingBuffer<>(RECEIVED_FRAMES_QUEUE_CAPACITY);
+        
+        // indicates, that the lane is submitted for running
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        
+        NetworkLane(String networkId) {
+            this.networkId = networkId;
+        }
+        
+        void add(BytePacket userData) {
+            if ( !frames.offer(userData) ) {
+                logger.warn("Queue of received frames is full, frame discarded: "
+                        + "network={}", networkId
+                );
+                return;
+            }
+            schedule();
+        }
+        
+        void schedule() {
+            if ( !scheduled.compareAndSet(false, true) ) {
+                return;
             }
             
-            BaseUDPConnectionInfo connInfo = new BaseUDPConnectionInfo(
-                    packet.getAddress(), packet.getPort()
-            );
+            try {
+                dispatcher.execute(this);
+            } catch ( RejectedExecutionException e ) {
+                scheduled.set(false);
+                logger.warn("Dispatching of received frames rejected: network={}", networkId);
+            }
+        }
+        
+        // delivers specified data to the listener
+        private void deliver(BytePacket userData) {
+            NetworkLayerListener listener = networkListener;
+            if ( listener == null ) {
+                return;
+            }
             
-            return new PacketData(connInfo, extractedData);
+            try {
+                listener.onGetData(new PacketNetworkData(userData, networkId));
+            } catch ( RuntimeException e ) {
+                logger.error("Error while delivering data of network={}", networkId, e);
+            }
         }
         
         @Override
         public void run() {
-            byte[] buffer = new byte[maxRecvPacketSize];
-            DatagramPacket recvPacket = new DatagramPacket(buffer, buffer.length);
-            boolean newDataReceived = false;
-            
-            while (true) {
-                if (this.isInterrupted()) {
-                    logger.info("Socket reader thread interrupted");
-                    return;
-                }
-                
-                // receive data from socket
-                try {
-                    synchronized(socketSynchro) {
-                        socket.receive(recvPacket);
-                    }
-                    newDataReceived = true;
-                } catch (SocketTimeoutException ex) {
-                    logger.debug("Timeout expired");
-                } catch (IOException ex) {
-                    logger.error("Error while receiving message from socket", ex);
-                    return;
-                }  
-                
-                // if new data has received, extract it from the packet and 
-                // add it into queue
-                if (newDataReceived) {
-                    PacketData extractedData = extractDataFromSocket(recvPacket); 
-                    synchronized (threadSynchro) {
-                        dataFromSocket.add(extractedData);
-                        threadSynchro.notify();
+            try {
+                for ( int delivered = 0; delivered < MAX_LANE_BATCH; delivered++ ) {
+                    BytePacket userData = frames.poll();
+                    if ( userData == null ) {
+                        break;
                     }
+                    deliver(userData);
                 }
-                
-                newDataReceived = false;
+            } finally {
+                scheduled.set(false);
+            }
+            
+            // frames received during the run
+            if ( !frames.isEmpty() && !Thread.currentThread().isInterrupted() ) {
+                schedule();
+            }
+        }
+    }
+    
+    /**
+     * Creates dispatcher threads.
+     */
+    private static class DispatcherThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadsCounter = new AtomicInteger(0);
+        
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "UDPNetworkLayerMultinet-" + threadsCounter.incrementAndGet());
+        }
+    }
+    
+    
+    /** Threads running lanes of networks. */
+    private ExecutorService dispatcher = null;
+    
+    /** 
+     * IDs of networks mapped by addresses of theirs gateways. Precomputed at 
+     * the start, accessed only by the socket reader thread.
+     */
+    private final Map<SocketAddress, String> networkIds = new HashMap<>();
+    
+    /** 
+     * Lanes of networks mapped by IDs of networks. Accessed only by the socket 
+     * reader thread.
+     */
+    private final Map<String, NetworkLane> lanes = new HashMap<>();
+    
+    
+    /** Frees up used resources. */
+    private void freeResources() {
+        networkIds.clear();
+        lanes.clear();
+        dispatcher = null;
+        selector = null;
+        writeSelector = null;
+        channel = null;
+        connectionStorage = null;
+    }
+    
+    // maps addresses of gateways to IDs of networks
+    private void initNetworkIds() {
+        networkIds.clear();
+        Map<String, AbstractNetworkConnectionInfo> connInfos 
+                = connectionStorage.getAllNetworkConnectionInfo();
+        for ( Map.Entry<String, AbstractNetworkConnectionInfo> connInfoEntry : connInfos.entrySet() ) {
+            if ( connInfoEntry.getValue() instanceof UDPConnectionInfo ) {
+                UDPConnectionInfo udpInfo = (UDPConnectionInfo) connInfoEntry.getValue();
+                networkIds.put(
+                        new InetSocketAddress(udpInfo.getAddress(), udpInfo.getPort()), 
+                        connInfoEntry.getKey()
+                );
             }
         }
     }
     
     /**
-     * Calling listener callback method - when new data has arrived from socket.
+     * Reading data from the channel.
      */
-    private class ListenerCaller extends Thread {
-        // already consumed data from socket
-        private Queue<PacketData> consumedData = new LinkedList<PacketData>();
+    private class SocketReader extends Thread {
+        // frame, which is received and checked in place
+        private final byte[] frame = new byte[maxRecvPacketSize];
+        private final ByteBuffer recvBuffer = ByteBuffer.wrap(frame);
         
-        // indicates, wheather new data are in socket
-        private boolean areDataInSocket() {
-            if (dataFromSocket.isEmpty()) {
-                return false;
+        // returns ID of network, which specified address of gateway belongs to
+        private String getNetworkId(SocketAddress gwAddress) {
+            String networkId = networkIds.get(gwAddress);
+            if ( networkId != null ) {
+                return networkId;
             }
-            return true;
+            
+            // network added to the storage after the start
+            InetSocketAddress inetAddress = (InetSocketAddress) gwAddress;
+            networkId = connectionStorage.getNetworkId(
+                    new BaseUDPConnectionInfo(inetAddress.getAddress(), inetAddress.getPort())
+            );
+            if ( networkId != null ) {
+                networkIds.put(gwAddress, networkId);
+            }
+            return networkId;
         }
         
-        // consume data from socket and adds them into buffer
-        private void consumeDataFromSocket() {
-            while (!dataFromSocket.isEmpty()) {
-                PacketData packetData = dataFromSocket.poll();
-                consumedData.add(packetData);
+        // returns lane of specified network
+        private NetworkLane getLane(String networkId) {
+            String laneKey = String.valueOf(networkId);
+            NetworkLane lane = lanes.get(laneKey);
+            if ( lane == null ) {
+                lane = new NetworkLane(networkId);
+                lanes.put(laneKey, lane);
             }
+            return lane;
         }
         
-        /** Frees up used resources. */
-        private void freeResources() {
-            consumedData.clear();
+        // processes frame of specified length received from specified gateway
+        private void processFrame(SocketAddress gwAddress, int length) {
+            BytePacket userData = null;
+            try {
+                userData = GWETH_DataTransformer.getAsynchronousData(frame, length);
+            } catch ( Exception e ) {
+                logger.error("Error while getting data from message: " + e.getMessage());
+                return;
+            }
+            
+            // we are interested only in asynchronous messages, not in GW own answers 
+            if ( userData == null ) {
+                return;
+            }
+            
+            String networkId = getNetworkId(gwAddress);
+            if ( networkId == null ) {
+                // if no info about network ID is available, set null 
+                logger.warn("No network found for connection: {}", gwAddress);
+            }
+            getLane(networkId).add(userData);
         }
         
         @Override
         public void run() {
-            while (true) {
-                if (this.isInterrupted()) {
-                    logger.info("Client caller thread interrupted");
-                    freeResources();
+            while ( true ) {
+                if ( this.isInterrupted() ) {
+                    logger.info("Socket reader thread interrupted");
                     return;
                 }
                 
-                // consuming new data from socket
-                synchronized (threadSynchro) {
-                    while (!areDataInSocket()) {
-                        try {
-                            threadSynchro.wait();
-                        } catch (InterruptedException ex) {
-                            logger.warn("Client caller thread interrupted while "
-                                    + "waiting on data from socket.");
-                            freeResources();
-                            return;
-                        }
-                    }
-                    consumeDataFromSocket();
+                // waiting for incomming datagrams
+                try {
+                    selector.select();
+                } catch ( IOException ex ) {
+                    logger.error("Error while waiting on data from socket", ex);
+                    return;
                 }
-                 
-                // remove data from queue and put send it to listener
-                while (!consumedData.isEmpty()) {
-                    PacketData packetData = consumedData.poll();
-                    
-                    if ( networkListener == null ) {
-                        continue;
-                    }
-                    
-                    boolean isAsync = false;
-                    short[] userData = null;
-                    
+                selector.selectedKeys().clear();
+                
+                // receive all available datagrams
+                while ( true ) {
+                    recvBuffer.clear();
+                    SocketAddress gwAddress = null;
                     try {
-                        isAsync = GWETH_DataTransformer.isAsynchronousMessage(packetData.data);
-                        if (isAsync) {
-                            userData = GWETH_DataTransformer.getDataFromMessage(packetData.data);
-                        }
-                    } catch (Exception e) {
-                        logger.error("Error while getting data from message: " + e.getMessage());
-                        continue;
+                        gwAddress = channel.receive(recvBuffer);
+                    } catch ( ClosedChannelException ex ) {
+                        logger.info("Socket reader thread - channel closed");
+                        return;
+                    } catch ( IOException ex ) {
+                        logger.error("Error while receiving message from socket", ex);
+                        break;
                     }
                     
-                    if ( isAsync ) {
-                        String networkId = connectionStorage.getNetworkId(packetData.connInfo);
-                        if ( networkId != null ) {
-                            networkListener.onGetData(new BaseNetworkData(userData, networkId)); 
-                        } else {
-                            // if no info about network ID is available, set null 
-                            logger.warn("No network found for connection");
-                            networkListener.onGetData(new BaseNetworkData(userData, null));
-                        }
+                    if ( gwAddress == null ) {
+                        break;
                     }
+                    processFrame(gwAddress, recvBuffer.position());
                 }
             }
         }
@@ -259,45 +359,48 @@ public final class UDPNetworkLayerMultinet extends AbstractNetworkLayer {
     // socket reader thread;
     private Thread socketReader = null;
     
-    // listener caller thread
-    private Thread listenerCaller = null;
-    
     // creates and starts threads
     private void createAndStartThreads() {
+        dispatcher = Executors.newFixedThreadPool(
+                DISPATCHER_THREADS_NUM, new DispatcherThreadFactory()
+        );
+        
         socketReader = new SocketReader();
         socketReader.start();
-        
-        listenerCaller = new ListenerCaller();
-        listenerCaller.start();
     }
     
-    // terminates socket reader and client caller threads
+    // terminates socket reader and dispatcher threads
     private void terminateThreads() {
         logger.debug("terminateThreads - start:");
         
         // termination signal to socket reader thread
         socketReader.interrupt();
         
-        // termination signal to listener caller thread
-        listenerCaller.interrupt();
+        // termination signal to dispatcher threads
+        dispatcher.shutdownNow();
         
         // Waiting for threads to terminate. Cancelling worker threads has higher 
         // priority than main thread interruption. 
-        while (socketReader.isAlive() || listenerCaller.isAlive()) {
+        boolean isInterrupted = false;
+        while ( socketReader.isAlive() || !dispatcher.isTerminated() ) {
             try {
-                if (socketReader.isAlive()) {
+                if ( socketReader.isAlive() ) {
                     socketReader.join();
                 }
-
-                if (listenerCaller.isAlive()) {
-                    listenerCaller.join();
+                
+                if ( !dispatcher.awaitTermination(TERMINATION_WAIT_TIMEOUT, TimeUnit.MILLISECONDS) ) {
+                    logger.warn("Termination - dispatcher threads still running");
                 }
             } catch (InterruptedException e) {
-                // restoring interrupt status
-                Thread.currentThread().interrupt();
+                isInterrupted = true;
                 logger.warn("Termination - UDP Client Network Layer interrupted");
             }
-        } 
+        }
+        
+        // restoring interrupt status
+        if ( isInterrupted ) {
+            Thread.currentThread().interrupt();
+        }
         
         logger.info("UDP Client Network Layer stopped.");
         logger.debug("terminateThreads - end");
@@ -336,7 +439,8 @@ public final class UDPNetworkLayerMultinet extends AbstractNetworkLayer {
      * @param maxRecvPacketSize maximal size of received packets [in bytes].
      * @param receptionTimeout timeout [in ms] of blocking waiting for reception 
      *                        of packet from the socket. {@code 0} means infinity
-     *                        waiting.
+     *                        waiting. Not used by this layer, checked only for 
+     *                        compatibility of configurations.
      */
     public UDPNetworkLayerMultinet(
             NetworkConnectionStorage connectionStorage,
@@ -354,7 +458,7 @@ public final class UDPNetworkLayerMultinet extends AbstractNetworkLayer {
         this.localPort = localPort;
         
         this.maxRecvPacketSize = checkMaxRecvPacketSize(maxRecvPacketSize);
-        this.receptionTimeout = checkReceptionTimeout(receptionTimeout);
+        checkReceptionTimeout(receptionTimeout);
     }
     
     /**
@@ -392,14 +496,19 @@ public final class UDPNetworkLayerMultinet extends AbstractNetworkLayer {
         logger.debug("startReceivingData - start:");
         
         try {
-            socket = new DatagramSocket(localPort, localAddress);
-            socket.setSoTimeout(receptionTimeout);
+            channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(localAddress, localPort));
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+            writeSelector = Selector.open();
+            channel.register(writeSelector, SelectionKey.OP_WRITE);
         } catch (IOException ex) {
             throw new NetworkLayerException(ex);
         }
+        sendBuffer = ByteBuffer.allocateDirect(maxRecvPacketSize);
         
-        // init queue of data comming from socket
-        dataFromSocket = new LinkedList<PacketData>();
+        initNetworkIds();
         
         // creating and starting threads
         createAndStartThreads();
@@ -432,21 +541,33 @@ public final class UDPNetworkLayerMultinet extends AbstractNetworkLayer {
         UDPConnectionInfo udpInfo = (UDPConnectionInfo) connInfo;
         
         // transforms request's data to protocol format defined by GW
-        short[] dataForGW = GWETH_DataTransformer.transformRequestData(networkData.getData());
-        
-        // conversion data to bytes
-        byte[] buf = new byte[dataForGW.length];
-        for (int item = 0; item < dataForGW.length; item++) {
-            buf[item] = (byte)(dataForGW[item] & 0xFF);
-        }
-        
-        DatagramPacket packet = new DatagramPacket(buf, buf.length, 
-                    udpInfo.getAddress(), udpInfo.getPort()
+        byte[] buf = GWETH_DataTransformer.transformRequestData(
+                PacketNetworkData.toPacket(networkData)
         );
         
         try {
-            synchronized(socketSynchro) {
-                socket.send(packet);
+            synchronized( sendSynchro ) {
+                if ( sendBuffer.capacity() < buf.length ) {
+                    sendBuffer = ByteBuffer.allocateDirect(buf.length);
+                }
+                sendBuffer.clear();
+                sendBuffer.put(buf);
+                sendBuffer.flip();
+                
+                // the channel is non-blocking, so if there is no space in
+                // the socket buffer, wait until the channel is ready for sending
+                SocketAddress target = new InetSocketAddress(udpInfo.getAddress(), udpInfo.getPort());
+                long waitEndTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SEND_WAIT_TIMEOUT);
+                while ( channel.send(sendBuffer, target) == 0 ) {
+                    long waitTime = TimeUnit.NANOSECONDS.toMillis(waitEndTime - System.nanoTime());
+                    if ( waitTime <= 0 ) {
+                        throw new NetworkLayerException(
+                                "Sending data to socket failed: no space in socket buffer"
+                        );
+                    }
+                    writeSelector.select(waitTime);
+                    writeSelector.selectedKeys().clear();
+                }
             }
         } catch (IOException ex) {
             logger.error("Sending data to socket failed: " + ex.getMessage());
@@ -462,7 +583,13 @@ public final class UDPNetworkLayerMultinet extends AbstractNetworkLayer {
         
         unregisterListener();
         terminateThreads();
-        socket.close();
+        try {
+            selector.close();
+            writeSelector.close();
+            channel.close();
+        } catch ( IOException ex ) {
+            logger.error("Error while closing channel", ex);
+        }
         freeResources();
         
         logger.info("Destroyed");
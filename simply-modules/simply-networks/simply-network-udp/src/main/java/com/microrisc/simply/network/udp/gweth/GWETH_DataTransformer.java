@@ -16,9 +16,14 @@
 
 package com.microrisc.simply.network.udp.gweth;
 
+import com.microrisc.simply.BytePacket;
+
 /**
  * Transformation of Simply data to and from GW-ETH-01 protocol. 
  * <p>
+ * Messages are processed as bytes. Methods working with the {@code short[]}
+ * form of data are kept for compatibility and convert the data to bytes.
+ * <p>
  * CRC computation was adopted from 
  * <a href="http://introcs.cs.princeton.edu/java/51data/CRC16CCITT.java.html">
  * http://introcs.cs.princeton.edu/java/51data/CRC16CCITT.java.html</a>
@@ -54,45 +59,45 @@ public class GWETH_DataTransformer {
     
     
     /** Returns value of data length fields in specified message. */
-    private static int getDataSizeField(short[] data) {
-        return data[DLEN_L_POS] + (data[DLEN_H_POS] << 8);   
+    private static int getDataSizeField(byte[] data) {
+        return (data[DLEN_L_POS] & 0xFF) + ((data[DLEN_H_POS] & 0xFF) << 8);   
     }
     
     /** Returns value CRC of fields in specified message. */
-    private static int getCRCField(short[] data) {
-        return data[data.length - 1] + (data[data.length - 2] << 8);
+    private static int getCRCField(byte[] data, int length) {
+        return (data[length - 1] & 0xFF) + ((data[length - 2] & 0xFF) << 8);
     }
     
     /** Checks specified request to be sent to GW. */
-    private static void checkRequest(short[] dataToTransform) {
-        if (dataToTransform.length > MAX_DATA_LENGTH) {
+    private static void checkRequest(BytePacket dataToTransform) {
+        if (dataToTransform.length() > MAX_DATA_LENGTH) {
             throw new IllegalArgumentException("Maximal size of data to transform "
                     + " cannot be greather then" + MAX_DATA_LENGTH);
         }
     }
     
     /** Checks data length of specified mesage. */
-    private static void checkMessageLength(short[] messageFromGW) {
-        if (messageFromGW.length < (HEADER_SIZE + CRC_SIZE)) {
+    private static void checkMessageLength(byte[] messageFromGW, int length) {
+        if (length < (HEADER_SIZE + CRC_SIZE)) {
             throw new IllegalArgumentException("Size of GW message must be at minimal"
                     + (HEADER_SIZE + CRC_SIZE) + " bytes long.");
         }
         
-        if (messageFromGW.length > (HEADER_SIZE + MAX_DATA_LENGTH + CRC_SIZE)) {
+        if (length > (HEADER_SIZE + MAX_DATA_LENGTH + CRC_SIZE)) {
             throw new IllegalArgumentException("Size of GW message cannot be greather"
                     + "then " + (HEADER_SIZE + MAX_DATA_LENGTH + CRC_SIZE) + " bytes long.");
         }
         
         int dataSize = getDataSizeField(messageFromGW);
-        if (dataSize != (messageFromGW.length - (HEADER_SIZE + CRC_SIZE)) ) {
+        if (dataSize != (length - (HEADER_SIZE + CRC_SIZE)) ) {
             throw new IllegalArgumentException("Message size mismatch: " + dataSize + ". "
-                    + " It should be: " + (messageFromGW.length - (HEADER_SIZE + CRC_SIZE)));
+                    + " It should be: " + (length - (HEADER_SIZE + CRC_SIZE)));
         }
     }
     
     /** Checks CRC of specified message. */
-    private static void checkMessageCRC(short[] messageFromGW) {
-        int crc = getCRCField(messageFromGW);
+    private static void checkMessageCRC(byte[] messageFromGW, int length) {
+        int crc = getCRCField(messageFromGW, length);
 
         int crcCalculated = calculateCRC_microrisc(messageFromGW, 0, 
                 HEADER_SIZE + getDataSizeField(messageFromGW));
@@ -106,29 +111,29 @@ public class GWETH_DataTransformer {
     }
     
     /** Checks GW identification of specified message. */
-    private static void checkMessageGWIdentification(short[] messageFromGW) {
-        if (messageFromGW[GW_ADR_POS] != GW_ADR_VALUE) {
+    private static void checkMessageGWIdentification(byte[] messageFromGW) {
+        if ((messageFromGW[GW_ADR_POS] & 0xFF) != GW_ADR_VALUE) {
             throw new IllegalArgumentException("GW identification mismatch: " + 
-                    messageFromGW[GW_ADR_POS]);
+                    (messageFromGW[GW_ADR_POS] & 0xFF));
         }
     }
     
     /** Checks GW identification of specified message. */
-    private static void checkMessageAsynchronity(short[] messageFromGW) {
-        if ( messageFromGW[SUBCMD_POS] != SUBCMD_ASYNC_VALUE ) {
+    private static void checkMessageAsynchronity(byte[] messageFromGW) {
+        if ( (messageFromGW[SUBCMD_POS] & 0xFF) != SUBCMD_ASYNC_VALUE ) {
             throw new IllegalArgumentException("GW asynchronity identification mismatch: " + 
-                    messageFromGW[SUBCMD_POS]);
+                    (messageFromGW[SUBCMD_POS] & 0xFF));
         }
     }
     
     /** Checks message from GW. */
-    private static void checkMessageFromGW(short[] messageFromGW) {
-        checkMessageLength(messageFromGW);
-        checkMessageCRC(messageFromGW);
+    private static void checkMessageFromGW(byte[] messageFromGW, int length) {
+        checkMessageLength(messageFromGW, length);
+        checkMessageCRC(messageFromGW, length);
         checkMessageGWIdentification(messageFromGW);
         
         // if the message has indication of asynchronity, check it
-        if (messageFromGW[CMD_POS] == CMD_ASYNC_VALUE) {
+        if ((messageFromGW[CMD_POS] & 0xFF) == CMD_ASYNC_VALUE) {
             checkMessageAsynchronity(messageFromGW);
         }
     }
@@ -137,12 +142,12 @@ public class GWETH_DataTransformer {
      * Calculates CRC on specified data.
      * Taken from other {@link http://introcs.cs.princeton.edu/java/51data/CRC16CCITT.java.html} site.
      */
-    private static int calculateCRC(short[] data, int firstIndex, int byteCount) {
+    private static int calculateCRC(byte[] data, int firstIndex, int byteCount) {
         int crc = 0xFFFF;          // initial value
         int polynomial = 0x1021;   // 0001 0000 0010 0001  (0, 5, 12) 
 
         for (int index = firstIndex; index < (firstIndex + byteCount); index++) {
-            short b = data[index];
+            int b = data[index] & 0xFF;
             for (int i = 0; i < 8; i++) {
                 boolean bit = ((b   >> (7-i) & 1) == 1);
                 boolean c15 = ((crc >> 15    & 1) == 1);
@@ -161,10 +166,10 @@ public class GWETH_DataTransformer {
      * Calculates CRC on specified data.
      * Taken from the Microrisc implementation.
      */
-    private static int calculateCRC_microrisc(short[] data, int firstIndex, int byteCount) {
-        int crcDbyte = data[firstIndex];
+    private static int calculateCRC_microrisc(byte[] data, int firstIndex, int byteCount) {
+        int crcDbyte = data[firstIndex] & 0xFF;
         crcDbyte <<= 8;
-        crcDbyte |= data[firstIndex + 1];
+        crcDbyte |= data[firstIndex + 1] & 0xFF;
         
         int currentData = firstIndex + 2;
         short temp = 0;
@@ -212,27 +217,76 @@ public class GWETH_DataTransformer {
      * @param data request data to transform
      * @return transformed data - message for GW
      */
-    public static short[] transformRequestData(short[] data) {
+    public static byte[] transformRequestData(BytePacket data) {
         checkRequest(data);
-        short[] transformedData = new short[HEADER_SIZE + data.length + CRC_SIZE];
+        int dataLength = data.length();
+        byte[] transformedData = new byte[HEADER_SIZE + dataLength + CRC_SIZE];
          
         transformedData[GW_ADR_POS] = GW_ADR_VALUE;
         transformedData[CMD_POS] = CMD_WRITE_VALUE;
         transformedData[SUBCMD_POS] = SUBCMD_WRITE_VALUE;
         
-        System.arraycopy(data, 0, transformedData, HEADER_SIZE, data.length);
+        data.copyTo(transformedData, HEADER_SIZE);
         
-        transformedData[DLEN_H_POS] = (short)((data.length & 0xFF00) >> 8);
-        transformedData[DLEN_L_POS] = (short)(data.length & 0xFF);
+        transformedData[DLEN_H_POS] = (byte)((dataLength & 0xFF00) >> 8);
+        transformedData[DLEN_L_POS] = (byte)(dataLength & 0xFF);
         
-        int crc = calculateCRC_microrisc(transformedData, 0, HEADER_SIZE + data.length);
+        int crc = calculateCRC_microrisc(transformedData, 0, HEADER_SIZE + dataLength);
         
-        transformedData[HEADER_SIZE + data.length] = (short)((crc & 0xFF00) >> 8);
-        transformedData[HEADER_SIZE + data.length+1] = (short)(crc & 0xFF);
+        transformedData[HEADER_SIZE + dataLength] = (byte)((crc & 0xFF00) >> 8);
+        transformedData[HEADER_SIZE + dataLength + 1] = (byte)(crc & 0xFF);
         
         return transformedData;
     }
     
+    /**
+     * Transform specified Simply request data into GW message format.
+     * @param data request data to transform
+     * @return transformed data - message for GW
+     */
+    public static short[] transformRequestData(short[] data) {
+        return BytePacket.wrap(transformRequestData(BytePacket.fromShorts(data))).toShortArray();
+    }
+    
+    /**
+     * Returns {@code true} if the specified message is asynchrounous message.
+     * @param message message to check for asynchronity
+     * @return {@code true} if the specified message is asynchrounous message <br>
+     *         {@code false} otherwise
+     */
+    public static boolean isAsynchronousMessage(BytePacket message) {
+        return isAsynchronousMessage(message.array(), message.length());
+    }
+    
+    /**
+     * Returns {@code true} if the specified message is asynchrounous message.
+     * @param buffer buffer containing the message at its beginning
+     * @param length length of the message
+     * @return {@code true} if the specified message is asynchrounous message <br>
+     *         {@code false} otherwise
+     */
+    public static boolean isAsynchronousMessage(byte[] buffer, int length) {
+        checkMessageFromGW(buffer, length);
+        return ((buffer[CMD_POS] & 0xFF) == CMD_ASYNC_VALUE);
+    }
+    
+    /**
+     * Returns copy of DATA part of specified GW message, if the message is 
+     * asynchrounous message. The message is checked only once, in the buffer.
+     * @param buffer buffer containing the message at its beginning
+     * @param length length of the message
+     * @return DATA part of the message, if it is asynchrounous message <br>
+     *         {@code null} otherwise
+     * @throws IllegalArgumentException if the message is not valid GW message
+     */
+    public static BytePacket getAsynchronousData(byte[] buffer, int length) {
+        checkMessageFromGW(buffer, length);
+        if ( (buffer[CMD_POS] & 0xFF) != CMD_ASYNC_VALUE ) {
+            return null;
+        }
+        return BytePacket.copyOf(buffer, HEADER_SIZE, getDataSizeField(buffer));
+    }
+    
     /**
      * Returns {@code true} if the specified message is asynchrounous message.
      * @param message message to check for asynchronity
@@ -240,10 +294,21 @@ public class GWETH_DataTransformer {
      *         {@code false} otherwise
      */
     public static boolean isAsynchronousMessage(short[] message) {
-        checkMessageFromGW(message);
-        return (message[CMD_POS] == CMD_ASYNC_VALUE);
+        return isAsynchronousMessage(BytePacket.fromShorts(message));
     } 
     
+    /**
+     * Returns {@code true} if the specified message has answer indication, i.e.
+     * bit 7 of CMD is set.
+     * @param message message to check
+     * @return {@code true} if the specified message has answer indication <br>
+     *         {@code false} otherwise
+     */
+    public static boolean hasAnswerIndication(BytePacket message) {
+        checkMessageFromGW(message.array(), message.length());
+        return ((message.get(CMD_POS) & CMD_ANSWER_INDICATION) == CMD_ANSWER_INDICATION);  
+    }
+    
     /**
      * Returns {@code true} if the specified message has answer indication, i.e.
      * bit 7 of CMD is set.
@@ -252,8 +317,27 @@ public class GWETH_DataTransformer {
      *         {@code false} otherwise
      */
     public static boolean hasAnswerIndication(short[] message) {
-        checkMessageFromGW(message);
-        return ((message[CMD_POS] & CMD_ANSWER_INDICATION) == CMD_ANSWER_INDICATION);  
+        return hasAnswerIndication(BytePacket.fromShorts(message));
+    }
+    
+    /**
+     * Returns DATA part of specified GW message. 
+     * @param messageFromGW source message from GW
+     * @return DATA part of specified GW message
+     */
+    public static BytePacket getDataFromMessage(BytePacket messageFromGW) {
+        return getDataFromMessage(messageFromGW.array(), messageFromGW.length());
+    }
+    
+    /**
+     * Returns copy of DATA part of specified GW message.
+     * @param buffer buffer containing source message from GW at its beginning
+     * @param length length of the message
+     * @return DATA part of specified GW message
+     */
+    public static BytePacket getDataFromMessage(byte[] buffer, int length) {
+        checkMessageFromGW(buffer, length);
+        return BytePacket.copyOf(buffer, HEADER_SIZE, getDataSizeField(buffer));
     }
     
     /**
@@ -262,15 +346,6 @@ public class GWETH_DataTransformer {
      * @return DATA part of specified GW message
      */
     public static short[] getDataFromMessage(short[] messageFromGW) {
-        checkMessageFromGW(messageFromGW);
-        
-        int dataSize = getDataSizeField(messageFromGW);
-        if (dataSize == 0) {
-            return new short[0];
-        }
-        
-        short[] data = new short[dataSize];
-        System.arraycopy(messageFromGW, HEADER_SIZE, data, 0, dataSize);
-        return data;
+        return getDataFromMessage(BytePacket.fromShorts(messageFromGW)).toShortArray();
     }
 }
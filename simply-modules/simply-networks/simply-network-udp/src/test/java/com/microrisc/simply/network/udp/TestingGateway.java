@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.udp;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.Arrays;
+
+/**
+ * Testing GW-ETH gateway, which communicates through a socket bound to
+ * the loopback address.
+ *
+ * @author agent
+ */
+final class TestingGateway {
+    // size of header of messages of the gateway
+    private static final int HEADER_SIZE = 9;
+
+    // size of CRC of messages of the gateway
+    private static final int CRC_SIZE = 2;
+
+    // timeout of reception of datagrams [in ms]
+    private static final int RECEPTION_TIMEOUT = 5000;
+
+    private final DatagramSocket socket;
+
+
+    // shifts specified bit into specified CRC
+    private static int shiftBit(int crc, int bit) {
+        crc = (crc << 1) | bit;
+        if ( (crc & 0x10000) != 0 ) {
+            crc ^= 0x11021;
+        }
+        return crc;
+    }
+
+    /**
+     * Returns CRC of first {@code length} bytes of specified message, i.e.
+     * remainder of division of the message followed by 16 zero bits by 
+     * the CRC polynomial of the gateway.
+     */
+    static int calculateCRC(byte[] message, int length) {
+        int crc = 0;
+        for ( int i = 0; i < length; i++ ) {
+            for ( int bit = 7; bit >= 0; bit-- ) {
+                crc = shiftBit(crc, (message[i] >> bit) & 1);
+            }
+        }
+        for ( int bit = 0; bit < 16; bit++ ) {
+            crc = shiftBit(crc, 0);
+        }
+        return crc;
+    }
+
+    /**
+     * Creates asynchronous message of the gateway, which contains specified data.
+     */
+    static byte[] createAsynchronousMessage(byte... data) {
+        byte[] message = new byte[HEADER_SIZE + data.length + CRC_SIZE];
+        message[0] = 0x22;
+        message[1] = 0x04;
+        message[7] = (byte)(data.length >> 8);
+        message[8] = (byte)data.length;
+        System.arraycopy(data, 0, message, HEADER_SIZE, data.length);
+
+        int crc = calculateCRC(message, HEADER_SIZE + data.length);
+        message[HEADER_SIZE + data.length] = (byte)(crc >> 8);
+        message[HEADER_SIZE + data.length + 1] = (byte)crc;
+        return message;
+    }
+
+    /**
+     * Returns data of specified message of the gateway.
+     */
+    static byte[] getData(byte[] message) {
+        return Arrays.copyOfRange(message, HEADER_SIZE, message.length - CRC_SIZE);
+    }
+
+    /**
+     * Returns number of a port, which is free on the loopback address.
+     */
+    static int getFreePort() throws SocketException {
+        DatagramSocket freeSocket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        try {
+            return freeSocket.getLocalPort();
+        } finally {
+            freeSocket.close();
+        }
+    }
+
+
+    TestingGateway() throws SocketException {
+        socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        socket.setSoTimeout(RECEPTION_TIMEOUT);
+    }
+
+    InetAddress getAddress() {
+        return socket.getLocalAddress();
+    }
+
+    int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Sends specified message to specified port on the loopback address.
+     */
+    void send(byte[] message, int port) throws IOException {
+        socket.send(new DatagramPacket(message, message.length,
+                InetAddress.getLoopbackAddress(), port
+        ));
+    }
+
+    /**
+     * Receives next datagram.
+     */
+    byte[] receive() throws IOException {
+        byte[] buffer = new byte[1024];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        socket.receive(packet);
+        return Arrays.copyOf(buffer, packet.getLength());
+    }
+
+    void close() {
+        socket.close();
+    }
+}
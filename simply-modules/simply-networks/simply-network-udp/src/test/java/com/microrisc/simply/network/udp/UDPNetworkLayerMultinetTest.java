@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.udp;
+
+import com.microrisc.simply.NetworkData;
+import com.microrisc.simply.NetworkLayerListener;
+import com.microrisc.simply.network.AbstractNetworkConnectionInfo;
+import com.microrisc.simply.network.BaseNetworkConnectionStorage;
+import com.microrisc.simply.network.BaseNetworkData;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of UDPNetworkLayerMultinet.
+ *
+ * @author agent
+ */
+public class UDPNetworkLayerMultinetTest {
+
+    // real time to wait for received data [in seconds]
+    private static final long WAIT_TIMEOUT = 5;
+
+    // records received data
+    private static class RecordingListener implements NetworkLayerListener {
+        final BlockingQueue<NetworkData> receivedData = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onGetData(NetworkData data) {
+            receivedData.add(data);
+        }
+
+        NetworkData awaitData() throws InterruptedException {
+            NetworkData data = receivedData.poll(WAIT_TIMEOUT, TimeUnit.SECONDS);
+            assertNotNull(data);
+            return data;
+        }
+    }
+
+    private TestingGateway firstGateway;
+    private TestingGateway secondGateway;
+    private int localPort;
+    private RecordingListener listener;
+    private UDPNetworkLayerMultinet networkLayer;
+
+    @Before
+    public void setUp() throws Exception {
+        firstGateway = new TestingGateway();
+        secondGateway = new TestingGateway();
+        localPort = TestingGateway.getFreePort();
+
+        Map<String, AbstractNetworkConnectionInfo> idToConnInfo = new HashMap<>();
+        Map<AbstractNetworkConnectionInfo, String> connInfoToId = new HashMap<>();
+        TestingGateway[] gateways = { firstGateway, secondGateway };
+        for ( int i = 0; i < gateways.length; i++ ) {
+            AbstractNetworkConnectionInfo connInfo = new BaseUDPConnectionInfo(
+                    gateways[i].getAddress(), gateways[i].getPort()
+            );
+            idToConnInfo.put(String.valueOf(i + 1), connInfo);
+            connInfoToId.put(connInfo, String.valueOf(i + 1));
+        }
+
+        networkLayer = new UDPNetworkLayerMultinet(
+                new BaseNetworkConnectionStorage(idToConnInfo, connInfoToId),
+                "127.0.0.1", localPort
+        );
+        listener = new RecordingListener();
+        networkLayer.registerListener(listener);
+        networkLayer.start();
+    }
+
+    @After
+    public void tearDown() {
+        networkLayer.destroy();
+        firstGateway.close();
+        secondGateway.close();
+    }
+
+    /**
+     * Data of each gateway is delivered with ID of the network of the gateway,
+     * data of one network in the order of reception.
+     */
+    @Test
+    public void testNetworksOfGateways() throws Exception {
+        for ( int i = 0; i < 50; i++ ) {
+            firstGateway.send(TestingGateway.createAsynchronousMessage((byte)i), localPort);
+            secondGateway.send(TestingGateway.createAsynchronousMessage((byte)(100 + i)), localPort);
+        }
+
+        Map<String, List<Short>> receivedValues = new HashMap<>();
+        receivedValues.put("1", new ArrayList<Short>());
+        receivedValues.put("2", new ArrayList<Short>());
+        for ( int i = 0; i < 100; i++ ) {
+            NetworkData data = listener.awaitData();
+            receivedValues.get(data.getNetworkId()).add(data.getData()[0]);
+        }
+
+        for ( int i = 0; i < 50; i++ ) {
+            assertEquals(i, (short)receivedValues.get("1").get(i));
+            assertEquals(100 + i, (short)receivedValues.get("2").get(i));
+        }
+    }
+
+    /**
+     * Data of unknown gateway is delivered without ID of network.
+     */
+    @Test
+    public void testUnknownGateway() throws Exception {
+        TestingGateway unknownGateway = new TestingGateway();
+        try {
+            unknownGateway.send(TestingGateway.createAsynchronousMessage((byte)7), localPort);
+
+            NetworkData data = listener.awaitData();
+            assertNull(data.getNetworkId());
+            assertArrayEquals(new short[] { 7 }, data.getData());
+        } finally {
+            unknownGateway.close();
+        }
+    }
+
+    /**
+     * Sent data arrives to the gateway of its network.
+     */
+    @Test
+    public void testSendData() throws Exception {
+        networkLayer.sendData(new BaseNetworkData(new short[] { 1, 2 }, "2"));
+        networkLayer.sendData(new BaseNetworkData(new short[] { 3 }, "1"));
+
+        assertArrayEquals(new byte[] { 1, 2 }, TestingGateway.getData(secondGateway.receive()));
+        assertArrayEquals(new byte[] { 3 }, TestingGateway.getData(firstGateway.receive()));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.udp;
+
+import com.microrisc.simply.BytePacket;
+import com.microrisc.simply.NetworkData;
+import com.microrisc.simply.NetworkLayerListener;
+import com.microrisc.simply.network.AbstractNetworkConnectionInfo;
+import com.microrisc.simply.network.BaseNetworkConnectionStorage;
+import com.microrisc.simply.network.BaseNetworkData;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of UDPNetworkLayer.
+ *
+ * @author agent
+ */
+public class UDPNetworkLayerTest {
+
+    // maximal size of packets received by the tested layer [in bytes]
+    private static final int MAX_RECV_PACKET_SIZE = 100;
+
+    // real time to wait for received data [in seconds]
+    private static final long WAIT_TIMEOUT = 5;
+
+    // records received data
+    private static class RecordingListener implements NetworkLayerListener {
+        final BlockingQueue<NetworkData> receivedData = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onGetData(NetworkData data) {
+            receivedData.add(data);
+        }
+
+        NetworkData awaitData() throws InterruptedException {
+            NetworkData data = receivedData.poll(WAIT_TIMEOUT, TimeUnit.SECONDS);
+            assertNotNull(data);
+            return data;
+        }
+    }
+
+    private TestingGateway gateway;
+    private int localPort;
+    private RecordingListener listener;
+    private UDPNetworkLayer networkLayer;
+
+    private static short[] toShorts(byte[] data) {
+        return BytePacket.wrap(data).toShortArray();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        gateway = new TestingGateway();
+        localPort = TestingGateway.getFreePort();
+
+        AbstractNetworkConnectionInfo connInfo
+                = new BaseUDPConnectionInfo(gateway.getAddress(), gateway.getPort());
+        Map<String, AbstractNetworkConnectionInfo> idToConnInfo = new HashMap<>();
+        idToConnInfo.put("1", connInfo);
+        Map<AbstractNetworkConnectionInfo, String> connInfoToId = new HashMap<>();
+        connInfoToId.put(connInfo, "1");
+
+        networkLayer = new UDPNetworkLayer(
+                new BaseNetworkConnectionStorage(idToConnInfo, connInfoToId),
+                "127.0.0.1", localPort, "127.0.0.1", gateway.getPort(),
+                MAX_RECV_PACKET_SIZE
+        );
+        listener = new RecordingListener();
+        networkLayer.registerListener(listener);
+        networkLayer.start();
+    }
+
+    @After
+    public void tearDown() {
+        networkLayer.destroy();
+        gateway.close();
+    }
+
+    /**
+     * Data of asynchronous message of the gateway is delivered to the listener
+     * with ID of the network of the gateway.
+     */
+    @Test
+    public void testAsynchronousMessage() throws Exception {
+        gateway.send(TestingGateway.createAsynchronousMessage((byte)1, (byte)2, (byte)3), localPort);
+
+        NetworkData data = listener.awaitData();
+        assertEquals("1", data.getNetworkId());
+        assertArrayEquals(new short[] { 1, 2, 3 }, data.getData());
+    }
+
+    /**
+     * Datagram exceeding maximal size of received packets is discarded and
+     * it doesn't affect reception of next datagrams.
+     */
+    @Test
+    public void testOversizedDatagramDiscarded() throws Exception {
+        byte[] oversizedMessage = TestingGateway.createAsynchronousMessage(
+                new byte[MAX_RECV_PACKET_SIZE]
+        );
+        assertTrue(oversizedMessage.length > MAX_RECV_PACKET_SIZE);
+        gateway.send(oversizedMessage, localPort);
+        gateway.send(TestingGateway.createAsynchronousMessage((byte)5), localPort);
+
+        assertArrayEquals(new short[] { 5 }, listener.awaitData().getData());
+        assertNull(listener.receivedData.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Sent data arrives to the gateway in the format of the gateway.
+     */
+    @Test
+    public void testSendData() throws Exception {
+        byte[] data = new byte[] { 1, 2, 3 };
+        networkLayer.sendData(new BaseNetworkData(toShorts(data), "1"));
+
+        byte[] message = gateway.receive();
+        assertEquals(0x22, message[0]);
+        assertEquals(0x03, message[1]);
+        assertArrayEquals(data, TestingGateway.getData(message));
+        int crc = ((message[message.length - 2] & 0xFF) << 8) + (message[message.length - 1] & 0xFF);
+        assertEquals(TestingGateway.calculateCRC(message, message.length - 2), crc);
+    }
+}
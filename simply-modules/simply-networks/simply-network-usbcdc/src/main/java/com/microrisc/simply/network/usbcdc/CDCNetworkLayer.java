@@ -39,6 +39,10 @@ import org.slf4j.LoggerFactory;
  * object. All data comming from CDC interface is forwarder to user's registered
  * network listener. All data designated to underlaying network are forwarded to
  * J_CDCImpl's {@code J_CDCImpl} method.
+ * <p>
+ * CDC interface is accessed through {@link CDCPort}, so it can be replaced,
+ * e.g. by a fake for testing. Data is sent immediately, pauses are done only
+ * between repeated sending attempts.
  * 
  * @author Michal Konopa
  * @author Rostislav Spinar
@@ -53,7 +57,7 @@ public final class CDCNetworkLayer
     private final String portName;
 
     /** Reference to CDC-object for communication. */
-    private J_CDCImpl cdcImpl = null;
+    private CDCPort cdcPort = null;
 
     /** Registered network listener. */
     private NetworkLayerListener networkListener = null;
@@ -70,11 +74,42 @@ public final class CDCNetworkLayer
      * Maximal number of CDC retries.
      */
     private int maxCdcStatusRetries;
+    
+    /**
+     * Default pause between sending attempts, when the gateway has not 
+     * accepted the data [in ms].
+     */
+    public static long SEND_RETRY_PAUSE = 50;
+    
+    
+    /** CDC port delegating to {@code J_CDCImpl}. */
+    private static final class J_CDCPort implements CDCPort {
+        private final J_CDCImpl cdcImpl;
+        
+        J_CDCPort(J_CDCImpl cdcImpl) {
+            this.cdcImpl = cdcImpl;
+        }
+        
+        @Override
+        public J_DSResponse sendData(short[] data) throws Exception {
+            return cdcImpl.sendData(data);
+        }
 
+        @Override
+        public void registerAsyncListener(J_AsyncMsgListener listener) {
+            cdcImpl.registerAsyncListener(listener);
+        }
+
+        @Override
+        public void unregisterAsyncListener() {
+            cdcImpl.unregisterAsyncListener();
+        }
+    }
+    
     
     /** Frees up used resources. */
     private void freeResources() {
-        cdcImpl = null;
+        cdcPort = null;
         connectionStorage = null;
     }
 
@@ -96,6 +131,13 @@ public final class CDCNetworkLayer
         }
         return portName;
     }
+    
+    private static CDCPort checkCdcPort(CDCPort cdcPort) {
+        if ( cdcPort == null ) {
+            throw new IllegalArgumentException("CDC port cannot be null");
+        }
+        return cdcPort;
+    }
 
     
     /**
@@ -108,9 +150,21 @@ public final class CDCNetworkLayer
     public CDCNetworkLayer(NetworkConnectionStorage connectionStorage, String portName)
             throws J_CDCImplException, Exception 
     {
+        this(connectionStorage, portName, new J_CDCPort(new J_CDCImpl(checkPortName(portName))));
+    }
+    
+    /**
+     * Creates CDC network layer object, which uses specified CDC port.
+     * @param connectionStorage storage of network COM-port connections
+     * @param portName COM-port name for communication
+     * @param cdcPort CDC port to use for communication
+     */
+    public CDCNetworkLayer(
+            NetworkConnectionStorage connectionStorage, String portName, CDCPort cdcPort
+    ) {
         super(checkStorage(connectionStorage));
         this.portName = checkPortName(portName);
-        this.cdcImpl = new J_CDCImpl(portName);
+        this.cdcPort = checkCdcPort(cdcPort);
         this.connectionInfo = new BaseCOMPortConnectionInfo(portName);
         this.maxCdcStatusRetries = MAX_CDC_STATUS_RETRIES;
     }
@@ -123,7 +177,7 @@ public final class CDCNetworkLayer
 
     @Override
     public void unregisterListener() {
-        cdcImpl.unregisterAsyncListener();
+        cdcPort.unregisterAsyncListener();
         networkListener = null;
 
         logger.info("Listener unregistered");
@@ -137,7 +191,7 @@ public final class CDCNetworkLayer
         logger.debug("startReceivingData - start:");
 
         // register this as a listener of asynchronous messages from network interface
-        this.cdcImpl.registerAsyncListener(this);
+        this.cdcPort.registerAsyncListener(this);
 
         logger.debug("startReceivingData - end");
     }
@@ -172,12 +226,14 @@ public final class CDCNetworkLayer
             int attempt = 0;
 
             while (attempt++ < maxCdcStatusRetries) {
-                // have some space before sending another request
-                Thread.sleep(50);
+                // have some space before next attempt
+                if ( attempt > 1 ) {
+                    Thread.sleep(SEND_RETRY_PAUSE);
+                }
 
                 // doesn't care about network ID - sends all data to COM-port set
                 // in the constructor
-                J_DSResponse response = cdcImpl.sendData(networkData.getData());
+                J_DSResponse response = cdcPort.sendData(networkData.getData());
                 logger.info("Writing thread CDC response: {}", response.getRespValue());
 
                 if (response.getRespValue() == J_DSResponse.OK.getRespValue()) {
@@ -203,7 +259,7 @@ public final class CDCNetworkLayer
     public void destroy() {
         logger.debug("destroy - start: ");
 
-        cdcImpl.unregisterAsyncListener();
+        cdcPort.unregisterAsyncListener();
         freeResources();
 
         logger.info("Destroyed");
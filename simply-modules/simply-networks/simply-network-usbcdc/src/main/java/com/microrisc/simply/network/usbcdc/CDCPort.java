@@ -0,0 +1,51 @@
+/* 
+ * Copyright 2016 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.usbcdc;
+
+import com.microrisc.cdc.J_AsyncMsgListener;
+import com.microrisc.cdc.J_DSResponse;
+
+/**
+ * Access to CDC interface of USB device, which is used by 
+ * {@link CDCNetworkLayer}.
+ * <p>
+ * Default implementation delegates to {@code J_CDCImpl}. Other implementations,
+ * e.g. fakes for testing, can be passed into the network layer.
+ * 
+ * @author agent
+ */
+public interface CDCPort {
+    
+    /**
+     * Sends specified data to the device.
+     * @param data data to send
+     * @return response of the device
+     * @throws Exception if an error has occured during sending
+     */
+    J_DSResponse sendData(short[] data) throws Exception;
+    
+    /**
+     * Registers specified listener of asynchronous messages from the device.
+     * @param listener listener to register
+     */
+    void registerAsyncListener(J_AsyncMsgListener listener);
+    
+    /**
+     * Unregisters the listener of asynchronous messages.
+     */
+    void unregisterAsyncListener();
+}
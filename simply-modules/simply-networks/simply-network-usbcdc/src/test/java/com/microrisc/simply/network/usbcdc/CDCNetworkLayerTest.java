@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014 MICRORISC s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microrisc.simply.network.usbcdc;
+
+import com.microrisc.cdc.J_AsyncMsgListener;
+import com.microrisc.cdc.J_DSResponse;
+import com.microrisc.simply.NetworkData;
+import com.microrisc.simply.NetworkLayerListener;
+import com.microrisc.simply.network.AbstractNetworkConnectionInfo;
+import com.microrisc.simply.network.BaseNetworkConnectionStorage;
+import com.microrisc.simply.network.BaseNetworkData;
+import com.microrisc.simply.network.NetworkLayerException;
+import com.microrisc.simply.network.comport.BaseCOMPortConnectionInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of sending and receiving of CDCNetworkLayer. CDC interface is
+ * replaced by a fake CDC port.
+ *
+ * @author agent
+ */
+public class CDCNetworkLayerTest {
+
+    // fake CDC port answering by prepared responses, OK by default
+    private static class FakeCDCPort implements CDCPort {
+        final Queue<J_DSResponse> responses = new LinkedList<>();
+        final List<short[]> sentData = Collections.synchronizedList(new ArrayList<short[]>());
+        volatile J_AsyncMsgListener asyncListener = null;
+
+        @Override
+        public synchronized J_DSResponse sendData(short[] data) throws Exception {
+            sentData.add(data);
+            J_DSResponse response = responses.poll();
+            return ( response != null )? response : J_DSResponse.OK;
+        }
+
+        @Override
+        public void registerAsyncListener(J_AsyncMsgListener listener) {
+            asyncListener = listener;
+        }
+
+        @Override
+        public void unregisterAsyncListener() {
+            asyncListener = null;
+        }
+    }
+
+    // records received data
+    private static class RecordingListener implements NetworkLayerListener {
+        final List<NetworkData> receivedData
+                = Collections.synchronizedList(new ArrayList<NetworkData>());
+
+        @Override
+        public void onGetData(NetworkData data) {
+            receivedData.add(data);
+        }
+    }
+
+    private FakeCDCPort cdcPort;
+    private RecordingListener listener;
+    private CDCNetworkLayer networkLayer;
+
+    // measures real duration of sending of data [in ms]
+    private long sendData() throws Exception {
+        long start = System.nanoTime();
+        networkLayer.sendData(new BaseNetworkData(new short[] { 1, 2, 3 }, "1"));
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        AbstractNetworkConnectionInfo connInfo = new BaseCOMPortConnectionInfo("cdc");
+        Map<String, AbstractNetworkConnectionInfo> idToConnInfo = new HashMap<>();
+        idToConnInfo.put("1", connInfo);
+        Map<AbstractNetworkConnectionInfo, String> connInfoToId = new HashMap<>();
+        connInfoToId.put(connInfo, "1");
+
+        cdcPort = new FakeCDCPort();
+        networkLayer = new CDCNetworkLayer(
+                new BaseNetworkConnectionStorage(idToConnInfo, connInfoToId), "cdc",
+                cdcPort
+        );
+        listener = new RecordingListener();
+        networkLayer.registerListener(listener);
+        networkLayer.start();
+    }
+
+    @After
+    public void tearDown() {
+        networkLayer.destroy();
+    }
+
+    /**
+     * Data accepted by the gateway is sent at the first attempt without
+     * any pause.
+     */
+    @Test
+    public void testNoPauseOnFirstSendAttempt() throws Exception {
+        long sendDuration = sendData();
+
+        assertEquals(1, cdcPort.sentData.size());
+        assertArrayEquals(new short[] { 1, 2, 3 }, cdcPort.sentData.get(0));
+        assertTrue(sendDuration < CDCNetworkLayer.SEND_RETRY_PAUSE);
+    }
+
+    /**
+     * Next sending attempt follows the pause after the gateway has not
+     * accepted the data.
+     */
+    @Test
+    public void testPauseBetweenSendAttempts() throws Exception {
+        cdcPort.responses.add(J_DSResponse.BUSY);
+        long sendDuration = sendData();
+
+        assertEquals(2, cdcPort.sentData.size());
+        assertTrue(sendDuration >= CDCNetworkLayer.SEND_RETRY_PAUSE);
+    }
+
+    /**
+     * Sending fails after the maximal number of not accepted attempts.
+     */
+    @Test
+    public void testSendingFailed() throws Exception {
+        for ( int i = 0; i < CDCNetworkLayer.MAX_CDC_STATUS_RETRIES; i++ ) {
+            cdcPort.responses.add(J_DSResponse.BUSY);
+        }
+        try {
+            sendData();
+            fail("Sending must fail");
+        } catch ( NetworkLayerException e ) {
+            assertEquals(CDCNetworkLayer.MAX_CDC_STATUS_RETRIES, cdcPort.sentData.size());
+        }
+    }
+
+    /**
+     * Asynchronous message of the gateway is delivered to the listener with
+     * ID of the network of the gateway.
+     */
+    @Test
+    public void testAsynchronousMessage() {
+        assertNotNull(cdcPort.asyncListener);
+        cdcPort.asyncListener.onGetMessage(new short[] { 4, 5 });
+
+        assertEquals(1, listener.receivedData.size());
+        assertEquals("1", listener.receivedData.get(0).getNetworkId());
+        assertArrayEquals(new short[] { 4, 5 }, listener.receivedData.get(0).getData());
+    }
+}